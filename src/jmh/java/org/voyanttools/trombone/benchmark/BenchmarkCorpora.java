@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ *
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ *
+ * This file is part of Trombone.
+ *
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.storage.file.FileStorage;
+import org.voyanttools.trombone.storage.memory.MemoryStorage;
+import org.voyanttools.trombone.tool.build.RealCorpusCreator;
+import org.voyanttools.trombone.util.FlexibleParameters;
+import org.voyanttools.trombone.util.TestHelper;
+
+/**
+ * Storage and corpora shared by the benchmarks. Corpora are either the bundled UDHR test texts
+ * (<code>udhr</code>) or synthetic texts (<code>synthetic:100</code> for 100 documents) whose
+ * words follow a Zipfian distribution over a generated vocabulary. Synthetic texts are generated
+ * from a fixed seed so that runs are comparable, and nothing needs to be fetched.
+ */
+public class BenchmarkCorpora {
+	
+	private static final String SYNTHETIC_PREFIX = "synthetic:";
+	
+	private static final int VOCABULARY_SIZE = 20000;
+	
+	private static final int TOKENS_PER_DOCUMENT = 500;
+	
+	private static final String[] SYLLABLES = new String[]{"ka","lo","mi","ne","su","ta","ri","po","de","va","gu","shi","an","el","or"};
+	
+	/**
+	 * Create an empty storage of the specified type.
+	 * @param type either <code>memory</code> or <code>file</code>
+	 * @return the new {@link Storage}
+	 * @throws IOException
+	 */
+	public static Storage getStorage(String type) throws IOException {
+		if (type.equals("file")) {
+			File directory = Files.createTempDirectory("trombone-benchmark").toFile();
+			return new FileStorage(directory);
+		}
+		else if (type.equals("memory")) {
+			return new MemoryStorage();
+		}
+		throw new IllegalArgumentException("Unrecognized storage type: "+type);
+	}
+	
+	/**
+	 * Create the specified corpus in the storage.
+	 * @param storage
+	 * @param corpus either <code>udhr</code> or <code>synthetic:</code> followed by the number of documents
+	 * @return the ID of the new corpus
+	 * @throws IOException
+	 */
+	public static String createCorpus(Storage storage, String corpus) throws IOException {
+		FlexibleParameters parameters = new FlexibleParameters();
+		if (corpus.equals("udhr")) {
+			List<String> files = new ArrayList<String>();
+			for (File file : TestHelper.getResource("udhr").listFiles()) {
+				if (file.getName().endsWith(".txt")) {files.add(file.getPath());}
+			}
+			parameters.addParameter("file", files.toArray(new String[0]));
+		}
+		else {
+			parameters.addParameter("string", getSyntheticDocuments(getSyntheticDocumentsCount(corpus)).toArray(new String[0]));
+		}
+		RealCorpusCreator creator = new RealCorpusCreator(storage, parameters);
+		creator.run();
+		return creator.getStoredId();
+	}
+	
+	public static int getSyntheticDocumentsCount(String corpus) {
+		if (corpus.startsWith(SYNTHETIC_PREFIX)==false) {
+			throw new IllegalArgumentException("Unrecognized corpus: "+corpus);
+		}
+		return Integer.parseInt(corpus.substring(SYNTHETIC_PREFIX.length()));
+	}
+	
+	/**
+	 * Generate synthetic documents (always the same ones for the same count).
+	 * @param count the number of documents
+	 * @return the list of document texts
+	 */
+	public static List<String> getSyntheticDocuments(int count) {
+		Random random = new Random(count);
+		String[] vocabulary = getVocabulary(random);
+		
+		// cumulative Zipfian weights (s=1) for sampling terms by rank
+		double[] cumulative = new double[vocabulary.length];
+		double sum = 0;
+		for (int i=0; i<vocabulary.length; i++) {
+			sum+=1d/(i+1);
+			cumulative[i] = sum;
+		}
+		
+		List<String> documents = new ArrayList<String>(count);
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<count; i++) {
+			sb.setLength(0);
+			int sentenceLength = 0;
+			for (int j=0; j<TOKENS_PER_DOCUMENT; j++) {
+				int index = Arrays.binarySearch(cumulative, random.nextDouble()*sum);
+				if (index<0) {index = -index-1;}
+				if (sentenceLength>0) {sb.append(' ');}
+				sb.append(vocabulary[Math.min(index, vocabulary.length-1)]);
+				if (++sentenceLength>5 && random.nextInt(10)==0) {
+					sb.append(". ");
+					sentenceLength = 0;
+				}
+			}
+			sb.append('.');
+			documents.add(sb.toString());
+		}
+		return documents;
+	}
+	
+	private static String[] getVocabulary(Random random) {
+		String[] vocabulary = new String[VOCABULARY_SIZE];
+		Set<String> seen = new HashSet<String>();
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<VOCABULARY_SIZE;) {
+			sb.setLength(0);
+			int syllables = 1+random.nextInt(4);
+			for (int j=0; j<syllables; j++) {
+				sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+			}
+			if (seen.add(sb.toString())) {
+				vocabulary[i++] = sb.toString();
+			}
+		}
+		return vocabulary;
+	}
+}
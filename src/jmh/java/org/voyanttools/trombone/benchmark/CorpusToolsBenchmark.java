@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ *
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ *
+ * This file is part of Trombone.
+ *
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.voyanttools.trombone.model.CorpusTerm;
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.tool.corpus.CorpusCollocates;
+import org.voyanttools.trombone.tool.corpus.CorpusTerms;
+import org.voyanttools.trombone.tool.corpus.DocumentContexts;
+import org.voyanttools.trombone.tool.corpus.DocumentNgrams;
+import org.voyanttools.trombone.tool.corpus.TSNE;
+import org.voyanttools.trombone.util.FlexibleParameters;
+
+/**
+ * Benchmarks the main corpus tools against an existing corpus (created once per trial). The tools are
+ * run directly rather than through the ToolRunner so that results aren't served from the cache, but
+ * any per-corpus data that tools store on first use (such as term statistics) will be warm.
+ * 
+ * The query for the context tools is the most frequent term of the corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CorpusToolsBenchmark {
+	
+	@Param({"memory", "file"})
+	public String storageType;
+	
+	@Param({"udhr", "synthetic:10", "synthetic:100", "synthetic:1000"})
+	public String corpus;
+	
+	private Storage storage;
+	
+	private String corpusId;
+	
+	private String query;
+	
+	@Setup(Level.Trial)
+	public void create() throws IOException {
+		storage = BenchmarkCorpora.getStorage(storageType);
+		corpusId = BenchmarkCorpora.createCorpus(storage, corpus);
+		CorpusTerms corpusTerms = new CorpusTerms(storage, getParameters("limit=1"));
+		corpusTerms.run();
+		for (CorpusTerm corpusTerm : corpusTerms) {
+			query = corpusTerm.getTerm();
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void destroy() throws IOException {
+		storage.destroy();
+	}
+	
+	private FlexibleParameters getParameters(String... parameters) {
+		FlexibleParameters flexibleParameters = new FlexibleParameters(parameters);
+		flexibleParameters.setParameter("corpus", corpusId);
+		return flexibleParameters;
+	}
+	
+	@Benchmark
+	public CorpusTerms corpusTerms() throws IOException {
+		CorpusTerms corpusTerms = new CorpusTerms(storage, getParameters("limit=100", "stopList=auto"));
+		corpusTerms.run();
+		return corpusTerms;
+	}
+	
+	@Benchmark
+	public CorpusTerms corpusTermsWithDistributions() throws IOException {
+		CorpusTerms corpusTerms = new CorpusTerms(storage, getParameters("limit=100", "stopList=auto", "withDistributions=true"));
+		corpusTerms.run();
+		return corpusTerms;
+	}
+	
+	@Benchmark
+	public DocumentContexts documentContexts() throws IOException {
+		DocumentContexts documentContexts = new DocumentContexts(storage, getParameters("query="+query, "context=5", "limit=100"));
+		documentContexts.run();
+		return documentContexts;
+	}
+	
+	@Benchmark
+	public CorpusCollocates corpusCollocates() throws IOException {
+		CorpusCollocates corpusCollocates = new CorpusCollocates(storage, getParameters("query="+query, "context=5", "limit=100"));
+		corpusCollocates.run();
+		return corpusCollocates;
+	}
+	
+	@Benchmark
+	public DocumentNgrams documentNgrams() throws IOException {
+		DocumentNgrams documentNgrams = new DocumentNgrams(storage, getParameters("limit=100"));
+		documentNgrams.run();
+		return documentNgrams;
+	}
+	
+	@Benchmark
+	public TSNE tsne() throws IOException {
+		TSNE tsne = new TSNE(storage, getParameters("limit=100", "stopList=auto", "iterations=250"));
+		tsne.run();
+		return tsne;
+	}
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ *
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ *
+ * This file is part of Trombone.
+ *
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.voyanttools.trombone.input.index.LuceneIndexer;
+import org.voyanttools.trombone.input.source.StringInputSource;
+import org.voyanttools.trombone.model.StoredDocumentSource;
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
+import org.voyanttools.trombone.util.FlexibleParameters;
+
+/**
+ * Benchmarks {@link LuceneIndexer#index(List)} for synthetic corpora of several sizes. Each invocation
+ * indexes the documents into a fresh storage (the documents are stored beforehand, outside of the
+ * measurement).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LuceneIndexerBenchmark {
+	
+	@Param({"memory", "file"})
+	public String storageType;
+	
+	@Param({"10", "100"})
+	public int documents;
+	
+	private List<String> texts;
+	
+	private Storage storage;
+	
+	private List<StoredDocumentSource> storedDocumentSources;
+	
+	@Setup(Level.Trial)
+	public void generate() {
+		texts = BenchmarkCorpora.getSyntheticDocuments(documents);
+	}
+	
+	@Setup(Level.Invocation)
+	public void store() throws IOException {
+		storage = BenchmarkCorpora.getStorage(storageType);
+		StoredDocumentSourceStorage storedDocumentSourceStorage = storage.getStoredDocumentSourceStorage();
+		storedDocumentSources = new ArrayList<StoredDocumentSource>(texts.size());
+		for (String text : texts) {
+			storedDocumentSources.add(storedDocumentSourceStorage.getStoredDocumentSource(new StringInputSource(text)));
+		}
+	}
+	
+	@TearDown(Level.Invocation)
+	public void destroy() throws IOException {
+		storage.destroy();
+	}
+	
+	@Benchmark
+	public String index() throws IOException {
+		LuceneIndexer luceneIndexer = new LuceneIndexer(storage, new FlexibleParameters());
+		return luceneIndexer.index(storedDocumentSources);
+	}
+}
@@ -9,7 +9,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.codec.digest.DigestUtils;
@@ -58,7 +57,6 @@ public abstract class AbstractLinesExpander implements Expander {
 	public List<StoredDocumentSource> getExpandedStoredDocumentSources(StoredDocumentSource storedDocumentSource)
 			throws IOException {
 		
-		List<StoredDocumentSource> storedDocumentSources = new ArrayList<StoredDocumentSource>();
 		// first try to see if we've been here already
 		String id = storedDocumentSource.getId();
 		List<StoredDocumentSource> archivedStoredDocumentSources = storedDocumentSourceStorage.getMultipleExpandedStoredDocumentSources(id);
@@ -69,8 +67,10 @@ public abstract class AbstractLinesExpander implements Expander {
 		DocumentMetadata documentMetadata = storedDocumentSource.getMetadata();
 		DocumentMetadata docMetadata = null;
 		
+		// lines are streamed and stored in batches, so only a few batches of lines are in memory at once
 		InputStream inputStream = null;
-		try {
+		int count = 0;
+		try (StoredDocumentSourceBatchStorer storer = new StoredDocumentSourceBatchStorer(storedDocumentSourceStorage, parameters)) {
 			inputStream = storedDocumentSourceStorage.getStoredDocumentSourceInputStream(storedDocumentSource.getId());
 			InputStreamReader isr = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
 			BufferedReader br = new BufferedReader(isr);
@@ -78,24 +78,24 @@ public abstract class AbstractLinesExpander implements Expander {
 			String childId;
 			while ((line = br.readLine()) != null) {
 				if (line.trim().isEmpty()) {continue;}
+				count++;
 				childId =  DigestUtils.md5Hex(line);
 				docMetadata = documentMetadata.asParent(childId, ParentType.EXPANSION);
-				docMetadata.setTitle(StringUtils.abbreviate(line.trim().substring(0, 100).replaceAll("\\s+", " "),50));
+				docMetadata.setTitle(StringUtils.abbreviate(StringUtils.substring(line.trim(), 0, 100).replaceAll("\\s+", " "),50));
 				docMetadata.setDocumentFormat(getChildDocumentFormat());
 				docMetadata.setSource(Source.STRING);
-				docMetadata.setLocation(documentMetadata.getLocation()+" ("+(storedDocumentSources.size()+1)+")");
+				docMetadata.setLocation(documentMetadata.getLocation()+" ("+count+")");
 				InputSource stringInputSource = new StringInputSource(childId, docMetadata, line);
-				StoredDocumentSource sds = storedDocumentSourceStorage.getStoredDocumentSource(stringInputSource);
-				storedDocumentSources.add(sds);
+				storer.add(stringInputSource);
 			}
+			return storer.getStoredDocumentSources();
 		} catch (IOException e) {
-			throw new IOException("Unable to expand source: "+id+" ("+documentMetadata.getLocation()+" ("+(storedDocumentSources.size()+1)+")");
+			throw new IOException("Unable to expand source: "+id+" ("+documentMetadata.getLocation()+" ("+count+")", e);
 		} finally {
 			if (inputStream!=null) {
 				inputStream.close();
 			}
 		}
-		return storedDocumentSources;
 	}
 
 }
@@ -22,21 +22,40 @@
 package org.voyanttools.trombone.input.expand;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveException;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.CloseShieldInputStream;
 import org.voyanttools.trombone.input.source.InputSource;
 import org.voyanttools.trombone.input.source.InputStreamInputSource;
@@ -57,12 +76,21 @@ import org.voyanttools.trombone.util.FlexibleParameters;
  * @author Stéfan Sinclair
  */
 class ArchiveExpander implements Expander {
-
+	
 	/**
-	 * the primary expander (child documents are expanded with this)
+	 * entries up to this size are read into memory so that they can be stored by
+	 * other threads while the next entries are read from the stream
 	 */
-	private Expander expander;
+	private static final long MAX_BUFFERED_ENTRY_SIZE = 4*1024*1024;
+	
+	private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
 	
+	/**
+	 * the workers shared by all archives, the entries of nested archives are
+	 * expanded by the worker that expands the nested archive itself
+	 */
+	private static final ExecutorService executor = Executors.newFixedThreadPool(PROCESSORS, runnable -> new Worker(runnable));
+
 	/**
 	 * the stored document storage strategy
 	 */
@@ -74,12 +102,14 @@ class ArchiveExpander implements Expander {
 	 * Create a new instance of this expander (this should only be done by
 	 * {@link StoredDocumentSourceExpander}.
 	 * 
+	 * Child documents are expanded (concurrently) with new instances of the
+	 * primary expander using the same parameters.
+	 * 
 	 * @param storedDocumentSourceStorage a stored storage strategy
-	 * @param storedDocumentSoruceExpander a reference to the primary expander
+	 * @param parameters the parameters of the primary expander
 	 */
-	ArchiveExpander(StoredDocumentSourceStorage storedDocumentSourceStorage, StoredDocumentSourceExpander storedDocumentSoruceExpander, FlexibleParameters parameters) {
+	ArchiveExpander(StoredDocumentSourceStorage storedDocumentSourceStorage, FlexibleParameters parameters) {
 		this.storedDocumentSourceStorage = storedDocumentSourceStorage;
-		this.expander = storedDocumentSoruceExpander;
 		this.parameters = parameters;
 	}
 	
@@ -94,13 +124,14 @@ class ArchiveExpander implements Expander {
 		}
 		
 		InputStream inputStream = null;
+		File zipFile = null;
 		try {
 			ArchiveStreamFactory archiveStreamFactory = new ArchiveStreamFactory();
 			inputStream = storedDocumentSourceStorage.getStoredDocumentSourceInputStream(storedDocumentSource.getId());
 			BufferedInputStream bis = new BufferedInputStream(inputStream);
 			
 			String filename = storedDocumentSource.getMetadata().getLocation();
-			ArchiveInputStream archiveInputStream;
+			ArchiveInputStream archiveInputStream = null;
 			
 			if (filename.toLowerCase().endsWith("tgz") || filename.toLowerCase().endsWith("tar.gz")) { // decompress and then untar
 				archiveInputStream = archiveStreamFactory.createArchiveInputStream(ArchiveStreamFactory.TAR, new GZIPInputStream(bis));
@@ -108,10 +139,28 @@ class ArchiveExpander implements Expander {
 			else if (filename.toLowerCase().endsWith("tbz2") || filename.toLowerCase().endsWith("tar.bz2")) { // decompress and then untar
 				archiveInputStream = archiveStreamFactory.createArchiveInputStream(ArchiveStreamFactory.TAR, new BZip2CompressorInputStream(bis));
 			}
+			else if (ArchiveStreamFactory.detect(bis).equals(ArchiveStreamFactory.ZIP)) {
+				// entries of a zip file can be read independently (and concurrently) from a file, so copy it first
+				zipFile = File.createTempFile("_temp_archive_", ".zip");
+				FileUtils.copyInputStreamToFile(bis, zipFile);
+				try (ZipFile file = new ZipFile(zipFile)) {
+					archivedStoredDocumentSources = getExpandedDocumentSources(file, storedDocumentSource);
+				} catch (ZipException e) {
+					// fall back to reading the stream, which is more forgiving of some malformed archives
+					archiveInputStream = archiveStreamFactory.createArchiveInputStream(ArchiveStreamFactory.ZIP, new BufferedInputStream(new FileInputStream(zipFile)));
+				}
+			}
 			else {
 				archiveInputStream = archiveStreamFactory.createArchiveInputStream(bis);
 			}
-			archivedStoredDocumentSources = getExpandedDocumentSources(archiveInputStream, storedDocumentSource);
+			if (archiveInputStream!=null) {
+				try {
+					archivedStoredDocumentSources = getExpandedDocumentSources(archiveInputStream, storedDocumentSource);
+				}
+				finally {
+					archiveInputStream.close();
+				}
+			}
 			storedDocumentSourceStorage.setMultipleExpandedStoredDocumentSources(storedDocumentSource.getId(), archivedStoredDocumentSources);
 			return archivedStoredDocumentSources;
 		} catch (ArchiveException e) {
@@ -121,12 +170,53 @@ class ArchiveExpander implements Expander {
 			if (inputStream != null) {
 				inputStream.close();
 			}
+			if (zipFile != null) {
+				zipFile.delete();
+			}
+		}
+	}
+	
+	/**
+	 * Get a list of stored document sources from the specified zip file (that
+	 * corresponds to the specified parent stored document source). Entries are
+	 * read, stored and expanded concurrently.
+	 * 
+	 * @param zipFile the zip file of the archive
+	 * @param parentStoredDocumentSource the parent stored document source
+	 * @return a list of stored document sources in this archive
+	 * @throws IOException thrown when an IO exception occurs during unarchiving
+	 */
+	private List<StoredDocumentSource> getExpandedDocumentSources(ZipFile zipFile,
+			StoredDocumentSource parentStoredDocumentSource) throws IOException {
+		
+		List<ZipArchiveEntry> archiveEntries = Collections.list(zipFile.getEntriesInPhysicalOrder());
+		for (ZipArchiveEntry archiveEntry : archiveEntries) {
+			if (archiveEntry.isDirectory()==false && isBagIt(new File(archiveEntry.getName()))) {
+				return new BagItExpander(storedDocumentSourceStorage, parameters).getExpandedStoredDocumentSources(parentStoredDocumentSource);
+			}
+		}
+		
+		EntriesExpander entriesExpander = new EntriesExpander(parentStoredDocumentSource);
+		try {
+			for (ZipArchiveEntry archiveEntry : archiveEntries) {
+				if (archiveEntry.isDirectory()==false && DocumentFormat.isSkippable(new File(archiveEntry.getName()))==false) {
+					DocumentMetadata childMetadata = entriesExpander.getChildMetadata(archiveEntry);
+					entriesExpander.acquire();
+					entriesExpander.submit(archiveEntry, childMetadata, () -> zipFile.getInputStream(archiveEntry));
+				}
+			}
+			return entriesExpander.getExpandedStoredDocumentSources();
+		}
+		finally {
+			entriesExpander.shutdown();
 		}
 	}
 
 	/**
 	 * Get a list of stored document sources from the specified archive stream
-	 * (that corresponds to the specfied parent stored document source).
+	 * (that corresponds to the specfied parent stored document source). Entries
+	 * are read from the stream one at a time, but they're stored and expanded
+	 * concurrently.
 	 * 
 	 * @param archiveInputStream the full archive input stream
 	 * @param parentStoredDocumentSource the parent stored document source
@@ -136,72 +226,261 @@ class ArchiveExpander implements Expander {
 	private List<StoredDocumentSource> getExpandedDocumentSources(
 			ArchiveInputStream archiveInputStream, StoredDocumentSource parentStoredDocumentSource) throws IOException {
 		
-		List<StoredDocumentSource> expandedDocumentSources = new ArrayList<StoredDocumentSource>();
-		
-		ArchiveEntry archiveEntry = archiveInputStream.getNextEntry();
-		String parentId = parentStoredDocumentSource.getId();
-		DocumentMetadata parentMetadata = parentStoredDocumentSource.getMetadata();
-		DocumentFormat parentDocumentFormat = parentMetadata.getDocumentFormat();
-				Map<String, Expander> clonedExpanders = new HashMap<String, Expander>();
-		while (archiveEntry != null) {
-			
-			if (archiveEntry.isDirectory()==false) {
-				final String filename = archiveEntry.getName();
-				final File file = new File(filename);
+		EntriesExpander entriesExpander = new EntriesExpander(parentStoredDocumentSource);
+		try {
+			ArchiveEntry archiveEntry = archiveInputStream.getNextEntry();
+			while (archiveEntry != null) {
 				
-				// auto-detect a BagIt (this may result in expanding other files unnecessarily, but that's ok). 
-				if (file.getName().equals("bagit.txt") || file.getName().equals("bag-info.txt") || file.getName().equals("CWRC.bin")) {
-					BagItExpander bagitExpander = new BagItExpander(storedDocumentSourceStorage, parameters);
-					return bagitExpander.getExpandedStoredDocumentSources(parentStoredDocumentSource);
-//					expandedDocumentSources.clear();
-//					expandedDocumentSources.add(parentStoredDocumentSource);
-//					parentMetadata.setDocumentFormat(DocumentFormat.BAGIT);
-//					// ensure the parent metadata is right
-//					storedDocumentSourceStorage.updateStoredDocumentSourceMetadata(parentStoredDocumentSource.getId(), parentMetadata);
-//					return expandedDocumentSources;
-				}
-
-				// skip directories and skippable files
-				if (DocumentFormat.isSkippable(file)==false) {
-					DocumentMetadata childMetadata = parentMetadata.asParent(parentStoredDocumentSource.getId(), DocumentMetadata.ParentType.EXPANSION);
-					childMetadata.setLocation(file.toString());
-					childMetadata.setModified(archiveEntry.getLastModifiedDate().getTime());
-					childMetadata.setSource(Source.STREAM);
-					childMetadata.setTitle(file.getName().replaceFirst("\\.\\w+$", ""));
-					DocumentFormat childDocumentFormat = null;
-					if (parentDocumentFormat==DocumentFormat.PBLIT) { // use cloned expander without parameters
-						if (file.getName().equals("satorbase.xml")) {
-							childDocumentFormat=DocumentFormat.SATORBASE;
-						} else if (file.getParent().equals("hyperlistes")) {
-							childDocumentFormat=DocumentFormat.HYPERLISTES;
-						} else if (file.getParent().equals("toucher")) {
-							childDocumentFormat=DocumentFormat.TOUCHER;
-						} else {
-							throw new IllegalStateException("Unrecognized file for PBLIT bundle");
-						}
-						childMetadata.setDocumentFormat(childDocumentFormat);
+				if (archiveEntry.isDirectory()==false) {
+					final File file = new File(archiveEntry.getName());
+					
+					// auto-detect a BagIt (this may result in expanding other files unnecessarily, but that's ok). 
+					if (isBagIt(file)) {
+						entriesExpander.shutdown();
+						return new BagItExpander(storedDocumentSourceStorage, parameters).getExpandedStoredDocumentSources(parentStoredDocumentSource);
 					}
-					String id = DigestUtils.md5Hex(parentId+filename);
-					InputSource inputSource = new InputStreamInputSource(id, childMetadata, new CloseShieldInputStream(archiveInputStream));
-					StoredDocumentSource storedDocumentSource = storedDocumentSourceStorage.getStoredDocumentSource(inputSource);
-					if (parentDocumentFormat==DocumentFormat.PBLIT) { // use cloned expander without parameters
-						if (!clonedExpanders.containsKey(childDocumentFormat.name())) {
-							FlexibleParameters clonedParams = new FlexibleParameters();
-							clonedParams.setParameter("inputFormat", childDocumentFormat.name());
-							clonedExpanders.put(childDocumentFormat.name(), new StoredDocumentSourceExpander(storedDocumentSourceStorage, clonedParams));
+	
+					// skip directories and skippable files
+					if (DocumentFormat.isSkippable(file)==false) {
+						final ArchiveEntry entry = archiveEntry;
+						DocumentMetadata childMetadata = entriesExpander.getChildMetadata(entry);
+						long size = entry.getSize();
+						if (size>=0 && size<=MAX_BUFFERED_ENTRY_SIZE) {
+							// read (decompress) the entry here and leave storage and expansion to the workers
+							entriesExpander.acquire();
+							byte[] bytes;
+							try {
+								bytes = IOUtils.toByteArray(archiveInputStream);
+							}
+							catch (IOException e) {
+								entriesExpander.release();
+								throw e;
+							}
+							entriesExpander.submit(entry, childMetadata, () -> new ByteArrayInputStream(bytes));
+						}
+						else {
+							// too big to hold in memory, so store it from the stream but still expand it concurrently
+							StoredDocumentSource storedDocumentSource = entriesExpander.getStoredDocumentSource(entry, childMetadata, new CloseShieldInputStream(archiveInputStream));
+							entriesExpander.submit(() -> entriesExpander.getExpandedStoredDocumentSources(storedDocumentSource, childMetadata.getDocumentFormat()));
 						}
-//						if (childDocumentFormat==DocumentFormat.HYPERLISTES) {
-							expandedDocumentSources.addAll(clonedExpanders.get(childDocumentFormat.name()).getExpandedStoredDocumentSources(storedDocumentSource)); // expand this recursively						
-//						}
-					} else {
-						expandedDocumentSources.addAll(this.expander.getExpandedStoredDocumentSources(storedDocumentSource)); // expand this recursively
 					}
 				}
+				archiveEntry = archiveInputStream.getNextEntry();
 			}
-			archiveEntry = archiveInputStream.getNextEntry();
+			return entriesExpander.getExpandedStoredDocumentSources();
 		}
+		finally {
+			entriesExpander.shutdown();
+		}
+	}
+	
+	private boolean isBagIt(File file) {
+		return file.getName().equals("bagit.txt") || file.getName().equals("bag-info.txt") || file.getName().equals("CWRC.bin");
+	}
+	
+	/**
+	 * A thread of the shared workers.
+	 */
+	private static class Worker extends Thread {
+		private Worker(Runnable runnable) {
+			super(runnable, "archive-expander");
+			setDaemon(true);
+		}
+	}
+	
+	/**
+	 * Opens the input stream of an entry, from the worker that stores it.
+	 */
+	private interface EntryInputStream {
+		InputStream open() throws IOException;
+	}
+	
+	/**
+	 * The entries of one archive, stored and expanded by the shared workers, the
+	 * expanded documents are kept in the order of the entries. The entries of an
+	 * archive that is itself being expanded by a worker are expanded in turn by
+	 * that worker, since waiting for other workers from there could exhaust them.
+	 */
+	private class EntriesExpander {
+		
+		private StoredDocumentSource parentStoredDocumentSource;
+		
+		private boolean concurrent;
+		
+		// bounds the number of entries read but not yet stored
+		private Semaphore semaphore;
+		
+		private List<CompletableFuture<List<StoredDocumentSource>>> futures = new ArrayList<CompletableFuture<List<StoredDocumentSource>>>();
+		
+		// the tasks of this archive that haven't finished yet
+		private Phaser pending = new Phaser(1);
+		
+		// the workers currently running tasks of this archive
+		private Set<Thread> running = new HashSet<Thread>();
+		
+		private volatile boolean stopped = false;
+		
+		// expanders aren't thread-safe, so each worker has its own
+		private ThreadLocal<Expander> expanders;
+		
+		private Map<String, Expander> clonedExpanders = new ConcurrentHashMap<String, Expander>();
 		
-		return expandedDocumentSources;
+		private EntriesExpander(StoredDocumentSource parentStoredDocumentSource) {
+			this.parentStoredDocumentSource = parentStoredDocumentSource;
+			concurrent = Thread.currentThread() instanceof Worker == false;
+			semaphore = new Semaphore(PROCESSORS*2);
+			expanders = ThreadLocal.withInitial(() -> new StoredDocumentSourceExpander(storedDocumentSourceStorage, parameters));
+		}
+		
+		private void acquire() throws IOException {
+			try {
+				semaphore.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Archive expansion has been interrupted.", e);
+			}
+		}
+		
+		private void release() {
+			semaphore.release();
+		}
+		
+		/**
+		 * Store and expand an entry for which a permit has been acquired, the permit
+		 * is released once the entry has been stored or has failed to be.
+		 */
+		private void submit(ArchiveEntry archiveEntry, DocumentMetadata childMetadata, EntryInputStream entryInputStream) {
+			submit(() -> {
+				StoredDocumentSource storedDocumentSource;
+				try (InputStream inputStream = entryInputStream.open()) {
+					storedDocumentSource = getStoredDocumentSource(archiveEntry, childMetadata, inputStream);
+				}
+				finally {
+					release();
+				}
+				return getExpandedStoredDocumentSources(storedDocumentSource, childMetadata.getDocumentFormat());
+			});
+		}
+		
+		private void submit(Callable<List<StoredDocumentSource>> callable) {
+			CompletableFuture<List<StoredDocumentSource>> future = new CompletableFuture<List<StoredDocumentSource>>();
+			futures.add(future);
+			if (concurrent==false) {
+				run(callable, future);
+				return;
+			}
+			pending.register();
+			executor.execute(() -> {
+				Thread thread = Thread.currentThread();
+				synchronized (running) {
+					running.add(thread);
+				}
+				try {
+					if (stopped) {future.cancel(false);}
+					else {run(callable, future);}
+				}
+				finally {
+					synchronized (running) {
+						running.remove(thread);
+						Thread.interrupted(); // don't let a late shutdown interrupt the next task
+					}
+					pending.arriveAndDeregister();
+				}
+			});
+		}
+		
+		private void run(Callable<List<StoredDocumentSource>> callable, CompletableFuture<List<StoredDocumentSource>> future) {
+			try {
+				future.complete(callable.call());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}
+		
+		private DocumentMetadata getChildMetadata(ArchiveEntry archiveEntry) throws IOException {
+			File file = new File(archiveEntry.getName());
+			DocumentMetadata parentMetadata = parentStoredDocumentSource.getMetadata();
+			DocumentMetadata childMetadata = parentMetadata.asParent(parentStoredDocumentSource.getId(), DocumentMetadata.ParentType.EXPANSION);
+			childMetadata.setLocation(file.toString());
+			childMetadata.setModified(archiveEntry.getLastModifiedDate().getTime());
+			childMetadata.setSource(Source.STREAM);
+			childMetadata.setTitle(file.getName().replaceFirst("\\.\\w+$", ""));
+			if (parentMetadata.getDocumentFormat()==DocumentFormat.PBLIT) { // use cloned expander without parameters
+				DocumentFormat childDocumentFormat;
+				if (file.getName().equals("satorbase.xml")) {
+					childDocumentFormat=DocumentFormat.SATORBASE;
+				} else if (file.getParent().equals("hyperlistes")) {
+					childDocumentFormat=DocumentFormat.HYPERLISTES;
+				} else if (file.getParent().equals("toucher")) {
+					childDocumentFormat=DocumentFormat.TOUCHER;
+				} else {
+					throw new IllegalStateException("Unrecognized file for PBLIT bundle");
+				}
+				childMetadata.setDocumentFormat(childDocumentFormat);
+			}
+			return childMetadata;
+		}
+		
+		private StoredDocumentSource getStoredDocumentSource(ArchiveEntry archiveEntry, DocumentMetadata childMetadata, InputStream inputStream) throws IOException {
+			String id = DigestUtils.md5Hex(parentStoredDocumentSource.getId()+archiveEntry.getName());
+			InputSource inputSource = new InputStreamInputSource(id, childMetadata, inputStream);
+			return storedDocumentSourceStorage.getStoredDocumentSource(inputSource);
+		}
+		
+		private List<StoredDocumentSource> getExpandedStoredDocumentSources(StoredDocumentSource storedDocumentSource, DocumentFormat childDocumentFormat) throws IOException {
+			if (parentStoredDocumentSource.getMetadata().getDocumentFormat()==DocumentFormat.PBLIT) { // use cloned expander without parameters
+				Expander clonedExpander = clonedExpanders.computeIfAbsent(Thread.currentThread().getId()+childDocumentFormat.name(), key -> {
+					FlexibleParameters clonedParams = new FlexibleParameters();
+					clonedParams.setParameter("inputFormat", childDocumentFormat.name());
+					return new StoredDocumentSourceExpander(storedDocumentSourceStorage, clonedParams);
+				});
+				return clonedExpander.getExpandedStoredDocumentSources(storedDocumentSource); // expand this recursively
+			} else {
+				return expanders.get().getExpandedStoredDocumentSources(storedDocumentSource); // expand this recursively
+			}
+		}
+		
+		/**
+		 * Wait for all entries to be stored and expanded.
+		 * @return the expanded documents, in the order of the entries
+		 * @throws IOException
+		 */
+		private List<StoredDocumentSource> getExpandedStoredDocumentSources() throws IOException {
+			List<StoredDocumentSource> expandedDocumentSources = new ArrayList<StoredDocumentSource>();
+			try {
+				for (CompletableFuture<List<StoredDocumentSource>> future : futures) {
+					expandedDocumentSources.addAll(future.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Archive expansion has been interrupted.", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {throw (IOException) cause;}
+				if (cause instanceof RuntimeException) {throw (RuntimeException) cause;}
+				throw new IllegalStateException("An error occurred during multi-threaded archive expansion.", cause);
+			}
+			return expandedDocumentSources;
+		}
+		
+		/**
+		 * Stop the tasks of this archive, waiting for any that are still storing an entry.
+		 */
+		private void shutdown() {
+			stopped = true;
+			synchronized (running) {
+				for (Thread thread : running) {
+					thread.interrupt();
+				}
+			}
+			try {
+				pending.awaitAdvanceInterruptibly(pending.arriveAndDeregister(), 1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (TimeoutException e) {
+				// give up waiting, the remaining tasks will stop on their own
+			}
+		}
 	}
 
 }
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.input.expand;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.voyanttools.trombone.input.source.InputSource;
+import org.voyanttools.trombone.model.StoredDocumentSource;
+import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
+import org.voyanttools.trombone.util.FlexibleParameters;
+
+/**
+ * Stores input sources in batches with a pool of workers, keeping the order in
+ * which they were added. Only a bounded number of batches wait to be stored at
+ * once (adding blocks otherwise), so that expanders can stream rows from very
+ * large files with bounded memory. The batch size can be set with the
+ * <code>expandBatchSize</code> parameter.
+ */
+class StoredDocumentSourceBatchStorer implements Closeable {
+	
+	private static final int DEFAULT_BATCH_SIZE = 1000;
+	
+	private StoredDocumentSourceStorage storedDocumentSourceStorage;
+	
+	private int batchSize;
+	
+	private List<InputSource> batch;
+	
+	private ExecutorService executor;
+	
+	private Semaphore semaphore;
+	
+	private List<Future<List<StoredDocumentSource>>> futures = new ArrayList<Future<List<StoredDocumentSource>>>();
+	
+	StoredDocumentSourceBatchStorer(StoredDocumentSourceStorage storedDocumentSourceStorage, FlexibleParameters parameters) {
+		this.storedDocumentSourceStorage = storedDocumentSourceStorage;
+		batchSize = Math.max(1, parameters.getParameterIntValue("expandBatchSize", DEFAULT_BATCH_SIZE));
+		batch = new ArrayList<InputSource>(batchSize);
+		int processors = Runtime.getRuntime().availableProcessors();
+		executor = Executors.newFixedThreadPool(processors);
+		semaphore = new Semaphore(processors*2);
+	}
+	
+	/**
+	 * Add an input source to be stored, this may block until a previous batch is stored.
+	 * @param inputSource the input source to store
+	 * @throws IOException
+	 */
+	void add(InputSource inputSource) throws IOException {
+		batch.add(inputSource);
+		if (batch.size()>=batchSize) {
+			submit();
+		}
+	}
+	
+	private void submit() throws IOException {
+		final List<InputSource> inputSources = batch;
+		batch = new ArrayList<InputSource>(batchSize);
+		try {
+			semaphore.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Storage of expanded documents has been interrupted.", e);
+		}
+		futures.add(executor.submit(() -> {
+			try {
+				List<StoredDocumentSource> storedDocumentSources = new ArrayList<StoredDocumentSource>(inputSources.size());
+				for (InputSource inputSource : inputSources) {
+					storedDocumentSources.add(storedDocumentSourceStorage.getStoredDocumentSource(inputSource));
+				}
+				return storedDocumentSources;
+			}
+			finally {
+				semaphore.release();
+			}
+		}));
+	}
+	
+	/**
+	 * Wait for all input sources to be stored.
+	 * @return the stored document sources, in the order in which they were added
+	 * @throws IOException
+	 */
+	List<StoredDocumentSource> getStoredDocumentSources() throws IOException {
+		if (batch.isEmpty()==false) {
+			submit();
+		}
+		List<StoredDocumentSource> storedDocumentSources = new ArrayList<StoredDocumentSource>();
+		try {
+			for (Future<List<StoredDocumentSource>> future : futures) {
+				storedDocumentSources.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Storage of expanded documents has been interrupted.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {throw (IOException) cause;}
+			if (cause instanceof RuntimeException) {throw (RuntimeException) cause;}
+			throw new IllegalStateException("An error occurred during multi-threaded storage of expanded documents.", cause);
+		}
+		return storedDocumentSources;
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+}
@@ -292,7 +292,7 @@ public class StoredDocumentSourceExpander implements Expander {
 			StoredDocumentSource storedDocumentSource) throws IOException {
 		if (this.archiveExpander == null) {
 			this.archiveExpander = new ArchiveExpander(
-					storedDocumentSourceStorage, this, parameters);
+					storedDocumentSourceStorage, parameters);
 		}
 		return this.archiveExpander
 				.getExpandedStoredDocumentSources(storedDocumentSource);
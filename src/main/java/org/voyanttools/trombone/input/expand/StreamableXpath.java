@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.input.expand;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.NamespaceContext;
+
+/**
+ * A simple XPath location path that can be matched against elements as they
+ * are streamed (without building a DOM). Only child (<code>/</code>) and
+ * descendant (<code>//</code>) steps are supported, with name tests of the
+ * form <code>name</code>, <code>prefix:name</code>, <code>*</code> or
+ * <code>*[local-name()='name']</code>. Relative paths are evaluated from the
+ * root element, as they are when expanding with a DOM.
+ */
+class StreamableXpath {
+	
+	private static Pattern STEP_PATTERN = Pattern.compile("\\G(//?)(\\*\\[local-name\\(\\)\\s*=\\s*(['\"])([^'\"]+)\\3\\]|\\*|[\\p{L}_][\\p{L}\\p{N}_.\\-]*(?::[\\p{L}_][\\p{L}\\p{N}_.\\-]*)?)");
+	
+	private Step[] steps;
+	
+	private StreamableXpath(Step[] steps) {
+		this.steps = steps;
+	}
+	
+	/**
+	 * Get a streamable path for the specified XPath expression.
+	 * 
+	 * @param xpath the XPath expression
+	 * @return the streamable path or null if the expression can't be streamed
+	 */
+	static StreamableXpath getInstance(String xpath) {
+		xpath = xpath.trim();
+		if (xpath.isEmpty()) {return null;}
+		if (xpath.startsWith("/")==false) {
+			xpath = "/*/"+xpath; // relative to the root element
+		}
+		List<Step> steps = new ArrayList<Step>();
+		Matcher matcher = STEP_PATTERN.matcher(xpath);
+		int end = 0;
+		while (matcher.find()) {
+			boolean descendant = matcher.group(1).length()==2;
+			String test = matcher.group(2);
+			if (matcher.group(4)!=null) { // *[local-name()='name']
+				steps.add(new Step(descendant, null, matcher.group(4), false));
+			}
+			else if (test.equals("*")) {
+				steps.add(new Step(descendant, null, null, false));
+			}
+			else {
+				int colon = test.indexOf(':');
+				steps.add(colon==-1 ? new Step(descendant, null, test, true) : new Step(descendant, test.substring(0, colon), test.substring(colon+1), true));
+			}
+			end = matcher.end();
+		}
+		return end==xpath.length() && steps.isEmpty()==false ? new StreamableXpath(steps.toArray(new Step[0])) : null;
+	}
+	
+	/**
+	 * Resolve the prefixes of the name tests using the namespaces declared
+	 * in the root element (as is done when expanding with a DOM).
+	 * 
+	 * @param namespaceContext the namespace context of the root element
+	 * @return false if a prefix couldn't be resolved
+	 */
+	boolean resolve(NamespaceContext namespaceContext) {
+		for (Step step : steps) {
+			if (step.prefix!=null) {
+				String namespaceURI = namespaceContext.getNamespaceURI(step.prefix);
+				if (namespaceURI==null || namespaceURI.isEmpty()) {return false;}
+				step.namespaceURI = namespaceURI;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Get the states for the document node (before the root element).
+	 * 
+	 * @return the states for the document node
+	 */
+	BitSet getInitialStates() {
+		BitSet states = new BitSet();
+		states.set(0);
+		return states;
+	}
+	
+	/**
+	 * Get the states for an element given the states of its parent.
+	 * 
+	 * @param parentStates the states of the parent
+	 * @param namespaceURI the namespace URI of the element (empty if none)
+	 * @param localName the local name of the element
+	 * @return the states for this element (which include {@link #getMatchState()} if it matches the path)
+	 */
+	BitSet getStates(BitSet parentStates, String namespaceURI, String localName) {
+		BitSet states = new BitSet();
+		for (int i = parentStates.nextSetBit(0); i >= 0 && i < steps.length; i = parentStates.nextSetBit(i+1)) {
+			Step step = steps[i];
+			if (step.descendant) {states.set(i);} // the step can still match deeper descendants
+			if (step.matches(namespaceURI, localName)) {states.set(i+1);}
+		}
+		return states;
+	}
+	
+	/**
+	 * Get the state that indicates a match.
+	 * 
+	 * @return the state that indicates a match
+	 */
+	int getMatchState() {
+		return steps.length;
+	}
+	
+	private static class Step {
+		
+		private boolean descendant;
+		private String prefix;
+		private String localName;
+		private boolean checkNamespace;
+		private String namespaceURI = "";
+		
+		private Step(boolean descendant, String prefix, String localName, boolean checkNamespace) {
+			this.descendant = descendant;
+			this.prefix = prefix;
+			this.localName = localName;
+			this.checkNamespace = checkNamespace;
+		}
+		
+		private boolean matches(String namespaceURI, String localName) {
+			if (this.localName!=null && this.localName.equals(localName)==false) {return false;}
+			return checkNamespace==false || this.namespaceURI.equals(namespaceURI==null ? "" : namespaceURI);
+		}
+	}
+}
@@ -19,6 +19,7 @@ import org.voyanttools.trombone.model.StoredDocumentSource;
 import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
 import org.voyanttools.trombone.util.FlexibleParameters;
 
+import com.univocity.parsers.common.AbstractParser;
 import com.univocity.parsers.csv.CsvParser;
 import com.univocity.parsers.csv.CsvParserSettings;
 import com.univocity.parsers.tsv.TsvParser;
@@ -69,42 +70,66 @@ public class TabularExpander implements Expander {
 		String id = storedDocumentSource.getId();
 		List<StoredDocumentSource> tabularStoredDocumentSources = new ArrayList<StoredDocumentSource>();
 		
-		List<String[]> allRows = getAllRows(storedDocumentSource);
-		int numRows = allRows.size();
-		
 		List<List<Integer>> columns = getInts(parameters.getParameterValues("tableContent"));
+		int firstRow = parameters.getParameterBooleanValue("tableNoHeadersRow") ? 0 : 1;
 		
-		if (columns.isEmpty()) {
-			int len = allRows.get(0).length;
-			for (int i=0; i<len; i++) {
-				List<Integer> cols = new ArrayList<Integer>();
-				cols.add(i);
-				columns.add(cols);
+		// rows are streamed and only the contents of each column are kept (rather than all rows)
+		String[] headersRow = null;
+		List<List<StringBuilder>> columnsBuffers = new ArrayList<List<StringBuilder>>();
+		AbstractParser<?> parser = beginParsing(storedDocumentSource);
+		try {
+			String[] row;
+			for (int r = 0; (row = parser.parseNext()) != null; r++) {
+				if (r==0) {
+					headersRow = row;
+					if (columns.isEmpty()) {
+						for (int i=0; i<row.length; i++) {
+							List<Integer> cols = new ArrayList<Integer>();
+							cols.add(i);
+							columns.add(cols);
+						}
+					}
+					for (List<Integer> set : columns) {
+						List<StringBuilder> buffers = new ArrayList<StringBuilder>();
+						for (int i=0; i<set.size(); i++) {
+							buffers.add(new StringBuilder());
+						}
+						columnsBuffers.add(buffers);
+					}
+				}
+				if (r < firstRow) {continue;}
+				for (int s=0; s<columns.size(); s++) {
+					List<Integer> set = columns.get(s);
+					for (int i=0; i<set.size(); i++) {
+						int c = set.get(i);
+						String value = c >= 0 && c < row.length ? row[c] : "";
+						if (value!=null && value.isEmpty()==false) {
+							StringBuilder buffer = columnsBuffers.get(s).get(i);
+							if (buffer.length()>0) buffer.append("\n\n");
+							buffer.append(value);
+						}
+					}
+				}
 			}
 		}
+		finally {
+			parser.stopParsing();
+		}
 		
-		
-		StringBuffer docBuffer = new StringBuffer();
-		int firstRow = parameters.getParameterBooleanValue("tableNoHeadersRow") ? 0 : 1;
+		StringBuilder docBuffer = new StringBuilder();
 		String title;
 		
-		for (List<Integer> set : columns) {
-			for (int c : set) {
-				for (int r = firstRow; r < numRows; r++) { 
-					String value = "";
-					String[] row = allRows.get(r);
-					if (c >= 0 && c < row.length) {
-						value = row[c];
-					}
-					if (value.isEmpty()==false) {
-						if (docBuffer.length()>0) docBuffer.append("\n\n");
-						docBuffer.append(value);
-					}
+		for (int s=0; s<columns.size(); s++) {
+			List<Integer> set = columns.get(s);
+			for (StringBuilder buffer : columnsBuffers.get(s)) {
+				if (buffer.length()>0) {
+					if (docBuffer.length()>0) docBuffer.append("\n\n");
+					docBuffer.append(buffer);
 				}
 			}
 			if (docBuffer.length()>0) {
 				String location = (1)+"."+StringUtils.join(set, "+")+"."+(firstRow+1);
-				title = firstRow == 0 ? location : getValue(allRows.get(0), set, " ");
+				title = firstRow == 0 ? location : getValue(headersRow, set, " ");
 				tabularStoredDocumentSources.add(getChild(metadata, id, docBuffer.toString(), location, title, null, null, null, null, null, null, null));
 				docBuffer.setLength(0); // reset buffer
 			}
@@ -117,11 +142,6 @@ public class TabularExpander implements Expander {
 		DocumentMetadata parentMetadata = storedDocumentSource.getMetadata();
 		String parentId = storedDocumentSource.getId();
 		
-		List<StoredDocumentSource> tabularStoredDocumentSources = new ArrayList<StoredDocumentSource>();
-		
-		List<String[]> allRows = getAllRows(storedDocumentSource);
-		int numRows = allRows.size();
-		
 		List<List<Integer>> columns = getInts(parameters.getParameterValues("tableContent"));
 		List<List<Integer>> titles = getInts(parameters.getParameterValues("tableTitle"));
 		List<List<Integer>> authors = getInts(parameters.getParameterValues("tableAuthor"));
@@ -138,120 +158,128 @@ public class TabularExpander implements Expander {
 		List<List<Integer>> groupBy = getInts(parameters.getParameterValues("tableGroupBy"));
 		Map<String, List<String>> groupedRowInputSources = new HashMap<String, List<String>>();
 		
-		for (int r = firstRow; r < numRows; r++) {
-			String[] row = allRows.get(r);
-			if (columns.isEmpty()) {
-				int len = row.length;
-				if (len > 0) {
-					List<Integer> cols = new ArrayList<Integer>();
-					for (int i=0; i<len; i++) {
-						cols.add(i);
+		// rows are streamed and stored in batches, so only a few batches of rows are in memory at once (unless they're grouped)
+		AbstractParser<?> parser = beginParsing(storedDocumentSource);
+		try (StoredDocumentSourceBatchStorer storer = new StoredDocumentSourceBatchStorer(storedDocumentSourceStorage, parameters)) {
+			String[] row;
+			for (int r = 0; (row = parser.parseNext()) != null; r++) {
+				if (r < firstRow) {continue;}
+				if (columns.isEmpty()) {
+					int len = row.length;
+					if (len > 0) {
+						List<Integer> cols = new ArrayList<Integer>();
+						for (int i=0; i<len; i++) {
+							cols.add(i);
+						}
+						columns.add(cols);
 					}
-					columns.add(cols);
 				}
-			}
 			
-			for (List<Integer> columnsSet : columns) {
-				String contents = columnsSet.isEmpty() ? getValue(row, "\t") : getValue(row, columnsSet, "\t");
-				if (contents.isEmpty()==false) {
-					String location = (1)+"."+StringUtils.join(columnsSet, "+")+"."+(r+1);
-					String title = location;
-					List<String> currentAuthors = new ArrayList<String>();
-					String pubDateStr = "";
-					String publisherStr = "";
-					String pubPlaceStr = "";
-					String keywordsStr = "";
-					String collectionStr = "";
-					Map<String, String> extrasMap = new HashMap<>();
+				for (List<Integer> columnsSet : columns) {
+					String contents = columnsSet.isEmpty() ? getValue(row, "\t") : getValue(row, columnsSet, "\t");
+					if (contents.isEmpty()==false) {
+						String location = (1)+"."+StringUtils.join(columnsSet, "+")+"."+(r+1);
+						String title = location;
+						List<String> currentAuthors = new ArrayList<String>();
+						String pubDateStr = "";
+						String publisherStr = "";
+						String pubPlaceStr = "";
+						String keywordsStr = "";
+						String collectionStr = "";
+						Map<String, String> extrasMap = new HashMap<>();
 					
-					String groupByKey = "";
+						String groupByKey = "";
 					
-					if (columns.size()==1) {
-						if (titles.isEmpty()==false) {
-							List<String> currentTitles = getAllValues(row, titles);
-							if (currentTitles.isEmpty()==false) {
-								title = StringUtils.join(currentTitles, " ");
+						if (columns.size()==1) {
+							if (titles.isEmpty()==false) {
+								List<String> currentTitles = getAllValues(row, titles);
+								if (currentTitles.isEmpty()==false) {
+									title = StringUtils.join(currentTitles, " ");
+								}
 							}
-						}
 						
-						currentAuthors = getAllValues(row, authors, " ");
+							currentAuthors = getAllValues(row, authors, " ");
 						
-						List<String> currentPubDate = getAllValues(row, pubDate);
-						if (currentPubDate.isEmpty()==false) {
-							pubDateStr = StringUtils.join(currentPubDate, " ");
-						}
+							List<String> currentPubDate = getAllValues(row, pubDate);
+							if (currentPubDate.isEmpty()==false) {
+								pubDateStr = StringUtils.join(currentPubDate, " ");
+							}
 						
-						List<String> currentPublisher = getAllValues(row, publisher);
-						if (currentPublisher.isEmpty()==false) {
-							publisherStr = StringUtils.join(currentPublisher, " ");
-						}
+							List<String> currentPublisher = getAllValues(row, publisher);
+							if (currentPublisher.isEmpty()==false) {
+								publisherStr = StringUtils.join(currentPublisher, " ");
+							}
 						
-						List<String> currentPubPlace = getAllValues(row, pubPlace);
-						if (currentPubPlace.isEmpty()==false) {
-							pubPlaceStr = StringUtils.join(currentPubPlace, " ");
-						}
+							List<String> currentPubPlace = getAllValues(row, pubPlace);
+							if (currentPubPlace.isEmpty()==false) {
+								pubPlaceStr = StringUtils.join(currentPubPlace, " ");
+							}
 						
-						List<String> currentKeywords = getAllValues(row, keywords);
-						if (currentKeywords.isEmpty()==false) {
-							keywordsStr = StringUtils.join(currentKeywords, " ");
-						}
+							List<String> currentKeywords = getAllValues(row, keywords);
+							if (currentKeywords.isEmpty()==false) {
+								keywordsStr = StringUtils.join(currentKeywords, " ");
+							}
 						
-						List<String> currentCollection = getAllValues(row, collection);
-						if (currentCollection.isEmpty()==false) {
-							collectionStr = StringUtils.join(currentCollection, " ");
-						}
+							List<String> currentCollection = getAllValues(row, collection);
+							if (currentCollection.isEmpty()==false) {
+								collectionStr = StringUtils.join(currentCollection, " ");
+							}
 						
-						for (String extraKey : extras.keySet()) {
-							List<String> extraValues = getAllValues(row, extras.get(extraKey));
-							if (extraValues.isEmpty()==false) {
-								extrasMap.put(extraKey, StringUtils.join(extraValues, " "));
+							for (String extraKey : extras.keySet()) {
+								List<String> extraValues = getAllValues(row, extras.get(extraKey));
+								if (extraValues.isEmpty()==false) {
+									extrasMap.put(extraKey, StringUtils.join(extraValues, " "));
+								}
 							}
-						}
 						
-						List<String> currentGroupByKey = getAllValues(row, groupBy);
-						if (currentGroupByKey.isEmpty()==false) {
-							groupByKey = StringUtils.join(currentGroupByKey, " ");
-						}
+							List<String> currentGroupByKey = getAllValues(row, groupBy);
+							if (currentGroupByKey.isEmpty()==false) {
+								groupByKey = StringUtils.join(currentGroupByKey, " ");
+							}
 						
-					}
+						}
 					
-					if (doGrouping) {
-						if (groupedRowInputSources.containsKey(groupByKey) == false) {
-							groupedRowInputSources.put(groupByKey, new ArrayList<String>());
+						if (doGrouping) {
+							if (groupedRowInputSources.containsKey(groupByKey) == false) {
+								groupedRowInputSources.put(groupByKey, new ArrayList<String>());
+							}
+							groupedRowInputSources.get(groupByKey).add(contents);
+						} else {
+							DocumentMetadata metadata = createChildMetadata(parentMetadata, parentId, location, title, currentAuthors, pubDateStr, publisherStr, pubPlaceStr, keywordsStr, collectionStr, extrasMap);
+							InputSource inputSource = new StringInputSource(TabularExpander.generateId(parentId, metadata, "row"), metadata, contents);
+							storer.add(inputSource);
 						}
-						groupedRowInputSources.get(groupByKey).add(contents);
-					} else {
-						DocumentMetadata metadata = createChildMetadata(parentMetadata, parentId, location, title, currentAuthors, pubDateStr, publisherStr, pubPlaceStr, keywordsStr, collectionStr, extrasMap);
-						InputSource inputSource = new StringInputSource(TabularExpander.generateId(parentId, metadata, "row"), metadata, contents);
-						tabularStoredDocumentSources.add(storedDocumentSourceStorage.getStoredDocumentSource(inputSource));
 					}
 				}
 			}
-		}
 		
-		if (doGrouping) {
-			for (Map.Entry<String, List<String>> mappedRowInputSources : groupedRowInputSources.entrySet()) {
-				String key = mappedRowInputSources.getKey();
-				List<String> mappedRowInputSourcesList = mappedRowInputSources.getValue();
-				String location = parentId+";group:"+key;
-				StringBuffer combinedContents = new StringBuffer();
-				for (String rowInputSource : mappedRowInputSourcesList) {
-					combinedContents.append(rowInputSource).append("\n\n");
-				}
-				DocumentMetadata combinedMetadata = parentMetadata.asParent(parentId, DocumentMetadata.ParentType.EXPANSION);
-				combinedMetadata.setTitle(key);
-				combinedMetadata.setModified(parentMetadata.getModified());
-				combinedMetadata.setSource(Source.STRING);
-				combinedMetadata.setLocation(location);
-				combinedMetadata.setDocumentFormat(DocumentFormat.TEXT);
-				String id = DigestUtils.md5Hex(parentId + location);
+			if (doGrouping) {
+				for (Map.Entry<String, List<String>> mappedRowInputSources : groupedRowInputSources.entrySet()) {
+					String key = mappedRowInputSources.getKey();
+					List<String> mappedRowInputSourcesList = mappedRowInputSources.getValue();
+					String location = parentId+";group:"+key;
+					StringBuffer combinedContents = new StringBuffer();
+					for (String rowInputSource : mappedRowInputSourcesList) {
+						combinedContents.append(rowInputSource).append("\n\n");
+					}
+					DocumentMetadata combinedMetadata = parentMetadata.asParent(parentId, DocumentMetadata.ParentType.EXPANSION);
+					combinedMetadata.setTitle(key);
+					combinedMetadata.setModified(parentMetadata.getModified());
+					combinedMetadata.setSource(Source.STRING);
+					combinedMetadata.setLocation(location);
+					combinedMetadata.setDocumentFormat(DocumentFormat.TEXT);
+					String id = DigestUtils.md5Hex(parentId + location);
 				
-				InputSource inputSource = new StringInputSource(id, combinedMetadata, combinedContents.toString());
-				tabularStoredDocumentSources.add(storedDocumentSourceStorage.getStoredDocumentSource(inputSource));
+					InputSource inputSource = new StringInputSource(id, combinedMetadata, combinedContents.toString());
+					storer.add(inputSource);
+				}
 			}
-		}
 		
-		return tabularStoredDocumentSources;
+			return storer.getStoredDocumentSources();
+		}
+		finally {
+			parser.stopParsing();
+		}
 	}
 	
 	
@@ -338,18 +366,20 @@ public class TabularExpander implements Expander {
 		return outerList;
 	}
 	
-	private List<String[]> getAllRows(StoredDocumentSource storedDocumentSource) throws IOException {
+	/**
+	 * Start parsing the rows of the stored document source, rows can then be read
+	 * one at a time with {@link AbstractParser#parseNext()}.
+	 */
+	private AbstractParser<?> beginParsing(StoredDocumentSource storedDocumentSource) throws IOException {
 		InputStream input = storedDocumentSourceStorage.getStoredDocumentSourceInputStream(storedDocumentSource.getId());
-		List<String[]> allRows;
+		AbstractParser<?> parser;
 		if (format == DocumentFormat.CSV) {
-			CsvParser parser = new CsvParser(new CsvParserSettings());
-			allRows = parser.parseAll(input);
+			parser = new CsvParser(new CsvParserSettings());
 		} else {
-			TsvParser parser = new TsvParser(new TsvParserSettings());
-			allRows = parser.parseAll(input);
+			parser = new TsvParser(new TsvParserSettings());
 		}
-		
-		return allRows;
+		parser.beginParsing(input);
+		return parser;
 	}
 	
 	private DocumentMetadata createChildMetadata(DocumentMetadata parentMetadata, String parentId, String location, String title,
@@ -29,17 +29,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Transformer;
@@ -65,6 +74,7 @@ import org.voyanttools.trombone.model.StoredDocumentSource;
 import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
 import org.voyanttools.trombone.util.FlexibleParameters;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
@@ -192,6 +202,30 @@ class XmlExpander implements Expander {
 			return childStoredDocumentSources;
 		}
 
+		// simple paths can be matched while streaming through the document, which avoids
+		// building a DOM of the whole (potentially very large) document
+		if (xmlGroupByXpath.isEmpty() && DocumentFormat.getForgivingly(parameters.getParameterValue("inputFormat", ""))!=DocumentFormat.DTOC) {
+			StreamableXpath streamableXpath = StreamableXpath.getInstance(xmlDocumentsXpath);
+			if (streamableXpath!=null) {
+				List<StoredDocumentSource> streamedStoredDocumentSources;
+				try {
+					streamedStoredDocumentSources = getStreamedStoredDocumentSources(storedDocumentSource, streamableXpath, xmlDocumentsXpath, parentId, parentMetadata);
+				} catch (XMLStreamException e) {
+					// fall back to the DOM (which is more forgiving and reports errors as before)
+					streamedStoredDocumentSources = null;
+				}
+				if (streamedStoredDocumentSources!=null) {
+					if (streamedStoredDocumentSources.isEmpty()) {
+						throw new IllegalArgumentException("Unable to expand documents using the provided xmlDocumentsXPath argument: "+xmlDocumentsXpath+" for document: "+parentMetadata.getLocation());
+					}
+					storedDocumentSourceStorage.setMultipleExpandedStoredDocumentSources(
+							parentId, streamedStoredDocumentSources,
+							multipleExpandedStoredDocumentSourcesPrefix);
+					return streamedStoredDocumentSources;
+				}
+			}
+		}
+
 		// for some reason XPathAPI doesn't work properly with the default
 		// XPathFactory, so we'll use Saxon
 		System.setProperty("javax.xml.xpath.XPathFactory:"
@@ -326,6 +360,174 @@ class XmlExpander implements Expander {
 		return childStoredDocumentSources;
 	}
 
+	/**
+	 * Get a list of stored document sources by streaming through the document
+	 * and building a DOM only for each matching element (and its descendants),
+	 * so that only the fragments being matched are held in memory. Each
+	 * fragment is attached to shallow copies of its ancestors so that it's
+	 * serialized as it would be from a DOM of the whole document (including
+	 * the namespaces declared by its ancestors).
+	 * 
+	 * @param storedDocumentSource
+	 *            the stored document source to expand
+	 * @param streamableXpath
+	 *            the path to match
+	 * @param xmlDocumentsXpath
+	 *            the XPath expression (used for locations)
+	 * @param parentId
+	 *            the ID of the stored parent document
+	 * @param parentMetadata
+	 *            the metadata of the stored parent document
+	 * @return a list of {@link StoredDocumentSource}s (in document order) or
+	 *         null if the path can't be resolved for this document
+	 * @throws IOException
+	 *             an exception that occurs during IO processing
+	 * @throws XMLStreamException
+	 *             an exception that occurs while parsing
+	 */
+	private List<StoredDocumentSource> getStreamedStoredDocumentSources(StoredDocumentSource storedDocumentSource,
+			StreamableXpath streamableXpath, String xmlDocumentsXpath, String parentId,
+			DocumentMetadata parentMetadata) throws IOException, XMLStreamException {
+		
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		DocumentBuilder builder;
+		try {
+			builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+		} catch (ParserConfigurationException e) {
+			throw new IOException("Error with XML parser configuration for "
+					+ storedDocumentSource, e);
+		}
+		
+		// matches may be nested, so we keep them by their position in document order
+		Map<Integer, StoredDocumentSource> storedDocumentSourcesMap = new TreeMap<Integer, StoredDocumentSource>();
+		List<StreamedFragment> fragments = new ArrayList<StreamedFragment>();
+		int matchesCount = 0;
+		Deque<BitSet> states = new ArrayDeque<BitSet>();
+		Deque<StreamedElement> ancestors = new ArrayDeque<StreamedElement>();
+		states.push(streamableXpath.getInitialStates());
+		
+		InputStream inputStream = storedDocumentSourceStorage.getStoredDocumentSourceInputStream(storedDocumentSource.getId());
+		XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+		try {
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					if (ancestors.isEmpty() && streamableXpath.resolve(reader.getNamespaceContext())==false) {
+						return null;
+					}
+					StreamedElement streamedElement = new StreamedElement(reader);
+					BitSet elementStates = streamableXpath.getStates(states.peek(), reader.getNamespaceURI(), reader.getLocalName());
+					states.push(elementStates);
+					for (StreamedFragment fragment : fragments) {
+						Element element = streamedElement.createElement(fragment.current.getOwnerDocument());
+						fragment.current.appendChild(element);
+						fragment.current = element;
+					}
+					if (elementStates.get(streamableXpath.getMatchState())) {
+						Document fragmentDocument = builder.newDocument();
+						Node parent = fragmentDocument;
+						for (Iterator<StreamedElement> it = ancestors.descendingIterator(); it.hasNext();) {
+							Element element = it.next().createElement(fragmentDocument);
+							parent.appendChild(element);
+							parent = element;
+						}
+						Element element = streamedElement.createElement(fragmentDocument);
+						parent.appendChild(element);
+						fragments.add(new StreamedFragment(matchesCount++, element));
+					}
+					ancestors.push(streamedElement);
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+					for (StreamedFragment fragment : fragments) {
+						fragment.current.appendChild(fragment.current.getOwnerDocument().createTextNode(reader.getText()));
+					}
+					break;
+				case XMLStreamConstants.CDATA:
+					for (StreamedFragment fragment : fragments) {
+						fragment.current.appendChild(fragment.current.getOwnerDocument().createCDATASection(reader.getText()));
+					}
+					break;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					for (StreamedFragment fragment : fragments) {
+						fragment.current.appendChild(fragment.current.getOwnerDocument().createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					states.pop();
+					ancestors.pop();
+					for (Iterator<StreamedFragment> it = fragments.iterator(); it.hasNext();) {
+						StreamedFragment fragment = it.next();
+						if (fragment.current==fragment.root) { // this fragment is complete
+							NodeInputSource nodeInputSource = getChildStoredDocumentSource(fragment.root, parentId, parentMetadata, xmlDocumentsXpath + "[" + fragment.index + "]");
+							storedDocumentSourcesMap.put(fragment.index, getStoredDocumentSource(nodeInputSource));
+							it.remove();
+						}
+						else {
+							fragment.current = fragment.current.getParentNode();
+						}
+					}
+					break;
+				}
+			}
+		}
+		finally {
+			reader.close();
+			inputStream.close();
+		}
+		return new ArrayList<StoredDocumentSource>(storedDocumentSourcesMap.values());
+	}
+	
+	/**
+	 * A streamed element's name, namespace declarations and attributes (using
+	 * qualified names like a DOM built without namespace awareness).
+	 */
+	private static class StreamedElement {
+		private String name;
+		private String[] attributes;
+		private StreamedElement(XMLStreamReader reader) {
+			name = getQualifiedName(reader.getPrefix(), reader.getLocalName());
+			int namespacesCount = reader.getNamespaceCount();
+			attributes = new String[(namespacesCount+reader.getAttributeCount())*2];
+			for (int i=0; i<namespacesCount; i++) {
+				String prefix = reader.getNamespacePrefix(i);
+				String namespaceURI = reader.getNamespaceURI(i);
+				attributes[i*2] = prefix==null || prefix.isEmpty() ? "xmlns" : "xmlns:"+prefix;
+				attributes[i*2+1] = namespaceURI==null ? "" : namespaceURI;
+			}
+			for (int i=0, len=reader.getAttributeCount(); i<len; i++) {
+				attributes[(namespacesCount+i)*2] = getQualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+				attributes[(namespacesCount+i)*2+1] = reader.getAttributeValue(i);
+			}
+		}
+		private Element createElement(Document document) {
+			Element element = document.createElement(name);
+			for (int i=0; i<attributes.length; i+=2) {
+				element.setAttribute(attributes[i], attributes[i+1]);
+			}
+			return element;
+		}
+		private static String getQualifiedName(String prefix, String localName) {
+			return prefix==null || prefix.isEmpty() ? localName : prefix+":"+localName;
+		}
+	}
+	
+	/**
+	 * A fragment being built from a matching element.
+	 */
+	private static class StreamedFragment {
+		private int index;
+		private Node root;
+		private Node current;
+		private StreamedFragment(int index, Node root) {
+			this.index = index;
+			this.root = root;
+			this.current = root;
+		}
+	}
+
 	/**
 	 * Get a list of stored document sources. Matching nodes for each XPath
 	 * expression are concatenated into a single document (one document per
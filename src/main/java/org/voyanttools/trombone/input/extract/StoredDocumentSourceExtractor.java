@@ -31,6 +31,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.IOUtils;
@@ -41,6 +42,7 @@ import org.voyanttools.trombone.model.DocumentMetadata;
 import org.voyanttools.trombone.model.StoredDocumentSource;
 import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
 import org.voyanttools.trombone.util.FlexibleParameters;
+import org.voyanttools.trombone.util.PipelineQueue;
 
 /**
  * @author sgs
@@ -88,7 +90,6 @@ public class StoredDocumentSourceExtractor {
 	}
 	
 	public List<StoredDocumentSource> getExtractedStoredDocumentSources(List<StoredDocumentSource> storedDocumentSources) throws IOException {
-		boolean verbose = parameters.getParameterBooleanValue("verbose");
 		
 		/*
 		// we will run in parallel, but since order matters, we need a map
@@ -118,16 +119,37 @@ public class StoredDocumentSourceExtractor {
 			.collect(Collectors.toList());
 		*/
 
+		return getExtractedStoredDocumentSources(storedDocumentSources, null);
+
+	}
+	
+	/**
+	 * Extract documents as they're provided by the iterable (which may be
+	 * blocking), passing each extracted document to the queue (if it isn't
+	 * null) as soon as it's available, so that the next step can start.
+	 * The number of documents being extracted at once is bounded, so a
+	 * full queue blocks the extraction (and in turn the iteration).
+	 * 
+	 * @param storedDocumentSources the documents to extract
+	 * @param extractedStoredDocumentSourcesQueue the queue to which extracted documents are added (in the order they're extracted) or null
+	 * @return the extracted documents, in the same order as the source documents
+	 * @throws IOException
+	 */
+	public List<StoredDocumentSource> getExtractedStoredDocumentSources(Iterable<StoredDocumentSource> storedDocumentSources, PipelineQueue<StoredDocumentSource> extractedStoredDocumentSourcesQueue) throws IOException {
+		boolean verbose = parameters.getParameterBooleanValue("verbose");
+		
 		List<StoredDocumentSource> extractedStoredDocumentSources = new ArrayList<StoredDocumentSource>();
 		int processors = Runtime.getRuntime().availableProcessors();
 		ExecutorService executor = Executors.newFixedThreadPool(processors);
+		Semaphore semaphore = new Semaphore(processors*2);
 		List<Future<StoredDocumentSource>> list = new ArrayList<Future<StoredDocumentSource>>();
-		for (StoredDocumentSource storedDocumentSource : storedDocumentSources) {
-			Callable<StoredDocumentSource> worker = new CallableExtractor(this, storedDocumentSource, verbose);
-			Future<StoredDocumentSource> submit = executor.submit(worker);
-			list.add(submit);	
-		}
 		try {
+			for (StoredDocumentSource storedDocumentSource : storedDocumentSources) {
+				semaphore.acquire();
+				Callable<StoredDocumentSource> worker = new CallableExtractor(this, storedDocumentSource, verbose, semaphore, extractedStoredDocumentSourcesQueue);
+				Future<StoredDocumentSource> submit = executor.submit(worker);
+				list.add(submit);	
+			}
 			for (Future<StoredDocumentSource> future : list) {
 				StoredDocumentSource sds = future.get();
 				if (sds!=null) {
@@ -136,10 +158,14 @@ public class StoredDocumentSourceExtractor {
 			}
 		} catch (InterruptedException e) {
 			executor.shutdownNow();
+			Thread.currentThread().interrupt();
 			throw new IllegalStateException("An error occurred during multi-threaded document expansion.", e);
 		} catch (ExecutionException e) {
 			executor.shutdownNow();
 			throw new IllegalStateException("An error occurred during multi-threaded document expansion.", e);
+		} catch (RuntimeException e) {
+			executor.shutdownNow();
+			throw e;
 		}
 		executor.shutdown();
 	
@@ -202,12 +228,19 @@ public class StoredDocumentSourceExtractor {
 		else if (format==DocumentFormat.HTML && getHtmlExtractor().hasQueries()) {
 			extractedInputSource = getHtmlExtractor().getExtractableInputSource(storedDocumentSource);
 		} else {
-			if (tikaExtractor==null) {tikaExtractor = new TikaExtractor(storedDocumentSourceStorage, parameters);}
-			extractedInputSource =  tikaExtractor.getExtractableInputSource(storedDocumentSource);
+			extractedInputSource =  getTikaExtractor().getExtractableInputSource(storedDocumentSource);
 		}
 		return storedDocumentSourceStorage.getStoredDocumentSource(extractedInputSource);
 	}
 	
+	// shared by the extraction workers, so make sure we only create one
+	private synchronized TikaExtractor getTikaExtractor() {
+		if (tikaExtractor==null) {
+			tikaExtractor = new TikaExtractor(storedDocumentSourceStorage, parameters);
+		}
+		return tikaExtractor;
+	}
+	
 	private HtmlExtractor getHtmlExtractor() {
 		if (htmlExtractor==null) {
 			htmlExtractor = new HtmlExtractor(storedDocumentSourceStorage, parameters);
@@ -220,20 +253,34 @@ public class StoredDocumentSourceExtractor {
 		private StoredDocumentSourceExtractor extractor;
 		private StoredDocumentSource storedDocumentSource;
 		private boolean verbose;
+		private Semaphore semaphore;
+		private PipelineQueue<StoredDocumentSource> queue;
 
 		public CallableExtractor(
 				StoredDocumentSourceExtractor storedDocumentSourceExtractor,
 				StoredDocumentSource storedDocumentSource,
-				boolean verbose) {
+				boolean verbose, Semaphore semaphore,
+				PipelineQueue<StoredDocumentSource> queue) {
 			this.extractor = storedDocumentSourceExtractor;
 			this.storedDocumentSource = storedDocumentSource;
 			this.verbose = verbose;
+			this.semaphore = semaphore;
+			this.queue = queue;
 		}
 
 		@Override
 		public StoredDocumentSource call() throws Exception {
 //			if (verbose) {System.out.println("extracting "+storedDocumentSource.getMetadata());}
-			return this.extractor.getExtractedStoredDocumentSource(storedDocumentSource);
+			try {
+				StoredDocumentSource extractedStoredDocumentSource = this.extractor.getExtractedStoredDocumentSource(storedDocumentSource);
+				if (queue!=null && extractedStoredDocumentSource!=null) {
+					queue.put(extractedStoredDocumentSource);
+				}
+				return extractedStoredDocumentSource;
+			}
+			finally {
+				semaphore.release();
+			}
 		}
 		
 	}
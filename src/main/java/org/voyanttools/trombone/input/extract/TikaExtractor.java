@@ -25,7 +25,8 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
-import java.util.Locale;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,9 +37,9 @@ import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.tika.detect.DefaultDetector;
-import org.apache.tika.detect.Detector;
-import org.apache.tika.exception.TikaException;
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
@@ -52,7 +53,6 @@ import org.voyanttools.trombone.model.StoredDocumentSource;
 import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
 import org.voyanttools.trombone.util.FlexibleParameters;
 import org.voyanttools.trombone.util.LangDetector;
-import org.xml.sax.SAXException;
 
 /**
  * @author sgs
@@ -60,20 +60,49 @@ import org.xml.sax.SAXException;
  */
 public class TikaExtractor implements Extractor {
 	
-	private ParseContext context;
-	private Parser parser;
-	private Detector detector;
+	/**
+	 * Loading Tika's detector and parser registries is expensive, so they're
+	 * loaded once (with the default configuration) and shared by all extractors
+	 * and worker threads (Tika parsers and detectors are stateless and thread-safe).
+	 */
+	private static final TikaConfig TIKA_CONFIG = TikaConfig.getDefaultConfig();
+	private static final Parser AUTO_DETECT_PARSER = new AutoDetectParser(TIKA_CONFIG);
+	
+	/**
+	 * The registry of parsers by media type (the same one that the auto-detecting parser
+	 * delegates to), used directly when the document format is already known so that we
+	 * can skip MIME detection.
+	 */
+	private static final Parser DEFAULT_PARSER = TIKA_CONFIG.getParser();
+	
+	private static final HtmlMapper HTML_MAPPER = new CustomHtmlMapper();
+	
+	/**
+	 * Media types for the formats that we trust enough to skip detection.
+	 */
+	private static final Map<DocumentFormat, MediaType> KNOWN_MEDIA_TYPES = new EnumMap<DocumentFormat, MediaType>(DocumentFormat.class);
+	static {
+		KNOWN_MEDIA_TYPES.put(DocumentFormat.PDF, MediaType.application("pdf"));
+		KNOWN_MEDIA_TYPES.put(DocumentFormat.MSWORD, MediaType.application("msword"));
+		KNOWN_MEDIA_TYPES.put(DocumentFormat.MSWORDX, MediaType.application("vnd.openxmlformats-officedocument.wordprocessingml.document"));
+		KNOWN_MEDIA_TYPES.put(DocumentFormat.RTF, MediaType.application("rtf"));
+		KNOWN_MEDIA_TYPES.put(DocumentFormat.ODT, MediaType.application("vnd.oasis.opendocument.text"));
+		KNOWN_MEDIA_TYPES.put(DocumentFormat.EPUB, MediaType.application("epub+zip"));
+	}
+	
+	private static final ThreadLocal<SAXTransformerFactory> TRANSFORMER_FACTORY = new ThreadLocal<SAXTransformerFactory>() {
+		@Override
+		protected SAXTransformerFactory initialValue() {
+			return (SAXTransformerFactory) SAXTransformerFactory.newInstance();
+		}
+	};
+	
 	private StoredDocumentSourceStorage storedDocumentSourceStorage;
 	private FlexibleParameters parameters;
 	
 	TikaExtractor(StoredDocumentSourceStorage storedDocumentSourceStorage, FlexibleParameters parameters) {
 		this.storedDocumentSourceStorage = storedDocumentSourceStorage;
 		this.parameters = parameters;
-		context = new ParseContext();
-		detector = new DefaultDetector();
-		parser = new AutoDetectParser(detector);
-		context.set(Parser.class, parser);
-		context.set(HtmlMapper.class, new CustomHtmlMapper());
 	}
 
 	public InputSource getExtractableInputSource(StoredDocumentSource storedDocumentSource) throws IOException {
@@ -89,7 +118,7 @@ public class TikaExtractor implements Extractor {
 		return new ExtractableTikaInputSource(DigestUtils.md5Hex(id.toString()), storedDocumentSource);
 	}
 
-	private class CustomHtmlMapper extends DefaultHtmlMapper {
+	private static class CustomHtmlMapper extends DefaultHtmlMapper {
 		
 		@Override
 		public String mapSafeElement(String name) {
@@ -122,7 +151,7 @@ public class TikaExtractor implements Extractor {
 
 		@Override
 		public InputStream getInputStream() throws IOException {
-			org.apache.tika.metadata.Metadata extractedMetadata = new org.apache.tika.metadata.Metadata();
+			Metadata extractedMetadata = new Metadata();
 	
 // added this to override poor unicode detection for non-ascii characters, but upgrade of tika have resolved the issue
 //			if (metadata.getDocumentFormat()==DocumentFormat.TEXT) {
@@ -130,25 +159,27 @@ public class TikaExtractor implements Extractor {
 //			}
 			
 	        StringWriter sw = new StringWriter(); 
-	        SAXTransformerFactory factory = (SAXTransformerFactory) 
-	                 SAXTransformerFactory.newInstance(); 
-	        
-	        
-	        // Try with a document containing various tables and formattings 
-	        InputStream input = storedDocumentSourceStorage.getStoredDocumentSourceInputStream(storedDocumentSource.getId());
 	        
 	        // do a first pass to convert various formats to simple HTML
-	        try { 
-	            TransformerHandler handler = factory.newTransformerHandler(); 
-	            // set the output to xhtml instead of html to avoid "Illegal HTML character" exceptions form the transformer
-	            handler.getTransformer().setOutputProperty(OutputKeys.METHOD, "xhtml"); 
-	            handler.getTransformer().setOutputProperty(OutputKeys.INDENT, "yes"); 
-	            handler.setResult(new StreamResult(sw));
-	            parser.parse(input, handler, extractedMetadata, context);
-	        } catch (Exception e) {
-	        	throw new IOException("Unable to parse document: "+storedDocumentSource.getMetadata(), e);
-			} finally { 
-	            input.close(); 
+	        MediaType mediaType = KNOWN_MEDIA_TYPES.get(metadata.getDocumentFormat());
+	        if (mediaType!=null) {
+	        	// the format is already known, so go straight to the right parser
+	        	extractedMetadata.set(Metadata.CONTENT_TYPE, mediaType.toString());
+	        	try {
+	        		parse(DEFAULT_PARSER, extractedMetadata, sw);
+	        	} catch (Exception e) {
+	        		// the format may have been guessed wrong (from the extension, say), so try again with detection
+	        		extractedMetadata = new Metadata();
+	        		sw = new StringWriter();
+	        		mediaType = null;
+	        	}
+	        }
+	        if (mediaType==null) {
+		        try { 
+		        	parse(AUTO_DETECT_PARSER, extractedMetadata, sw);
+		        } catch (Exception e) {
+		        	throw new IOException("Unable to parse document: "+storedDocumentSource.getMetadata(), e);
+				}
 	        }
 	        String extractedContent = sw.toString();
 	        
@@ -247,6 +278,23 @@ public class TikaExtractor implements Extractor {
 	        return new ByteArrayInputStream(extractedContent.getBytes("UTF-8"));
 		}
 
+		private void parse(Parser parser, Metadata extractedMetadata, StringWriter sw) throws Exception {
+			ParseContext context = new ParseContext();
+			context.set(Parser.class, AUTO_DETECT_PARSER); // for embedded documents
+			context.set(HtmlMapper.class, HTML_MAPPER);
+	        InputStream input = storedDocumentSourceStorage.getStoredDocumentSourceInputStream(storedDocumentSource.getId());
+	        try { 
+	            TransformerHandler handler = TRANSFORMER_FACTORY.get().newTransformerHandler(); 
+	            // set the output to xhtml instead of html to avoid "Illegal HTML character" exceptions form the transformer
+	            handler.getTransformer().setOutputProperty(OutputKeys.METHOD, "xhtml"); 
+	            handler.getTransformer().setOutputProperty(OutputKeys.INDENT, "yes"); 
+	            handler.setResult(new StreamResult(sw));
+	            parser.parse(input, handler, extractedMetadata, context);
+	        } finally { 
+	            input.close(); 
+	        }
+		}
+
 		@Override
 		public DocumentMetadata getMetadata() throws IOException {
 			
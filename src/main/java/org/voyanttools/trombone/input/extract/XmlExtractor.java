@@ -39,9 +39,13 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import javax.xml.namespace.QName;
@@ -50,7 +54,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
-import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -61,8 +65,8 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -79,6 +83,9 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import net.sf.saxon.lib.NamespaceConstant;
 import net.sf.saxon.xpath.XPathFactoryImpl;
 
@@ -90,31 +97,71 @@ public class XmlExtractor implements Extractor, Serializable {
 	
 	
 	private static final long serialVersionUID = -8659873836740839314L;
-	private StoredDocumentSourceStorage storedDocumentSourceStorage;
-	private FlexibleParameters parameters;
+	
+	// the maximum number of compiled XPath expressions to keep per thread
+	private static final int MAX_CACHED_XPATH_EXPRESSIONS = 256;
 	
 	/**
-	 * the Transformer used to produce XML output from nodes
+	 * the Transformer used to produce XML output from nodes (per thread since
+	 * transformers can't be used concurrently by the extraction workers)
 	 */
-	private Transformer transformer;
+	private static final ThreadLocal<Transformer> transformer = new ThreadLocal<Transformer>() {
+		@Override
+		protected Transformer initialValue() {
+			Transformer transformer;
+			try {
+				transformer = TransformerFactory.newInstance().newTransformer();
+			} catch (TransformerConfigurationException e) {
+				throw new IllegalStateException(
+						"Unable to create XML transformer.", e);
+			}
+			transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
+			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+			return transformer;
+		}
+	};
+	
+	/**
+	 * compiled XPath expressions by expression, per thread since compiled
+	 * expressions aren't guaranteed to be thread-safe (but extraction workers
+	 * process many documents with the same expressions)
+	 */
+	private static final ThreadLocal<Map<String, XPathExpression>> xpathExpressions = new ThreadLocal<Map<String, XPathExpression>>() {
+		@Override
+		protected Map<String, XPathExpression> initialValue() {
+			return new LinkedHashMap<String, XPathExpression>(16, .75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+					return size() > MAX_CACHED_XPATH_EXPRESSIONS;
+				}
+			};
+		}
+	};
+	
+	/**
+	 * the XPath (with no namespace context) used to compile expressions, per thread
+	 */
+	private static final ThreadLocal<XPath> xpath = new ThreadLocal<XPath>() {
+		@Override
+		protected XPath initialValue() {
+			return new XPathFactoryImpl().newXPath();
+		}
+	};
+	
+	/**
+	 * compiled extractor templates by template name (Templates are thread-safe)
+	 */
+	private static final Cache<String, Templates> templatesCache = CacheBuilder.newBuilder().build();
+	
+	private StoredDocumentSourceStorage storedDocumentSourceStorage;
+	private FlexibleParameters parameters;
 	
-	private XPathFactory xpathFactory;
-
 	public XmlExtractor(
 			StoredDocumentSourceStorage storedDocumentSourceStorage,
 			FlexibleParameters parameters) {
 		this.storedDocumentSourceStorage = storedDocumentSourceStorage;
 		this.parameters = parameters;
-		try {
-			transformer = TransformerFactory.newInstance().newTransformer();
-		} catch (TransformerConfigurationException e) {
-			throw new IllegalStateException(
-					"Unable to create XML transformer.", e);
-		}
-		transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
-		transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-		
-		xpathFactory = new XPathFactoryImpl();
 		
 		// for some reason XPathAPI doesn't work properly with the default
 		// XPathFactory, so we'll use Saxon
@@ -122,6 +169,46 @@ public class XmlExtractor implements Extractor, Serializable {
 				+ NamespaceConstant.OBJECT_MODEL_SAXON,
 				"net.sf.saxon.xpath.XPathFactoryImpl");
 	}
+	
+	/**
+	 * Get the compiled XPath expression for this thread (compiling it if needed).
+	 * 
+	 * @param expression the XPath expression
+	 * @return the compiled expression
+	 * @throws XPathExpressionException a syntax error in the expression
+	 */
+	static XPathExpression getXPathExpression(String expression) throws XPathExpressionException {
+		Map<String, XPathExpression> expressions = xpathExpressions.get();
+		XPathExpression xpathExpression = expressions.get(expression);
+		if (xpathExpression==null) {
+			xpathExpression = xpath.get().compile(expression);
+			expressions.put(expression, xpathExpression);
+		}
+		return xpathExpression;
+	}
+	
+	/**
+	 * Get the compiled templates for the named extractor template (compiling them if needed).
+	 * 
+	 * @param xmlExtractorTemplate the name of the template (in the templates resources)
+	 * @return the compiled templates
+	 * @throws IOException an error finding or compiling the template
+	 */
+	static Templates getTemplates(final String xmlExtractorTemplate) throws IOException {
+		try {
+			return templatesCache.get(xmlExtractorTemplate, new Callable<Templates>() {
+				@Override
+				public Templates call() throws Exception {
+					try (InputStream is = XmlExtractor.class.getResourceAsStream("/org/voyanttools/trombone/templates/"+xmlExtractorTemplate)) {
+						if (is == null) throw new IOException("Unable to find extractor template "+xmlExtractorTemplate);
+						return TransformerFactory.newInstance().newTemplates(new StreamSource(is));
+					}
+				}
+			});
+		} catch (ExecutionException e) {
+			throw new IOException("Unable to compile extractor template "+xmlExtractorTemplate, e.getCause());
+		}
+	}
 
 	/* (non-Javadoc)
 	 * @see org.voyanttools.trombone.input.extract.Extractor#getInputSource(org.voyanttools.trombone.document.StoredDocumentSource)
@@ -275,26 +362,14 @@ public class XmlExtractor implements Extractor, Serializable {
 			if (localParameters.containsKey("xmlExtractorTemplate")) {
 				
 				String xmlExtractorTemplate = localParameters.getParameterValue("xmlExtractorTemplate");
-				try (InputStream is = this.getClass().getResourceAsStream("/org/voyanttools/trombone/templates/"+xmlExtractorTemplate)) {
-					if (is == null) throw new Error("Unable to find extractor template "+xmlExtractorTemplate);
-					Source source = new StreamSource(is);
-					
-					DOMResult result = new DOMResult();
-					try {
-						Transformer extractorTransformer = TransformerFactory.newInstance().newTransformer(source);
-						extractorTransformer.transform(new DOMSource(doc), result);
-					} catch (TransformerException e) {
-						throw new IOException("Unable to transform document during expansion "+metadata, e);
-					}
-					try {
-						doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-					} catch (ParserConfigurationException e) {
-						throw new IllegalStateException("Unable to create new XML document during templated extraction.", e);
-					}
-					doc = (Document) result.getNode();
-				} catch (Exception e) {
-					throw new IOException(e);
+				DOMResult result = new DOMResult();
+				try {
+					Transformer extractorTransformer = getTemplates(xmlExtractorTemplate).newTransformer();
+					extractorTransformer.transform(new DOMSource(doc), result);
+				} catch (TransformerException e) {
+					throw new IOException("Unable to transform document during expansion "+metadata, e);
 				}
+				doc = (Document) result.getNode();
 			}
 			
 			
@@ -359,9 +434,8 @@ public class XmlExtractor implements Extractor, Serializable {
 			String xmlContentXpath = localParameters.getParameterValue("xmlContentXpath","/");
 			
 			NodeList nodeList;
-			XPath xpath = xpathFactory.newXPath();
 			try {
-				nodeList = (NodeList) xpath.evaluate(xmlContentXpath, doc.getDocumentElement(), XPathConstants.NODESET);
+				nodeList = (NodeList) getXPathExpression(xmlContentXpath).evaluate(doc.getDocumentElement(), XPathConstants.NODESET);
 				if (nodeList.getLength()==0) {
 					throw new XPathExpressionException(xmlContentXpath);
 				}
@@ -389,7 +463,7 @@ public class XmlExtractor implements Extractor, Serializable {
 			Result streamResult = new StreamResult(sw);
 			try {
 				DOMSource domSource = new DOMSource(newParentNode);
-				transformer.transform(domSource, streamResult);
+				transformer.get().transform(domSource, streamResult);
 			} catch (TransformerException e) {
 				throw new IOException(
 						"Unable to transform node during XML extraction: "+storedDocumentSource);
@@ -422,16 +496,16 @@ public class XmlExtractor implements Extractor, Serializable {
 			String[] strings = new String[0];
 			if (xpathString.isEmpty()==false) {
 				Set<String> values = new HashSet<String>();
-				XPath xpath = xpathFactory.newXPath();
 				NodeList nodeList;
 				try {
+					XPathExpression xpathExpression = getXPathExpression(xpathString);
 					// this is awful to have to specify the return type, this should probably use a different library
 					if (xpathString.startsWith("string") || xpathString.startsWith("concat(") || xpathString.startsWith("replace(")) {
-						 String s = (String) xpath.evaluate(xpathString, doc.getDocumentElement(), XPathConstants.STRING);
+						 String s = (String) xpathExpression.evaluate(doc.getDocumentElement(), XPathConstants.STRING);
 						 values.add(s);
 					}
 					else {
-						nodeList = (NodeList) xpath.evaluate(xpathString, doc.getDocumentElement(), XPathConstants.NODESET);
+						nodeList = (NodeList) xpathExpression.evaluate(doc.getDocumentElement(), XPathConstants.NODESET);
 						for (int i=0, len=nodeList.getLength(); i<len; i++) {
 							values.add(nodeList.item(i).getTextContent());
 						}
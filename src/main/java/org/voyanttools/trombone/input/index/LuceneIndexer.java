@@ -31,9 +31,14 @@ import java.time.temporal.Temporal;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.codec.digest.DigestUtils;
@@ -48,13 +53,17 @@ import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.index.CodecReader;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterCodecReader;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SlowCodecReaderWrapper;
 import org.apache.lucene.index.SlowCompositeReaderWrapper;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
@@ -64,11 +73,18 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.LockObtainFailedException;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
 import org.voyanttools.trombone.input.source.InputSource;
 import org.voyanttools.trombone.input.source.InputStreamInputSource;
 import org.voyanttools.trombone.lucene.LuceneManager;
+import org.voyanttools.trombone.lucene.PerCorpusIndexLuceneManager;
+import org.voyanttools.trombone.lucene.analysis.AnalysisContext;
+import org.voyanttools.trombone.model.DaleChallIndex;
+import org.voyanttools.trombone.model.DocumentForwardIndex;
 import org.voyanttools.trombone.model.DocumentMetadata;
+import org.voyanttools.trombone.model.ReadabilityStatistics;
 import org.voyanttools.trombone.model.StoredDocumentSource;
 import org.voyanttools.trombone.model.TokenType;
 import org.voyanttools.trombone.storage.Storage;
@@ -122,23 +138,35 @@ public class LuceneIndexer implements Indexer {
 		}
 		String corpusId = storage.storeStrings(ids, Storage.Location.object);
 		
+		// when a corpus is edited with an index per corpus, start from the documents already indexed for the previous corpus
+		if (parameters.containsKey("previousCorpus") && storage.getLuceneManager().directoryExists(corpusId)==false) {
+			seedIndex(corpusId, ids, parameters.getParameterValues("previousCorpus"));
+		}
+		
 		// determine if we need to modify the Lucene index
 		Collection<StoredDocumentSource> storedDocumentSourceForLucene = new ArrayList<StoredDocumentSource>();
-		if (storage.getLuceneManager().directoryExists(corpusId)) {
-			LeafReader reader = SlowCompositeReaderWrapper.wrap(storage.getLuceneManager().getDirectoryReader(corpusId));
-			Terms terms = reader.terms("id");
-			if (terms==null) {
-				storedDocumentSourceForLucene.addAll(storedDocumentSources);
-			}
-			else {
-				TermsEnum termsEnum = terms.iterator();		
-				for (StoredDocumentSource storedDocumentSource : storedDocumentSources) {
-					String id = storedDocumentSource.getId();
-					if (!termsEnum.seekExact(new BytesRef(id))) {
-						storedDocumentSourceForLucene.add(storedDocumentSource);
+		LuceneManager luceneManager = storage.getLuceneManager();
+		if (luceneManager.directoryExists(corpusId)) {
+			DirectoryReader directoryReader = luceneManager.acquireDirectoryReader(corpusId);
+			try {
+				LeafReader reader = SlowCompositeReaderWrapper.wrap(directoryReader);
+				Terms terms = reader.terms("id");
+				if (terms==null) {
+					storedDocumentSourceForLucene.addAll(storedDocumentSources);
+				}
+				else {
+					TermsEnum termsEnum = terms.iterator();		
+					for (StoredDocumentSource storedDocumentSource : storedDocumentSources) {
+						String id = storedDocumentSource.getId();
+						if (!termsEnum.seekExact(new BytesRef(id))) {
+							storedDocumentSourceForLucene.add(storedDocumentSource);
+						}
 					}
 				}
 			}
+			finally {
+				luceneManager.releaseDirectoryReader(corpusId, directoryReader);
+			}
 		}
 		else {
 			storedDocumentSourceForLucene.addAll(storedDocumentSources);
@@ -163,17 +191,116 @@ public class LuceneIndexer implements Indexer {
 		return corpusId;
 		
 	}
+	/**
+	 * Copy the indexed documents of this corpus from the indexes of other corpora (as is, without analysis). 
+	 * This is only useful when each corpus has its own index, otherwise the documents are already there.
+	 * @param corpusId the id of the corpus to index
+	 * @param ids the document ids of the corpus
+	 * @param previousCorpusIds the ids of the corpora whose indexes may contain documents of this corpus
+	 * @throws IOException
+	 */
+	private void seedIndex(String corpusId, List<String> ids, String[] previousCorpusIds) throws IOException {
+		LuceneManager luceneManager = storage.getLuceneManager();
+		Set<String> idsToSeed = new HashSet<String>(ids);
+		List<CodecReader> readers = new ArrayList<CodecReader>();
+		
+		// the previous readers are held until their documents have been added
+		Map<String, DirectoryReader> previousReaders = new HashMap<String, DirectoryReader>();
+		try {
+			for (String previousCorpusId : previousCorpusIds) {
+				if (previousCorpusId.isEmpty() || previousCorpusId.equals(corpusId) || previousReaders.containsKey(previousCorpusId) || luceneManager.directoryExists(previousCorpusId)==false) {continue;}
+				DirectoryReader previousReader = luceneManager.acquireDirectoryReader(previousCorpusId);
+				previousReaders.put(previousCorpusId, previousReader);
+				for (LeafReaderContext context : previousReader.leaves()) {
+					LeafReader reader = context.reader();
+					Terms terms = reader.terms("id");
+					if (terms==null) {continue;}
+					
+					// keep only the first live copy of each document that's in this corpus 
+					Bits liveDocs = reader.getLiveDocs();
+					FixedBitSet seededDocs = new FixedBitSet(reader.maxDoc());
+					TermsEnum termsEnum = terms.iterator();
+					PostingsEnum postingsEnum = null;
+					for (String id : new ArrayList<String>(idsToSeed)) {
+						if (termsEnum.seekExact(new BytesRef(id))) {
+							postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
+							for (int doc = postingsEnum.nextDoc(); doc!=PostingsEnum.NO_MORE_DOCS; doc = postingsEnum.nextDoc()) {
+								if (liveDocs==null || liveDocs.get(doc)) {
+									seededDocs.set(doc);
+									idsToSeed.remove(id);
+									break;
+								}
+							}
+						}
+					}
+					if (seededDocs.cardinality()>0) {
+						readers.add(new SeedCodecReader(SlowCodecReaderWrapper.wrap(reader), seededDocs));
+					}
+				}
+			}
+			if (readers.isEmpty()==false) {
+				IndexWriter indexWriter = luceneManager.acquireIndexWriter(corpusId);
+				try {
+					indexWriter.addIndexes(readers.toArray(new CodecReader[0]));
+					luceneManager.commit(corpusId);
+					luceneManager.refresh(corpusId);
+				}
+				finally {
+					luceneManager.releaseIndexWriter(corpusId, indexWriter);
+				}
+			}
+		}
+		finally {
+			for (Map.Entry<String, DirectoryReader> previousReader : previousReaders.entrySet()) {
+				luceneManager.releaseDirectoryReader(previousReader.getKey(), previousReader.getValue());
+			}
+		}
+	}
+	
+	private static class SeedCodecReader extends FilterCodecReader {
+		
+		private FixedBitSet liveDocs;
+
+		public SeedCodecReader(CodecReader in, FixedBitSet liveDocs) {
+			super(in);
+			this.liveDocs = liveDocs;
+		}
+
+		@Override
+		public Bits getLiveDocs() {
+			return liveDocs;
+		}
+
+		@Override
+		public int numDocs() {
+			return liveDocs.cardinality();
+		}
+		
+	}
+	
 	private void indexStream(Collection<StoredDocumentSource> storedDocumentSourceForLucene, String corpusId) throws CorruptIndexException, LockObtainFailedException, IOException {
+		// hold the writer until we're done, so that it isn't closed in the meantime
+		LuceneManager luceneManager = storage.getLuceneManager();
+		IndexWriter indexWriter = luceneManager.acquireIndexWriter(corpusId);
+		try {
+			indexStream(storedDocumentSourceForLucene, corpusId, indexWriter);
+		}
+		finally {
+			luceneManager.releaseIndexWriter(corpusId, indexWriter);
+		}
+	}
+	
+	private void indexStream(Collection<StoredDocumentSource> storedDocumentSourceForLucene, String corpusId, IndexWriter indexWriter) throws CorruptIndexException, LockObtainFailedException, IOException {
 		// index documents (or at least add corpus to document if not already there), we need to get a new writer
-		IndexWriter indexWriter = storage.getLuceneManager().getIndexWriter(corpusId);
-		DirectoryReader indexReader = DirectoryReader.open(indexWriter);
-		IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+		LuceneManager luceneManager = storage.getLuceneManager();
+		DirectoryReader indexReader = luceneManager.acquireDirectoryReader(corpusId);
 		boolean verbose = parameters.getParameterBooleanValue("verbose");
 		try {
+			IndexSearcher indexSearcher = new IndexSearcher(indexReader);
 			storedDocumentSourceForLucene.parallelStream().forEach(storedDocumentSource -> {
 				Runnable runnable;
 				try {
-					runnable = new StoredDocumentSourceIndexer(storage, indexWriter, indexSearcher, storedDocumentSource, corpusId, verbose);
+					runnable = new StoredDocumentSourceIndexer(storage, indexSearcher, storedDocumentSource, corpusId, verbose);
 					runnable.run();
 				} catch (IOException e) {
 					// TODO Auto-generated catch block
@@ -183,13 +310,17 @@ public class LuceneIndexer implements Indexer {
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
+		finally {
+			luceneManager.releaseDirectoryReader(corpusId, indexReader);
+		}
+		
+		luceneManager.commit(corpusId);
 		
 		if (parameters.containsKey("forceMerge")) {
 			indexWriter.forceMerge(parameters.getParameterIntValue("forceMerge"));
 		}
 		
-		indexReader = DirectoryReader.open(indexWriter);
-		storage.getLuceneManager().setDirectoryReader(corpusId, indexReader); // make sure it's available afterwards				
+		luceneManager.refresh(corpusId); // make sure it's available afterwards				
 
 		
 		// now determine which documents need to be analyzed
@@ -201,8 +332,9 @@ public class LuceneIndexer implements Indexer {
 		}
 		
 		if (storedDocumentSourceForAnalysis.isEmpty()==false) {
-			IndexSearcher indexSearcher2 = new IndexSearcher(indexReader);		
+			indexReader = luceneManager.acquireDirectoryReader(corpusId);
 			try {
+				IndexSearcher indexSearcher2 = new IndexSearcher(indexReader);		
 				storedDocumentSourceForAnalysis.parallelStream().forEach(storedDocumentSource -> {
 					if (storedDocumentSource.getMetadata().getLastTokenPositionIndex(TokenType.lexical)==0) { // don't re-analyze
 						Runnable worker;
@@ -218,28 +350,84 @@ public class LuceneIndexer implements Indexer {
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
+			finally {
+				luceneManager.releaseDirectoryReader(corpusId, indexReader);
+			}
 		}
 		
 	}
-	private void indexExecutorService(Collection<StoredDocumentSource> storedDocumentSourceForLucene, String corpusId) throws CorruptIndexException, LockObtainFailedException, IOException {
+	/**
+	 * Determine whether documents can be indexed as they become available, before the corpus (and its ID)
+	 * is known. This is the case when all corpora share the same index and when documents aren't stored
+	 * again because of tokenization parameters.
+	 * @return whether {@link #indexBeforeCorpus(Iterable)} is useful
+	 * @throws IOException
+	 */
+	public boolean isIndexableBeforeCorpus() throws IOException {
+		return (storage.getLuceneManager() instanceof PerCorpusIndexLuceneManager)==false &&
+				parameters.getParameterValue("tokenization", "").isEmpty() && parameters.getParameterValue("language", "").isEmpty();
+	}
+	
+	/**
+	 * Index (and analyze) documents as they're provided by the iterable (which may be blocking), before the
+	 * corpus is known. The documents are then already in the shared index when the corpus is indexed with
+	 * {@link #index(List)}.
+	 * @param storedDocumentSources the documents to index
+	 * @throws IOException
+	 */
+	public void indexBeforeCorpus(Iterable<StoredDocumentSource> storedDocumentSources) throws IOException {
+		// the corpus doesn't determine the index when it's shared 
+		indexExecutorService(storedDocumentSources, "");
+	}
+	
+	private void indexExecutorService(Iterable<StoredDocumentSource> storedDocumentSources, String corpusId) throws CorruptIndexException, LockObtainFailedException, IOException {
+		// hold the writer until we're done (including any merge), so that it isn't closed in the meantime
+		LuceneManager luceneManager = storage.getLuceneManager();
+		IndexWriter indexWriter = luceneManager.acquireIndexWriter(corpusId);
+		try {
+			indexExecutorService(storedDocumentSources, corpusId, indexWriter);
+		}
+		finally {
+			luceneManager.releaseIndexWriter(corpusId, indexWriter);
+		}
+	}
+	
+	private void indexExecutorService(Iterable<StoredDocumentSource> storedDocumentSources, String corpusId, IndexWriter indexWriter) throws CorruptIndexException, LockObtainFailedException, IOException {
 		// index documents (or at least add corpus to document if not already there), we need to get a new writer
-		IndexWriter indexWriter = storage.getLuceneManager().getIndexWriter(corpusId);
-		DirectoryReader indexReader = DirectoryReader.open(indexWriter);
+		LuceneManager luceneManager = storage.getLuceneManager();
+		DirectoryReader indexReader = luceneManager.acquireDirectoryReader(corpusId);
 		IndexSearcher indexSearcher = new IndexSearcher(indexReader);		
 		boolean verbose = parameters.getParameterBooleanValue("verbose");
 		int processors = Runtime.getRuntime().availableProcessors();
 		ExecutorService executor;
 		
-		// index
+		// index, with a bounded number of documents waiting so that a blocking iterable is consumed as needed
+		Collection<StoredDocumentSource> storedDocumentSourceForLucene = new ArrayList<StoredDocumentSource>();
+		Semaphore semaphore = new Semaphore(processors*2);
 		executor = Executors.newFixedThreadPool(processors);
-		for (StoredDocumentSource storedDocumentSource : storedDocumentSourceForLucene) {
-			Runnable worker = new StoredDocumentSourceIndexer(storage, indexWriter, indexSearcher, storedDocumentSource, corpusId, verbose);
-			try {
-				executor.execute(worker);
-			} catch (Exception e) {
-				executor.shutdown();
-				throw e;
+		try {
+			for (StoredDocumentSource storedDocumentSource : storedDocumentSources) {
+				storedDocumentSourceForLucene.add(storedDocumentSource);
+				Runnable worker = new StoredDocumentSourceIndexer(storage, indexSearcher, storedDocumentSource, corpusId, verbose);
+				semaphore.acquire();
+				executor.execute(() -> {
+					try {
+						worker.run();
+					}
+					finally {
+						semaphore.release();
+					}
+				});
 			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			luceneManager.releaseDirectoryReader(corpusId, indexReader);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Lucene indexing has been interrupted.", e);
+		} catch (RuntimeException e) {
+			executor.shutdownNow();
+			luceneManager.releaseDirectoryReader(corpusId, indexReader);
+			throw e;
 		}
 		executor.shutdown();
 		try {
@@ -254,8 +442,9 @@ public class LuceneIndexer implements Indexer {
 		}
 		finally {
 			
+			luceneManager.releaseDirectoryReader(corpusId, indexReader);
 			try {
-				indexWriter.commit();
+				luceneManager.commit(corpusId);
 			}
 			catch (IOException e) {
 				indexWriter.close(); // this may also throw an exception, but docs say to close on commit error
@@ -267,8 +456,7 @@ public class LuceneIndexer implements Indexer {
 			indexWriter.forceMerge(parameters.getParameterIntValue("forceMerge"));
 		}
 		
-		indexReader = DirectoryReader.open(indexWriter);
-		storage.getLuceneManager().setDirectoryReader(corpusId, indexReader); // make sure it's available afterwards				
+		luceneManager.refresh(corpusId); // make sure it's available afterwards				
 
 		
 		// now determine which documents need to be analyzed
@@ -280,6 +468,7 @@ public class LuceneIndexer implements Indexer {
 		}
 		
 		if (storedDocumentSourceForAnalysis.isEmpty()==false) {
+			indexReader = luceneManager.acquireDirectoryReader(corpusId);
 			indexSearcher = new IndexSearcher(indexReader);
 			executor = Executors.newFixedThreadPool(processors);
 			for (StoredDocumentSource storedDocumentSource : storedDocumentSourceForAnalysis) {
@@ -296,6 +485,9 @@ public class LuceneIndexer implements Indexer {
 			} catch (InterruptedException e) {
 				throw new RuntimeException("Lucene document analysis run out of time", e);
 			}
+			finally {
+				luceneManager.releaseDirectoryReader(corpusId, indexReader);
+			}
 		}
 	
 	}
@@ -333,37 +525,18 @@ public class LuceneIndexer implements Indexer {
 			try {
 				topDocs = indexSearcher.search(query, 1); // there may be multiple documents in the index but they should have the same text
 				int docId = topDocs.scoreDocs[0].doc;
-				Terms terms = indexReader.getTermVector(docId, "lexical");
+				// build the positional forward index from the term vector and derive the statistics from it
+				DocumentForwardIndex forwardIndex = DocumentForwardIndex.build(indexReader.getTermVector(docId, TokenType.lexical.name()));
+				forwardIndex.store(storage, id, TokenType.lexical.name());
 				int totalTokens = 0;
-				int totalTypes =  0;
-				int lastOffset = 0;
-				int lastPosition = 0;
+				int totalTypes = forwardIndex.getTypesCount();
+				int lastOffset = forwardIndex.getLastStartOffset();
+				int lastPosition = forwardIndex.size()>0 ? forwardIndex.size()-1 : 0;
 				DescriptiveStatistics stats = new DescriptiveStatistics();
-				if (terms!=null) {
-					TermsEnum termsEnum = terms.iterator();
-					while (true) {
-						BytesRef term = termsEnum.next();
-						if (term!=null) {
-							totalTypes++;
-							PostingsEnum postingsEnum = termsEnum.postings(null, PostingsEnum.OFFSETS);
-							while (true) {
-								int doc = postingsEnum.nextDoc();
-								if (doc!=PostingsEnum.NO_MORE_DOCS) {
-									int freq = postingsEnum.freq();
-									stats.addValue(freq);
-									totalTokens+=freq;
-									for (int i=0; i<freq; i++) {
-										int pos = postingsEnum.nextPosition();
-										if (pos>lastPosition) {lastPosition=pos;}
-										int offset = postingsEnum.startOffset();
-										if (offset>lastOffset) {lastOffset=offset;}
-									}
-								}
-								else {break;}
-							}
-						}
-						else {break;}
-					}
+				for (int i=0; i<totalTypes; i++) {
+					int freq = forwardIndex.getRawFreqForTermId(i);
+					stats.addValue(freq);
+					totalTokens+=freq;
 				}
 				DocumentMetadata metadata = storedDocumentSource.getMetadata();
 				metadata.setTypesCount(TokenType.lexical, totalTypes);
@@ -384,17 +557,15 @@ public class LuceneIndexer implements Indexer {
 
 		private Storage storage;
 		private StoredDocumentSource storedDocumentSource;
-		private IndexWriter indexWriter;
 		private IndexSearcher indexSearcher;
 		private LuceneManager luceneManager;
 		private String corpusId;
 		private String id;
 		private String string = null;
 		private boolean verbose;
-		public StoredDocumentSourceIndexer(Storage storage, IndexWriter indexWriter, IndexSearcher indexSearcher,
+		public StoredDocumentSourceIndexer(Storage storage, IndexSearcher indexSearcher,
 				StoredDocumentSource storedDocumentSource, String corpusId, boolean verbose) throws IOException {
 			this.storage = storage;
-			this.indexWriter = indexWriter;
 			this.indexSearcher = indexSearcher;
 			this.storedDocumentSource = storedDocumentSource;
 			this.luceneManager = storage.getLuceneManager();
@@ -449,12 +620,9 @@ public class LuceneIndexer implements Indexer {
 //				document.add(new StringField("corpus", corpusId, Field.Store.NO));
 				document.add(new StringField("version",  LucenePackage.get().getImplementationVersion()+"-"+String.valueOf(LuceneIndexer.VERSION), Field.Store.YES));
 				
-				FlexibleParameters p = new FlexibleParameters();
-				p.setParameter("language", storedDocumentSource.getMetadata().getLanguageCode());
-				if (parameters.getParameterValue("tokenization", "").isEmpty()==false) {
-					p.setParameter("tokenization", parameters.getParameterValue("tokenization"));
-				}
-				document.add(new Field("lexical", getString() + "<!-- "+ p.getAsQueryString()+" -->", ft));
+				// the language and tokenization are provided to the analyzer out of band when the document is added
+				AnalysisContext analysisContext = AnalysisContext.getInstance(storedDocumentSource.getMetadata().getLanguageCode(), parameters);
+				document.add(new Field("lexical", getString(), ft));
 //				System.err.println(id+": "+getString());
 				
 				FlexibleParameters params = storedDocumentSource.getMetadata().getFlexibleParameters();
@@ -477,13 +645,11 @@ public class LuceneIndexer implements Indexer {
 				}
 				
 				if (parameters.getParameterBooleanValue("lemmatize")) {
-					// pass in parameters, including language, used by lemmatizer
-					document.add(new Field("lemma", getString() + "<!-- "+ p.getAsQueryString()+" -->", ft));
+					document.add(new Field("lemma", getString(), ft));
 				}
 				
 				if (parameters.getParameterBooleanValue("stem")) {
-					// pass in parameters, including language, used by lemmatizer
-					document.add(new Field("stem", getString() + "<!-- "+ p.getAsQueryString()+" -->", ft));
+					document.add(new Field("stem", getString(), ft));
 				}
 				
 				// TODO: add lemmatization
@@ -506,7 +672,12 @@ public class LuceneIndexer implements Indexer {
 				List<String> sentences = TextUtils.getSentences(getString(), storedDocumentSource.getMetadata().getLanguageCode());
 				storedDocumentSource.getMetadata().setSentencesCount(sentences.size());
 				
-				indexWriter.addDocument(config.build(document));
+				// gather the counts for all of the readability indexes in a single pass
+				storedDocumentSource.getMetadata().setReadabilityStatistics(ReadabilityStatistics.getInstance(getString(), DaleChallIndex.getDefaultEasyWords()));
+				
+				try (AnalysisContext.Scope scope = analysisContext.open()) {
+					luceneManager.addDocument(corpusId, config.build(document)); // committed in batches by the manager
+				}
 				
 			}
 			catch (IOException e) {
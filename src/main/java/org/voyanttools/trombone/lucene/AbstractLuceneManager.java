@@ -1,5 +1,12 @@
 package org.voyanttools.trombone.lucene;
 
+import java.io.IOException;
+
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.LockObtainFailedException;
+
 public abstract class AbstractLuceneManager implements LuceneManager {
 
 	private long lastAccessed;
@@ -16,6 +23,26 @@ public abstract class AbstractLuceneManager implements LuceneManager {
 		return lastAccessed;
 	}
 	
+	@Override
+	public void releaseDirectoryReader(String corpus, DirectoryReader indexReader) throws IOException {
+		indexReader.decRef();
+	}
+	
+	@Override
+	public IndexWriter acquireIndexWriter(String corpus) throws CorruptIndexException, LockObtainFailedException, IOException {
+		return getIndexWriter(corpus);
+	}
+	
+	@Override
+	public void releaseIndexWriter(String corpus, IndexWriter indexWriter) throws IOException {
+		// the writer stays open with this manager
+	}
+	
+	@Override
+	public void commit(String corpus) throws IOException {
+		getIndexWriter(corpus).commit();
+	}
+	
 	@Override
 	public int compareTo(LuceneManager o) {
 		return Long.compare(getLastAccessed(), o.getLastAccessed());
@@ -29,7 +29,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.SlowCompositeReaderWrapper;
@@ -54,6 +58,13 @@ import org.voyanttools.trombone.lucene.search.DocumentFilterSpans;
 import org.voyanttools.trombone.lucene.search.FilteredCorpusReader;
 import org.voyanttools.trombone.model.Corpus;
 import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.storage.StorageCacheKey;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
 
 /**
  * @author sgs
@@ -61,20 +72,148 @@ import org.voyanttools.trombone.storage.Storage;
  */
 public class CorpusMapper {
 	
+	// the maximum number of documents (summed across corpora) for which we keep mappers in memory
+	private static final long MAX_CACHED_DOCUMENTS = 1000000;
+	
+	// the maximum number of mappers (and therefore of open readers) that we keep, the weigher can't be
+	// combined with a maximum size so each mapper weighs at least its share of the documents
+	private static final int MAX_CACHED_MAPPERS = 1000;
+	
+	// mappers that haven't been used for this long are removed so that their readers can be closed
+	private static final long MAX_IDLE_MINUTES = 5;
+	
+	private static final Cache<StorageCacheKey, CorpusMapper> cache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_DOCUMENTS)
+			.weigher(new Weigher<StorageCacheKey, CorpusMapper>() {
+				@Override
+				public int weigh(StorageCacheKey key, CorpusMapper corpusMapper) {
+					return (int) Math.max(corpusMapper.corpus.getDocumentIds().size()+1, MAX_CACHED_DOCUMENTS/MAX_CACHED_MAPPERS);
+				}
+			})
+			.expireAfterAccess(MAX_IDLE_MINUTES, TimeUnit.MINUTES)
+			.removalListener(new RemovalListener<StorageCacheKey, CorpusMapper>() {
+				@Override
+				public void onRemoval(RemovalNotification<StorageCacheKey, CorpusMapper> notification) {
+					// cached mappers hold a reference to their reader, releasing it closes the reader
+					// unless it's still the current one of its manager or someone has acquired it
+					try {
+						notification.getValue().release();
+					} catch (IOException e) {
+						// the reader could not be closed, but there's nothing more we can do with it
+					}
+				}
+			})
+			.build();
+	
 	Storage storage;
 	LeafReader reader;
 	IndexSearcher searcher;
 	Corpus corpus;
+	private DirectoryReader directoryReader = null;
+	private volatile boolean built = false;
 	private List<Integer> luceneIds = null;
 	private BitSet bitSet = null;
 	private Map<String, Integer> documentIdToLuceneIdMap = null;
 	private Map<Integer, String> luceneIdToDocumentIdMap = null;
+	private SortedSetDocValuesReaderState sortedSetDocValuesReaderState = null;
 
 	public CorpusMapper(Storage storage, Corpus corpus) throws IOException {
 		this.storage = storage;
 		this.corpus = corpus;
 	}
 	
+	/**
+	 * Create a mapper for the specified corpus that shares the (already built) mappings of
+	 * another mapper for a corpus with the same documents.
+	 * @param corpusMapper
+	 * @param corpus
+	 */
+	private CorpusMapper(CorpusMapper corpusMapper, Corpus corpus) {
+		this.storage = corpusMapper.storage;
+		this.corpus = corpus;
+		this.reader = corpusMapper.reader;
+		this.searcher = corpusMapper.searcher;
+		this.directoryReader = corpusMapper.directoryReader;
+		this.luceneIds = corpusMapper.luceneIds;
+		this.bitSet = corpusMapper.bitSet;
+		this.documentIdToLuceneIdMap = corpusMapper.documentIdToLuceneIdMap;
+		this.luceneIdToDocumentIdMap = corpusMapper.luceneIdToDocumentIdMap;
+		this.sortedSetDocValuesReaderState = corpusMapper.sortedSetDocValuesReaderState;
+		this.built = true;
+	}
+	
+	/**
+	 * Get a {@link CorpusMapper} for the specified corpus, reusing a previously built mapper
+	 * if the corpus has the same documents and the index reader hasn't changed since (otherwise
+	 * the mapper is built and kept for subsequent requests).
+	 * @param storage
+	 * @param corpus
+	 * @return a built {@link CorpusMapper}
+	 * @throws IOException
+	 */
+	public static CorpusMapper getInstance(Storage storage, Corpus corpus) throws IOException {
+		StorageCacheKey key = new StorageCacheKey(storage, corpus.getId());
+		LuceneManager luceneManager = storage.getLuceneManager();
+		DirectoryReader directoryReader = luceneManager.acquireDirectoryReader(corpus.getId());
+		boolean isKept = false; // whether the acquired reader is kept by a new mapper
+		try {
+			CorpusMapper corpusMapper = cache.getIfPresent(key);
+			if (corpusMapper!=null && corpusMapper.directoryReader==directoryReader) {
+				if (corpusMapper.corpus==corpus) {
+					return corpusMapper;
+				}
+				else if (corpusMapper.corpus.getDocumentIds().equals(corpus.getDocumentIds())) {
+					corpusMapper = new CorpusMapper(corpusMapper, corpus);
+					isKept = true;
+					cache.put(key, corpusMapper);
+					return corpusMapper;
+				}
+			}
+			corpusMapper = new CorpusMapper(storage, corpus);
+			corpusMapper.directoryReader = directoryReader;
+			corpusMapper.ensureBuilt();
+			isKept = true;
+			cache.put(key, corpusMapper);
+			return corpusMapper;
+		}
+		finally {
+			if (isKept==false) {
+				luceneManager.releaseDirectoryReader(corpus.getId(), directoryReader);
+			}
+		}
+	}
+	
+	/**
+	 * Hold this mapper's reader open (even if the mapper is evicted and the index is refreshed meanwhile),
+	 * this should be paired with {@link #release()}.
+	 * @return false if the reader has already been closed, in which case a new mapper is needed
+	 * @throws IOException
+	 */
+	public boolean tryAcquire() throws IOException {
+		ensureBuilt();
+		return directoryReader.tryIncRef();
+	}
+	
+	public void release() throws IOException {
+		if (directoryReader!=null) {
+			storage.getLuceneManager().releaseDirectoryReader(corpus.getId(), directoryReader);
+		}
+	}
+	
+	/**
+	 * Remove all mappers from the in-process cache.
+	 */
+	public static void invalidateAll() {
+		cache.invalidateAll();
+	}
+	
+	/**
+	 * Remove the mappers that have expired from the in-process cache, releasing their readers.
+	 */
+	public static void cleanUp() {
+		cache.cleanUp();
+	}
+	
 	public Storage getStorage() {
 		return storage;
 	}
@@ -88,32 +227,39 @@ public class CorpusMapper {
 		return corpus.getDocumentIds();
 	}
 	
-	public synchronized List<Integer> getLuceneIds() throws IOException {
-		if (luceneIds==null) {
-			build();
-		}
+	public List<Integer> getLuceneIds() throws IOException {
+		ensureBuilt();
 		return luceneIds;
 	}
 	
 	public BitSet getBitSet() throws IOException {
-		if (bitSet==null) {build();}
+		ensureBuilt();
 		return bitSet;
 	}
 	
 	public LeafReader getLeafReader() throws IOException {
-		if (reader==null) {
-			build();
-		}
+		ensureBuilt();
 		return reader;
 	}
 	
 	public IndexSearcher getSearcher() throws IOException {
-		if (searcher==null) {
-			searcher = new IndexSearcher(getLeafReader());
-		}
+		ensureBuilt();
 		return searcher;
 	}
 
+	/**
+	 * Get the facets state for this corpus' reader. This scans the ordinals of the facets field so it's
+	 * created once and then kept for as long as this mapper (and therefore this reader) is in use.
+	 * @return the {@link SortedSetDocValuesReaderState} of the reader
+	 * @throws IOException
+	 */
+	public synchronized SortedSetDocValuesReaderState getSortedSetDocValuesReaderState() throws IOException {
+		if (sortedSetDocValuesReaderState==null) {
+			sortedSetDocValuesReaderState = new DefaultSortedSetDocValuesReaderState(getLeafReader());
+		}
+		return sortedSetDocValuesReaderState;
+	}
+
 	public int getDocumentPositionFromLuceneId(int doc) throws IOException {
 		String id = getDocumentIdFromLuceneId(doc);
 		return corpus.getDocumentPosition(id);
@@ -121,16 +267,12 @@ public class CorpusMapper {
 
 
 	public int getLuceneIdFromDocumentId(String id) throws IOException {
-		if (documentIdToLuceneIdMap==null) {
-			build();
-		}
+		ensureBuilt();
 		return documentIdToLuceneIdMap.get(id);
 	}
 
 	public String getDocumentIdFromLuceneId(int doc) throws IOException {
-		if (luceneIdToDocumentIdMap==null) {
-			build();
-		}
+		ensureBuilt();
 		return luceneIdToDocumentIdMap.get(doc);
 	}
 	
@@ -138,11 +280,24 @@ public class CorpusMapper {
 		return getLuceneIdFromDocumentId(getDocumentIdFromDocumentPosition(doc));
 	}
 
+	// mappers are shared across threads once cached, so build (only) once
+	private void ensureBuilt() throws IOException {
+		if (built==false) {
+			synchronized(this) {
+				if (built==false) {
+					build();
+					built = true;
+				}
+			}
+		}
+	}
+
 	private void build() throws IOException {
 		luceneIdToDocumentIdMap =  new HashMap<Integer, String>();
 		documentIdToLuceneIdMap = new HashMap<String, Integer>();
 		luceneIds = new ArrayList<Integer>();
 		buildFromTermsEnum();
+		searcher = new IndexSearcher(reader);
 	}
 	
 	/**
@@ -150,7 +305,11 @@ public class CorpusMapper {
 	 * @throws IOException
 	 */
 	private void buildFromTermsEnum() throws IOException {
-		LeafReader reader = SlowCompositeReaderWrapper.wrap(storage.getLuceneManager().getDirectoryReader(corpus.getId()));
+		if (directoryReader==null) {
+			// a mapper that's not from getInstance() holds its reader until it's released
+			directoryReader = storage.getLuceneManager().acquireDirectoryReader(corpus.getId());
+		}
+		LeafReader reader = SlowCompositeReaderWrapper.wrap(directoryReader);
 		
 		Terms terms = reader.terms("id");
 		TermsEnum termsEnum = terms.iterator();
@@ -182,9 +341,7 @@ public class CorpusMapper {
 	}
 
 	public boolean hasLuceneId(int doc) throws IOException {
-		if (bitSet==null) {
-			build();
-		}
+		ensureBuilt();
 		return bitSet.get(doc);
 	}
 
@@ -36,17 +36,56 @@ import org.apache.lucene.store.LockObtainFailedException;
  */
 public interface LuceneManager extends Comparable<LuceneManager> {
 	
-	public DirectoryReader getDirectoryReader(String corpus) throws CorruptIndexException, IOException;
+	/**
+	 * Get the current reader, which includes any changes made through the writer (near-real-time), with its
+	 * reference count incremented. It will remain open until it's released with
+	 * {@link #releaseDirectoryReader(String, DirectoryReader)}, even if it's replaced or this manager is closed.
+	 * @param corpus
+	 * @return the current {@link DirectoryReader}
+	 * @throws IOException
+	 */
+	public DirectoryReader acquireDirectoryReader(String corpus) throws IOException;
+	
+	public void releaseDirectoryReader(String corpus, DirectoryReader indexReader) throws IOException;
 
+	/**
+	 * Add a document to the index, documents are visible to new readers right away but they're only committed
+	 * in batches (see {@link #commit(String)}).
+	 * @param corpus
+	 * @param document
+	 * @throws CorruptIndexException
+	 * @throws IOException
+	 */
 	public void addDocument(String corpus, Document document) throws CorruptIndexException, IOException;
+	
+	public void commit(String corpus) throws IOException;
 
 	public IndexWriter getIndexWriter(String corpus) throws CorruptIndexException, LockObtainFailedException, IOException;
+	
+	/**
+	 * Get the writer and make sure that it isn't closed (when the manager is idle, for instance) until it's
+	 * released with {@link #releaseIndexWriter(String, IndexWriter)}. This should be used instead of
+	 * {@link #getIndexWriter(String)} when the writer is used across several calls.
+	 * @param corpus
+	 * @return the {@link IndexWriter}
+	 * @throws CorruptIndexException
+	 * @throws LockObtainFailedException
+	 * @throws IOException
+	 */
+	public IndexWriter acquireIndexWriter(String corpus) throws CorruptIndexException, LockObtainFailedException, IOException;
+	
+	public void releaseIndexWriter(String corpus, IndexWriter indexWriter) throws IOException;
 
 	public Analyzer getAnalyzer(String corpus);
 	
 	public boolean directoryExists(String corpus) throws IOException;
 
-	public void setDirectoryReader(String corpus, DirectoryReader indexReader);
+	/**
+	 * Make changes made directly through the {@link IndexWriter} visible to subsequent readers.
+	 * @param corpus
+	 * @throws IOException
+	 */
+	public void refresh(String corpus) throws IOException;
 	
 	public void close(String corpus) throws IOException;
 	
@@ -10,6 +10,7 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.LockObtainFailedException;
 import org.voyanttools.trombone.lucene.analysis.KitchenSinkPerFieldAnalyzerWrapper;
@@ -47,8 +48,7 @@ public class NotebookLuceneManager extends AbstractLuceneManager {
 		return directory;
 	}
 	
-	@Override
-	public DirectoryReader getDirectoryReader(String corpus) throws CorruptIndexException, IOException {
+	private DirectoryReader getDirectoryReader(String corpus) throws CorruptIndexException, IOException {
 		if (directoryReader == null) {
 			directoryReader = DirectoryReader.open(getDirectory(corpus));
 		} else {
@@ -61,13 +61,23 @@ public class NotebookLuceneManager extends AbstractLuceneManager {
 		access();
 		return directoryReader;
 	}
+	
+	@Override
+	public DirectoryReader acquireDirectoryReader(String corpus) throws IOException {
+		// the reader may be closed as soon as it's replaced, so try again with the newer one
+		for (int i=0; i<10; i++) {
+			DirectoryReader reader = getDirectoryReader(corpus);
+			if (reader.tryIncRef()) {return reader;}
+		}
+		throw new AlreadyClosedException("Unable to acquire an open reader: "+corpus);
+	}
 
 	@Override
 	public void addDocument(String corpus, Document document) throws CorruptIndexException, IOException {
 		IndexWriter writer = getIndexWriter(corpus);
 		writer.addDocument(document);
 		writer.commit();
-		setDirectoryReader(corpus, DirectoryReader.open(writer));
+		refresh(corpus);
 	}
 
 	@Override
@@ -93,8 +103,8 @@ public class NotebookLuceneManager extends AbstractLuceneManager {
 	}
 
 	@Override
-	public void setDirectoryReader(String corpus, DirectoryReader indexReader) {
-		this.directoryReader = indexReader;
+	public void refresh(String corpus) throws IOException {
+		this.directoryReader = DirectoryReader.open(getIndexWriter(corpus));
 		this.indexSearcher = new IndexSearcher(directoryReader);
 		access();
 	}
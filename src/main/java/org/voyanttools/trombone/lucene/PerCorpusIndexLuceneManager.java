@@ -1,11 +1,9 @@
 package org.voyanttools.trombone.lucene;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.io.UncheckedIOException;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
@@ -18,7 +16,10 @@ import org.voyanttools.trombone.storage.Storage;
 
 public class PerCorpusIndexLuceneManager extends AbstractLuceneManager {
 	
-	private Map<String, LuceneManager> indexMap;
+	// managers that haven't been accessed for this long are closed when other managers are created
+	private static final long IDLE_MILLISECONDS = 30000;
+	
+	private Map<String, ManagerHolder> indexMap;
 	
 	private DirectoryFactory directoryFactory;
 	
@@ -28,76 +29,218 @@ public class PerCorpusIndexLuceneManager extends AbstractLuceneManager {
 		super();
 		this.storage = storage;
 		this.directoryFactory = directoryFactory;
-		indexMap = new HashMap<String, LuceneManager>();
-	}
-	
-	private synchronized LuceneManager getLuceneManager(String corpus) throws CorruptIndexException, IOException {
-		if (indexMap.containsKey(corpus)==false) {
-			indexMap.put(corpus, new SingleIndexLuceneManager(storage, directoryFactory));
-			Set<String> forCleanUp = new HashSet<String>();
-			if (indexMap.size()>1) {
-				long now = System.currentTimeMillis();
-				for (Map.Entry<String, LuceneManager> entry : indexMap.entrySet()) {
-					String id = entry.getKey();
-					if (now-entry.getValue().getLastAccessed()>30000) {
-						forCleanUp.add(id);
-					}
+		indexMap = new ConcurrentHashMap<String, ManagerHolder>();
+	}
+	
+	/**
+	 * Get the manager of a corpus and count it as in use until it's released with {@link #release(ManagerHolder)},
+	 * a manager in use is never closed as idle.
+	 * @param corpus
+	 * @return the holder of the manager
+	 * @throws IOException
+	 */
+	private ManagerHolder acquire(String corpus) throws IOException {
+		while (true) {
+			ManagerHolder holder = indexMap.get(corpus);
+			boolean isNew = false;
+			if (holder==null) {
+				try {
+					holder = indexMap.computeIfAbsent(corpus, id -> {
+						try {
+							return new ManagerHolder(new SingleIndexLuceneManager(storage, directoryFactory));
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
 				}
+				isNew = true;
 			}
-			for (String id : forCleanUp) {
-				LuceneManager manager = indexMap.get(id);
-				manager.close(id);
-				manager = null;
-				indexMap.remove(id);
+			synchronized (holder) {
+				// a closed manager has already been removed, so the next attempt gets a new one
+				if (holder.closed) {continue;}
+				holder.users++;
 			}
+			if (isNew) {
+				try {
+					closeIdle(corpus); // not while holding the lock of this manager, since other managers are locked
+				}
+				catch (IOException | RuntimeException e) {
+					release(holder);
+					throw e;
+				}
+			}
+			return holder;
 		}
-		return indexMap.get(corpus);
 	}
 	
-	public DirectoryReader getDirectoryReader(String corpus) throws CorruptIndexException, IOException {
-		return getLuceneManager(corpus).getDirectoryReader(corpus);
+	private void release(ManagerHolder holder) {
+		synchronized (holder) {
+			holder.users--;
+		}
+	}
+	
+	/**
+	 * Close the managers of other corpora that haven't been accessed recently and that aren't in use. Closing a
+	 * manager doesn't close readers that have been acquired (for a cached {@link CorpusMapper}, for instance).
+	 * @param corpus the corpus whose manager should be kept
+	 * @throws IOException
+	 */
+	private void closeIdle(String corpus) throws IOException {
+		CorpusMapper.cleanUp(); // release the readers of expired mappers, since they'd keep the indexes open
+		long now = System.currentTimeMillis();
+		for (Map.Entry<String, ManagerHolder> entry : indexMap.entrySet()) {
+			String id = entry.getKey();
+			ManagerHolder holder = entry.getValue();
+			if (id.equals(corpus)) {continue;}
+			synchronized (holder) {
+				// close before removing, so that a new manager for the same index can't be opened in the meantime
+				if (holder.closed==false && holder.users==0 && now-holder.manager.getLastAccessed()>IDLE_MILLISECONDS) {
+					holder.closed = true;
+					try {
+						holder.manager.close(id);
+					}
+					finally {
+						indexMap.remove(id, holder);
+					}
+				}
+			}
+		}
 	}
-		
+	
 	public void addDocument(String corpus, Document document) throws CorruptIndexException, IOException {
-		getLuceneManager(corpus).addDocument(corpus, document);
+		ManagerHolder holder = acquire(corpus);
+		try {
+			holder.manager.addDocument(corpus, document);
+		}
+		finally {
+			release(holder);
+		}
 	}
 	
 	// TODO: make this block across threads so that only one writer can exist at a time
-	public synchronized IndexWriter getIndexWriter(String corpus) throws CorruptIndexException, LockObtainFailedException, IOException {
-		return getLuceneManager(corpus).getIndexWriter(corpus);
+	public IndexWriter getIndexWriter(String corpus) throws CorruptIndexException, LockObtainFailedException, IOException {
+		ManagerHolder holder = acquire(corpus);
+		try {
+			return holder.manager.getIndexWriter(corpus);
+		}
+		finally {
+			release(holder);
+		}
+	}
+	
+	@Override
+	public IndexWriter acquireIndexWriter(String corpus) throws CorruptIndexException, LockObtainFailedException, IOException {
+		ManagerHolder holder = acquire(corpus);
+		try {
+			return holder.manager.getIndexWriter(corpus);
+		}
+		catch (IOException | RuntimeException e) {
+			release(holder);
+			throw e;
+		}
+	}
+	
+	@Override
+	public void releaseIndexWriter(String corpus, IndexWriter indexWriter) throws IOException {
+		ManagerHolder holder = indexMap.get(corpus);
+		if (holder!=null) { // it can't have been closed while the writer was acquired
+			release(holder);
+		}
 	}
 
 	public Analyzer getAnalyzer(String corpus) {
-		LuceneManager luceneManager;
+		ManagerHolder holder;
 		try {
-			luceneManager = getLuceneManager(corpus);
+			holder = acquire(corpus);
 		} catch (Exception e) {
 			throw new RuntimeException("Unable to load analyzer.", e);
 		}
-		return luceneManager.getAnalyzer(corpus);
+		try {
+			return holder.manager.getAnalyzer(corpus);
+		}
+		finally {
+			release(holder);
+		}
 	}
 	
 	public boolean directoryExists(String corpus) throws IOException {
-		return getLuceneManager(corpus).directoryExists(corpus);
+		ManagerHolder holder = acquire(corpus);
+		try {
+			return holder.manager.directoryExists(corpus);
+		}
+		finally {
+			release(holder);
+		}
 	}
 
-	public void setDirectoryReader(String corpus, DirectoryReader indexReader) {
-		LuceneManager luceneManager;
+	@Override
+	public DirectoryReader acquireDirectoryReader(String corpus) throws IOException {
+		ManagerHolder holder = acquire(corpus);
 		try {
-			luceneManager = getLuceneManager(corpus);
-		} catch (Exception e) {
-			throw new RuntimeException("Unable to load analyzer.", e);
+			return holder.manager.acquireDirectoryReader(corpus);
+		}
+		finally {
+			release(holder);
+		}
+	}
+	
+	@Override
+	public void releaseDirectoryReader(String corpus, DirectoryReader indexReader) throws IOException {
+		indexReader.decRef(); // the manager may have been closed since, but the reader is still ours to release
+	}
+	
+	@Override
+	public void commit(String corpus) throws IOException {
+		ManagerHolder holder = acquire(corpus);
+		try {
+			holder.manager.commit(corpus);
+		}
+		finally {
+			release(holder);
+		}
+	}
+
+	public void refresh(String corpus) throws IOException {
+		ManagerHolder holder = acquire(corpus);
+		try {
+			holder.manager.refresh(corpus);
+		}
+		finally {
+			release(holder);
 		}
-		luceneManager.setDirectoryReader(corpus, indexReader);
 	}
 	
 	public void close(String corpus) throws IOException {
-		getLuceneManager(corpus).close(corpus);
+		ManagerHolder holder = acquire(corpus);
+		try {
+			holder.manager.close(corpus);
+		}
+		finally {
+			release(holder);
+		}
 	}
 	
 	public void closeAll() throws IOException {
-		for (Map.Entry<String, LuceneManager> entry : indexMap.entrySet()) {
-			entry.getValue().close(entry.getKey());
+		for (Map.Entry<String, ManagerHolder> entry : indexMap.entrySet()) {
+			ManagerHolder holder = entry.getValue();
+			synchronized (holder) {
+				holder.manager.close(entry.getKey());
+			}
+		}
+	}
+	
+	/**
+	 * The manager of a corpus along with the number of its current users, which is only changed while
+	 * holding the lock on the holder so that a manager can't be acquired while it's being closed.
+	 */
+	private static class ManagerHolder {
+		private LuceneManager manager;
+		private int users = 0;
+		private boolean closed = false;
+		private ManagerHolder(LuceneManager manager) {
+			this.manager = manager;
 		}
 	}
 
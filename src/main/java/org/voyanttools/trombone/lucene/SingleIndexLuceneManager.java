@@ -9,22 +9,33 @@ import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.index.ReaderManager;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.LockObtainFailedException;
 import org.voyanttools.trombone.lucene.analysis.KitchenSinkPerFieldAnalyzerWrapper;
 import org.voyanttools.trombone.storage.DirectoryFactory;
 import org.voyanttools.trombone.storage.Storage;
 
+/**
+ * A {@link LuceneManager} for a single index. Readers are managed by a {@link ReaderManager}, which gives
+ * near-real-time readers once there's a writer, and which is only refreshed after changes. Documents added
+ * through {@link #addDocument(String, Document)} are committed in batches.
+ */
 public class SingleIndexLuceneManager extends AbstractLuceneManager {
+	
+	// the number of documents added before committing
+	private static final int COMMIT_BATCH_SIZE = 1000;
 
 	private Directory directory;
 	
-	private DirectoryReader directoryReader = null;
+	private volatile ReaderManager readerManager = null;
+	
+	private volatile boolean changed = false;
 	
 	private IndexWriter indexWriter = null;
 	
-	private IndexSearcher indexSearcher = null;
+	private int uncommittedCount = 0;
 	
 	private Analyzer analyzer;
 	
@@ -39,7 +50,7 @@ public class SingleIndexLuceneManager extends AbstractLuceneManager {
 		analyzer = new KitchenSinkPerFieldAnalyzerWrapper(storage);
 	}
 	
-	private Directory getDirectory(String corpus) throws IOException {
+	private synchronized Directory getDirectory(String corpus) throws IOException {
 		if (directory==null) {
 			directory = directoryFactory.getDirectory(corpus);
 			access();
@@ -47,25 +58,69 @@ public class SingleIndexLuceneManager extends AbstractLuceneManager {
 		return directory;
 	}
 	
-	public DirectoryReader getDirectoryReader(String corpus) throws CorruptIndexException, IOException {
-		if (directoryReader == null) {
-			directoryReader = DirectoryReader.open(getDirectory(corpus));
+	private ReaderManager getReaderManager(String corpus) throws IOException {
+		ReaderManager manager = readerManager;
+		if (manager==null) {
+			synchronized(this) {
+				if (readerManager==null) {
+					readerManager = indexWriter==null ? new ReaderManager(getDirectory(corpus)) : new ReaderManager(indexWriter);
+					changed = false;
+				}
+				manager = readerManager;
+			}
+		}
+		return manager;
+	}
+	
+	@Override
+	public DirectoryReader acquireDirectoryReader(String corpus) throws IOException {
+		for (int i=0; ; i++) {
+			ReaderManager manager = getReaderManager(corpus);
+			try {
+				if (changed) {
+					changed = false;
+					manager.maybeRefreshBlocking();
+				}
+				access();
+				return manager.acquire();
+			}
+			catch (AlreadyClosedException e) {
+				// the reader manager was replaced or closed meanwhile, so try again
+				if (i==10) {throw e;}
+			}
 		}
-		access();
-		return directoryReader;
 	}
 		
 	public void addDocument(String corpus, Document document) throws CorruptIndexException, IOException {
 		IndexWriter writer = getIndexWriter(corpus);
 		writer.addDocument(document);
-		writer.commit();
-		setDirectoryReader(corpus, DirectoryReader.open(writer));
+		changed = true;
+		synchronized(this) {
+			if (++uncommittedCount>=COMMIT_BATCH_SIZE) {
+				commit(corpus);
+			}
+		}
+	}
+	
+	@Override
+	public synchronized void commit(String corpus) throws IOException {
+		if (indexWriter!=null) {
+			indexWriter.commit();
+			uncommittedCount = 0;
+		}
 	}
 	
 	// TODO: make this block across threads so that only one writer can exist at a time
 	public synchronized IndexWriter getIndexWriter(String corpus) throws CorruptIndexException, LockObtainFailedException, IOException {
 		if (indexWriter==null) {
 			indexWriter = new IndexWriter(getDirectory(corpus), new IndexWriterConfig(analyzer));
+			
+			// switch to near-real-time readers from the writer, readers already handed out remain valid
+			if (readerManager!=null) {
+				ReaderManager previousReaderManager = readerManager;
+				readerManager = new ReaderManager(indexWriter);
+				previousReaderManager.close();
+			}
 		}
 		access();
 		return indexWriter;
@@ -79,15 +134,23 @@ public class SingleIndexLuceneManager extends AbstractLuceneManager {
 		return DirectoryReader.indexExists(getDirectory(corpus));
 	}
 
-	public void setDirectoryReader(String corpus, DirectoryReader indexReader) {
-		this.directoryReader = indexReader;
-		this.indexSearcher = new IndexSearcher(directoryReader);
+	@Override
+	public void refresh(String corpus) throws IOException {
+		getReaderManager(corpus).maybeRefreshBlocking();
 		access();
 	}
 
-	public void close(String corpus) throws IOException {
+	public synchronized void close(String corpus) throws IOException {
 		try {
-			getIndexWriter(corpus).close();
+			if (readerManager!=null) {
+				readerManager.close(); // this only releases our reference, acquired readers stay open
+				readerManager = null;
+			}
+			if (indexWriter!=null) {
+				indexWriter.close(); // this also commits
+				indexWriter = null;
+				uncommittedCount = 0;
+			}
 		} catch (Exception e) {
 			if (e instanceof IOException) {
 				throw e;
@@ -102,4 +165,3 @@ public class SingleIndexLuceneManager extends AbstractLuceneManager {
 	}
 	
 }
-
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.lucene.analysis;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Analyzer.ReuseStrategy;
+import org.apache.lucene.analysis.Analyzer.TokenStreamComponents;
+import org.voyanttools.trombone.util.FlexibleParameters;
+
+/**
+ * The per-document settings used during analysis: the language and an
+ * optional tokenization mode (<code>wordBoundaries</code> or
+ * <code>whitespace</code>, useful for some Asian languages where the default
+ * tokenizer is too aggressive and users want to do their own segmentation).
+ * 
+ * Lucene doesn't provide a way of passing content-aware parameters to an
+ * analyzer, so the context is set for the current thread while a document
+ * (or string) is analyzed, since tokenization happens on the calling thread:
+ * 
+ * <pre>
+ * try (AnalysisContext.Scope scope = analysisContext.open()) {
+ * 	indexWriter.addDocument(document);
+ * }
+ * </pre>
+ * 
+ * Analyzers read the context with {@link #getCurrent()} and get the
+ * {@link #DEFAULT} context when none is set. Strings can be analyzed with
+ * {@link #tokenStream(Analyzer, String, String)}.
+ */
+public class AnalysisContext {
+	
+	public static final AnalysisContext DEFAULT = new AnalysisContext("", "");
+	
+	/**
+	 * A {@link ReuseStrategy} that reuses components per field and per
+	 * context, since the components created depend on the current context.
+	 */
+	public static final ReuseStrategy REUSE_STRATEGY = new ReuseStrategy() {
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public TokenStreamComponents getReusableComponents(Analyzer analyzer, String fieldName) {
+			Map<String, TokenStreamComponents> componentsPerKey = (Map<String, TokenStreamComponents>) getStoredValue(analyzer);
+			return componentsPerKey==null ? null : componentsPerKey.get(getKey(fieldName));
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public void setReusableComponents(Analyzer analyzer, String fieldName, TokenStreamComponents components) {
+			Map<String, TokenStreamComponents> componentsPerKey = (Map<String, TokenStreamComponents>) getStoredValue(analyzer);
+			if (componentsPerKey==null) {
+				componentsPerKey = new HashMap<String, TokenStreamComponents>();
+				setStoredValue(analyzer, componentsPerKey);
+			}
+			componentsPerKey.put(getKey(fieldName), components);
+		}
+		
+		private String getKey(String fieldName) {
+			return fieldName+"|"+getCurrent().getComponentsKey();
+		}
+	};
+	
+	private static final ThreadLocal<AnalysisContext> current = new ThreadLocal<AnalysisContext>();
+
+	private final String language;
+	
+	private final String tokenization;
+	
+	private AnalysisContext(String language, String tokenization) {
+		this.language = language;
+		this.tokenization = tokenization;
+	}
+	
+	/**
+	 * Get a context for the specified language and tokenization mode.
+	 * 
+	 * @param language the language code (or an empty string if unknown)
+	 * @param tokenization the tokenization mode (or an empty string for the default)
+	 * @return the context
+	 */
+	public static AnalysisContext getInstance(String language, String tokenization) {
+		return new AnalysisContext(language==null ? "" : language, tokenization==null ? "" : tokenization);
+	}
+	
+	/**
+	 * Get a context for the specified language and the tokenization mode
+	 * from the <code>tokenization</code> parameter (if any).
+	 * 
+	 * @param language the language code (or an empty string if unknown)
+	 * @param parameters the parameters of the request
+	 * @return the context
+	 */
+	public static AnalysisContext getInstance(String language, FlexibleParameters parameters) {
+		return getInstance(language, parameters.getParameterValue("tokenization", ""));
+	}
+	
+	/**
+	 * Get the context for the analysis happening on the current thread.
+	 * 
+	 * @return the current context or {@link #DEFAULT} if none is set
+	 */
+	public static AnalysisContext getCurrent() {
+		AnalysisContext context = current.get();
+		return context==null ? DEFAULT : context;
+	}
+	
+	/**
+	 * Make this the current context for this thread until the returned
+	 * {@link Scope} is closed (which restores the previous context).
+	 * 
+	 * @return the scope of this context
+	 */
+	public Scope open() {
+		final AnalysisContext previous = current.get();
+		current.set(this);
+		return new Scope() {
+			@Override
+			public void close() {
+				if (previous==null) {current.remove();}
+				else {current.set(previous);}
+			}
+		};
+	}
+	
+	/**
+	 * Get a token stream for the specified text using this context (the
+	 * components are chosen when the stream is created, so the context
+	 * doesn't need to remain current while the stream is consumed).
+	 * 
+	 * @param analyzer the analyzer to use
+	 * @param fieldName the name of the field whose analysis should be used
+	 * @param text the text to analyze
+	 * @return the token stream
+	 */
+	public TokenStream tokenStream(Analyzer analyzer, String fieldName, String text) {
+		try (Scope scope = open()) {
+			return analyzer.tokenStream(fieldName, text);
+		}
+	}
+	
+	public String getLanguage() {
+		return language;
+	}
+	
+	public String getTokenization() {
+		return tokenization;
+	}
+	
+	private String getComponentsKey() {
+		return language+"/"+tokenization;
+	}
+	
+	@Override
+	public String toString() {
+		return "AnalysisContext(language="+language+", tokenization="+tokenization+")";
+	}
+
+	/**
+	 * The scope during which a context is current.
+	 */
+	public interface Scope extends Closeable {
+		@Override
+		public void close();
+	}
+}
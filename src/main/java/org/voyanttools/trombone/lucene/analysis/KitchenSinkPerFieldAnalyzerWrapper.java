@@ -31,6 +31,10 @@ import org.voyanttools.trombone.nlp.NlpFactory;
 import org.voyanttools.trombone.storage.Storage;
 
 /**
+ * An analyzer that delegates to an analyzer per field. The per-document
+ * language and tokenization settings are provided out of band through the
+ * current {@link AnalysisContext}.
+ * 
  * @author sgs
  *
  */
@@ -88,7 +92,7 @@ public class KitchenSinkPerFieldAnalyzerWrapper extends AnalyzerWrapper {
 	  
 	  
 	  public KitchenSinkPerFieldAnalyzerWrapper(Storage storage) {
-		  super(Analyzer.PER_FIELD_REUSE_STRATEGY);
+		  super(AnalysisContext.REUSE_STRATEGY);
 		  this.storage = storage;
 		  this.defaultAnalyzer = new LexicalAnalyzer();
 		  this.fieldAnalyzers = new HashMap<AnalyzerName, Analyzer>();
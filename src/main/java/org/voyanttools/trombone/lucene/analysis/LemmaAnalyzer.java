@@ -4,7 +4,6 @@
 package org.voyanttools.trombone.lucene.analysis;
 
 import java.io.IOException;
-import java.io.Reader;
 
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
@@ -28,27 +27,11 @@ public class LemmaAnalyzer extends LexicalAnalyzer {
 		this.factory = factory;
 	}
 
-	@Override
-	protected Reader initReader(String fieldName, Reader reader) {
-
-		if (fieldName.equals(TokenType.lemma.name())) {
-			reader = initReader(reader);
-		}
-		else {
-			parameters.clear();
-		}
-
-		try {
-			return new HTMLCharFilter(reader);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-
 	@Override
 	protected TokenStreamComponents createComponents(String fieldName) {
 
-		if (fieldName.equals(TokenType.lemma.name()) && lang!=null && lang.isEmpty()==false) {
+		String lang = getLanguage();
+		if (fieldName.equals(TokenType.lemma.name()) && lang.isEmpty()==false) {
 			/*
 			NlpAnnotator annotator = factory.getNlpAnnotator(lang);
 			if (annotator instanceof StanfordNlpAnnotator) {
@@ -23,9 +23,6 @@ package org.voyanttools.trombone.lucene.analysis;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
@@ -36,11 +33,9 @@ import org.apache.lucene.analysis.core.LowerCaseTokenizer;
 import org.apache.lucene.analysis.core.UnicodeWhitespaceTokenizer;
 import org.apache.lucene.analysis.icu.segmentation.ICUTokenizer;
 import org.apache.lucene.analysis.miscellaneous.WordDelimiterFilter;
-import org.apache.tika.io.IOUtils;
 import org.voyanttools.trombone.lucene.analysis.el.GreekCustomFilter;
 import org.voyanttools.trombone.lucene.analysis.icu.TromboneICUTokenizerConfig;
 import org.voyanttools.trombone.model.TokenType;
-import org.voyanttools.trombone.util.FlexibleParameters;
 
 
 /**
@@ -49,19 +44,13 @@ import org.voyanttools.trombone.util.FlexibleParameters;
  */
 public class LexicalAnalyzer extends Analyzer {
 	
-	protected FlexibleParameters parameters = new FlexibleParameters();
-	protected String lang = "";
+	public LexicalAnalyzer() {
+		// components depend on the language and tokenization of the current analysis context
+		super(AnalysisContext.REUSE_STRATEGY);
+	}
 	
 	@Override
 	protected Reader initReader(String fieldName, Reader reader) {
-
-		if (fieldName.equals(TokenType.lexical.name())) {
-			reader = initReader(reader);
-		}
-		else {
-			parameters.clear();
-		}
-
 		try {
 			return new HTMLCharFilter(reader);
 		} catch (IOException e) {
@@ -69,46 +58,25 @@ public class LexicalAnalyzer extends Analyzer {
 		}
 	}
 	
-	protected Reader initReader(Reader reader) {
-		
-		/* since there doesn't seem to be a way of passing parameters to the
-		 * analyzer that's content-aware and per-field, we can add some 
-		 * instructions to the end of the reader (this is done by
-		 * {@link LuceneIndexer}). At this end we're especially interested
-		 * in determining the language and if a parameter was set to use
-		 * a simple word-boundary tokenizer (for some Asian languages
-		 * the tokenizer is too aggressive and we want to allow the user
-		 * to do segmentation. */
-
-		String text;
-		try {
-			text = IOUtils.toString(reader);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-		
-		if (text.endsWith("-->") && text.contains("<!--")) {
-			int start = text.lastIndexOf("<!--");
-			parameters = getParameters(text.substring(start+4, text.length()-3));
-			if (parameters.containsKey("language")) {
-				lang = parameters.getParameterValue("language");
-			}
-			text  = text.substring(0, start);
-		}
-		else {
-			parameters.clear();
-		}
-		return new StringReader(text);
-		
+	/**
+	 * Get the language of the document being analyzed (from the current
+	 * {@link AnalysisContext}).
+	 * 
+	 * @return the language code (or an empty string if unknown)
+	 */
+	protected String getLanguage() {
+		return AnalysisContext.getCurrent().getLanguage();
 	}
 	
 	@Override
 	protected TokenStreamComponents createComponents(String fieldName) {
-		if (fieldName.equals(TokenType.lexical.name()) && parameters.getParameterValue("tokenization", "").equals("wordBoundaries")) {
+		String tokenization = AnalysisContext.getCurrent().getTokenization();
+		String lang = getLanguage();
+		if (fieldName.equals(TokenType.lexical.name()) && tokenization.equals("wordBoundaries")) {
 			Tokenizer tokenizer = new LowerCaseTokenizer();
 			return new TokenStreamComponents(tokenizer);
 		}
-		else if (fieldName.equals(TokenType.lexical.name()) && parameters.getParameterValue("tokenization", "").equals("whitespace")) {
+		else if (fieldName.equals(TokenType.lexical.name()) && tokenization.equals("whitespace")) {
 			Tokenizer tokenizer = new UnicodeWhitespaceTokenizer();
 			return new TokenStreamComponents(tokenizer);
 		}
@@ -136,20 +104,5 @@ public class LexicalAnalyzer extends Analyzer {
 			return new TokenStreamComponents(tokenizer, stream);
 		}
 	}
-	
-	private FlexibleParameters getParameters(String query) {
-		FlexibleParameters parameters = new FlexibleParameters();
-		String[] pairs = query.trim().split("&");
-		try {
-		    for (String pair : pairs) {
-		        int idx = pair.indexOf("=");
-		        parameters.addParameter(URLDecoder.decode(pair.substring(0, idx), "UTF-8"), URLDecoder.decode(pair.substring(idx + 1), "UTF-8"));
-		    }
-		}
-		catch (UnsupportedEncodingException e) { // should never happen
-			throw new RuntimeException(e);
-		}
-	    return parameters;
-	}
 
 }
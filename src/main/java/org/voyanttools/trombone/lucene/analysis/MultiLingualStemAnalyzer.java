@@ -35,7 +35,7 @@ public class MultiLingualStemAnalyzer extends LexicalAnalyzer {
 	 */
 	@Override
 	protected TokenStreamComponents createComponents(String fieldName) {
-		StemmableLanguage sl= StemmableLanguage.fromCode(lang);
+		StemmableLanguage sl= StemmableLanguage.fromCode(getLanguage());
 		if (sl==null) {
 			throw new IllegalArgumentException("This language ("+sl+") can't be stemmed currently.");
 		}
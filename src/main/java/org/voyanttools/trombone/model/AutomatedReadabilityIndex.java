@@ -7,13 +7,17 @@ public class AutomatedReadabilityIndex extends ReadabilityIndex {
     protected double automatedReadabilityIndex;
 
     public AutomatedReadabilityIndex(int documentIndex, String documentId, String textToParse) {
-        super(documentIndex, documentId, textToParse);
+        this(documentIndex, documentId, new ReadabilityStatistics(new TextParser(textToParse)));
+    }
+
+    public AutomatedReadabilityIndex(int documentIndex, String documentId, ReadabilityStatistics statistics) {
+        super(documentIndex, documentId, statistics);
 
         automatedReadabilityIndex = calculateIndex(text);
     }
 
     @Override
-    protected double calculateIndex(TextParser text) {
+    protected double calculateIndex(ReadabilityStatistics text) {
         double lettersPerWord = (double) text.getLettersCount() / text.getWordsCount();
         double wordsPerSentence = (double) text.getWordsCount() / text.getSentencesCount();
 
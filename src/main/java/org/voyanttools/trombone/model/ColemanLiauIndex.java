@@ -7,13 +7,17 @@ public class ColemanLiauIndex extends ReadabilityIndex {
     protected double colemanLiauIndex;
 
     public ColemanLiauIndex(int documentIndex, String documentId, String textToParse) {
-        super(documentIndex, documentId, textToParse);
+        this(documentIndex, documentId, new ReadabilityStatistics(new TextParser(textToParse)));
+    }
+
+    public ColemanLiauIndex(int documentIndex, String documentId, ReadabilityStatistics statistics) {
+        super(documentIndex, documentId, statistics);
 
         colemanLiauIndex = calculateIndex(text);
     }
 
     @Override
-    protected double calculateIndex(TextParser text) {
+    protected double calculateIndex(ReadabilityStatistics text) {
         double l = (double) text.getLettersCount() / text.getWordsCount() * 100;
         double s = (double) text.getSentencesCount() / text.getWordsCount() * 100;
 
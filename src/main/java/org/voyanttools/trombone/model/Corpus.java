@@ -52,13 +52,19 @@ public class Corpus implements Iterable<IndexedDocument> {
 	@XStreamOmitField
 	Map<String, Integer> documentPositionsMap = null;
 	
+	// the per-document values cached together, in the order used by cacheCommonDocumentValues
+	private static final String[] COMMON_DOCUMENT_VALUES_NAMES = new String[]{"-documentLanguageCodes", "-lexicalTokenCounts", "-lexicalLastTokenPositions", "-lexicalTypesCountMeans-1", "-lexicalTypesCountStdDevs-1"};
+	
+	// stored strings can't be empty, so this is the language code stored for documents without one
+	private static final String NO_LANGUAGE_CODE = "-";
+	
 	
 	public Corpus(Storage storage, CorpusMetadata corpusMetadata) {
 		this.storage = storage;
 		this.corpusMetadata = corpusMetadata;
 	}
 
-	private List<IndexedDocument> getDocumentsList() throws IOException {
+	private synchronized List<IndexedDocument> getDocumentsList() throws IOException {
 		if (documents==null) {
 			documentPositionsMap = new HashMap<String, Integer>();
 			documents = new ArrayList<IndexedDocument>();
@@ -71,7 +77,7 @@ public class Corpus implements Iterable<IndexedDocument> {
 	}
 
 	public IndexedDocument getDocument(String id) throws IOException {
-		if (documentPositionsMap==null) {getDocumentsList();} // this builds the map
+		getDocumentsList(); // this builds the map
 		return getDocument(documentPositionsMap.get(id));
 	}
 
@@ -102,7 +108,7 @@ public class Corpus implements Iterable<IndexedDocument> {
 	}
 
 	public int getDocumentPosition(String docId) throws IOException {
-		if (documentPositionsMap==null) {getDocumentsList();} // this builds the map
+		getDocumentsList(); // this builds the map
 		return documentPositionsMap.get(docId);
 	}
 
@@ -218,7 +224,7 @@ public class Corpus implements Iterable<IndexedDocument> {
 	 * @throws IOException
 	 */
 	private void cacheCommonDocumentValues() throws IOException {
-		Set<String> langs = new HashSet<String>();
+		List<String> languageCodes = new ArrayList<String>();
 		List<String> tokenCounts = new ArrayList<String>();
 		List<String> lastTokens = new ArrayList<String>();
 		List<String> typesCountMeans = new ArrayList<String>();
@@ -227,13 +233,69 @@ public class Corpus implements Iterable<IndexedDocument> {
 		for (IndexedDocument doc : this) {
 			metadata = doc.getMetadata();
 			String lang = metadata.getLanguageCode();
-			if (lang!=null && lang.isEmpty()==false) langs.add(lang);
+			languageCodes.add(lang!=null && lang.isEmpty()==false ? lang : NO_LANGUAGE_CODE);
 			tokenCounts.add(String.valueOf(metadata.getTokensCount(TokenType.lexical)));
 			lastTokens.add(String.valueOf(metadata.getLastTokenPositionIndex(TokenType.lexical)));
 			typesCountMeans.add(Float.toString(metadata.getTypesCountMean(TokenType.lexical)));
 			typesCountStdDev.add(Float.toString(metadata.getTypesCountStdDev(TokenType.lexical)));
 		}
+		storeCommonDocumentValues(languageCodes, tokenCounts, lastTokens, typesCountMeans, typesCountStdDev);
+	}
+	
+	/**
+	 * Cache the common document values using those of a previous version of this corpus (with documents added,
+	 * removed or reordered), so that the metadata is only loaded for documents that weren't in the previous corpus.
+	 * If the previous corpus doesn't have all of its values cached then nothing is done (they'll be determined
+	 * from the metadata when needed).
+	 * @param previousCorpus
+	 * @throws IOException
+	 */
+	public void cacheCommonDocumentValues(Corpus previousCorpus) throws IOException {
+		List<List<String>> previousValues = new ArrayList<List<String>>();
+		for (String name : COMMON_DOCUMENT_VALUES_NAMES) {
+			if (storage.isStored(previousCorpus.getId()+name, Storage.Location.object)==false) {return;}
+			List<String> values = storage.retrieveStrings(previousCorpus.getId()+name, Storage.Location.object);
+			if (values.size()!=previousCorpus.size()) {return;} // not what we expected, so don't trust it
+			previousValues.add(values);
+		}
+		Map<String, Integer> previousPositions = new HashMap<String, Integer>();
+		List<String> previousIds = previousCorpus.getDocumentIds();
+		for (int i=0, len=previousIds.size(); i<len; i++) {
+			previousPositions.put(previousIds.get(i), i);
+		}
+		List<List<String>> values = new ArrayList<List<String>>();
+		for (int i=0; i<COMMON_DOCUMENT_VALUES_NAMES.length; i++) {
+			values.add(new ArrayList<String>());
+		}
+		for (String id : getDocumentIds()) {
+			Integer previousPosition = previousPositions.get(id);
+			if (previousPosition==null) {
+				DocumentMetadata metadata = getDocument(id).getMetadata();
+				String lang = metadata.getLanguageCode();
+				values.get(0).add(lang!=null && lang.isEmpty()==false ? lang : NO_LANGUAGE_CODE);
+				values.get(1).add(String.valueOf(metadata.getTokensCount(TokenType.lexical)));
+				values.get(2).add(String.valueOf(metadata.getLastTokenPositionIndex(TokenType.lexical)));
+				values.get(3).add(Float.toString(metadata.getTypesCountMean(TokenType.lexical)));
+				values.get(4).add(Float.toString(metadata.getTypesCountStdDev(TokenType.lexical)));
+			}
+			else {
+				for (int i=0; i<COMMON_DOCUMENT_VALUES_NAMES.length; i++) {
+					values.get(i).add(previousValues.get(i).get(previousPosition));
+				}
+			}
+		}
+		storeCommonDocumentValues(values.get(0), values.get(1), values.get(2), values.get(3), values.get(4));
+	}
+	
+	private void storeCommonDocumentValues(List<String> languageCodes, List<String> tokenCounts, List<String> lastTokens, List<String> typesCountMeans, List<String> typesCountStdDev) throws IOException {
+		Set<String> langs = new HashSet<String>();
+		for (String lang : languageCodes) {
+			if (lang.equals(NO_LANGUAGE_CODE)==false) {langs.add(lang);}
+		}
 		if (langs.isEmpty()) {langs.add("??");}
+		if (storage.isStored(this.getId()+COMMON_DOCUMENT_VALUES_NAMES[0], Storage.Location.object)==false) {
+			storage.storeStrings(languageCodes, this.getId()+COMMON_DOCUMENT_VALUES_NAMES[0], Storage.Location.object);
+		}
 		if (storage.isStored(this.getId()+"-langs", Storage.Location.object)==false) {
 			storage.storeStrings(langs, this.getId()+"-langs", Storage.Location.object);
 		}
@@ -0,0 +1,538 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ *
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ *
+ * This file is part of Trombone.
+ *
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.model;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.InPlaceMergeSorter;
+import org.voyanttools.trombone.lucene.CorpusMapper;
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.storage.StorageCacheKey;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * Corpus-level term statistics for one field, stored column-wise: a sorted term dictionary with
+ * parallel arrays of raw frequencies, document counts and zscores, as well as a sparse term-by-document
+ * matrix of raw frequencies (in compressed sparse row form, where the documents of each term are in
+ * corpus order).
+ * 
+ * This is built once per corpus and field (from the document term vectors) and stored as an object,
+ * recently used instances are also kept in memory.
+ */
+public class CorpusTermStats implements Serializable {
+
+	private static final long serialVersionUID = -6101547032278531963L;
+	
+	// the approximate memory (in kilobytes) that we allow for instances kept in memory
+	private static final int MAX_CACHED_KILOBYTES = 256 * 1024;
+	
+	private static final Cache<StorageCacheKey, CorpusTermStats> cache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_KILOBYTES)
+			.weigher(new Weigher<StorageCacheKey, CorpusTermStats>() {
+				@Override
+				public int weigh(StorageCacheKey key, CorpusTermStats corpusTermStats) {
+					return corpusTermStats.getApproximateKilobytes();
+				}
+			})
+			.build();
+	
+	private int documentsCount;
+	
+	private String[] terms;
+	
+	private int[] rawFreqs;
+	
+	private int[] inDocumentsCounts;
+	
+	private float[] zscores;
+	
+	// the index in documentPositions and documentRawFreqs of the first document of each term (plus one past the end)
+	private int[] termPointers;
+	
+	private int[] documentPositions;
+	
+	private int[] documentRawFreqs;
+	
+	private CorpusTermStats(int documentsCount, String[] terms, int[] rawFreqs, int[] inDocumentsCounts, float[] zscores, int[] termPointers, int[] documentPositions, int[] documentRawFreqs) {
+		this.documentsCount = documentsCount;
+		this.terms = terms;
+		this.rawFreqs = rawFreqs;
+		this.inDocumentsCounts = inDocumentsCounts;
+		this.zscores = zscores;
+		this.termPointers = termPointers;
+		this.documentPositions = documentPositions;
+		this.documentRawFreqs = documentRawFreqs;
+	}
+	
+	/**
+	 * Get the number of distinct terms.
+	 * @return the number of terms
+	 */
+	public int size() {
+		return terms.length;
+	}
+	
+	public boolean isEmpty() {
+		return terms.length==0;
+	}
+	
+	/**
+	 * Get the number of documents in the corpus.
+	 * @return the number of documents
+	 */
+	public int getDocumentsCount() {
+		return documentsCount;
+	}
+	
+	/**
+	 * Get the index of the specified term.
+	 * @param term
+	 * @return the index of the term or -1 if it's not in this corpus
+	 */
+	public int getTermIndex(String term) {
+		int index = Arrays.binarySearch(terms, term);
+		return index<0 ? -1 : index;
+	}
+	
+	public boolean exists(String term) {
+		return getTermIndex(term)>-1;
+	}
+	
+	public String getTerm(int termIndex) {
+		return terms[termIndex];
+	}
+	
+	public int getRawFreq(int termIndex) {
+		return rawFreqs[termIndex];
+	}
+	
+	public int getInDocumentsCount(int termIndex) {
+		return inDocumentsCounts[termIndex];
+	}
+	
+	public float getZscore(int termIndex) {
+		return zscores[termIndex];
+	}
+	
+	/**
+	 * Get the raw frequencies of the specified term in each document of the corpus.
+	 * @param termIndex
+	 * @return an array of raw frequencies (by corpus document position)
+	 */
+	public int[] getDocumentRawFreqs(int termIndex) {
+		int[] freqs = new int[documentsCount];
+		for (int i=termPointers[termIndex], end=termPointers[termIndex+1]; i<end; i++) {
+			freqs[documentPositions[i]] = documentRawFreqs[i];
+		}
+		return freqs;
+	}
+	
+	/**
+	 * Get the index of the first document of this term, to use with {@link #getDocumentPosition(int)}
+	 * and {@link #getDocumentRawFreq(int)} (only documents where the term occurs are included).
+	 * @param termIndex
+	 * @return the index of the term's first document
+	 */
+	public int getDocumentsStart(int termIndex) {
+		return termPointers[termIndex];
+	}
+	
+	/**
+	 * Get the index after the last document of this term.
+	 * @param termIndex
+	 * @return the index after the term's last document
+	 */
+	public int getDocumentsEnd(int termIndex) {
+		return termPointers[termIndex+1];
+	}
+	
+	public int getDocumentPosition(int index) {
+		return documentPositions[index];
+	}
+	
+	public int getDocumentRawFreq(int index) {
+		return documentRawFreqs[index];
+	}
+	
+	/**
+	 * Get a {@link CorpusTermMinimal} for the specified term.
+	 * @param term
+	 * @return the {@link CorpusTermMinimal} or null if the term isn't in this corpus
+	 */
+	public CorpusTermMinimal get(String term) {
+		int index = getTermIndex(term);
+		return index<0 ? null : get(index);
+	}
+	
+	public CorpusTermMinimal get(int termIndex) {
+		return new CorpusTermMinimal(terms[termIndex], rawFreqs[termIndex], inDocumentsCounts[termIndex], documentsCount, zscores[termIndex]);
+	}
+	
+	private int getApproximateKilobytes() {
+		long bytes = (long) terms.length * (48 + 4 + 4 + 4 + 4) + (long) documentPositions.length * (4 + 4);
+		for (String term : terms) {bytes+=term.length()*2;}
+		return (int) Math.min(Integer.MAX_VALUE, bytes/1024+1);
+	}
+	
+	private static String getName(Corpus corpus, String field) {
+		return corpus.getId()+"-corpusTermStats-"+field+"-"+serialVersionUID;
+	}
+	
+	public static CorpusTermStats getInstance(CorpusMapper corpusMapper, TokenType tokenType) throws IOException {
+		return getInstance(corpusMapper, tokenType.name());
+	}
+	
+	public static CorpusTermStats getInstance(CorpusMapper corpusMapper, TokenType tokenType, CorpusMapper previousCorpusMapper) throws IOException {
+		return getInstance(corpusMapper, tokenType.name(), previousCorpusMapper);
+	}
+	
+	public static CorpusTermStats getInstance(CorpusMapper corpusMapper, String field) throws IOException {
+		return getInstance(corpusMapper, field, null);
+	}
+	
+	/**
+	 * Get the term statistics for the specified corpus and field, either from memory, from storage
+	 * or by building them from the document term vectors (and then storing them).
+	 * @param corpusMapper
+	 * @param field
+	 * @param previousCorpusMapper the mapper of a previous version of this corpus whose statistics can be
+	 * updated rather than building from scratch (or null)
+	 * @return the {@link CorpusTermStats}
+	 * @throws IOException
+	 */
+	public static synchronized CorpusTermStats getInstance(CorpusMapper corpusMapper, String field, CorpusMapper previousCorpusMapper) throws IOException {
+		Storage storage = corpusMapper.getStorage();
+		String name = getName(corpusMapper.getCorpus(), field);
+		StorageCacheKey key = new StorageCacheKey(storage, name);
+		CorpusTermStats corpusTermStats = cache.getIfPresent(key);
+		if (corpusTermStats!=null) {
+			return corpusTermStats;
+		}
+		if (storage.isStored(name, Storage.Location.object)) {
+			try {
+				Object obj = storage.retrieve(name, Storage.Location.object);
+				if (obj instanceof CorpusTermStats) {
+					corpusTermStats = (CorpusTermStats) obj;
+				}
+			} catch (ClassNotFoundException | IOException e) {
+				// fall through to rebuild
+			}
+		}
+		if (corpusTermStats==null) {
+			if (previousCorpusMapper!=null && previousCorpusMapper.getStorage()==storage) {
+				corpusTermStats = derive(corpusMapper, field, getInstance(previousCorpusMapper, field), previousCorpusMapper.getCorpus());
+			}
+			else {
+				corpusTermStats = build(corpusMapper, field);
+			}
+			storage.store(corpusTermStats, name, Storage.Location.object);
+		}
+		cache.put(key, corpusTermStats);
+		return corpusTermStats;
+	}
+	
+	private static CorpusTermStats build(CorpusMapper corpusMapper, String field) throws IOException {
+		
+		LeafReader reader = corpusMapper.getLeafReader();
+		int documentsCount = corpusMapper.getCorpus().size();
+		
+		// go through documents in corpus order so that each term's documents are sorted
+		int[] luceneIds = new int[documentsCount];
+		Arrays.fill(luceneIds, -1);
+		for (int doc : corpusMapper.getLuceneIds()) {
+			luceneIds[corpusMapper.getDocumentPositionFromLuceneId(doc)] = doc;
+		}
+		
+		// collect (term, document, frequency) triples with ids in order of first occurrence
+		BytesRefHash termsHash = new BytesRefHash();
+		int[] termIdColumn = new int[1024];
+		int[] documentColumn = new int[1024];
+		int[] freqColumn = new int[1024];
+		int count = 0;
+		TermsEnum termsEnum = null;
+		for (int position=0; position<documentsCount; position++) {
+			if (luceneIds[position]==-1) {continue;}
+			Terms terms = reader.getTermVector(luceneIds[position], field);
+			if (terms==null) {continue;}
+			termsEnum = terms.iterator();
+			BytesRef bytesRef = termsEnum.next();
+			while (bytesRef!=null) {
+				int termId = termsHash.add(bytesRef);
+				if (termId<0) {termId = -termId-1;}
+				if (count==termIdColumn.length) {
+					termIdColumn = ArrayUtil.grow(termIdColumn);
+					documentColumn = ArrayUtil.grow(documentColumn);
+					freqColumn = ArrayUtil.grow(freqColumn);
+				}
+				termIdColumn[count] = termId;
+				documentColumn[count] = position;
+				freqColumn[count] = (int) termsEnum.totalTermFreq();
+				count++;
+				bytesRef = termsEnum.next();
+			}
+		}
+		
+		// sort the term dictionary and determine the sorted index of each term id
+		String[] terms = getTerms(termsHash);
+		int[] termIndices = sort(terms);
+		for (int i=0; i<count; i++) {
+			termIdColumn[i] = termIndices[termIdColumn[i]];
+		}
+		
+		return create(documentsCount, terms, termIdColumn, documentColumn, freqColumn, count);
+	}
+	
+	/**
+	 * Derive the statistics of a corpus from those of a previous version of it (with documents added,
+	 * removed or reordered). The columns of documents that were in the previous corpus are reused and
+	 * only the term vectors of new documents are read, the result is the same as building from scratch.
+	 * @param corpusMapper the mapper of the new corpus
+	 * @param field
+	 * @param previous the statistics of the previous corpus
+	 * @param previousCorpus the previous corpus
+	 * @return the {@link CorpusTermStats} of the new corpus
+	 * @throws IOException
+	 */
+	private static CorpusTermStats derive(CorpusMapper corpusMapper, String field, CorpusTermStats previous, Corpus previousCorpus) throws IOException {
+		
+		List<String> ids = corpusMapper.getCorpus().getDocumentIds();
+		int documentsCount = ids.size();
+		Map<String, Integer> positionsMap = new HashMap<String, Integer>(documentsCount*2);
+		for (int i=0; i<documentsCount; i++) {
+			positionsMap.put(ids.get(i), i); // like the corpus, a repeated document is at its last position
+		}
+		
+		// determine where each previous document is now (or -1 if it was removed)
+		List<String> previousIds = previousCorpus.getDocumentIds();
+		int[] previousPositions = new int[previousIds.size()];
+		boolean[] isPrevious = new boolean[documentsCount];
+		for (int i=0; i<previousPositions.length; i++) {
+			Integer position = positionsMap.get(previousIds.get(i));
+			previousPositions[i] = position==null ? -1 : position;
+			if (position!=null) {isPrevious[position] = true;}
+		}
+		
+		// read the term vectors of documents that are new
+		LeafReader reader = corpusMapper.getLeafReader();
+		BytesRefHash termsHash = new BytesRefHash();
+		int[] termIdColumn = new int[1024];
+		int[] documentColumn = new int[1024];
+		int[] freqColumn = new int[1024];
+		int count = 0;
+		for (int position=0; position<documentsCount; position++) {
+			if (isPrevious[position] || positionsMap.get(ids.get(position))!=position) {continue;}
+			Terms terms = reader.getTermVector(corpusMapper.getLuceneIdFromDocumentPosition(position), field);
+			if (terms==null) {continue;}
+			TermsEnum termsEnum = terms.iterator();
+			for (BytesRef bytesRef = termsEnum.next(); bytesRef!=null; bytesRef = termsEnum.next()) {
+				int termId = termsHash.add(bytesRef);
+				if (termId<0) {termId = -termId-1;}
+				if (count==termIdColumn.length) {
+					termIdColumn = ArrayUtil.grow(termIdColumn);
+					documentColumn = ArrayUtil.grow(documentColumn);
+					freqColumn = ArrayUtil.grow(freqColumn);
+				}
+				termIdColumn[count] = termId;
+				documentColumn[count] = position;
+				freqColumn[count] = (int) termsEnum.totalTermFreq();
+				count++;
+			}
+		}
+		String[] newTerms = getTerms(termsHash);
+		int[] newTermIndices = sort(newTerms);
+		
+		// merge the (sorted) term dictionaries
+		String[] terms = new String[previous.terms.length+newTerms.length];
+		int[] previousTermIndices = new int[previous.terms.length];
+		int[] mergedNewTermIndices = new int[newTerms.length];
+		int termsCount = 0;
+		for (int i=0, j=0; i<previous.terms.length || j<newTerms.length;) {
+			int comparison = i==previous.terms.length ? 1 : (j==newTerms.length ? -1 : previous.terms[i].compareTo(newTerms[j]));
+			if (comparison<=0) {previousTermIndices[i++] = termsCount;}
+			if (comparison>=0) {mergedNewTermIndices[j++] = termsCount;}
+			terms[termsCount++] = comparison<=0 ? previous.terms[i-1] : newTerms[j-1];
+		}
+		terms = Arrays.copyOf(terms, termsCount);
+		for (int i=0; i<count; i++) {
+			termIdColumn[i] = mergedNewTermIndices[newTermIndices[termIdColumn[i]]];
+		}
+		
+		// add the columns of the previous documents that are still in the corpus
+		int newCount = count;
+		for (int termIndex=0; termIndex<previous.terms.length; termIndex++) {
+			for (int i=previous.termPointers[termIndex], end=previous.termPointers[termIndex+1]; i<end; i++) {
+				int position = previousPositions[previous.documentPositions[i]];
+				if (position==-1) {continue;}
+				if (count==termIdColumn.length) {
+					termIdColumn = ArrayUtil.grow(termIdColumn);
+					documentColumn = ArrayUtil.grow(documentColumn);
+					freqColumn = ArrayUtil.grow(freqColumn);
+				}
+				termIdColumn[count] = previousTermIndices[termIndex];
+				documentColumn[count] = position;
+				freqColumn[count] = previous.documentRawFreqs[i];
+				count++;
+			}
+		}
+		
+		// counting sort by document position (stable) so that documents are in corpus order again
+		if (newCount<count) {
+			int[] documentPointers = new int[documentsCount+1];
+			for (int i=0; i<count; i++) {documentPointers[documentColumn[i]+1]++;}
+			for (int i=0; i<documentsCount; i++) {documentPointers[i+1]+=documentPointers[i];}
+			int[] sortedTermIdColumn = new int[count];
+			int[] sortedDocumentColumn = new int[count];
+			int[] sortedFreqColumn = new int[count];
+			for (int i=0; i<count; i++) {
+				int pointer = documentPointers[documentColumn[i]]++;
+				sortedTermIdColumn[pointer] = termIdColumn[i];
+				sortedDocumentColumn[pointer] = documentColumn[i];
+				sortedFreqColumn[pointer] = freqColumn[i];
+			}
+			termIdColumn = sortedTermIdColumn;
+			documentColumn = sortedDocumentColumn;
+			freqColumn = sortedFreqColumn;
+		}
+		
+		return create(documentsCount, terms, termIdColumn, documentColumn, freqColumn, count);
+	}
+	
+	private static String[] getTerms(BytesRefHash termsHash) {
+		String[] terms = new String[termsHash.size()];
+		BytesRef scratch = new BytesRef();
+		for (int i=0; i<terms.length; i++) {
+			terms[i] = termsHash.get(i, scratch).utf8ToString();
+		}
+		return terms;
+	}
+	
+	/**
+	 * Sort the terms in place.
+	 * @param terms
+	 * @return the sorted index of each term's original index
+	 */
+	private static int[] sort(final String[] terms) {
+		int termsCount = terms.length;
+		final int[] termIds = new int[termsCount];
+		for (int i=0; i<termsCount; i++) {
+			termIds[i] = i;
+		}
+		new InPlaceMergeSorter() {
+			@Override
+			protected int compare(int i, int j) {
+				return terms[i].compareTo(terms[j]);
+			}
+			@Override
+			protected void swap(int i, int j) {
+				String term = terms[i];
+				terms[i] = terms[j];
+				terms[j] = term;
+				int termId = termIds[i];
+				termIds[i] = termIds[j];
+				termIds[j] = termId;
+			}
+		}.sort(0, termsCount);
+		int[] termIndices = new int[termsCount];
+		for (int i=0; i<termsCount; i++) {
+			termIndices[termIds[i]] = i;
+		}
+		return termIndices;
+	}
+	
+	/**
+	 * Create the statistics from (term index, document, frequency) triples in corpus document order,
+	 * terms that don't occur in any document are dropped.
+	 */
+	private static CorpusTermStats create(int documentsCount, String[] terms, int[] termIndexColumn, int[] documentColumn, int[] freqColumn, int count) {
+		
+		// drop any terms without documents
+		int termsCount = terms.length;
+		int[] inDocumentsCounts = new int[termsCount];
+		for (int i=0; i<count; i++) {
+			inDocumentsCounts[termIndexColumn[i]]++;
+		}
+		int[] termIndices = new int[termsCount];
+		int keptCount = 0;
+		for (int i=0; i<termsCount; i++) {
+			termIndices[i] = keptCount;
+			if (inDocumentsCounts[i]>0) {
+				terms[keptCount] = terms[i];
+				inDocumentsCounts[keptCount] = inDocumentsCounts[i];
+				keptCount++;
+			}
+		}
+		if (keptCount<termsCount) {
+			terms = Arrays.copyOf(terms, keptCount);
+			inDocumentsCounts = Arrays.copyOf(inDocumentsCounts, keptCount);
+			for (int i=0; i<count; i++) {
+				termIndexColumn[i] = termIndices[termIndexColumn[i]];
+			}
+			termsCount = keptCount;
+		}
+		
+		// counting sort of the triples by term index (stable, so documents stay in corpus order)
+		int[] rawFreqs = new int[termsCount];
+		for (int i=0; i<count; i++) {
+			rawFreqs[termIndexColumn[i]]+=freqColumn[i];
+		}
+		int[] termPointers = new int[termsCount+1];
+		for (int i=0; i<termsCount; i++) {
+			termPointers[i+1] = termPointers[i]+inDocumentsCounts[i];
+		}
+		int[] cursors = Arrays.copyOf(termPointers, termsCount);
+		int[] documentPositions = new int[count];
+		int[] documentRawFreqs = new int[count];
+		for (int i=0; i<count; i++) {
+			int pointer = cursors[termIndexColumn[i]]++;
+			documentPositions[pointer] = documentColumn[i];
+			documentRawFreqs[pointer] = freqColumn[i];
+		}
+		
+		// calculate aggregate stats
+		SummaryStatistics stats = new SummaryStatistics();
+		for (int rawFreq : rawFreqs) {stats.addValue(rawFreq);}
+		float mean = (float) stats.getMean();
+		float stdDev = (float) stats.getStandardDeviation();
+		float[] zscores = new float[termsCount];
+		for (int i=0; i<termsCount; i++) {
+			// this is calculated from the documents count, as it always has been (for consistency with existing results)
+			zscores[i] = ((float) inDocumentsCounts[i]-mean) / stdDev;
+		}
+		
+		return new CorpusTermStats(documentsCount, terms, rawFreqs, inDocumentsCounts, zscores, termPointers, documentPositions, documentRawFreqs);
+	}
+}
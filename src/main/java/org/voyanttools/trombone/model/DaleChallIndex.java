@@ -1,45 +1,43 @@
 package org.voyanttools.trombone.model;
 
-import com.thoughtworks.xstream.annotations.XStreamOmitField;
+import org.apache.commons.io.IOUtils;
 import org.voyanttools.trombone.tool.util.TextParser;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 public class DaleChallIndex extends ReadabilityIndex {
 
-    @XStreamOmitField
-    private List<String> easyWords;
+    public static final String DEFAULT_EASY_WORDS_FILE_PATH = "/org/voyanttools/trombone/readability/easywords.en.txt";
+
+    private static Set<String> defaultEasyWords = null;
 
     protected double daleChallIndex;
     protected int difficultWordsCount = 0;
     protected int easyWordsCount = 0;
 
-    public DaleChallIndex(int documentIndex, String documentId, String textToParse, List<String> easyWords) throws IOException {
-        super(documentIndex, documentId, textToParse);
+    public DaleChallIndex(int documentIndex, String documentId, String textToParse, Collection<String> easyWords) throws IOException {
+        this(documentIndex, documentId, new ReadabilityStatistics(new TextParser(textToParse, new HashSet<String>(easyWords))));
+    }
 
-        this.easyWords = easyWords;
+    /**
+     * Create the index from statistics whose easy and difficult words have been counted.
+     */
+    public DaleChallIndex(int documentIndex, String documentId, ReadabilityStatistics statistics) throws IOException {
+        super(documentIndex, documentId, statistics);
 
         daleChallIndex = calculateIndex(text);
     }
 
     @Override
-    protected double calculateIndex(TextParser text) throws IOException {
-        List<String> words = Arrays.asList(text.getText().split(" "));
-
-        // Cleaning words from ".", ",", etc.
-        words = words.stream().map(this::cleanWord).collect(Collectors.toList());
-        words = words.stream().filter(this::isAWord).collect(Collectors.toList());
-
-        for (String word : words) {
-            if (easyWords.contains(word) || easyWords.contains(removeSCharAtEndOfWordIfAny(word))) {
-                easyWordsCount++;
-            } else {
-                difficultWordsCount++;
-            }
-        }
+    protected double calculateIndex(ReadabilityStatistics text) throws IOException {
+        easyWordsCount = text.getEasyWordsCount();
+        difficultWordsCount = text.getDifficultWordsCount();
 
         double percentageOfDifficultWords = (double) difficultWordsCount / text.getWordsCount() * 100;
         double averageSentenceLength = (double) text.getWordsCount() / text.getSentencesCount();
@@ -62,32 +60,24 @@ public class DaleChallIndex extends ReadabilityIndex {
         return daleChallIndex;
     }
 
-
-    private String cleanWord(String word) {
-        return word.replace(".", "")
-                .replace(",", "")
-                .replace(";", "")
-                .replace(":", "")
-                .toLowerCase();
-    }
-
-    private String removeSCharAtEndOfWordIfAny(String word) {
-        if (word.charAt(word.length() - 1) == 's')
-            return word.substring(0, word.length() - 1);
-
-        return word;
-    }
-
-    private boolean isAWord(String word) {
-        if (word.length() == 0) {
-            return false;
-        }
-
-        for (char c : word.toCharArray()) {
-            if (Character.isDigit(c))
-                return false;
+    /**
+     * Get the default (English) list of easy words, which is only read once.
+     */
+    public static synchronized Set<String> getDefaultEasyWords() throws IOException {
+        if (defaultEasyWords == null) {
+            try (InputStream inputStream = DaleChallIndex.class.getResourceAsStream(DEFAULT_EASY_WORDS_FILE_PATH)) {
+                if (inputStream == null) {
+                    throw new IOException("Failed to retrieved the easy words list.");
+                }
+                Set<String> easyWords = new HashSet<String>();
+                for (String word : IOUtils.readLines(inputStream, StandardCharsets.UTF_8)) {
+                    if (!word.contains("#")) {
+                        easyWords.add(word);
+                    }
+                }
+                defaultEasyWords = Collections.unmodifiableSet(easyWords);
+            }
         }
-
-        return true;
+        return defaultEasyWords;
     }
 }
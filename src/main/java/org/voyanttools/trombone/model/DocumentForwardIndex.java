@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ *
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ *
+ * This file is part of Trombone.
+ *
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.model;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.vectorhighlight.FieldTermStack.TermInfo;
+import org.apache.lucene.util.BytesRef;
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.storage.StorageCacheKey;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * A positional forward index for one field of one document: for each token position
+ * we keep the id of the term (in the document's own vocabulary) as well as its
+ * start and end offsets, all as primitive arrays. This allows tools to read a window
+ * of positions directly instead of walking the full term vector of the document.
+ *
+ * Positions without a token (if any) have a term id of -1.
+ * 
+ * Forward indexes are kept in memory once they've been read, so reading a window is
+ * proportional to the window rather than to the document.
+ */
+public class DocumentForwardIndex implements Serializable {
+
+	private static final long serialVersionUID = 4318729516372085215L;
+	
+	// the maximum number of positions (summed across documents) for which we keep forward indexes in memory
+	private static final long MAX_CACHED_POSITIONS = 10000000;
+	
+	private static final Cache<StorageCacheKey, DocumentForwardIndex> cache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_POSITIONS)
+			.weigher(new Weigher<StorageCacheKey, DocumentForwardIndex>() {
+				@Override
+				public int weigh(StorageCacheKey key, DocumentForwardIndex forwardIndex) {
+					return forwardIndex.size()+forwardIndex.getTypesCount()+1;
+				}
+			})
+			.build();
+
+	private String[] terms;
+
+	private int[] rawFreqs;
+
+	private int[] termIds;
+
+	private int[] startOffsets;
+
+	private int[] endOffsets;
+
+	private DocumentForwardIndex(String[] terms, int[] rawFreqs, int[] termIds, int[] startOffsets, int[] endOffsets) {
+		this.terms = terms;
+		this.rawFreqs = rawFreqs;
+		this.termIds = termIds;
+		this.startOffsets = startOffsets;
+		this.endOffsets = endOffsets;
+	}
+
+	/**
+	 * Get the number of positions (the last token position plus one).
+	 * @return the number of positions
+	 */
+	public int size() {
+		return termIds.length;
+	}
+
+	/**
+	 * Get the number of distinct terms (types) in this document.
+	 * @return the number of types
+	 */
+	public int getTypesCount() {
+		return terms.length;
+	}
+
+	/**
+	 * Get the total number of tokens in this document.
+	 * @return the number of tokens
+	 */
+	public int getTokensCount() {
+		int count = 0;
+		for (int freq : rawFreqs) {count+=freq;}
+		return count;
+	}
+
+	public boolean hasPosition(int position) {
+		return position>=0 && position<termIds.length && termIds[position]>-1;
+	}
+
+	public int getTermId(int position) {
+		return termIds[position];
+	}
+
+	public String getTerm(int position) {
+		return terms[termIds[position]];
+	}
+
+	public String getTermForTermId(int termId) {
+		return terms[termId];
+	}
+
+	/**
+	 * Get the frequency of the term at the specified position within this document.
+	 * @param position
+	 * @return the raw frequency of the term at this position
+	 */
+	public int getRawFreq(int position) {
+		return rawFreqs[termIds[position]];
+	}
+
+	public int getRawFreqForTermId(int termId) {
+		return rawFreqs[termId];
+	}
+
+	public int getStartOffset(int position) {
+		return startOffsets[position];
+	}
+
+	public int getEndOffset(int position) {
+		return endOffsets[position];
+	}
+
+	public TermInfo getTermInfo(int position) {
+		return new TermInfo(getTerm(position), startOffsets[position], endOffsets[position], position, 1);
+	}
+
+	/**
+	 * Get the {@link TermInfo}s for the positions in the specified range (from start inclusive to end exclusive),
+	 * in position order.
+	 * @param start the first position
+	 * @param end the position after the last one
+	 * @return the {@link TermInfo}s for this range
+	 */
+	public List<TermInfo> getTermInfos(int start, int end) {
+		if (start<0) {start=0;}
+		if (end>termIds.length) {end=termIds.length;}
+		List<TermInfo> termInfos = new ArrayList<TermInfo>(Math.max(end-start, 0));
+		for (int i=start; i<end; i++) {
+			if (termIds[i]>-1) {
+				termInfos.add(getTermInfo(i));
+			}
+		}
+		return termInfos;
+	}
+
+	/**
+	 * Get the largest start offset of any token in this document.
+	 * @return the last start offset
+	 */
+	public int getLastStartOffset() {
+		int lastOffset = 0;
+		for (int i=0; i<startOffsets.length; i++) {
+			if (termIds[i]>-1 && startOffsets[i]>lastOffset) {lastOffset=startOffsets[i];}
+		}
+		return lastOffset;
+	}
+
+	private static String getName(String documentId, String field) {
+		return documentId+"-forwardIndex-"+field+"-"+serialVersionUID;
+	}
+
+	/**
+	 * Store this forward index for the specified document and field.
+	 * @param storage
+	 * @param documentId
+	 * @param field
+	 * @throws IOException
+	 */
+	public void store(Storage storage, String documentId, String field) throws IOException {
+		storage.store(this, getName(documentId, field), Storage.Location.object);
+	}
+
+	public static DocumentForwardIndex getInstance(Storage storage, LeafReader reader, int luceneDoc, String documentId, TokenType tokenType) throws IOException {
+		return getInstance(storage, reader, luceneDoc, documentId, tokenType.name());
+	}
+
+	/**
+	 * Get the forward index for the specified document and field, either from storage (where
+	 * it's usually written at index time) or by building it from the term vector (and then storing it).
+	 * @param storage
+	 * @param reader
+	 * @param luceneDoc
+	 * @param documentId
+	 * @param field
+	 * @return the {@link DocumentForwardIndex}
+	 * @throws IOException
+	 */
+	public static DocumentForwardIndex getInstance(Storage storage, LeafReader reader, int luceneDoc, String documentId, String field) throws IOException {
+		String name = getName(documentId, field);
+		StorageCacheKey key = new StorageCacheKey(storage, name);
+		DocumentForwardIndex forwardIndex = cache.getIfPresent(key);
+		if (forwardIndex!=null) {
+			return forwardIndex;
+		}
+		if (storage.isStored(name, Storage.Location.object)) {
+			try {
+				Object obj = storage.retrieve(name, Storage.Location.object);
+				if (obj instanceof DocumentForwardIndex) {
+					forwardIndex = (DocumentForwardIndex) obj;
+				}
+			} catch (ClassNotFoundException | IOException e) {
+				// this can happen if the index is concurrently being written, fall through to rebuild
+			}
+		}
+		if (forwardIndex==null) {
+			forwardIndex = build(reader.getTermVector(luceneDoc, field));
+			forwardIndex.store(storage, documentId, field);
+		}
+		cache.put(key, forwardIndex);
+		return forwardIndex;
+	}
+
+	/**
+	 * Build a forward index from the term vector of a document (with positions and offsets).
+	 * @param terms the term vector (may be null)
+	 * @return the {@link DocumentForwardIndex}
+	 * @throws IOException
+	 */
+	public static DocumentForwardIndex build(Terms terms) throws IOException {
+		if (terms==null) {
+			return new DocumentForwardIndex(new String[0], new int[0], new int[0], new int[0], new int[0]);
+		}
+		List<String> termsList = new ArrayList<String>();
+		int[] rawFreqs = new int[32];
+		int[] termIds = new int[256];
+		Arrays.fill(termIds, -1);
+		int[] startOffsets = new int[256];
+		int[] endOffsets = new int[256];
+		int lastPosition = -1;
+		TermsEnum termsEnum = terms.iterator();
+		PostingsEnum postingsEnum = null;
+		while(true) {
+			BytesRef term = termsEnum.next();
+			if (term!=null) {
+				int termId = termsList.size();
+				termsList.add(term.utf8ToString());
+				postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.OFFSETS);
+				postingsEnum.nextDoc();
+				int freq = postingsEnum.freq();
+				if (termId>=rawFreqs.length) {rawFreqs = Arrays.copyOf(rawFreqs, rawFreqs.length*2);}
+				rawFreqs[termId] = freq;
+				for (int i=0; i<freq; i++) {
+					int pos = postingsEnum.nextPosition();
+					if (pos>=termIds.length) {
+						int len = Math.max(termIds.length*2, pos+1);
+						int oldLen = termIds.length;
+						termIds = Arrays.copyOf(termIds, len);
+						Arrays.fill(termIds, oldLen, len, -1);
+						startOffsets = Arrays.copyOf(startOffsets, len);
+						endOffsets = Arrays.copyOf(endOffsets, len);
+					}
+					if (pos>lastPosition) {lastPosition = pos;}
+					termIds[pos] = termId;
+					startOffsets[pos] = postingsEnum.startOffset();
+					endOffsets[pos] = postingsEnum.endOffset();
+				}
+			}
+			else {break;}
+		}
+		int size = lastPosition+1;
+		return new DocumentForwardIndex(termsList.toArray(new String[0]), Arrays.copyOf(rawFreqs, termsList.size()),
+				Arrays.copyOf(termIds, size), Arrays.copyOf(startOffsets, size), Arrays.copyOf(endOffsets, size));
+	}
+}
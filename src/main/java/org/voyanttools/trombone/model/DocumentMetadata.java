@@ -512,6 +512,37 @@ public class DocumentMetadata implements Comparable<DocumentMetadata> {
 		return Integer.parseInt(getProperty("sentencesCount", "0"));
 	}
 
+	/**
+	 * Store the counts from which the readability indexes are calculated.
+	 * @param statistics the readability statistics of this document's text
+	 */
+	public void setReadabilityStatistics(ReadabilityStatistics statistics) {
+		setProperty("readability-lettersCount", String.valueOf(statistics.getLettersCount()));
+		setProperty("readability-wordsCount", String.valueOf(statistics.getWordsCount()));
+		setProperty("readability-sentencesCount", String.valueOf(statistics.getSentencesCount()));
+		setProperty("readability-wordsWithMoreThanSixLettersCount", String.valueOf(statistics.getWordsWithMoreThanSixLettersCount()));
+		setProperty("readability-wordsWithMoreThanTwoSyllablesCount", String.valueOf(statistics.getWordsWithMoreThanTwoSyllablesCount()));
+		setProperty("readability-easyWordsCount", String.valueOf(statistics.getEasyWordsCount()));
+		setProperty("readability-difficultWordsCount", String.valueOf(statistics.getDifficultWordsCount()));
+	}
+	
+	/**
+	 * Get the stored readability counts of this document.
+	 * @return the readability statistics or null if they haven't been stored (as with documents indexed by older versions)
+	 */
+	public ReadabilityStatistics getReadabilityStatistics() {
+		if (getProperty("readability-wordsCount")==null) {
+			return null;
+		}
+		return new ReadabilityStatistics(Integer.parseInt(getProperty("readability-lettersCount", "0")),
+				Integer.parseInt(getProperty("readability-wordsCount", "0")),
+				Integer.parseInt(getProperty("readability-sentencesCount", "0")),
+				Integer.parseInt(getProperty("readability-wordsWithMoreThanSixLettersCount", "0")),
+				Integer.parseInt(getProperty("readability-wordsWithMoreThanTwoSyllablesCount", "0")),
+				Integer.parseInt(getProperty("readability-easyWordsCount", "0")),
+				Integer.parseInt(getProperty("readability-difficultWordsCount", "0")));
+	}
+
 
 	public String toString() {
 		return getSource().name()+": "+getLocation();
@@ -0,0 +1,47 @@
+package org.voyanttools.trombone.model;
+
+import java.io.Serializable;
+
+/**
+ * A document that is similar to another one, with the cosine similarity of their TF-IDF vectors.
+ */
+public class DocumentNeighbor implements Serializable {
+
+	private int docIndex;
+	
+	private String docId;
+	
+	private int neighborIndex;
+	
+	private String neighborId;
+	
+	private float similarity;
+	
+	public DocumentNeighbor(int docIndex, String docId, int neighborIndex, String neighborId, float similarity) {
+		this.docIndex = docIndex;
+		this.docId = docId;
+		this.neighborIndex = neighborIndex;
+		this.neighborId = neighborId;
+		this.similarity = similarity;
+	}
+
+	public int getDocIndex() {
+		return docIndex;
+	}
+
+	public String getDocId() {
+		return docId;
+	}
+
+	public int getNeighborIndex() {
+		return neighborIndex;
+	}
+
+	public String getNeighborId() {
+		return neighborId;
+	}
+
+	public float getSimilarity() {
+		return similarity;
+	}
+}
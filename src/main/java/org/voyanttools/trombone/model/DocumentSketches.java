@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.model;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.ExecutionException;
+
+import org.voyanttools.trombone.lucene.CorpusMapper;
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.storage.StorageCacheKey;
+import org.voyanttools.trombone.util.VantagePointTree;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * The TF-IDF vectors of the documents of a corpus, for finding the documents most similar
+ * to a given one (by cosine similarity) without comparing it to every other document.
+ * 
+ * The sparse vectors are reduced to short random projections (sketches) that approximately
+ * preserve the angles between them, and the sketches are indexed in a {@link VantagePointTree}.
+ * Candidates are found with the tree and then ranked by their exact similarity.
+ * 
+ * This is built once per corpus (from its {@link CorpusTermStats}) and stored as an object,
+ * recently used instances are also kept in memory.
+ */
+public class DocumentSketches implements Serializable {
+
+	private static final long serialVersionUID = 4203915718832417905L;
+	
+	// the approximate memory (in kilobytes) that we allow for instances kept in memory
+	private static final int MAX_CACHED_KILOBYTES = 256 * 1024;
+	
+	private static final Cache<StorageCacheKey, DocumentSketches> cache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_KILOBYTES)
+			.weigher(new Weigher<StorageCacheKey, DocumentSketches>() {
+				@Override
+				public int weigh(StorageCacheKey key, DocumentSketches documentSketches) {
+					return documentSketches.getApproximateKilobytes();
+				}
+			})
+			.build();
+	
+	// the length of each sketch
+	private static final int DIMENSIONS = 128;
+	
+	// the number of sketch dimensions to which each term contributes
+	private static final int TERM_DIMENSIONS = 8;
+	
+	// how many more candidates than requested are ranked by their exact similarity
+	private static final int CANDIDATES_FACTOR = 4;
+	
+	private static final int MIN_EXTRA_CANDIDATES = 20;
+	
+	private int documentsCount;
+	
+	// the index in terms and weights of the first term of each document (plus one past the end)
+	private int[] documentPointers;
+	
+	// the term indexes of each document, in order
+	private int[] terms;
+	
+	// the TF-IDF weights of each document's terms, normalized so that each vector has a length of 1
+	private float[] weights;
+	
+	private VantagePointTree tree;
+	
+	private DocumentSketches(int documentsCount, int[] documentPointers, int[] terms, float[] weights, float[] sketches) {
+		this.documentsCount = documentsCount;
+		this.documentPointers = documentPointers;
+		this.terms = terms;
+		this.weights = weights;
+		this.tree = new VantagePointTree(sketches, DIMENSIONS);
+	}
+	
+	public int getDocumentsCount() {
+		return documentsCount;
+	}
+	
+	/**
+	 * Get the cosine similarity of the TF-IDF vectors of two documents.
+	 * @param document1 the position of the first document
+	 * @param document2 the position of the second document
+	 * @return the similarity, from 0 (no distinctive terms in common) to 1
+	 */
+	public float getSimilarity(int document1, int document2) {
+		double sum = 0;
+		int i = documentPointers[document1], iEnd = documentPointers[document1+1];
+		int j = documentPointers[document2], jEnd = documentPointers[document2+1];
+		while (i<iEnd && j<jEnd) {
+			if (terms[i]<terms[j]) {i++;}
+			else if (terms[i]>terms[j]) {j++;}
+			else {sum += (double) weights[i++] * weights[j++];}
+		}
+		return (float) Math.min(1, sum);
+	}
+	
+	/**
+	 * Find the documents that are most similar to the specified one.
+	 * @param document the position of the document
+	 * @param count the maximum number of similar documents
+	 * @param neighbors filled with the positions of the most similar documents, most similar first (its length must be at least count)
+	 * @param similarities filled with the similarity of each document (its length must be at least count)
+	 * @return the number of similar documents, which is less than count if the corpus is too small or
+	 * if fewer documents have distinctive terms in common with this one
+	 */
+	public int getNeighbors(int document, int count, int[] neighbors, float[] similarities) {
+		count = Math.min(count, documentsCount-1);
+		if (count<1) {return 0;}
+		
+		int candidatesCount = Math.min(documentsCount-1, Math.max(count*CANDIDATES_FACTOR, count+MIN_EXTRA_CANDIDATES));
+		int[] candidates = new int[candidatesCount];
+		candidatesCount = tree.search(document, candidatesCount, candidates, new double[candidatesCount]);
+		
+		float[] candidateSimilarities = new float[candidatesCount];
+		for (int i=0; i<candidatesCount; i++) {
+			candidateSimilarities[i] = getSimilarity(document, candidates[i]);
+		}
+		
+		// keep the most similar candidates (and the earliest documents for ties)
+		int size = 0;
+		for (int i=0; i<candidatesCount; i++) {
+			int candidate = candidates[i];
+			float similarity = candidateSimilarities[i];
+			if (similarity<=0) {continue;}
+			int j = size<count ? size++ : count;
+			while (j>0 && (similarities[j-1]<similarity || (similarities[j-1]==similarity && neighbors[j-1]>candidate))) {
+				if (j<count) {
+					neighbors[j] = neighbors[j-1];
+					similarities[j] = similarities[j-1];
+				}
+				j--;
+			}
+			if (j<count) {
+				neighbors[j] = candidate;
+				similarities[j] = similarity;
+			}
+		}
+		return size;
+	}
+	
+	private int getApproximateKilobytes() {
+		long bytes = (long) terms.length * (4 + 4) + (long) documentsCount * (4 + 4 + 4 + DIMENSIONS * 4);
+		return (int) Math.min(Integer.MAX_VALUE, bytes/1024+1);
+	}
+	
+	private static String getName(Corpus corpus) {
+		return corpus.getId()+"-documentSketches-"+serialVersionUID;
+	}
+	
+	/**
+	 * Get the document sketches for the specified corpus, either from memory, from storage
+	 * or by building them from the corpus term statistics (and then storing them). Only
+	 * requests for the same corpus wait for each other while the sketches are loaded.
+	 * @param corpusMapper
+	 * @return the {@link DocumentSketches}
+	 * @throws IOException
+	 */
+	public static DocumentSketches getInstance(CorpusMapper corpusMapper) throws IOException {
+		Storage storage = corpusMapper.getStorage();
+		String name = getName(corpusMapper.getCorpus());
+		try {
+			return cache.get(new StorageCacheKey(storage, name), () -> load(corpusMapper, name));
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Unable to load the document sketches: "+name, e.getCause());
+		}
+	}
+	
+	private static DocumentSketches load(CorpusMapper corpusMapper, String name) throws IOException {
+		Storage storage = corpusMapper.getStorage();
+		if (storage.isStored(name, Storage.Location.object)) {
+			try {
+				Object obj = storage.retrieve(name, Storage.Location.object);
+				if (obj instanceof DocumentSketches) {
+					return (DocumentSketches) obj;
+				}
+			} catch (ClassNotFoundException | IOException e) {
+				// fall through to rebuild
+			}
+		}
+		DocumentSketches documentSketches = build(CorpusTermStats.getInstance(corpusMapper, TokenType.lexical));
+		storage.store(documentSketches, name, Storage.Location.object);
+		return documentSketches;
+	}
+	
+	private static DocumentSketches build(CorpusTermStats corpusTermStats) {
+		int documentsCount = corpusTermStats.getDocumentsCount();
+		
+		// count the distinctive terms of each document (terms that occur in every document have no weight)
+		int[] documentPointers = new int[documentsCount+1];
+		for (int t=0, len=corpusTermStats.size(); t<len; t++) {
+			if (corpusTermStats.getInDocumentsCount(t)>=documentsCount) {continue;}
+			for (int i=corpusTermStats.getDocumentsStart(t), end=corpusTermStats.getDocumentsEnd(t); i<end; i++) {
+				documentPointers[corpusTermStats.getDocumentPosition(i)+1]++;
+			}
+		}
+		for (int d=0; d<documentsCount; d++) {
+			documentPointers[d+1] += documentPointers[d];
+		}
+		
+		// transpose the weights into document order and project each term onto a few random sketch dimensions
+		int[] terms = new int[documentPointers[documentsCount]];
+		float[] weights = new float[terms.length];
+		float[] sketches = new float[documentsCount*DIMENSIONS];
+		int[] offsets = new int[documentsCount];
+		System.arraycopy(documentPointers, 0, offsets, 0, documentsCount);
+		int[] termDimensions = new int[TERM_DIMENSIONS];
+		float[] termSigns = new float[TERM_DIMENSIONS];
+		for (int t=0, len=corpusTermStats.size(); t<len; t++) {
+			int inDocumentsCount = corpusTermStats.getInDocumentsCount(t);
+			if (inDocumentsCount>=documentsCount) {continue;}
+			float idf = (float) Math.log((double) documentsCount / inDocumentsCount);
+			setProjection(corpusTermStats.getTerm(t), termDimensions, termSigns);
+			for (int i=corpusTermStats.getDocumentsStart(t), end=corpusTermStats.getDocumentsEnd(t); i<end; i++) {
+				int document = corpusTermStats.getDocumentPosition(i);
+				float weight = corpusTermStats.getDocumentRawFreq(i) * idf;
+				int offset = offsets[document]++;
+				terms[offset] = t;
+				weights[offset] = weight;
+				for (int k=0; k<TERM_DIMENSIONS; k++) {
+					sketches[document*DIMENSIONS+termDimensions[k]] += termSigns[k]*weight;
+				}
+			}
+		}
+		
+		// normalize so that dot products are cosine similarities and distances between sketches follow them
+		for (int d=0; d<documentsCount; d++) {
+			double sum = 0;
+			for (int i=documentPointers[d]; i<documentPointers[d+1]; i++) {sum += (double) weights[i]*weights[i];}
+			if (sum>0) {
+				float norm = (float) Math.sqrt(sum);
+				for (int i=documentPointers[d]; i<documentPointers[d+1]; i++) {weights[i] /= norm;}
+			}
+			sum = 0;
+			for (int i=d*DIMENSIONS, end=i+DIMENSIONS; i<end; i++) {sum += (double) sketches[i]*sketches[i];}
+			if (sum>0) {
+				float norm = (float) Math.sqrt(sum);
+				for (int i=d*DIMENSIONS, end=i+DIMENSIONS; i<end; i++) {sketches[i] /= norm;}
+			}
+		}
+		
+		return new DocumentSketches(documentsCount, documentPointers, terms, weights, sketches);
+	}
+	
+	/**
+	 * Determine the sketch dimensions and signs of a term's projection, from a hash of the term
+	 * so that the same term is always projected the same way.
+	 */
+	private static void setProjection(String term, int[] dimensions, float[] signs) {
+		long state = term.hashCode() * 0x9E3779B97F4A7C15L;
+		for (int k=0; k<dimensions.length; k++) {
+			// splitmix64
+			long z = (state += 0x9E3779B97F4A7C15L);
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			z = z ^ (z >>> 31);
+			dimensions[k] = (int) ((z >>> 1) % DIMENSIONS);
+			signs[k] = (z & 1)==0 ? 1 : -1;
+		}
+	}
+}
@@ -7,13 +7,17 @@ public class FOGIndex extends ReadabilityIndex {
     protected double fogIndex;
 
     public FOGIndex(int documentIndex, String documentId, String textToParse) {
-        super(documentIndex, documentId, textToParse);
+        this(documentIndex, documentId, new ReadabilityStatistics(new TextParser(textToParse)));
+    }
+
+    public FOGIndex(int documentIndex, String documentId, ReadabilityStatistics statistics) {
+        super(documentIndex, documentId, statistics);
 
         fogIndex = calculateIndex(text);
     }
 
     @Override
-    protected double calculateIndex(TextParser text) {
+    protected double calculateIndex(ReadabilityStatistics text) {
         double a = (double) text.getWordsCount() / text.getSentencesCount();
         double b = (double) text.getWordsWithMoreThanTwoSyllablesCount() / text.getWordsCount();
 
@@ -23,7 +23,10 @@ package org.voyanttools.trombone.model;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
 
 import org.apache.commons.io.IOUtils;
@@ -96,6 +99,41 @@ public class IndexedDocument implements DocumentContainer, Comparable<IndexedDoc
 		is.close();
 		return string;
 	}
+	
+	/**
+	 * Get the counts from which readability indexes are calculated. These are
+	 * normally gathered when the document is indexed, but documents indexed by
+	 * older versions are parsed once here and the counts are stored for next time.
+	 * 
+	 * @return the readability statistics of this document
+	 * @throws IOException an IO exception during retrieval of the text or metadata
+	 */
+	public ReadabilityStatistics getReadabilityStatistics() throws IOException {
+		DocumentMetadata metadata = getMetadata();
+		ReadabilityStatistics statistics = metadata.getReadabilityStatistics();
+		if (statistics==null) {
+			try (Reader reader = new InputStreamReader(storage.getStoredDocumentSourceStorage().getStoredDocumentSourceInputStream(id), StandardCharsets.UTF_8)) {
+				statistics = ReadabilityStatistics.getInstance(reader, DaleChallIndex.getDefaultEasyWords());
+			}
+			metadata.setReadabilityStatistics(statistics);
+			storage.getStoredDocumentSourceStorage().updateStoredDocumentSourceMetadata(id, metadata);
+		}
+		return statistics;
+	}
+	
+	/**
+	 * Get a range of characters from the document string (the range is clamped
+	 * to the document). This is preferable to {@link #getDocumentString()} when
+	 * only short contexts are needed from potentially large documents.
+	 * 
+	 * @param start the start character offset (inclusive)
+	 * @param end the end character offset (exclusive)
+	 * @return the characters in the specified range
+	 * @throws IOException an IO exception during retrieval of the text
+	 */
+	public String getDocumentString(int start, int end) throws IOException {
+		return storage.getStoredDocumentSourceStorage().getStoredDocumentSourceString(id, start, end);
+	}
 
 	
 	public static class IndexedDocumentPriorityQueue {
@@ -7,13 +7,17 @@ public class LIXIndex extends ReadabilityIndex {
     protected double lixIndex;
 
     public LIXIndex(int documentIndex, String documentId, String textToParse) {
-        super(documentIndex, documentId, textToParse);
+        this(documentIndex, documentId, new ReadabilityStatistics(new TextParser(textToParse)));
+    }
+
+    public LIXIndex(int documentIndex, String documentId, ReadabilityStatistics statistics) {
+        super(documentIndex, documentId, statistics);
 
         lixIndex = calculateIndex(text);
     }
 
     @Override
-    protected double calculateIndex(TextParser text) {
+    protected double calculateIndex(ReadabilityStatistics text) {
         double wordsCount = text.getWordsCount();
         double sentencesCount = text.getSentencesCount();
         double longWords = text.getWordsWithMoreThanSixLettersCount();
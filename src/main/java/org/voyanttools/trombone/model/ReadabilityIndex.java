@@ -1,7 +1,5 @@
 package org.voyanttools.trombone.model;
 
-import org.voyanttools.trombone.tool.util.TextParser;
-
 import java.io.IOException;
 import java.io.Serializable;
 
@@ -10,14 +8,14 @@ public abstract class ReadabilityIndex implements Serializable {
     protected int docIndex;
     protected String docId;
 
-    protected TextParser text;
+    protected ReadabilityStatistics text;
 
-    public ReadabilityIndex(int documentIndex, String documentId, String textToParse) {
-        text = new TextParser(textToParse);
+    public ReadabilityIndex(int documentIndex, String documentId, ReadabilityStatistics statistics) {
+        text = statistics;
 
         docIndex = documentIndex;
         docId = documentId;
     }
 
-    abstract protected double calculateIndex(TextParser text) throws IOException;
+    abstract protected double calculateIndex(ReadabilityStatistics text) throws IOException;
 }
@@ -0,0 +1,92 @@
+package org.voyanttools.trombone.model;
+
+import com.thoughtworks.xstream.annotations.XStreamOmitField;
+import org.voyanttools.trombone.tool.util.TextParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.util.Set;
+
+/**
+ * The counts of a document's text from which all of the readability indexes are calculated. They're
+ * gathered once when the document is indexed and stored with its {@link DocumentMetadata}.
+ */
+public class ReadabilityStatistics implements Serializable {
+
+    private int lettersCount;
+    private int wordsCount;
+    private int sentencesCount;
+    private int wordsWithMoreThanSixLettersCount;
+    private int wordsWithMoreThanTwoSyllablesCount;
+
+    @XStreamOmitField
+    private int easyWordsCount;
+    @XStreamOmitField
+    private int difficultWordsCount;
+
+    public ReadabilityStatistics(int lettersCount, int wordsCount, int sentencesCount, int wordsWithMoreThanSixLettersCount,
+                                 int wordsWithMoreThanTwoSyllablesCount, int easyWordsCount, int difficultWordsCount) {
+        this.lettersCount = lettersCount;
+        this.wordsCount = wordsCount;
+        this.sentencesCount = sentencesCount;
+        this.wordsWithMoreThanSixLettersCount = wordsWithMoreThanSixLettersCount;
+        this.wordsWithMoreThanTwoSyllablesCount = wordsWithMoreThanTwoSyllablesCount;
+        this.easyWordsCount = easyWordsCount;
+        this.difficultWordsCount = difficultWordsCount;
+    }
+
+    public ReadabilityStatistics(TextParser text) {
+        this(text.getLettersCount(), text.getWordsCount(), text.getSentencesCount(), text.getWordsWithMoreThanSixLettersCount(),
+                text.getWordsWithMoreThanTwoSyllablesCount(), text.getEasyWordsCount(), text.getDifficultWordsCount());
+    }
+
+    /**
+     * Parse the text in a single pass, counting easy and difficult words with the given list.
+     * @param text the text to parse
+     * @param easyWords the lower case easy words
+     * @return the statistics of this text
+     */
+    public static ReadabilityStatistics getInstance(String text, Set<String> easyWords) {
+        return new ReadabilityStatistics(new TextParser(text, easyWords));
+    }
+
+    /**
+     * Parse the text from a reader in a single pass, counting easy and difficult words with the given list.
+     * @param reader the reader of the text to parse (it isn't closed)
+     * @param easyWords the lower case easy words
+     * @return the statistics of this text
+     * @throws IOException an exception while reading
+     */
+    public static ReadabilityStatistics getInstance(Reader reader, Set<String> easyWords) throws IOException {
+        return new ReadabilityStatistics(new TextParser(reader, easyWords));
+    }
+
+    public int getLettersCount() {
+        return lettersCount;
+    }
+
+    public int getWordsCount() {
+        return wordsCount;
+    }
+
+    public int getSentencesCount() {
+        return sentencesCount;
+    }
+
+    public int getWordsWithMoreThanSixLettersCount() {
+        return wordsWithMoreThanSixLettersCount;
+    }
+
+    public int getWordsWithMoreThanTwoSyllablesCount() {
+        return wordsWithMoreThanTwoSyllablesCount;
+    }
+
+    public int getEasyWordsCount() {
+        return easyWordsCount;
+    }
+
+    public int getDifficultWordsCount() {
+        return difficultWordsCount;
+    }
+}
@@ -7,7 +7,11 @@ public class SMOGIndex extends ReadabilityIndex {
     protected double smogIndex;
 
     public SMOGIndex(int documentIndex, String documentId, String textToParse) {
-        super(documentIndex, documentId, textToParse);
+        this(documentIndex, documentId, new ReadabilityStatistics(new TextParser(textToParse)));
+    }
+
+    public SMOGIndex(int documentIndex, String documentId, ReadabilityStatistics statistics) {
+        super(documentIndex, documentId, statistics);
 
         smogIndex = calculateIndex(text);
     }
@@ -16,7 +20,7 @@ public class SMOGIndex extends ReadabilityIndex {
     Mc Laughlin, G. Harry. “SMOG Grading-a New Readability Formula.” Journal of Reading 12, no. 8 (1969): 639–46. http://www.jstor.org/stable/40011226.
      */
     @Override
-    protected double calculateIndex(TextParser text) {
+    protected double calculateIndex(ReadabilityStatistics text) {
         double polysyllablesWordsPerSentence = (double) text.getWordsWithMoreThanTwoSyllablesCount() / text.getSentencesCount();
 
         double result = 1.043 * Math.sqrt(30 * polysyllablesWordsPerSentence) + 3.1291;
@@ -25,10 +25,11 @@ import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TopDocs;
 import org.voyanttools.trombone.lucene.CorpusMapper;
+import org.voyanttools.trombone.lucene.analysis.AnalysisContext;
 import org.voyanttools.trombone.lucene.analysis.LexicalAnalyzer;
 import org.voyanttools.trombone.model.Confidence;
 import org.voyanttools.trombone.model.Confidence.Type;
-import org.voyanttools.trombone.model.CorpusTermMinimalsDB;
+import org.voyanttools.trombone.model.CorpusTermStats;
 import org.voyanttools.trombone.model.DocumentLocationToken;
 import org.voyanttools.trombone.model.DocumentNgram;
 import org.voyanttools.trombone.model.Keywords;
@@ -51,7 +52,7 @@ public class GeonamesAnnotator {
 		this.parameters = parameters;
 	}
 	
-	public List<DocumentLocationToken> getDocumentLocationTokens(CorpusMapper corpusMapper, FlexibleParameters parameters) throws IOException {		CorpusTermMinimalsDB corpusTermMinimalsDB = CorpusTermMinimalsDB.getInstance(corpusMapper, TokenType.lexical); // quick lookup
+	public List<DocumentLocationToken> getDocumentLocationTokens(CorpusMapper corpusMapper, FlexibleParameters parameters) throws IOException {		CorpusTermStats corpusTermStats = CorpusTermStats.getInstance(corpusMapper, TokenType.lexical); // quick lookup
 		IndexSearcher searcher = corpusMapper.getSearcher();
 		Analyzer analyzer = new LexicalAnalyzer();
 		Location reusableLocation = new Location();
@@ -91,13 +92,13 @@ public class GeonamesAnnotator {
 						// for every location form, we'll analyze the full form (all words) and
 						// make sure that they're all located in our corpus
 						words.clear();
-						TokenStream tokenStream = analyzer.tokenStream("lexical", locationString+"<!-- lang="+lang+" -->");
+						TokenStream tokenStream = AnalysisContext.getInstance(lang, "").tokenStream(analyzer, "lexical", locationString);
 						CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
 						tokenStream.reset();
 						String word;
 						while (tokenStream.incrementToken()) {
 							word = term.toString();
-							if (corpusTermMinimalsDB.exists(word)) {
+							if (corpusTermStats.exists(word)) {
 								words.add(word);				
 							} else {
 								words.clear();
@@ -144,7 +145,6 @@ public class GeonamesAnnotator {
 			iterator.close();			
 		}
 		analyzer.close();
-		corpusTermMinimalsDB.close();
 		List<DocumentLocationToken> documentLocationTokens = new ArrayList<DocumentLocationToken>();
 		if (formsToGeonameIds.isEmpty()) {return documentLocationTokens;}
 
@@ -33,6 +33,7 @@ import org.voyanttools.trombone.lucene.LuceneManager;
 import org.voyanttools.trombone.nlp.NlpFactory;
 import org.voyanttools.trombone.storage.Storage.Location;
 import org.voyanttools.trombone.storage.file.FileMigrator;
+import org.voyanttools.trombone.tool.util.ToolRunnerCache;
 
 /**
  * This interface defines methods for interacting with stored objects using a storage strategy defined by the
@@ -91,6 +92,17 @@ public interface Storage {
 	
 	public Object retrieve(String id, Location location) throws IOException, ClassNotFoundException;
 	
+	/**
+	 * Delete the stored string or object with the specified ID.
+	 * @param id the ID of the stored resource
+	 * @param location the {@link Location} of the stored resource
+	 * @return whether or not a stored resource was deleted
+	 * @throws IOException thrown if an exception occurs during deletion (or if this storage doesn't support it)
+	 */
+	public default boolean delete(String id, Location location) throws IOException {
+		throw new IOException("This storage doesn't support deleting stored resources.");
+	}
+	
 //	public Reader retrieveCachedStringReader(String id) throws IOException;
 
 	public CorpusStorage getCorpusStorage();
@@ -130,4 +142,13 @@ public interface Storage {
 	
 	public NlpFactory getNlpAnnotatorFactory();
 	
+	/**
+	 * Get the {@link ToolRunnerCache} that manages cached results for this storage. By default the
+	 * cache isn't indexed, results are read and written as they are stored and never evicted.
+	 * @return the {@link ToolRunnerCache}
+	 */
+	public default ToolRunnerCache getToolRunnerCache() {
+		return ToolRunnerCache.getUnindexedCache(this);
+	}
+	
 }
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.storage;
+
+/**
+ * A key for in-process caches of objects that are read from (or built for) a {@link Storage}.
+ * The storage is compared by identity, so that different storages never share entries even
+ * when they contain objects with the same name.
+ */
+public class StorageCacheKey {
+	
+	private Storage storage;
+	
+	private String name;
+	
+	public StorageCacheKey(Storage storage, String name) {
+		this.storage = storage;
+		this.name = name;
+	}
+	
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(storage)*31+name.hashCode();
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof StorageCacheKey == false) {return false;}
+		StorageCacheKey key = (StorageCacheKey) obj;
+		return storage==key.storage && name.equals(key.name);
+	}
+}
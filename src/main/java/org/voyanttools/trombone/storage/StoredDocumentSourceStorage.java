@@ -84,6 +84,25 @@ public interface StoredDocumentSourceStorage {
 	public InputStream getStoredDocumentSourceInputStream(String id)
 			throws IOException;
 
+	/**
+	 * Get a range of characters of the (UTF-8) text of the
+	 * {@link StoredDocumentSource} specified by the ID. Implementations may
+	 * avoid decoding the whole text, which matters for large documents from
+	 * which only short contexts are needed. The range is clamped to the text.
+	 * 
+	 * @param id
+	 *            the ID of the {@link StoredDocumentSource}
+	 * @param start
+	 *            the start character offset (inclusive)
+	 * @param end
+	 *            the end character offset (exclusive)
+	 * @return the characters in the specified range
+	 * @throws IOException
+	 *             an IO exception during retrieval of the text
+	 */
+	public String getStoredDocumentSourceString(String id, int start, int end)
+			throws IOException;
+
 	/**
 	 * Get a list of expanded {@link StoredDocumentSource}s for the
 	 * {@link StoredDocumentSource} specified by the ID (or an empty list of no
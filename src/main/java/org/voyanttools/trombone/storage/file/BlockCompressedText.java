@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.storage.file;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A read-only, memory-mapped text that is stored as a sequence of independently
+ * deflated blocks along with an index of their character and byte offsets. This
+ * allows a character range to be retrieved by inflating only the blocks that
+ * it covers rather than the whole text.
+ * 
+ * The file consists of a header (version, length in characters, number of
+ * blocks), the character offsets and the byte offsets of each block (with a
+ * trailing entry for the end of the text) and then the compressed UTF-8 blocks.
+ */
+class BlockCompressedText {
+	
+	private static final int VERSION = 1;
+	
+	/**
+	 * the default number of characters per block
+	 */
+	static final int DEFAULT_BLOCK_SIZE = 16384;
+	
+	// the number of most recently inflated blocks to keep (contexts tend to cluster)
+	private static final int CACHED_BLOCKS = 2;
+	
+	private final ByteBuffer data;
+	
+	private final int length;
+	
+	private final int[] charOffsets;
+	
+	private final int[] byteOffsets;
+	
+	private final Map<Integer, String> blocks = new LinkedHashMap<Integer, String>(CACHED_BLOCKS*2, .75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+			return size() > CACHED_BLOCKS;
+		}
+	};
+	
+	private BlockCompressedText(MappedByteBuffer buffer) throws IOException {
+		if (buffer.getInt()!=VERSION) {
+			throw new IOException("Unrecognized block compressed text version.");
+		}
+		length = buffer.getInt();
+		int blocksCount = buffer.getInt();
+		charOffsets = new int[blocksCount+1];
+		for (int i=0; i<=blocksCount; i++) {
+			charOffsets[i] = buffer.getInt();
+		}
+		byteOffsets = new int[blocksCount+1];
+		for (int i=0; i<=blocksCount; i++) {
+			byteOffsets[i] = buffer.getInt();
+		}
+		data = buffer.slice();
+	}
+	
+	/**
+	 * Open (map) an existing block compressed text file.
+	 * 
+	 * @param file the file to open
+	 * @return the mapped text
+	 * @throws IOException an IO exception while mapping the file
+	 */
+	static BlockCompressedText open(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			// the mapping remains valid after the channel is closed
+			return new BlockCompressedText(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		finally {
+			randomAccessFile.close();
+		}
+	}
+	
+	/**
+	 * Write the string as a block compressed text file.
+	 * 
+	 * @param string the text to write
+	 * @param file the destination file
+	 * @param blockSize the (maximum) number of characters per block
+	 * @throws IOException an IO exception while writing
+	 */
+	static void write(String string, File file, int blockSize) throws IOException {
+		write(new StringReader(string), file, blockSize);
+	}
+	
+	/**
+	 * Write the text from the reader as a block compressed text file, the text is
+	 * read one block at a time so only the compressed blocks are held in memory.
+	 * The file is written to a temporary file first and then moved into place so
+	 * that concurrent readers never see a partial file.
+	 * 
+	 * @param reader the text to write
+	 * @param file the destination file
+	 * @param blockSize the (maximum) number of characters per block
+	 * @throws IOException an IO exception while reading or writing
+	 */
+	static void write(Reader reader, File file, int blockSize) throws IOException {
+		List<byte[]> compressedBlocks = new ArrayList<byte[]>();
+		List<Integer> charOffsets = new ArrayList<Integer>();
+		Deflater deflater = new Deflater();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		char[] chars = new char[blockSize];
+		int length = 0;
+		int count = 0; // the characters in the current block
+		try {
+			while (true) {
+				int read = reader.read(chars, count, blockSize-count);
+				if (read>0) {
+					count+=read;
+					if (count<blockSize) {continue;}
+				}
+				if (count==0) {break;}
+				int end = count;
+				// don't split a surrogate pair across blocks since each block is decoded separately
+				if (read>0 && Character.isHighSurrogate(chars[end-1]) && end>1) {
+					end--;
+				}
+				charOffsets.add(length);
+				deflater.reset();
+				deflater.setInput(new String(chars, 0, end).getBytes(StandardCharsets.UTF_8));
+				deflater.finish();
+				compressed.reset();
+				while (deflater.finished()==false) {
+					compressed.write(buffer, 0, deflater.deflate(buffer));
+				}
+				compressedBlocks.add(compressed.toByteArray());
+				length+=end;
+				
+				// keep any held back character for the next block
+				count-=end;
+				if (count>0) {chars[0] = chars[end];}
+				if (read<0) {break;}
+			}
+		}
+		finally {
+			deflater.end();
+		}
+		
+		File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				out.writeInt(VERSION);
+				out.writeInt(length);
+				out.writeInt(compressedBlocks.size());
+				for (int charOffset : charOffsets) {
+					out.writeInt(charOffset);
+				}
+				out.writeInt(length);
+				int byteOffset = 0;
+				for (byte[] block : compressedBlocks) {
+					out.writeInt(byteOffset);
+					byteOffset+=block.length;
+				}
+				out.writeInt(byteOffset);
+				for (byte[] block : compressedBlocks) {
+					out.write(block);
+				}
+			}
+			finally {
+				out.close();
+			}
+			try {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+	
+	/**
+	 * Get the length of the text in characters.
+	 * 
+	 * @return the length of the text in characters
+	 */
+	int length() {
+		return length;
+	}
+	
+	/**
+	 * Get the characters from the start (inclusive) to the end (exclusive), the
+	 * range is clamped to the text (so an empty string is returned for an
+	 * empty or inverted range).
+	 * 
+	 * @param start the start character offset
+	 * @param end the end character offset
+	 * @return the requested characters
+	 * @throws IOException an IO exception if a block can't be inflated
+	 */
+	String substring(int start, int end) throws IOException {
+		if (start<0) {start=0;}
+		if (end>length) {end=length;}
+		if (start>=end) {return "";}
+		int firstBlock = getBlockIndex(start);
+		int lastBlock = getBlockIndex(end-1);
+		if (firstBlock==lastBlock) {
+			return getBlock(firstBlock).substring(start-charOffsets[firstBlock], end-charOffsets[firstBlock]);
+		}
+		StringBuilder sb = new StringBuilder(end-start);
+		for (int i=firstBlock; i<=lastBlock; i++) {
+			String block = getBlock(i);
+			sb.append(block, Math.max(start-charOffsets[i], 0), Math.min(end-charOffsets[i], block.length()));
+		}
+		return sb.toString();
+	}
+	
+	@Override
+	public String toString() {
+		try {
+			return substring(0, length);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private int getBlockIndex(int offset) {
+		int index = Arrays.binarySearch(charOffsets, 0, charOffsets.length-1, offset);
+		return index < 0 ? -index-2 : index;
+	}
+	
+	private String getBlock(int index) throws IOException {
+		synchronized (blocks) {
+			String block = blocks.get(index);
+			if (block!=null) {return block;}
+		}
+		byte[] compressed = new byte[byteOffsets[index+1]-byteOffsets[index]];
+		ByteBuffer slice = data.duplicate();
+		slice.position(byteOffsets[index]);
+		slice.get(compressed);
+		
+		Inflater inflater = new Inflater();
+		ByteArrayOutputStream inflated = new ByteArrayOutputStream((charOffsets[index+1]-charOffsets[index])*2);
+		byte[] buffer = new byte[8192];
+		try {
+			inflater.setInput(compressed);
+			while (inflater.finished()==false) {
+				int len = inflater.inflate(buffer);
+				if (len==0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("Truncated block in block compressed text: "+index);
+				}
+				inflated.write(buffer, 0, len);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Unable to inflate block in block compressed text: "+index, e);
+		}
+		finally {
+			inflater.end();
+		}
+		String block = new String(inflated.toByteArray(), StandardCharsets.UTF_8);
+		synchronized (blocks) {
+			blocks.put(index, block);
+		}
+		return block;
+	}
+}
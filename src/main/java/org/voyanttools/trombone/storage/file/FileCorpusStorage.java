@@ -36,6 +36,10 @@ import org.voyanttools.trombone.storage.CorpusStorage;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.util.FlexibleParameters;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
 /**
  * @author sgs
  *
@@ -50,6 +54,20 @@ public class FileCorpusStorage implements CorpusStorage {
 	
 	private static String METADATA_FILE_NAME = "metadata.xml"; 
 	private static String PARAMETERS_FILE_NAME = "parameters.xml"; 
+	
+	// the maximum number of documents (summed across corpora) for which we keep corpora in memory
+	private static final long MAX_CACHED_DOCUMENTS = 1000000;
+	
+	// corpora by requested ID (which may be an alias), along with the modification time of their metadata
+	private Cache<String, CachedCorpus> corpusCache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_DOCUMENTS)
+			.weigher(new Weigher<String, CachedCorpus>() {
+				@Override
+				public int weigh(String id, CachedCorpus cachedCorpus) {
+					return cachedCorpus.corpus.getDocumentIds().size()+1;
+				}
+			})
+			.build();
 
 	FileCorpusStorage(Storage storage, File storageLocation) {
 		this.storage = storage;
@@ -66,13 +84,20 @@ public class FileCorpusStorage implements CorpusStorage {
 			CorpusMetadata metadata = new CorpusMetadata(id);
 			File metadataFile = new File(corpusDirectory, METADATA_FILE_NAME);
 			if (metadataFile.exists()) {
+				long lastModified = metadataFile.lastModified();
+				CachedCorpus cachedCorpus = corpusCache.getIfPresent(id);
+				if (cachedCorpus!=null && cachedCorpus.lastModified==lastModified) {
+					return cachedCorpus.corpus;
+				}
 				FlexibleParameters params = FlexibleParameters.loadFlexibleParameters(metadataFile);
 				// if we have an alias, switch the ID
 				if (id.equals(params.getParameterValue("id"))==false) {
 					params.setParameter("alias", id);
 				}
 				metadata = new CorpusMetadata(params);
-				return new Corpus(storage, metadata);
+				Corpus corpus = new Corpus(storage, metadata);
+				corpusCache.put(id, new CachedCorpus(corpus, lastModified));
+				return corpus;
 			}
 			else {
 				throw new IOException("The metadata file for this corpus was not found so the corpus is unusable.");
@@ -111,4 +136,13 @@ public class FileCorpusStorage implements CorpusStorage {
 		return true; // no exception thrown
 	}
 
+	private static class CachedCorpus {
+		private Corpus corpus;
+		private long lastModified;
+		private CachedCorpus(Corpus corpus, long lastModified) {
+			this.corpus = corpus;
+			this.lastModified = lastModified;
+		}
+	}
+
 }
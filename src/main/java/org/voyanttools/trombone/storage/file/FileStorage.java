@@ -55,6 +55,7 @@ import org.voyanttools.trombone.storage.CorpusStorage;
 import org.voyanttools.trombone.storage.DirectoryFactory;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
+import org.voyanttools.trombone.tool.util.ToolRunnerCache;
 import org.voyanttools.trombone.util.FlexibleParameters;
 
 /**
@@ -97,6 +98,8 @@ public class FileStorage implements Storage {
 	
 	private NlpFactory nlpAnnotatorFactory = new NlpFactory();
 	
+	private ToolRunnerCache toolRunnerCache = null;
+	
 	private FlexibleParameters parameters;
 
 	/**
@@ -334,6 +337,12 @@ public class FileStorage implements Storage {
 		return obj;
 	}
 	
+	@Override
+	public boolean delete(String id, Location location) throws IOException {
+		File file = getResourceFile(id, location);
+		return file.exists() && file.delete();
+	}
+	
 	public Writer getStoreWriter(String id, Location location) throws IOException {
 		return getStoreWriter(id, location, false);
 	}
@@ -411,6 +420,14 @@ public class FileStorage implements Storage {
 		return nlpAnnotatorFactory;
 	}
 	
+	@Override
+	public synchronized ToolRunnerCache getToolRunnerCache() {
+		if (toolRunnerCache==null) {
+			toolRunnerCache = new ToolRunnerCache(this, parameters, getObjectStoreDirectory(Location.cache));
+		}
+		return toolRunnerCache;
+	}
+	
 	public File getLocalSourcesDirectory() {
 		File rootData = storageLocation.getParentFile();
 		return new File(rootData, "trombone-local-sources");
@@ -26,9 +26,13 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -40,6 +44,9 @@ import org.voyanttools.trombone.model.StoredDocumentSource;
 import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
 import org.voyanttools.trombone.util.FlexibleParameters;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * This is a file-system based adapter for working with stored document sources.
  * 
@@ -52,6 +59,16 @@ public class FileStoredDocumentSourceStorage implements StoredDocumentSourceStor
 	 */
 	private static final String RAW_BYTES_FILENAME = "raw_bytes.gz";
 
+	/**
+	 * the block compressed text file name (created from the raw bytes when a range of text is first requested)
+	 */
+	private static final String TEXT_BLOCKS_FILENAME = "text_blocks.bin";
+	
+	/**
+	 * the maximum number of mapped texts to keep open
+	 */
+	private static final long MAX_CACHED_TEXTS = 256;
+
 	/**
 	 * the metadata file name
 	 */
@@ -73,6 +90,13 @@ public class FileStoredDocumentSourceStorage implements StoredDocumentSourceStor
 	 * the actual File (directory) for the stored document sources
 	 */
 	private File documentSourcesDirectory;
+	
+	/**
+	 * mapped texts by ID (stored document sources don't change once they're stored)
+	 */
+	private Cache<String, BlockCompressedText> textsCache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_TEXTS)
+			.build();
 
 	/**
 	 * Create a new instance of this object with the specified File (directory)
@@ -198,6 +222,37 @@ public class FileStoredDocumentSourceStorage implements StoredDocumentSourceStor
 		return new GZIPInputStream(fileInputStream);
 	}
 	
+	public String getStoredDocumentSourceString(String id, int start, int end)
+			throws IOException {
+		return getBlockCompressedText(id).substring(start, end);
+	}
+	
+	private BlockCompressedText getBlockCompressedText(final String id) throws IOException {
+		try {
+			return textsCache.get(id, new Callable<BlockCompressedText>() {
+				@Override
+				public BlockCompressedText call() throws IOException {
+					File file = getTextBlocksFile(id);
+					if (file.exists()==false) {
+						InputStream inputStream = getStoredDocumentSourceInputStream(id);
+						try {
+							BlockCompressedText.write(new InputStreamReader(inputStream, StandardCharsets.UTF_8), file, BlockCompressedText.DEFAULT_BLOCK_SIZE);
+						}
+						finally {
+							inputStream.close();
+						}
+					}
+					return BlockCompressedText.open(file);
+				}
+			});
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Unable to open the text of this document: "+id, e.getCause());
+		}
+	}
+	
 	public List<StoredDocumentSource> getMultipleExpandedStoredDocumentSources(
 			String id) throws IOException {
 		return getMultipleExpandedStoredDocumentSources(id, "");
@@ -260,6 +315,19 @@ public class FileStoredDocumentSourceStorage implements StoredDocumentSourceStor
 		return new File(getDocumentSourceDirectory(id), RAW_BYTES_FILENAME);
 	}
 
+	/**
+	 * Get the block compressed text File that corresponds to this ID. This
+	 * method has default visibility for unit tests but should otherwise be
+	 * considered private.
+	 * 
+	 * @param id
+	 *            the ID of the StoredDocumentSource
+	 * @return the block compressed text File for the specified StoredDocumentSource
+	 */
+	File getTextBlocksFile(String id) {
+		return new File(getDocumentSourceDirectory(id), TEXT_BLOCKS_FILENAME);
+	}
+
 	/**
 	 * Get the metadata File that corresponds to this ID. This method has
 	 * default visibility for unit tests but should otherwise be considered
@@ -28,10 +28,10 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -47,6 +47,8 @@ import org.voyanttools.trombone.storage.CorpusStorage;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
 import org.voyanttools.trombone.storage.file.FileMigrator;
+import org.voyanttools.trombone.tool.util.ToolRunnerCache;
+import org.voyanttools.trombone.util.FlexibleParameters;
 
 /**
  * An in-memory implementation of the {@link StoredDocumentSourceStorage}. This
@@ -57,7 +59,7 @@ import org.voyanttools.trombone.storage.file.FileMigrator;
  */
 public class MemoryStorage implements Storage {
 
-	private Map<String, Object> storedObjectsMap = new HashMap<String, Object>();
+	private Map<String, Object> storedObjectsMap = new ConcurrentHashMap<String, Object>(); // concurrent since indexing workers store objects
 	
 	/**
 	 * the {@link StoredDocumentSourceStorage} for this storage
@@ -70,6 +72,8 @@ public class MemoryStorage implements Storage {
 	private LuceneManager notebookLuceneManager = null;
 
 	private NlpFactory nlpAnnotatorFactory = new NlpFactory();
+	
+	private ToolRunnerCache toolRunnerCache = new ToolRunnerCache(this, new FlexibleParameters());
 
 	/**
 	 * Create a new instance of this class.
@@ -180,6 +184,11 @@ public class MemoryStorage implements Storage {
 		return storedObjectsMap.get(id);
 	}
 	
+	@Override
+	public boolean delete(String id, Location location) throws IOException {
+		return storedObjectsMap.remove(id)!=null;
+	}
+	
 	@Override
 	public Reader getStoreReader(String id, Location location) throws IOException {
 		return new StringReader(retrieveString(id, location));
@@ -243,4 +252,9 @@ public class MemoryStorage implements Storage {
 	public NlpFactory getNlpAnnotatorFactory() {
 		return nlpAnnotatorFactory;
 	}
+
+	@Override
+	public ToolRunnerCache getToolRunnerCache() {
+		return toolRunnerCache;
+	}
 }
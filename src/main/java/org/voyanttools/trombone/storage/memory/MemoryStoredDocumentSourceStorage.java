@@ -26,10 +26,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.IOUtils;
 import org.voyanttools.trombone.input.source.InputSource;
@@ -54,6 +56,11 @@ class MemoryStoredDocumentSourceStorage implements StoredDocumentSourceStorage {
 	 */
 	private Map<String, byte[]> byteArraysMap;
 	
+	/**
+	 * a map of IDs to the decoded strings of their byte arrays (when a range has been requested)
+	 */
+	private Map<String, String> stringsMap;
+	
 	/**
 	 * a map of IDs to lists of expanded {@link StoredDocumentSource}s
 	 */
@@ -67,6 +74,7 @@ class MemoryStoredDocumentSourceStorage implements StoredDocumentSourceStorage {
 	MemoryStoredDocumentSourceStorage() {
 		this.storedDocumentSourcesMap = new HashMap<String, StoredDocumentSource>();
 		this.byteArraysMap = new HashMap<String, byte[]>();
+		this.stringsMap = new ConcurrentHashMap<String, String>();
 		this.multipleExpandedStoredDocumentSourcesMap = new HashMap<String, List<StoredDocumentSource>>();
 	}
 
@@ -126,6 +134,17 @@ class MemoryStoredDocumentSourceStorage implements StoredDocumentSourceStorage {
 		return new ByteArrayInputStream(byteArraysMap.get(id));
 	}
 
+	/* (non-Javadoc)
+	 * @see org.voyanttools.trombone.storage.StoredDocumentSourceStorage#getStoredDocumentSourceString(java.lang.String, int, int)
+	 */
+	public String getStoredDocumentSourceString(String id, int start, int end) throws IOException {
+		// stored bytes don't change, so they're only decoded once
+		String string = stringsMap.computeIfAbsent(id, key -> new String(byteArraysMap.get(key), StandardCharsets.UTF_8));
+		if (start<0) {start=0;}
+		if (end>string.length()) {end=string.length();}
+		return start<end ? string.substring(start, end) : "";
+	}
+
 	/* (non-Javadoc)
 	 * @see org.voyanttools.trombone.storage.StoredDocumentSourceStorage#getMultipleExpandedStoredDocumentSources(java.lang.String)
 	 */
@@ -16,8 +16,8 @@ public interface AnalysisTool {
 	
 	public List<RawCATerm> getAnalysisTerms();
 	
-	public double[][] getInput() throws IOException;
+	public FrequencyMatrix getInput() throws IOException;
 	
-	public double[][] runAnalysis(double[][] input) throws IOException;
+	public double[][] runAnalysis(FrequencyMatrix input) throws IOException;
 	
 }
@@ -12,7 +12,12 @@ public class CorrespondenceAnalysis {
 	public static final double SMALL = -1.0e10;
 	public static final double MAXVAL = 1.0e12;
 
-	private double[][] input;
+	private FrequencyMatrix input;
+	
+	/**
+	 * The non-zero values of the input, as proportions of the total.
+	 */
+	private double[] values;
 	
 	private int numRows;
 	private int numColumns;
@@ -24,14 +29,11 @@ public class CorrespondenceAnalysis {
 	
 	private double[] dimensionPercentages;
 
-	public CorrespondenceAnalysis(double[][] input) {
+	public CorrespondenceAnalysis(FrequencyMatrix input) {
 		this.input = input;
 		
-		this.numRows = input.length;
-		this.numColumns = input[0].length;
-		
-		this.rowSums = new double[this.numRows];
-		this.columnSums = new double[this.numColumns];
+		this.numRows = input.getRowsCount();
+		this.numColumns = input.getColumnsCount();
 		
 		this.rowProjections = new double[this.numRows][this.numColumns];
 		this.columnProjections = new double[this.numColumns][this.numColumns];
@@ -42,24 +44,14 @@ public class CorrespondenceAnalysis {
 	public void runAnalysis() {
 		double total = 0.0; 
 
-		for (int i = 0; i < this.numRows; i++) {
-			this.rowSums[i] = 0.0;
-			for (int j = 0; j < this.numColumns; j++) {
-				this.rowSums[i] += input[i][j];
-				total += input[i][j];
-			}  
-		}         
- 
-		for (int j = 0; j < this.numColumns; j++) {
-			this.columnSums[j] = 0.0;
-			for (int i = 0; i <this.numRows; i++) this.columnSums[j] += input[i][j];
-		}
+		this.rowSums = input.getRowSums();
+		this.columnSums = input.getColumnSums();
+		for (int k = 0, end = input.getRowStart(this.numRows); k < end; k++) total += input.getValue(k);
 
 		for (int i = 0; i < this.numRows; i++) this.rowSums[i] /= total;
 		for (int j = 0; j < this.numColumns; j++) this.columnSums[j] /= total;
-		for (int i = 0; i < this.numRows; i++) {
-			for (int j = 0; j < this.numColumns; j++) input[i][j] /= total;
-		}
+		this.values = new double[input.getRowStart(this.numRows)];
+		for (int k = 0; k < this.values.length; k++) this.values[k] = input.getValue(k) / total;
 
 		double[] eigenValues = new double[this.numColumns];
 		double[][] eigenVectors = new double[this.numColumns][this.numColumns];
@@ -74,11 +66,14 @@ public class CorrespondenceAnalysis {
 
 	private void diagonalization (double[][] CP, double[] Evals, double[][] Evex, double[] rate) {
 
-		for (int j1 = 0; j1 < this.numColumns; j1++) {
-			for (int j2 = 0; j2 < this.numColumns; j2++) {
-				CP[j1][j2] = 0.0;
-				for (int i = 0; i < this.numRows; i++) {
-					double r = ( input[i][j1] * input[i][j2] ) / ( this.rowSums[i] * Math.sqrt(this.columnSums[j1]*this.columnSums[j2]) );
+		// only pairs of non-zero values in the same row contribute to the cross products
+		for (int i = 0; i < this.numRows; i++) {
+			if (this.rowSums[i] == 0) {continue;}
+			for (int k1 = input.getRowStart(i), end = input.getRowEnd(i); k1 < end; k1++) {
+				int j1 = input.getColumn(k1);
+				for (int k2 = input.getRowStart(i); k2 < end; k2++) {
+					int j2 = input.getColumn(k2);
+					double r = ( values[k1] * values[k2] ) / ( this.rowSums[i] * Math.sqrt(this.columnSums[j1]*this.columnSums[j2]) );
 					CP[j1][j2] +=  r;
 					if (Double.isNaN(CP[j1][j2])) {
 						CP[j1][j2] = 0.0;
@@ -145,8 +140,8 @@ public class CorrespondenceAnalysis {
 		for (int i = 0; i < this.numRows; i++) {
 			for (int j1 = 0; j1 < this.numColumns; j1++) {
 				rowproj[i][j1] = 0.0; 
-				for (int j2 = 0; j2 < this.numColumns; j2++) {
-					rowproj[i][j1] += input[i][j2] * Evex[j2][j1];
+				for (int k = input.getRowStart(i), end = input.getRowEnd(i); k < end; k++) {
+					rowproj[i][j1] += values[k] * Evex[input.getColumn(k)][j1];
 				}
 				if (this.rowSums[i] >= EPS) rowproj[i][j1] /= this.rowSums[i];
 				if (this.rowSums[i] < EPS) rowproj[i][j1] = 0.0;
@@ -0,0 +1,158 @@
+package org.voyanttools.trombone.tool.analysis;
+
+import java.util.Arrays;
+
+/**
+ * A sparse matrix of frequencies (such as terms by documents or by bins), where
+ * only the non-zero values of each row are stored. Rows are added in order and
+ * the matrix can't be modified once they've been added.
+ */
+public class FrequencyMatrix {
+
+	private int columnsCount;
+
+	private int rowsCount = 0;
+
+	/**
+	 * The offset of each row in {@link #columns} and {@link #values}, with an extra
+	 * one for the end of the last row.
+	 */
+	private int[] rowOffsets = new int[]{0};
+
+	private int[] columns = new int[16];
+
+	private double[] values = new double[16];
+
+	public FrequencyMatrix(int columnsCount) {
+		this.columnsCount = columnsCount;
+	}
+
+	/**
+	 * Create a new matrix from all of its values.
+	 * @param rows the rows of the matrix, which all have the same number of columns
+	 */
+	public FrequencyMatrix(double[][] rows) {
+		this(rows.length==0 ? 0 : rows[0].length);
+		for (double[] row : rows) {
+			addRow(row);
+		}
+	}
+
+	/**
+	 * Add a row from all of its values (zeros are skipped).
+	 * @param row the values of the row, one per column
+	 */
+	public void addRow(double[] row) {
+		if (row.length!=columnsCount) {
+			throw new IllegalArgumentException("Rows should have "+columnsCount+" columns, not "+row.length);
+		}
+		int offset = rowOffsets[rowsCount];
+		for (int column=0; column<columnsCount; column++) {
+			if (row[column]!=0) {
+				if (offset==columns.length) {
+					columns = Arrays.copyOf(columns, offset*2);
+					values = Arrays.copyOf(values, offset*2);
+				}
+				columns[offset] = column;
+				values[offset++] = row[column];
+			}
+		}
+		if (rowsCount+1==rowOffsets.length) {
+			rowOffsets = Arrays.copyOf(rowOffsets, rowOffsets.length*2);
+		}
+		rowOffsets[++rowsCount] = offset;
+	}
+
+	public int getRowsCount() {
+		return rowsCount;
+	}
+
+	public int getColumnsCount() {
+		return columnsCount;
+	}
+
+	/**
+	 * Get the index of the first non-zero value of this row, to use with {@link #getColumn(int)} and {@link #getValue(int)}.
+	 */
+	public int getRowStart(int row) {
+		return rowOffsets[row];
+	}
+
+	/**
+	 * Get the index after the last non-zero value of this row.
+	 */
+	public int getRowEnd(int row) {
+		return rowOffsets[row+1];
+	}
+
+	public int getColumn(int index) {
+		return columns[index];
+	}
+
+	public double getValue(int index) {
+		return values[index];
+	}
+
+	public double get(int row, int column) {
+		int index = Arrays.binarySearch(columns, rowOffsets[row], rowOffsets[row+1], column);
+		return index < 0 ? 0 : values[index];
+	}
+
+	public double[] getRowSums() {
+		double[] sums = new double[rowsCount];
+		for (int row=0; row<rowsCount; row++) {
+			for (int i=rowOffsets[row], end=rowOffsets[row+1]; i<end; i++) {
+				sums[row] += values[i];
+			}
+		}
+		return sums;
+	}
+
+	public double[] getColumnSums() {
+		double[] sums = new double[columnsCount];
+		for (int i=0, end=rowOffsets[rowsCount]; i<end; i++) {
+			sums[columns[i]] += values[i];
+		}
+		return sums;
+	}
+
+	/**
+	 * Get a new matrix where each row is a column of this one.
+	 */
+	public FrequencyMatrix transpose() {
+		int count = rowOffsets[rowsCount];
+		FrequencyMatrix transposed = new FrequencyMatrix(rowsCount);
+		transposed.rowsCount = columnsCount;
+		transposed.rowOffsets = new int[columnsCount+1];
+		transposed.columns = new int[Math.max(count, 1)];
+		transposed.values = new double[Math.max(count, 1)];
+		for (int i=0; i<count; i++) {
+			transposed.rowOffsets[columns[i]+1]++;
+		}
+		for (int column=0; column<columnsCount; column++) {
+			transposed.rowOffsets[column+1] += transposed.rowOffsets[column];
+		}
+		int[] offsets = Arrays.copyOf(transposed.rowOffsets, columnsCount);
+		for (int row=0; row<rowsCount; row++) {
+			for (int i=rowOffsets[row], end=rowOffsets[row+1]; i<end; i++) {
+				int offset = offsets[columns[i]]++;
+				transposed.columns[offset] = row;
+				transposed.values[offset] = values[i];
+			}
+		}
+		return transposed;
+	}
+
+	/**
+	 * Get a dense copy of this matrix, for analyses that need one.
+	 */
+	public double[][] toArray() {
+		double[][] array = new double[rowsCount][columnsCount];
+		for (int row=0; row<rowsCount; row++) {
+			for (int i=rowOffsets[row], end=rowOffsets[row+1]; i<end; i++) {
+				array[row][columns[i]] = values[i];
+			}
+		}
+		return array;
+	}
+}
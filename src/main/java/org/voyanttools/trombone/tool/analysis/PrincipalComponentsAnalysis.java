@@ -20,7 +20,7 @@ import Jama.Matrix;
 
 public class PrincipalComponentsAnalysis {
 
-	private double[][] input;
+	private FrequencyMatrix input;
 	
 	private Matrix covMatrix;
 	private EigenvalueDecomposition eigenstuff;
@@ -29,12 +29,12 @@ public class PrincipalComponentsAnalysis {
 	private SortedSet<PrincipleComponent> principleComponents;
 	private double[] means;
 
-	public PrincipalComponentsAnalysis(double[][] input) {
+	public PrincipalComponentsAnalysis(FrequencyMatrix input) {
 		this.input = input;
 	}
 
 	public void runAnalysis() {
-		this.means = new double[input[0].length];
+		this.means = new double[input.getColumnsCount()];
 		double[][] cov = getCovariance(input, this.means);
 		this.covMatrix = new Matrix(cov);
 		this.eigenstuff = this.covMatrix.eig();
@@ -54,16 +54,26 @@ public class PrincipalComponentsAnalysis {
 	}
 	
 	public double[][] getResult(int dimensions) {
-		double[][] matrixAdjusted = PrincipalComponentsAnalysis.getMeanAdjusted(input, getMeans());
-	    Matrix adjustedInput = new Matrix(matrixAdjusted);
+	    double[][] features = PrincipalComponentsAnalysis.getDominantComponentsMatrix(getDominantComponents(dimensions)).getArray();
+	    int components = features[0].length;
 	    
-	    Matrix features = PrincipalComponentsAnalysis.getDominantComponentsMatrix(getDominantComponents(dimensions));
-
-	    Matrix featuresXpose = features.transpose();
-
-	    Matrix xformedData = featuresXpose.times(adjustedInput.transpose());
-
-	    double[][] result = xformedData.transpose().getArray();
+	    // project the mean-adjusted input, subtracting the projection of the means rather than adjusting every value
+	    double[] meansProjection = new double[components];
+	    for (int j = 0; j < means.length; j++) {
+	    	for (int k = 0; k < components; k++) {
+	    		meansProjection[k] += means[j] * features[j][k];
+	    	}
+	    }
+	    double[][] result = new double[input.getRowsCount()][components];
+	    for (int i = 0; i < result.length; i++) {
+	    	for (int k = 0; k < components; k++) {
+	    		double value = 0;
+	    		for (int index = input.getRowStart(i), end = input.getRowEnd(i); index < end; index++) {
+	    			value += input.getValue(index) * features[input.getColumn(index)][k];
+	    		}
+	    		result[i][k] = value - meansProjection[k];
+	    	}
+	    }
 	    
 	    return result;
 	}
@@ -247,6 +257,44 @@ public class PrincipalComponentsAnalysis {
 		}
 	}
 
+	/**
+	 * Gives the covariance between the columns of a sparse matrix, from the products of
+	 * the non-zero values in each row.
+	 */
+	public static double[][] getCovariance(FrequencyMatrix input, double[] meanValues) {
+		int numDataVectors = input.getRowsCount();
+		int n = input.getColumnsCount();
+
+		double[] mean = input.getColumnSums();
+		for (int i = 0; i < n; i++) {
+			mean[i] = mean[i] / numDataVectors;
+		}
+
+		double[][] products = new double[n][n];
+		for (int row = 0; row < numDataVectors; row++) {
+			for (int a = input.getRowStart(row), end = input.getRowEnd(row); a < end; a++) {
+				double value = input.getValue(a);
+				double[] columnProducts = products[input.getColumn(a)];
+				for (int b = a; b < end; b++) {
+					columnProducts[input.getColumn(b)] += value * input.getValue(b);
+				}
+			}
+		}
+
+		double[][] ret = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = i; j < n; j++) {
+				double v = (products[i][j] - numDataVectors * mean[i] * mean[j]) / (numDataVectors - 1);
+				ret[i][j] = v;
+				ret[j][i] = v;
+			}
+		}
+		if (meanValues != null) {
+			System.arraycopy(mean, 0, meanValues, 0, mean.length);
+		}
+		return ret;
+	}
+
 	public static double[][] getCovariance(double[][] input, double[] meanValues) {
 		int numDataVectors = input.length;
 		int n = input[0].length;
@@ -44,8 +44,8 @@ public class TSNEAnalysis {
 	
 	private double[][] result;
 	
-	public TSNEAnalysis(double[][] input) {
-		this.input = input;
+	public TSNEAnalysis(FrequencyMatrix input) {
+		this.input = input.toArray(); // the Barnes-Hut implementation needs dense rows
 		theta = (float) defaultTheta;
 	}
 
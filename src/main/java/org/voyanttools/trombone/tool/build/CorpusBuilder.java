@@ -34,8 +34,7 @@ import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.model.Corpus;
 import org.voyanttools.trombone.model.CorpusAccess;
 import org.voyanttools.trombone.model.CorpusMetadata;
-import org.voyanttools.trombone.model.CorpusTermMinimal;
-import org.voyanttools.trombone.model.CorpusTermMinimalsDB;
+import org.voyanttools.trombone.model.CorpusTermStats;
 import org.voyanttools.trombone.model.DocumentFormat;
 import org.voyanttools.trombone.model.IndexedDocument;
 import org.voyanttools.trombone.model.StoredDocumentSource;
@@ -164,29 +163,61 @@ public class CorpusBuilder extends AbstractTool {
 	private void indexCorpusTerms(Corpus corpus) throws IOException {
 		
 		CorpusMapper corpusMapper = new CorpusMapper(storage, corpus);
-		if (corpus.size()>0) {
-			indexCorpusTerms(corpusMapper, corpus, TokenType.lexical);
-			
-			// build lemmatized forms if requested (assumes lemmatization has been done upstream)
-			if (parameters.getParameterBooleanValue("lemmatize")) {
-				indexCorpusTerms(corpusMapper, corpus, TokenType.lemma);
+		try {
+			if (corpus.size()>0) {
+				
+				// if this is an edit of an existing corpus then we can update its values instead of starting over
+				Corpus previousCorpus = getPreviousCorpus();
+				CorpusMapper previousCorpusMapper = null;
+				if (previousCorpus!=null) {
+					corpus.cacheCommonDocumentValues(previousCorpus);
+					// hold the previous corpus' reader so that it stays open while we read from it
+					previousCorpusMapper = CorpusMapper.getInstance(storage, previousCorpus);
+					while (previousCorpusMapper.tryAcquire()==false) {
+						previousCorpusMapper = CorpusMapper.getInstance(storage, previousCorpus);
+					}
+				}
+				
+				try {
+					indexCorpusTerms(corpusMapper, corpus, TokenType.lexical, previousCorpusMapper);
+					
+					// build lemmatized forms if requested (assumes lemmatization has been done upstream)
+					if (parameters.getParameterBooleanValue("lemmatize")) {
+						indexCorpusTerms(corpusMapper, corpus, TokenType.lemma, previousCorpusMapper);
+					}
+				}
+				finally {
+					if (previousCorpusMapper!=null) {
+						previousCorpusMapper.release();
+					}
+				}
 			}
-		}		
+		}
+		finally {
+			corpusMapper.release(); // this mapper isn't cached, so its reader is no longer needed
+		}
+	}
+	
+	private Corpus getPreviousCorpus() throws IOException {
+		String previousCorpusId = parameters.getParameterValue("previousCorpus", "");
+		if (previousCorpusId.isEmpty()==false && storage.getCorpusStorage().corpusExists(previousCorpusId)) {
+			return storage.getCorpusStorage().getCorpus(previousCorpusId);
+		}
+		return null;
 	}
-	private void indexCorpusTerms(CorpusMapper corpusMapper, Corpus corpus, TokenType tokenType) throws IOException {
+	
+	private void indexCorpusTerms(CorpusMapper corpusMapper, Corpus corpus, TokenType tokenType, CorpusMapper previousCorpusMapper) throws IOException {
 		boolean verbose = parameters.getParameterBooleanValue("verbose");
 		Calendar start = Calendar.getInstance();
 		if (verbose) {log("Starting corpus terms index "+tokenType.name()+".");}
-		// create and close to avoid concurrent requests later 
-		CorpusTermMinimalsDB corpusTermMinimalsDB = CorpusTermMinimalsDB.getInstance(corpusMapper, tokenType);
+		// build now to avoid concurrent requests later
+		CorpusTermStats corpusTermStats = CorpusTermStats.getInstance(corpusMapper, tokenType, previousCorpusMapper);
 		
 		int totalWordTokens = 0;
-		int totalWordTypes = 0;
-		for (CorpusTermMinimal corpusTermMinimal : corpusTermMinimalsDB.values()) {
-			totalWordTokens += corpusTermMinimal.getRawFreq();
-			totalWordTypes++;
+		int totalWordTypes = corpusTermStats.size();
+		for (int i=0; i<totalWordTypes; i++) {
+			totalWordTokens += corpusTermStats.getRawFreq(i);
 		}
-		corpusTermMinimalsDB.close();
 		
 		CorpusMetadata metadata = corpus.getCorpusMetadata();
 		metadata.setCreatedTime(Calendar.getInstance().getTimeInMillis());
@@ -33,6 +33,7 @@ import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
 import org.voyanttools.trombone.tool.util.AbstractTool;
 import org.voyanttools.trombone.util.FlexibleParameters;
+import org.voyanttools.trombone.util.PipelineQueue;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamOmitField;
@@ -59,6 +60,10 @@ class DocumentExpander extends AbstractTool {
 
 	@Override
 	public void run() throws IOException {
+		run(getExpandableStoredDocumentSources());
+	}
+	
+	List<StoredDocumentSource> getExpandableStoredDocumentSources() throws IOException {
 		String sid = parameters.getParameterValue("storedId");
 		List<String> ids = storage.retrieveStrings(sid, Storage.Location.object);
 		StoredDocumentSourceStorage storedDocumentStorage = storage.getStoredDocumentSourceStorage();
@@ -69,12 +74,28 @@ class DocumentExpander extends AbstractTool {
 			StoredDocumentSource storedDocumentSource = new StoredDocumentSource(id, metadata);
 			expandableStoredDocumentSources.add(storedDocumentSource);
 		}
-
-		run(expandableStoredDocumentSources);
-
+		return expandableStoredDocumentSources;
 	}
 	
 	void run(List<StoredDocumentSource> expandableStoredDocumentSources) throws IOException {
+		try {
+			run(expandableStoredDocumentSources, null);
+		} catch (InterruptedException e) {
+			// only possible when adding to a queue
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Expand the documents, adding each expanded document to the queue (if it
+	 * isn't null) so that the next step can start before expansion is done.
+	 * The queue is closed once all documents have been expanded.
+	 * @param expandableStoredDocumentSources the documents to expand
+	 * @param queue the queue to which expanded documents are added, or null
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	void run(List<StoredDocumentSource> expandableStoredDocumentSources, PipelineQueue<StoredDocumentSource> queue) throws IOException, InterruptedException {
 		
 		Calendar start = Calendar.getInstance();
 		log("Starting document expansion.");
@@ -84,7 +105,15 @@ class DocumentExpander extends AbstractTool {
 		StoredDocumentSourceExpander expander = new StoredDocumentSourceExpander(storedDocumentStorage, parameters);
 		
 		for (StoredDocumentSource storedDocumentSource : expandableStoredDocumentSources) {
-			storedDocumentSources.addAll(expander.getExpandedStoredDocumentSources(storedDocumentSource));
+			for (StoredDocumentSource expandedStoredDocumentSource : expander.getExpandedStoredDocumentSources(storedDocumentSource)) {
+				storedDocumentSources.add(expandedStoredDocumentSource);
+				if (queue!=null) {
+					queue.put(expandedStoredDocumentSource);
+				}
+			}
+		}
+		if (queue!=null) {
+			queue.close();
 		}
 		
 		if (storedDocumentSources.isEmpty()) {
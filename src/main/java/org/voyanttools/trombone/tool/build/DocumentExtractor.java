@@ -35,6 +35,7 @@ import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
 import org.voyanttools.trombone.tool.util.AbstractTool;
 import org.voyanttools.trombone.util.FlexibleParameters;
+import org.voyanttools.trombone.util.PipelineQueue;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamOmitField;
@@ -76,6 +77,19 @@ class DocumentExtractor extends AbstractTool {
 	}
 	
 	void run(List<StoredDocumentSource> extractableStoredDocumentSources) throws IOException {
+		run(extractableStoredDocumentSources, null);
+	}
+	
+	/**
+	 * Extract the documents as they become available, adding each extracted
+	 * document to the queue (if it isn't null) so that the next step can start
+	 * before extraction is done. The queue is closed once all documents have
+	 * been extracted, the documents are sorted afterwards.
+	 * @param extractableStoredDocumentSources the documents to extract (possibly from a {@link PipelineQueue})
+	 * @param queue the queue to which extracted documents are added, or null
+	 * @throws IOException
+	 */
+	void run(Iterable<StoredDocumentSource> extractableStoredDocumentSources, PipelineQueue<StoredDocumentSource> queue) throws IOException {
 		
 		Calendar start = Calendar.getInstance();
 		log("Starting document extraction.");
@@ -87,7 +101,15 @@ class DocumentExtractor extends AbstractTool {
 		} else {
 			extractor = new StoredDocumentSourceExtractor(storedDocumentStorage, parameters);
 		}
-		storedDocumentSources = extractor.getExtractedStoredDocumentSources(extractableStoredDocumentSources);
+		storedDocumentSources = extractor.getExtractedStoredDocumentSources(extractableStoredDocumentSources, queue);
+		if (queue!=null) {
+			try {
+				queue.close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Document extraction has been interrupted.", e);
+			}
+		}
 		
 		// sort documents if needed
 		if (parameters.containsKey("sort")) {
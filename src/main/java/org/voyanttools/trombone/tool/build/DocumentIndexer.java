@@ -34,6 +34,7 @@ import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
 import org.voyanttools.trombone.tool.util.AbstractTool;
 import org.voyanttools.trombone.util.FlexibleParameters;
+import org.voyanttools.trombone.util.PipelineQueue;
 
 import com.thoughtworks.xstream.annotations.XStreamOmitField;
 
@@ -83,6 +84,28 @@ class DocumentIndexer extends AbstractTool {
 		
 	}
 
+	/**
+	 * Determine whether documents can be indexed as they're extracted (see {@link LuceneIndexer#isIndexableBeforeCorpus()}).
+	 * @return whether documents can be indexed as they're extracted
+	 * @throws IOException
+	 */
+	boolean isIndexableBeforeCorpus() throws IOException {
+		return new LuceneIndexer(storage, parameters).isIndexableBeforeCorpus();
+	}
+	
+	/**
+	 * Index documents as they become available, before the corpus is known, this step still needs to
+	 * be run afterwards with the corpus documents but the documents will have been indexed already.
+	 * @param indexableStoredDocumentSources the documents to index (possibly from a {@link PipelineQueue})
+	 * @throws IOException
+	 */
+	void indexBeforeCorpus(Iterable<StoredDocumentSource> indexableStoredDocumentSources) throws IOException {
+		Calendar start = Calendar.getInstance();
+		log("Starting document indexing before corpus.");
+		new LuceneIndexer(storage, parameters).indexBeforeCorpus(indexableStoredDocumentSources);
+		log("Finished document indexing before corpus.", start);
+	}
+
 	List<StoredDocumentSource> getStoredDocumentSources() {
 		return indexableStoredDocumentSources;
 	}
@@ -22,8 +22,15 @@
 package org.voyanttools.trombone.tool.build;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.voyanttools.trombone.model.StoredDocumentSource;
 import org.voyanttools.trombone.storage.Storage;
@@ -34,6 +41,7 @@ import org.voyanttools.trombone.tool.build.DocumentIndexer;
 import org.voyanttools.trombone.tool.build.DocumentStorer;
 import org.voyanttools.trombone.tool.util.AbstractTool;
 import org.voyanttools.trombone.util.FlexibleParameters;
+import org.voyanttools.trombone.util.PipelineQueue;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 
@@ -76,6 +84,14 @@ public class RealCorpusCreator extends AbstractTool {
 			if (steps>0 && ++step>=steps) {return;}
 		}
 		
+		// when running through the next steps in one pass, they can overlap
+		if (nextCorpusCreatorStep.equals("expand") && timeout<=0 && (steps<=0 || steps-step>=3) && parameters.getParameterBooleanValue("noPipeline")==false) {
+			storedDocumentSources = runPipeline(storedDocumentSources);
+			nextCorpusCreatorStep = "corpus";
+			step+=3;
+			if (steps>0 && step>=steps) {return;}
+		}
+		
 		if (nextCorpusCreatorStep.equals("expand")) {
 			DocumentExpander expander = new DocumentExpander(storage, parameters);
 			if (storedDocumentSources==null) {expander.run();}
@@ -119,6 +135,60 @@ public class RealCorpusCreator extends AbstractTool {
 		}
 	}
 	
+	/**
+	 * Run the expand, extract and index steps at once, with bounded queues between them so that documents
+	 * are extracted (and indexed, when possible) as soon as they're expanded, rather than one step after the other.
+	 * @param storedDocumentSources the stored documents to expand or null if they should be read from the storedId parameter
+	 * @return the indexed documents
+	 * @throws IOException
+	 */
+	private List<StoredDocumentSource> runPipeline(List<StoredDocumentSource> storedDocumentSources) throws IOException {
+		
+		DocumentExpander expander = new DocumentExpander(storage, parameters);
+		DocumentExtractor extractor = new DocumentExtractor(storage, parameters);
+		DocumentIndexer indexer = new DocumentIndexer(storage, parameters);
+		
+		List<StoredDocumentSource> expandableStoredDocumentSources = storedDocumentSources==null ? expander.getExpandableStoredDocumentSources() : storedDocumentSources;
+		int capacity = Runtime.getRuntime().availableProcessors()*2;
+		PipelineQueue<StoredDocumentSource> expandedQueue = new PipelineQueue<StoredDocumentSource>(capacity);
+		PipelineQueue<StoredDocumentSource> extractedQueue = indexer.isIndexableBeforeCorpus() ? new PipelineQueue<StoredDocumentSource>(capacity) : null;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		CompletionService<Void> completionService = new ExecutorCompletionService<Void>(executor);
+		List<Callable<Void>> steps = new ArrayList<Callable<Void>>();
+		steps.add(() -> {expander.run(expandableStoredDocumentSources, expandedQueue); return null;});
+		steps.add(() -> {extractor.run(expandedQueue, extractedQueue); return null;});
+		if (extractedQueue!=null) {
+			steps.add(() -> {indexer.indexBeforeCorpus(extractedQueue); return null;});
+		}
+		for (Callable<Void> step : steps) {
+			completionService.submit(step);
+		}
+		
+		// wait for all steps to finish, but stop them all as soon as one fails
+		try {
+			for (int i=0; i<steps.size(); i++) {
+				completionService.take().get();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Corpus creation has been interrupted.", e);
+		} catch (ExecutionException e) {
+			executor.shutdownNow();
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {throw (IOException) cause;}
+			if (cause instanceof RuntimeException) {throw (RuntimeException) cause;}
+			throw new IllegalStateException("An error occurred during corpus creation.", cause);
+		}
+		executor.shutdown();
+		
+		// this is quick when documents have already been indexed, but the corpus still needs to be determined
+		indexer.run(extractor.getStoredDocumentSources());
+		storedId = indexer.getStoredId();
+		return indexer.getStoredDocumentSources();
+	}
+	
 	public String getNextCorpusCreatorStep() {
 		return nextCorpusCreatorStep;
 	}
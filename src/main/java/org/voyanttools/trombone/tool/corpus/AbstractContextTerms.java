@@ -31,17 +31,13 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.lucene.index.LeafReader;
-import org.apache.lucene.index.PostingsEnum;
-import org.apache.lucene.index.Terms;
-import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.spans.SpanQuery;
 import org.apache.lucene.search.spans.Spans;
 import org.apache.lucene.search.vectorhighlight.FieldTermStack.TermInfo;
 import org.apache.lucene.util.BitSet;
-import org.apache.lucene.util.BytesRef;
 import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.lucene.search.FieldPrefixAwareSimpleSpanQueryParser;
+import org.voyanttools.trombone.model.DocumentForwardIndex;
 import org.voyanttools.trombone.model.TokenType;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.util.FlexibleParameters;
@@ -131,9 +127,18 @@ public abstract class AbstractContextTerms extends AbstractTerms {
 		return documentSpansDataMap;
 	}
 
-	protected Map<Integer, TermInfo> getTermsOfInterest(LeafReader LeafReader, int luceneDoc, int lastToken, List<DocumentSpansData> documentSpansData, boolean fill) throws IOException	{
+	protected DocumentForwardIndex getDocumentForwardIndex(CorpusMapper corpusMapper, int luceneDoc) throws IOException {
+		String documentId = corpusMapper.getDocumentIdFromLuceneId(luceneDoc);
+		return DocumentForwardIndex.getInstance(storage, corpusMapper.getLeafReader(), luceneDoc, documentId, tokenType);
+	}
+	
+	protected Map<Integer, TermInfo> getTermsOfInterest(CorpusMapper corpusMapper, int luceneDoc, int lastToken, List<DocumentSpansData> documentSpansData, boolean fill) throws IOException	{
+		return getTermsOfInterest(getDocumentForwardIndex(corpusMapper, luceneDoc), lastToken, documentSpansData, fill);
+	}
+	
+	protected Map<Integer, TermInfo> getTermsOfInterest(DocumentForwardIndex forwardIndex, int lastToken, List<DocumentSpansData> documentSpansData, boolean fill) {
 		Map<Integer, TermInfo> termsOfInterest = getTermsOfInterest(documentSpansData, lastToken, fill);
-		fillTermsOfInterest(LeafReader, luceneDoc, termsOfInterest);
+		fillTermsOfInterest(forwardIndex, termsOfInterest);
 		return termsOfInterest;
 	}
 	
@@ -167,26 +172,13 @@ public abstract class AbstractContextTerms extends AbstractTerms {
 		return termsOfInterest;
 	}
 		
-	private void fillTermsOfInterest(LeafReader LeafReader, int luceneDoc, Map<Integer, TermInfo> termsOfInterest) throws IOException {
-		// fill in terms of interest
-		Terms terms = LeafReader.getTermVector(luceneDoc, tokenType.name());
-		TermsEnum termsEnum = terms.iterator();
-		while(true) {
-			BytesRef term = termsEnum.next();
-			if (term!=null) {
-				String termString = term.utf8ToString();
-				PostingsEnum postingsEnum = termsEnum.postings(null, PostingsEnum.OFFSETS);
-				if (postingsEnum!=null) {
-					postingsEnum.nextDoc();
-					for (int i=0, len = postingsEnum.freq(); i<len; i++) {
-						int pos = postingsEnum.nextPosition();
-						if (termsOfInterest.containsKey(pos)) {
-							termsOfInterest.put(pos, new TermInfo(termString, postingsEnum.startOffset(), postingsEnum.endOffset(), pos, 1));
-						}
-					}
-				}
+	private void fillTermsOfInterest(DocumentForwardIndex forwardIndex, Map<Integer, TermInfo> termsOfInterest) {
+		// fill in terms of interest by reading only the positions we need from the forward index
+		for (Map.Entry<Integer, TermInfo> entry : termsOfInterest.entrySet()) {
+			int pos = entry.getKey();
+			if (forwardIndex.hasPosition(pos)) {
+				entry.setValue(forwardIndex.getTermInfo(pos));
 			}
-			else {break;}
 		}
 	}
 		
@@ -31,7 +31,7 @@ import org.voyanttools.trombone.model.Categories;
 import org.voyanttools.trombone.model.Corpus;
 import org.voyanttools.trombone.model.CorpusAccess;
 import org.voyanttools.trombone.model.CorpusAccessException;
-import org.voyanttools.trombone.model.CorpusTermMinimalsDB;
+import org.voyanttools.trombone.model.CorpusTermStats;
 import org.voyanttools.trombone.model.TokenType;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.tool.util.AbstractTool;
@@ -54,7 +54,16 @@ public abstract class AbstractCorpusTool extends AbstractTool {
 	public void run() throws IOException {
 		Corpus corpus = CorpusManager.getCorpus(storage, parameters);
 		CorpusMapper corpusMapper = getCorpusMapper(corpus);
-		run(corpusMapper);
+		// hold the reader so that it stays open while we run, even if the index is refreshed meanwhile
+		while (corpusMapper.tryAcquire()==false) {
+			corpusMapper = getCorpusMapper(corpus);
+		}
+		try {
+			run(corpusMapper);
+		}
+		finally {
+			corpusMapper.release();
+		}
 	}
 	
 	protected CorpusMapper getCorpusMapper(Corpus corpus) throws IOException {
@@ -64,7 +73,7 @@ public abstract class AbstractCorpusTool extends AbstractTool {
 				throw new CorpusAccessException("This tool isn't compatible with the limited access of this corpus.");
 			}
 		}
-		return new CorpusMapper(storage, corpus);
+		return CorpusMapper.getInstance(storage, corpus);
 	}
 	
 	protected List<String> getCorpusStoredDocumentIdsFromParameters(Corpus corpus) throws IOException {
@@ -102,7 +111,7 @@ public abstract class AbstractCorpusTool extends AbstractTool {
 	}
 	
 	protected CorpusMapper getStoredToLuceneDocumentsMapper(Corpus corpus) throws IOException {
-		return new CorpusMapper(storage, corpus);
+		return CorpusMapper.getInstance(storage, corpus);
 	}
 	
 	public abstract void run(CorpusMapper corpusMapper) throws IOException;
@@ -241,7 +250,7 @@ public abstract class AbstractCorpusTool extends AbstractTool {
 		if (keys.stream().noneMatch(s -> s.contains("@"))) {return expandedWords;}
 		
 		Categories categories = Categories.getCategories(storage, corpusMapper.getCorpus(), categoriesName);
-		CorpusTermMinimalsDB corpusTermMinimalsDB = null;
+		CorpusTermStats corpusTermStats = null;
 		TokenType tokenType = TokenType.getTokenTypeForgivingly(parameters.getParameterValue("tokenType", "lexical"));
 
 		
@@ -255,8 +264,8 @@ public abstract class AbstractCorpusTool extends AbstractTool {
 					if (categories.hasCategory(matcher.group(1))) {
 						for (String word : categories.getCategory(matcher.group(1))) {
 							if (word!=null & word.isEmpty()==false) {
-								if (corpusTermMinimalsDB==null) {corpusTermMinimalsDB=CorpusTermMinimalsDB.getInstance(corpusMapper, tokenType);}
-								if (corpusTermMinimalsDB.exists(word) || syntaxPattern.matcher(word).matches()) {
+								if (corpusTermStats==null) {corpusTermStats=CorpusTermStats.getInstance(corpusMapper, tokenType);}
+								if (corpusTermStats.exists(word) || syntaxPattern.matcher(word).matches()) {
 									if (expandedWords.containsKey(key)==false) {
 										expandedWords.put(key, new HashSet<String>());
 									}
@@ -269,11 +278,6 @@ public abstract class AbstractCorpusTool extends AbstractTool {
 			}
 		}
 		
-		// make sure to close if it's been used
-		if (corpusTermMinimalsDB!=null) {
-			corpusTermMinimalsDB.close();
-		}
-		
 		return expandedWords;
 	}
 
@@ -12,6 +12,7 @@ import org.voyanttools.trombone.model.TokenType;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.tool.analysis.AnalysisUtils;
 import org.voyanttools.trombone.tool.analysis.CorrespondenceAnalysis;
+import org.voyanttools.trombone.tool.analysis.FrequencyMatrix;
 import org.voyanttools.trombone.tool.util.ToolSerializer;
 import org.voyanttools.trombone.util.FlexibleParameters;
 
@@ -39,12 +40,12 @@ public class CA extends CorpusAnalysisTool {
 	}
 
 	@Override
-	public double[][] getInput() throws IOException {
+	public FrequencyMatrix getInput() throws IOException {
 		return buildFrequencyMatrix(MatrixType.TERM, 2);
 	}
 	
 	@Override
-	public double[][] runAnalysis(double[][] freqMatrix) throws IOException {
+	public double[][] runAnalysis(FrequencyMatrix freqMatrix) throws IOException {
 		ca = new CorrespondenceAnalysis(freqMatrix);
 		ca.runAnalysis();
         
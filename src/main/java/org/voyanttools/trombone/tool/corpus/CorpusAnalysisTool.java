@@ -4,27 +4,21 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.model.Corpus;
 import org.voyanttools.trombone.model.CorpusTerm;
-import org.voyanttools.trombone.model.DocumentTerm;
-import org.voyanttools.trombone.model.RawAnalysisTerm;
+import org.voyanttools.trombone.model.DocumentForwardIndex;
 import org.voyanttools.trombone.model.RawCATerm;
-import org.voyanttools.trombone.model.RawPCATerm;
 import org.voyanttools.trombone.model.TokenType;
 import org.voyanttools.trombone.model.RawCATerm.CategoryType;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.tool.analysis.AnalysisTool;
 import org.voyanttools.trombone.tool.analysis.AnalysisUtils;
+import org.voyanttools.trombone.tool.analysis.FrequencyMatrix;
 import org.voyanttools.trombone.util.FlexibleParameters;
 
 public abstract class CorpusAnalysisTool extends AbstractCorpusTool implements AnalysisTool {
@@ -104,27 +98,27 @@ public abstract class CorpusAnalysisTool extends AbstractCorpusTool implements A
 	 * @return
 	 * @throws IOException
 	 */
-	protected double[][] buildFrequencyMatrix(MatrixType type, int minDims) throws IOException {
+	protected FrequencyMatrix buildFrequencyMatrix(MatrixType type, int minDims) throws IOException {
 		Corpus corpus = corpusMapper.getCorpus();
 		
 		List<String> ids = this.getCorpusStoredDocumentIdsFromParameters(corpus);
-		List<Integer> indexes = new ArrayList<Integer>();
-		for (String id : ids) {
-			int index = corpus.getDocumentPosition(id);
-			indexes.add(index);
-		}
 		int numDocs = ids.size();
 		
-		double[][] freqMatrix;
-		
-		Map<String, float[]> termDistributionsMap = new HashMap<String, float[]>();
-		// if there are enough docs, get document terms
+		FrequencyMatrix freqMatrix;
 		
 		int[] tokenCounts = corpusMapper.getCorpus().getTokensCounts(TokenType.lexical); 
 		
+		// if there are enough docs, get document terms
 		if (numDocs >= minDims) {
 			divisionType = DivisionType.DOCS;
 			
+			// the column of each document in the corpus, -1 for documents that aren't included
+			int[] columns = new int[corpus.size()];
+			Arrays.fill(columns, -1);
+			for (int i = ids.size()-1; i >= 0; i--) {
+				columns[corpus.getDocumentPosition(ids.get(i))] = i;
+			}
+			
 			FlexibleParameters params = parameters.clone();
 			params.setParameter("bins", corpus.size());
 			params.setParameter("withDistributions", "true");
@@ -134,178 +128,119 @@ public abstract class CorpusAnalysisTool extends AbstractCorpusTool implements A
 			CorpusTerms termsList = new CorpusTerms(storage, params);
 			termsList.run(corpusMapper);
 
+			// terms are already sorted by raw frequency, so rows can be added as we go
+			freqMatrix = new FrequencyMatrix(numDocs);
+			double[] row = new double[numDocs];
 			for (CorpusTerm ct : termsList) {
 				String term = ct.getTerm();
 				analysisTerms.add(new RawCATerm(term, ct.getRawFrequency(), ct.getRelativeFrequency(), CategoryType.TERM));
 				
-				if (comparisonType == ComparisonType.RAW) {
-					int[] rawDist = ct.getRawDistributions();
-					float[] rawDistFloat = new float[rawDist.length];
-					for (int i = 0; i < rawDist.length; i++) {
-						rawDistFloat[i] = (float) rawDist[i];
-					}
-					termDistributionsMap.put(term, rawDistFloat);
-				} else if (comparisonType == ComparisonType.TFIDF) {
-					int[] rawDist = ct.getRawDistributions();
-					float[] tfidfDist = new float[rawDist.length];
-					for (int i = 0; i < rawDist.length; i++) {
+				int[] rawDist = ct.getRawDistributions();
+				float[] relativeDist = comparisonType == ComparisonType.RELATIVE ? ct.getRelativeDistributions() : null;
+				Arrays.fill(row, 0);
+				for (int i = 0; i < rawDist.length; i++) {
+					if (columns[i] == -1) {continue;}
+					if (comparisonType == ComparisonType.RAW) {
+						row[columns[i]] = (float) rawDist[i];
+					} else if (comparisonType == ComparisonType.TFIDF) {
 						int rawFreq = rawDist[i];
 						int inDocuments = ct.getInDocumentsCount();
 						float tfidf = ((float) rawFreq / (float) tokenCounts[i]) * (float) Math.log10((float) corpus.size() / (float) inDocuments);
-						tfidfDist[i] = tfidf;
+						row[columns[i]] = tfidf;
+					} else {
+						row[columns[i]] = relativeDist[i];
 					}
-					termDistributionsMap.put(term, tfidfDist);
-				} else {
-					termDistributionsMap.put(term, ct.getRelativeDistributions());
 				}
+				freqMatrix.addRow(row);
 			}
 		// if there aren't enough docs, get corpus terms split into bins
 		} else {
 			divisionType = DivisionType.BINS;
 			
-			List<String> docIds = this.getCorpusStoredDocumentIdsFromParameters(corpusMapper.getCorpus());
+			List<String> docIds = ids;
 			int binsPerDoc = bins / docIds.size();
 			bins = binsPerDoc * docIds.size(); // re-set bins to account for potential rounding
-			numDocs = bins; // bins are the new docs
 			
 			// get the top terms
 			FlexibleParameters params = parameters.clone();
 			params.setParameter("withDistributions", "false");
 			CorpusTerms cts = new CorpusTerms(storage, params);
 			cts.run(corpusMapper);
-			
-			// get the distributions for the top terms in each document
-			Map<String, SortedMap<Integer, int[]>> distributionsMap = new HashMap<String, SortedMap<Integer, int[]>>();
-			
-			FlexibleParameters docParams = parameters.clone();
-			docParams.setParameter("withDistributions", "true");
-			docParams.setParameter("minRawFreq", 1);//binsPerDoc); // need at least this many occurrences for proper bin distribution
-			docParams.setParameter("sort", "rawFreq");
-			docParams.setParameter("dir", "DESC");
-			StringBuilder qsb = new StringBuilder();
+			Map<String, Integer> termIndexes = new HashMap<String, Integer>();
+			List<String> terms = new ArrayList<String>();
 			for (CorpusTerm ct : cts) {
-				qsb.append(ct.getTerm()).append(",");
+				if (!termIndexes.containsKey(ct.getTerm())) {
+					termIndexes.put(ct.getTerm(), terms.size());
+					terms.add(ct.getTerm());
+				}
 			}
-			String queryString = qsb.substring(0, qsb.length()-1);
-			docParams.setParameter("query", queryString);
 			
-			for (String docId : docIds) {
-				docParams.setParameter("docId", docId);
-				DocumentTerms dts = new DocumentTerms(storage, docParams);
-				dts.run(corpusMapper);
-				
-				Iterator<DocumentTerm> it = dts.iterator();
-				while (it.hasNext()) {
-					DocumentTerm dt = it.next();
-					String term = dt.getTerm();
-					
-					if (!distributionsMap.containsKey(term)) {
-						distributionsMap.put(term, new TreeMap<Integer, int[]>());
+			// count the top terms in each bin of each document, in a single pass over its tokens
+			TokenType tokenType = TokenType.getTokenTypeForgivingly(parameters.getParameterValue("tokenType", "lexical"));
+			int[] totalTokenCounts = corpus.getTokensCounts(tokenType);
+			int[][] counts = new int[terms.size()][bins];
+			int[] combinedTokenCounts = new int[terms.size()];
+			int[] inDocumentsCounts = new int[terms.size()];
+			boolean[] inDocument = new boolean[terms.size()];
+			for (int d = 0; d < docIds.size() && binsPerDoc > 0; d++) {
+				String docId = docIds.get(d);
+				int docIndex = corpus.getDocumentPosition(docId);
+				DocumentForwardIndex forwardIndex = DocumentForwardIndex.getInstance(storage, corpusMapper.getLeafReader(), corpusMapper.getLuceneIdFromDocumentId(docId), docId, tokenType);
+				int[] termIdIndexes = new int[forwardIndex.getTypesCount()];
+				for (int termId = 0; termId < termIdIndexes.length; termId++) {
+					Integer index = termIndexes.get(forwardIndex.getTermForTermId(termId));
+					termIdIndexes[termId] = index == null ? -1 : index;
+				}
+				Arrays.fill(inDocument, false);
+				for (int position = 0, len = forwardIndex.size(); position < len; position++) {
+					if (!forwardIndex.hasPosition(position)) {continue;}
+					int index = termIdIndexes[forwardIndex.getTermId(position)];
+					if (index == -1) {continue;}
+					counts[index][d * binsPerDoc + (int) ((long) position * binsPerDoc / totalTokenCounts[docIndex])]++;
+					if (!inDocument[index]) {
+						inDocument[index] = true;
+						inDocumentsCounts[index]++;
+						combinedTokenCounts[index] += tokenCounts[docIndex];
 					}
-					
-					distributionsMap.get(term).put(dt.getDocIndex(), dt.getRawDistributions(binsPerDoc));
 				}
 			}
 			
-			// combine distributions
-			for (Entry<String, SortedMap<Integer, int[]>> docMap : distributionsMap.entrySet()) {
-				String term = docMap.getKey();
-				int[] combinedDist = new int[bins];
-				int combinedTokenCount = 0;
-				int currentIndex = 0;
-				for (Entry<Integer, int[]> docsMap : docMap.getValue().entrySet()) {
-					int docIndex = docsMap.getKey();
-					int[] dist = docsMap.getValue();
-					combinedTokenCount += tokenCounts[docIndex];
-					int pos = currentIndex * binsPerDoc;
-					System.arraycopy(dist, 0, combinedDist, pos, dist.length);
-					currentIndex++;
-				}
-				
-				int rawFreq = 0;
-				for (int i = 0; i < combinedDist.length; i++) {
-					rawFreq += combinedDist[i];
+			// sort by raw freq, descending
+			List<Integer> indexes = new ArrayList<Integer>();
+			int[] rawFreqs = new int[terms.size()];
+			for (int index = 0; index < terms.size(); index++) {
+				for (int count : counts[index]) {
+					rawFreqs[index] += count;
 				}
+				if (inDocumentsCounts[index] > 0) {indexes.add(index);}
+			}
+			Collections.sort(indexes, (index1, index2) -> Integer.compare(rawFreqs[index2], rawFreqs[index1]));
+			
+			freqMatrix = new FrequencyMatrix(bins);
+			double[] row = new double[bins];
+			for (int index : indexes) {
+				int rawFreq = rawFreqs[index];
+				int combinedTokenCount = combinedTokenCounts[index];
 				float relFreq = rawFreq / combinedTokenCount;
 				
-				float[] floatDist = new float[bins];
-				for (int i = 0; i < combinedDist.length; i++) {
+				for (int i = 0; i < bins; i++) {
 					if (comparisonType == ComparisonType.RELATIVE) {
-						floatDist[i] = (float)combinedDist[i] / combinedTokenCount;
+						row[i] = (float) counts[index][i] / combinedTokenCount;
 					} else if (comparisonType == ComparisonType.TFIDF) {
-						int inDocuments = docMap.getValue().size();
+						int inDocuments = inDocumentsCounts[index];
 						float tfidf = ((float) rawFreq / (float) combinedTokenCount) * (float) Math.log10((float) docIds.size() / (float) inDocuments);
-						floatDist[i] = tfidf;
+						row[i] = tfidf;
 					} else {
-						floatDist[i] = combinedDist[i];
+						row[i] = (float) counts[index][i];
 					}
 				}
 				
-				analysisTerms.add(new RawCATerm(term, rawFreq, relFreq, CategoryType.TERM));
-				
-				termDistributionsMap.put(term, floatDist);
+				analysisTerms.add(new RawCATerm(terms.get(index), rawFreq, relFreq, CategoryType.TERM));
+				freqMatrix.addRow(row);
 			}
 		}
 		
-		// sort by raw freq, descending
-		Collections.sort(analysisTerms, new Comparator<RawPCATerm>() {
-			@Override
-			public int compare(RawPCATerm arg0, RawPCATerm arg1) {
-				if (arg0.getRawFrequency() > arg1.getRawFrequency()) return -1;
-				else if (arg0.getRawFrequency() < arg1.getRawFrequency()) return 1;
-				else return 0;
-			}
-		});
-		
-		int numTerms = analysisTerms.size();
-		
-		if (type == MatrixType.DOCUMENT) {
-			freqMatrix = new double[numDocs][numTerms];
-			
-			int termIndex = 0;
-			for (RawPCATerm aTerm : analysisTerms) {
-				float[] values = termDistributionsMap.get(aTerm.getTerm());
-				
-				for (int valIndex = 0; valIndex < values.length; valIndex++) {
-					int docIndex;
-					if (divisionType == DivisionType.BINS) {
-						docIndex = valIndex;
-					} else {
-						docIndex = indexes.indexOf(valIndex);
-					}
-					
-					if (docIndex != -1) {
-						freqMatrix[docIndex][termIndex] = values[valIndex];
-					}
-				}
-				termIndex++;
-			}
-		
-		} else {
-			freqMatrix = new double[numTerms][numDocs];
-			
-			int termIndex = 0;
-			for (RawPCATerm aTerm : analysisTerms) {
-				float[] values = termDistributionsMap.get(aTerm.getTerm());
-				
-				for (int valIndex = 0; valIndex < values.length; valIndex++) {
-					int docIndex;
-					if (divisionType == DivisionType.BINS) {
-						docIndex = valIndex;
-					} else {
-						docIndex = indexes.indexOf(valIndex);
-					}
-					
-					if (docIndex != -1) {
-						freqMatrix[termIndex][docIndex] = values[valIndex];
-					}
-				}
-				termIndex++;
-			}
-			
-		}
-		
-		return freqMatrix;
+		return type == MatrixType.DOCUMENT ? freqMatrix.transpose() : freqMatrix;
 	}
 	
 	@Override
@@ -23,6 +23,7 @@ package org.voyanttools.trombone.tool.corpus;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -30,10 +31,12 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
 import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.model.Corpus;
 import org.voyanttools.trombone.model.CorpusCollocate;
-import org.voyanttools.trombone.model.DocumentCollocate;
+import org.voyanttools.trombone.model.DocumentForwardIndex;
 import org.voyanttools.trombone.model.Keywords;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.tool.util.ToolSerializer;
@@ -60,7 +63,7 @@ public class CorpusCollocates extends AbstractContextTerms {
 	
 	@Override
 	public float getVersion() {
-		return super.getVersion()+2;
+		return super.getVersion()+3;
 	}
 
 	/**
@@ -95,60 +98,88 @@ public class CorpusCollocates extends AbstractContextTerms {
 			CorpusMapper corpusMapper, Corpus corpus,
 			Map<Integer, List<DocumentSpansData>> documentSpansDataMap) throws IOException {
 		
-		FlexibleParameters localParameters = parameters.clone();
-		localParameters.setParameter("limit", Integer.MAX_VALUE); // we need all collocates for documents in order to determine corpus collocates
-		localParameters.setParameter("start", 0);
-		// first get all the document collocates
-		DocumentCollocates documentCollocatesTool = new DocumentCollocates(storage, localParameters);
-		List<DocumentCollocate> documentCollocates = documentCollocatesTool.getCollocates(reader, corpusMapper, corpus, documentSpansDataMap);
+		// we use the document collocates tool to count context terms in each document, but aggregate as we go
+		DocumentCollocates documentCollocatesTool = new DocumentCollocates(storage, parameters);
 		
-		Map<String, Set<DocumentCollocate>> keywordDocumentCollocatesMap = new HashMap<String, Set<DocumentCollocate>>();
-		for (DocumentCollocate documentCollocate : documentCollocates) {
-			String keyword = documentCollocate.getKeyword();
-			if (!keywordDocumentCollocatesMap.containsKey(keyword)) {
-				keywordDocumentCollocatesMap.put(keyword, new HashSet<DocumentCollocate>());
+		Keywords stopwords = getStopwords(corpus);
+		Set<String> idsHash = new HashSet<String>(getCorpusStoredDocumentIdsFromParameters(corpus));
+		int[] totalTokens = corpus.getLastTokenPositions(tokenType);
+		
+		// context terms get corpus-wide ids so that each keyword can use primitive counters
+		BytesRefHash termsHash = new BytesRefHash();
+		Map<String, KeywordCollocates> keywordCollocatesMap = new HashMap<String, KeywordCollocates>();
+		
+		for (Map.Entry<Integer, List<DocumentSpansData>> dsd : documentSpansDataMap.entrySet()) {
+			int luceneDoc = dsd.getKey();
+			int corpusDocIndex = corpusMapper.getDocumentPositionFromLuceneId(luceneDoc);
+			if (idsHash.contains(corpusMapper.getDocumentIdFromDocumentPosition(corpusDocIndex))==false) {continue;}
+			int lastToken = totalTokens[corpusDocIndex];
+			
+			DocumentForwardIndex forwardIndex = getDocumentForwardIndex(corpusMapper, luceneDoc);
+			int[] counts = new int[forwardIndex.getTypesCount()];
+			byte[] termStates = new byte[forwardIndex.getTypesCount()];
+			int[] corpusTermIds = new int[forwardIndex.getTypesCount()];
+			Arrays.fill(corpusTermIds, -1);
+			
+			for (DocumentSpansData documentSpansData : dsd.getValue()) {
+				int contextTotalTokens = documentCollocatesTool.countContextTerms(forwardIndex, lastToken, documentSpansData.spansData, stopwords, termStates, counts);
+				if (contextTotalTokens==0) {continue;} // no collocates for this keyword in this document
+				KeywordCollocates keywordCollocates = keywordCollocatesMap.get(documentSpansData.queryString);
+				if (keywordCollocates==null) {
+					keywordCollocates = new KeywordCollocates();
+					keywordCollocatesMap.put(documentSpansData.queryString, keywordCollocates);
+				}
+				keywordCollocates.keywordRawFrequency += documentSpansData.spansData.length;
+				for (int termId=0; termId<counts.length; termId++) {
+					if (counts[termId]>0) {
+						if (corpusTermIds[termId]==-1) {
+							int corpusTermId = termsHash.add(new BytesRef(forwardIndex.getTermForTermId(termId)));
+							corpusTermIds[termId] = corpusTermId<0 ? -corpusTermId-1 : corpusTermId;
+						}
+						keywordCollocates.add(corpusTermIds[termId], counts[termId]);
+						counts[termId] = 0;
+					}
+				}
 			}
-			keywordDocumentCollocatesMap.get(keyword).add(documentCollocate);
 		}
 		
 		CorpusCollocate.Sort sort = CorpusCollocate.Sort.getForgivingly(parameters);
 		
 		FlexibleQueue<CorpusCollocate> flexibleQueue = new FlexibleQueue<CorpusCollocate>(CorpusCollocate.getComparator(sort), start+limit);
 		
-		// now build corpus collocates
+		// now build corpus collocates, only keeping the top ones
 		int count = 0; // track how many collocates we actually have
-		for (Map.Entry<String, Set<DocumentCollocate>> keywordDocumentCollocatesEntry : keywordDocumentCollocatesMap.entrySet()) {
-			int keywordRawFrequency = 0;
-			HashSet<Integer> seenDocumentIds = new HashSet<Integer>();
-			// build map (group) for context terms
-			Map<String, Set<DocumentCollocate>> contextTermDocumentCollocatesMap = new HashMap<String, Set<DocumentCollocate>>();
-			for (DocumentCollocate documentCollocate : keywordDocumentCollocatesEntry.getValue()) {
-				String contextTerm = documentCollocate.getTerm();
-				if (!contextTermDocumentCollocatesMap.containsKey(contextTerm)) {
-					contextTermDocumentCollocatesMap.put(contextTerm, new HashSet<DocumentCollocate>());
-				}
-				contextTermDocumentCollocatesMap.get(contextTerm).add(documentCollocate);
-				if (!seenDocumentIds.contains(documentCollocate.getDocIndex())) {
-					keywordRawFrequency += documentCollocate.getKeywordContextRawFrequency();
-					seenDocumentIds.add(documentCollocate.getDocIndex());
+		BytesRef scratch = new BytesRef();
+		for (Map.Entry<String, KeywordCollocates> keywordCollocatesEntry : keywordCollocatesMap.entrySet()) {
+			String keyword = keywordCollocatesEntry.getKey();
+			KeywordCollocates keywordCollocates = keywordCollocatesEntry.getValue();
+			for (int corpusTermId=0; corpusTermId<keywordCollocates.counts.length; corpusTermId++) {
+				int contextTermTotal = keywordCollocates.counts[corpusTermId];
+				if (contextTermTotal>0) {
+					String contextTerm = termsHash.get(corpusTermId, scratch).utf8ToString();
+					flexibleQueue.offer(new CorpusCollocate(keyword, keywordCollocates.keywordRawFrequency, contextTerm, contextTermTotal));
+					count++;
 				}
 			}
-			
-			String keyword = keywordDocumentCollocatesEntry.getKey();
-			for (Map.Entry<String, Set<DocumentCollocate>> contextTermCollocatesEntry : contextTermDocumentCollocatesMap.entrySet()) {
-				int contextTermTotal = 0;
-				for (DocumentCollocate documentCollocate : contextTermCollocatesEntry.getValue()) {
-					contextTermTotal += documentCollocate.getContextRawFrequency();
-				}
-				CorpusCollocate c = new CorpusCollocate(keyword, keywordRawFrequency, contextTermCollocatesEntry.getKey(), contextTermTotal);
-				count++;
-				flexibleQueue.offer(c);
-			}
-			
 		}
 		total = count;
 		List<CorpusCollocate> list = flexibleQueue.getOrderedList();
-		return list.subList(start, Math.min(total, list.size()));
+		return list.subList(Math.min(start, list.size()), Math.min(total, list.size()));
+	}
+	
+	/**
+	 * The raw frequency of a keyword (in documents where it has collocates) and the counts
+	 * of its context terms, keyed by corpus-wide term id.
+	 */
+	private static class KeywordCollocates {
+		private int keywordRawFrequency = 0;
+		private int[] counts = new int[64];
+		private void add(int corpusTermId, int count) {
+			if (corpusTermId>=counts.length) {
+				counts = Arrays.copyOf(counts, Math.max(counts.length*2, corpusTermId+1));
+			}
+			counts[corpusTermId] += count;
+		}
 	}
 
 	List<CorpusCollocate> getCorpusCollocates() {
@@ -14,9 +14,9 @@ import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.FacetsCollector;
 import org.apache.lucene.facet.LabelAndValue;
-import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState.OrdRange;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
@@ -61,7 +61,7 @@ public class CorpusFacets extends AbstractTerms {
 	}
 	
 	public float getVersion() {
-		return super.getVersion()+2;
+		return super.getVersion()+3;
 	}
 
 	/* (non-Javadoc)
@@ -75,7 +75,7 @@ public class CorpusFacets extends AbstractTerms {
 		FieldPrefixAwareSimpleQueryParser parser = new FieldPrefixAwareSimpleQueryParser(corpusMapper.getLeafReader(), storage.getLuceneManager().getAnalyzer(corpusMapper.getCorpus().getId()), defaultPrefix);
 		FieldPrefixAwareSimpleQueryParser nonFacetedParser = new FieldPrefixAwareSimpleQueryParser(corpusMapper.getLeafReader(), storage.getLuceneManager().getAnalyzer(corpusMapper.getCorpus().getId()), defaultNonFacetedPrefix);
 		
-		SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(corpusMapper.getLeafReader());
+		SortedSetDocValuesReaderState state = corpusMapper.getSortedSetDocValuesReaderState();
 		
 		String[] queryStrings = getQueries(queries);
 		
@@ -83,7 +83,8 @@ public class CorpusFacets extends AbstractTerms {
 			Query query = parser.parse(queryString);
 		    String dim;
 		    Query baseQuery;
-			if (query instanceof PrefixQuery && ((PrefixQuery) query).getPrefix().text().isEmpty()) {
+		    boolean isBrowse = query instanceof PrefixQuery && ((PrefixQuery) query).getPrefix().text().isEmpty();
+			if (isBrowse) {
 				dim = ((PrefixQuery) query).getField();
 				baseQuery = new MatchAllDocsQuery();
 			}
@@ -103,7 +104,8 @@ public class CorpusFacets extends AbstractTerms {
 		    FacetsCollector fc = new FacetsCollector();
 		    FacetsCollector.search(corpusMapper.getSearcher(), baseQuery, corpusMapper.getSearcher().getIndexReader().maxDoc(), fc);
 		    Facets facets = new SortedSetDocValuesFacetCounts(state, fc);
-		    FacetResult result = facets.getTopChildren(1000000, dim);
+		    // when browsing we only need enough of the top children for the requested page, otherwise we need them all to filter
+		    FacetResult result = facets.getTopChildren(getTopChildrenCount(state, dim, isBrowse ? (int) Math.min(Integer.MAX_VALUE, (long) start+limit) : Integer.MAX_VALUE), dim);
 		    if (result!=null){
 		    	// if we have an additional query, we need to check if multiple values are present in case some don't match
 		    	if (!(baseQuery instanceof MatchAllDocsQuery) && result.labelValues.length>1) {
@@ -112,15 +114,43 @@ public class CorpusFacets extends AbstractTerms {
 		    		}
 		    		if (result.labelValues.length>1 || queryStrings.length>1) {
 		    			addResult(new FacetResult(result.dim.replace("facet.", ""), result.path, result.value, new LabelAndValue[]{new LabelAndValue(queryString, result.labelValues.length)}, result.childCount));
+		    			total++;
 		    		}
 		    	} 
 //		    	else {
 		    		addResult(result);
 //		    	}
 //				facetResults.add(result);
+		    	// all children were requested unless browsing (and some may have been filtered out by the check)
+		    	total += isBrowse ? result.childCount : result.labelValues.length;
 		    }
 		}
 		Collections.sort(facetResults);
+		if (start>0 || facetResults.size()>limit) {
+			facetResults = new ArrayList<LabelAndValueAndDim>(facetResults.subList(Math.min(start, facetResults.size()), (int) Math.min(facetResults.size(), (long) start+limit)));
+		}
+	}
+	
+	List<LabelAndValue> getLabelAndValues() {
+		List<LabelAndValue> labelAndValues = new ArrayList<LabelAndValue>();
+		for (LabelAndValueAndDim labelAndValueAndDim : facetResults) {
+			labelAndValues.add(labelAndValueAndDim.labelAndValue);
+		}
+		return labelAndValues;
+	}
+	
+	/**
+	 * Determine how many top children to ask for, this is bounded by the number of values for the dimension
+	 * since the facet counting allocates a queue of the requested size.
+	 * @param state
+	 * @param dim
+	 * @param count the number of children wanted
+	 * @return the number of children to request
+	 */
+	private int getTopChildrenCount(SortedSetDocValuesReaderState state, String dim, int count) {
+		OrdRange ordRange = state.getOrdRange(dim);
+		if (ordRange==null) {return Math.max(1, count);} // this will fail as before for an unindexed dimension
+		return Math.max(1, Math.min(count, ordRange.end-ordRange.start+1));
 	}
 	
 	private void addResult(FacetResult result) {
@@ -220,7 +250,6 @@ public class CorpusFacets extends AbstractTerms {
 			CorpusFacets corpusFacets = (CorpusFacets) source;
 			
 			
-			int total = 0;
 	        ToolSerializer.startNode(writer, "facets", Map.class);
 			for (LabelAndValueAndDim facetResult : corpusFacets.facetResults) {
 		        writer.startNode("labels"); // not written in JSON
@@ -238,12 +267,11 @@ public class CorpusFacets extends AbstractTerms {
 				ToolSerializer.endNode(writer);
 				
 				writer.endNode();
-				total++;
 			}
 			ToolSerializer.endNode(writer);
 			
 			ToolSerializer.startNode(writer, "total", Integer.class);
-			writer.setValue(String.valueOf(total));
+			writer.setValue(String.valueOf(corpusFacets.total));
 			ToolSerializer.endNode(writer);
 		}
 
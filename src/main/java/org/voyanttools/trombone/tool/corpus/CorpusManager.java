@@ -180,6 +180,10 @@ public class CorpusManager extends AbstractTool {
 				}
 			}
 			
+			// the previous corpus (and any added documents) are used to update rather than rebuild the index and corpus values
+			List<String> previousCorpusIds = new ArrayList<String>();
+			previousCorpusIds.add(corpus.getId());
+			
 			if (parameters.getParameterBooleanValue("addDocuments")) {
 				keepers.addAll(corpus.getDocumentIds()); // add existing
 				
@@ -190,10 +194,12 @@ public class CorpusManager extends AbstractTool {
 				String id = realCorpusCreator.getStoredId();
 				List<String> documentIds = storage.retrieveStrings(id, Storage.Location.object);
 				keepers.addAll(documentIds);
+				previousCorpusIds.add(id);
 			}
 			
 			String corpusId = storage.storeStrings(keepers, Storage.Location.object);
 			FlexibleParameters params = new FlexibleParameters(new String[]{"storedId="+corpusId,"nextCorpusCreatorStep=index"}); // re-index in case we have per-corpus index
+			params.addParameter("previousCorpus", previousCorpusIds.toArray(new String[0]));
 			
 			// copy over access settings
 			params.addParameter("adminPassword", corpus.getCorpusMetadata().getAccessPasswords(CorpusAccess.ADMIN));
@@ -5,7 +5,7 @@ package org.voyanttools.trombone.tool.corpus;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -13,7 +13,6 @@ import java.util.Map;
 import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.model.Corpus;
 import org.voyanttools.trombone.model.CorpusNgram;
-import org.voyanttools.trombone.model.DocumentNgram;
 import org.voyanttools.trombone.model.Keywords;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.tool.util.Message;
@@ -55,26 +54,18 @@ public class CorpusNgrams extends AbstractTerms implements ConsumptiveTool {
 	
 	@Override
 	public float getVersion() {
-		return super.getVersion()+2;
+		return super.getVersion()+3;
 	}
 
 	
 	@Override
 	protected void runQueries(CorpusMapper corpusMapper, Keywords stopwords, String[] queries) throws IOException {
-		DocumentNgrams documentNgrams = getDocumentNgrams(corpusMapper.getCorpus());
-		documentNgrams.setStartTime();
-		List<DocumentNgram> docNgrams = documentNgrams.getNgrams(corpusMapper, stopwords, queries);
-		transferDocumentNgramsMessages(documentNgrams);
-		addFromDocumentNgrams(docNgrams, corpusMapper.getCorpus().size());
+		addFromDocumentNgrams(corpusMapper, queries);
 	}
 	
 	@Override
 	protected void runAllTerms(CorpusMapper corpusMapper, Keywords stopwords) throws IOException {
-		DocumentNgrams documentNgrams = getDocumentNgrams(corpusMapper.getCorpus());
-		documentNgrams.setStartTime();
-		List<DocumentNgram> docNgrams = documentNgrams.getNgrams(corpusMapper, stopwords);
-		transferDocumentNgramsMessages(documentNgrams);
-		addFromDocumentNgrams(docNgrams, corpusMapper.getCorpus().size());
+		addFromDocumentNgrams(corpusMapper, null);
 	}
 	
 	private DocumentNgrams getDocumentNgrams(Corpus corpus) throws IOException {
@@ -88,39 +79,38 @@ public class CorpusNgrams extends AbstractTerms implements ConsumptiveTool {
 		return new DocumentNgrams(storage, localParameters);
 	}
 	
-	private void addFromDocumentNgrams(List<DocumentNgram> docNgrams, int docs) {
-		String currentTerm = "";
-		List<DocumentNgram> currentList = new ArrayList<DocumentNgram>();
-		FlexibleQueue<CorpusNgram> queue = new FlexibleQueue<CorpusNgram>(comparator, start+limit);
-		
-		// resort the docNgrams in term order so that we can merge same terms easier
-		Collections.sort(docNgrams, DocumentNgram.getComparator(DocumentNgram.Sort.TERMASC));
+	private void addFromDocumentNgrams(CorpusMapper corpusMapper, String[] queries) throws IOException {
+		DocumentNgrams documentNgrams = getDocumentNgrams(corpusMapper.getCorpus());
+		int docs = corpusMapper.getCorpus().size();
 		
-		for (DocumentNgram docNgram : docNgrams) {
-			if (docNgram.getTerm().equals(currentTerm)==false) {
-				if (currentList.isEmpty()==false) {
-					queue.offer(getCorpusNgram(currentList, docs));
-					total++;
-					currentList.clear();
-				}
-				currentTerm = docNgram.getTerm();
+		// merge the document ngrams by term as they're found
+		Map<String, NgramDistribution> distributionsMap = new HashMap<String, NgramDistribution>();
+		documentNgrams.visitNgrams(corpusMapper, queries, docNgram -> {
+			NgramDistribution distribution = distributionsMap.get(docNgram.getTerm());
+			if (distribution==null) {
+				distribution = new NgramDistribution(docNgram.getLength(), docs);
+				distributionsMap.put(docNgram.getTerm(), distribution);
 			}
-			currentList.add(docNgram);
-		}
-		if (currentList.isEmpty()==false) {
-			queue.offer(getCorpusNgram(currentList, docs));
+			distribution.rawFreqs[docNgram.getCorpusDocumentIndex()]+=docNgram.getPositions().size();
+		});
+		transferDocumentNgramsMessages(documentNgrams);
+		
+		FlexibleQueue<CorpusNgram> queue = new FlexibleQueue<CorpusNgram>(comparator, start+limit);
+		for (Map.Entry<String, NgramDistribution> distributionEntry : distributionsMap.entrySet()) {
+			NgramDistribution distribution = distributionEntry.getValue();
+			queue.offer(new CorpusNgram(distributionEntry.getKey(), distribution.length, distribution.rawFreqs));
 			total++;
 		}
 		this.ngrams.addAll(queue.getOrderedList(start));
 	}
 
-	private CorpusNgram getCorpusNgram(List<DocumentNgram> currentList, int docs) {
-		int[] rawFreqs = new int[docs];
-		for (DocumentNgram docNgram : currentList) {
-			rawFreqs[docNgram.getCorpusDocumentIndex()]+=docNgram.getPositions().size();
+	private static class NgramDistribution {
+		private int length;
+		private int[] rawFreqs;
+		private NgramDistribution(int length, int docs) {
+			this.length = length;
+			this.rawFreqs = new int[docs];
 		}
-		DocumentNgram docNgram = currentList.get(0);
-		return new CorpusNgram(docNgram.getTerm(), docNgram.getLength(), rawFreqs);
 	}
 	
 	public List<CorpusNgram> getNgrams() {
@@ -5,13 +5,14 @@ package org.voyanttools.trombone.tool.corpus;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.stream.IntStream;
 
-import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
-import org.apache.commons.math3.stat.regression.SimpleRegression;
 import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.model.CorpusTerm;
 import org.voyanttools.trombone.model.CorpusTermsCorrelation;
@@ -22,7 +23,7 @@ import org.voyanttools.trombone.tool.util.ToolSerializer;
 import org.voyanttools.trombone.tool.util.Message.Type;
 import org.voyanttools.trombone.util.FlexibleParameters;
 import org.voyanttools.trombone.util.FlexibleQueue;
-import org.voyanttools.trombone.util.NumberUtils;
+import org.voyanttools.trombone.util.SparseCorrelations;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamConverter;
@@ -79,7 +80,7 @@ public class CorpusTermCorrelations extends AbstractTerms {
 	}
 
 	public float getVersion() {
-		return super.getVersion()+3;
+		return super.getVersion()+4;
 	}
 	
 	@Override
@@ -107,38 +108,60 @@ public class CorpusTermCorrelations extends AbstractTerms {
 	}
 	
 	private void populate(List<CorpusTerm> outerList, List<CorpusTerm> innerList, boolean half, int docsCount) {
-		SimpleRegression regression = new SimpleRegression();
-		Comparator<CorpusTermsCorrelation> comparator = CorpusTermsCorrelation.getComparator(CorpusTermsCorrelation.Sort.getForgivingly(parameters));
-		FlexibleQueue<CorpusTermsCorrelation> queue = new FlexibleQueue<CorpusTermsCorrelation>(comparator, start+limit);
-		boolean maxTimeHit = false;
+		// distinct terms in alphabetical order, so that pairs can be halved by comparing indexes
+		SortedMap<String, CorpusTerm> corpusTermsMap = new TreeMap<String, CorpusTerm>();
+		Set<String> innerTerms = new HashSet<String>();
+		for (CorpusTerm inner : innerList) {
+			if ((inner.getInDocumentsCount()*100)/docsCount<minInDocumentsCountRatio) {continue;}
+			corpusTermsMap.put(inner.getTerm(), inner);
+			innerTerms.add(inner.getTerm());
+		}
+		Set<String> outerTerms = new HashSet<String>();
 		for (CorpusTerm outer : outerList) {
-			if (maxTimeHit) break;
 			if ((outer.getInDocumentsCount()*100)/docsCount<minInDocumentsCountRatio) {continue;}
-			for (CorpusTerm inner : innerList) {
-				if (maxTimeHit) break;
-				if ((inner.getInDocumentsCount()*100)/docsCount<minInDocumentsCountRatio) {continue;}
-				if (outer.getTerm().equals(inner.getTerm())==true) {continue;}
-				if (!half || (half && outer.getTerm().compareTo(inner.getTerm())>0)) {
-					float[] outerCounts = outer.getRelativeDistributions();
-					float[] innerCounts = inner.getRelativeDistributions();
-					for (int i=0, len=outerCounts.length; i<len; i++) {
-						regression.addData(outerCounts[i], innerCounts[i]);
-					}
-					queue.offer(new CorpusTermsCorrelation(inner, outer, (float) regression.getR(), (float) regression.getSignificance()));
-					if (total % 10 == 0) {
-						long currTime = System.currentTimeMillis();
-						long diffTime = currTime - startTime;
-						if (diffTime >= maxRunTimeMilliseconds) {
-							message(Message.Type.WARN, "maxTime", "This tool has exceeded the maximum run time.");
-							maxTimeHit = true;
-						}
-					}
-					total++;
-				}
-			}
+			corpusTermsMap.putIfAbsent(outer.getTerm(), outer);
+			outerTerms.add(outer.getTerm());
+		}
+		List<CorpusTerm> corpusTerms = new ArrayList<CorpusTerm>(corpusTermsMap.values());
+		List<float[]> distributions = new ArrayList<float[]>();
+		for (CorpusTerm corpusTerm : corpusTerms) {
+			distributions.add(corpusTerm.getRelativeDistributions());
+		}
+		int[] outers = IntStream.range(0, corpusTerms.size()).filter(i -> outerTerms.contains(corpusTerms.get(i).getTerm())).toArray();
+		int[] inners = IntStream.range(0, corpusTerms.size()).filter(i -> innerTerms.contains(corpusTerms.get(i).getTerm())).toArray();
+
+		SparseCorrelations sparseCorrelations = new SparseCorrelations(distributions);
+		total = (int) Math.min(Integer.MAX_VALUE, sparseCorrelations.getPairsCount(outers, inners, half));
+		CorpusTermsCorrelation.Sort sort = CorpusTermsCorrelation.Sort.getForgivingly(parameters);
+		FlexibleQueue<CorpusTermsCorrelation> queue = new FlexibleQueue<CorpusTermsCorrelation>(CorpusTermsCorrelation.getComparator(sort), start+limit);
+		boolean complete = sparseCorrelations.visitTopPairs(outers, inners, half, getOrder(sort), start+limit, startTime+maxRunTimeMilliseconds, (outer, inner, correlation) -> {
+			queue.offer(new CorpusTermsCorrelation(corpusTerms.get(inner), corpusTerms.get(outer), correlation, (float) sparseCorrelations.getSignificance(correlation)));
+		});
+		if (!complete) {
+			message(Message.Type.WARN, "maxTime", "This tool has exceeded the maximum run time.");
 		}
 		correlations.addAll(queue.getOrderedList(start));
 	}
+	
+	/**
+	 * Get the order of the correlations that rank first with the comparator for this sort.
+	 */
+	private static SparseCorrelations.Order getOrder(CorpusTermsCorrelation.Sort sort) {
+		switch (sort) {
+		case CORRELATIONASC:
+			return SparseCorrelations.Order.CORRELATION_DESCENDING;
+		case CORRELATIONABS:
+			return SparseCorrelations.Order.ABSOLUTE_ASCENDING;
+		case SIGNIFICANCEASC:
+			return SparseCorrelations.Order.SIGNIFICANCE_DESCENDING;
+		case SIGNIFICANCEDESC:
+		case SIGNIFICANCEABS:
+			return SparseCorrelations.Order.SIGNIFICANCE_ASCENDING;
+		default: // CORRELATIONDESC
+			return SparseCorrelations.Order.CORRELATION_ASCENDING;
+		}
+	}
+	
 	private CorpusTerms getCorpusTerms() {
 		FlexibleParameters params = new FlexibleParameters();
 		params.addParameter("withDistributions", "relative");
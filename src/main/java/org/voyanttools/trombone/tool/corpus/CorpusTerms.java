@@ -31,24 +31,20 @@ import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermContext;
-import org.apache.lucene.index.Terms;
-import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.spans.SpanOrQuery;
 import org.apache.lucene.search.spans.SpanQuery;
 import org.apache.lucene.search.spans.SpanTermQuery;
 import org.apache.lucene.search.spans.Spans;
-import org.apache.lucene.util.BytesRef;
 import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.lucene.search.LuceneDocIdsCollector;
 import org.voyanttools.trombone.model.Corpus;
 import org.voyanttools.trombone.model.CorpusTerm;
 import org.voyanttools.trombone.model.CorpusTermMinimal;
-import org.voyanttools.trombone.model.CorpusTermMinimalsDB;
+import org.voyanttools.trombone.model.CorpusTermStats;
 import org.voyanttools.trombone.model.Keywords;
 import org.voyanttools.trombone.model.TokenType;
 import org.voyanttools.trombone.storage.Storage;
@@ -88,7 +84,7 @@ public class CorpusTerms extends AbstractTerms implements Iterable<CorpusTerm> {
 	private int totalTokens = 0; // used to calculate relative frequencies
 	
 	@XStreamOmitField
-	private CorpusTermMinimalsDB comparisonCorpusTermMinimals = null;
+	private CorpusTermStats comparisonCorpusTermStats = null;
 	
 	@XStreamOmitField
 	private int comparisonCorpusTotalTokens = 0;
@@ -121,30 +117,7 @@ public class CorpusTerms extends AbstractTerms implements Iterable<CorpusTerm> {
 
 	private FlexibleQueue<CorpusTerm> runAllTermsWithDistributionsDocumentTermVectors(CorpusMapper corpusMapper, Keywords stopwords) throws IOException {
 		FlexibleQueue<CorpusTerm> queue = new FlexibleQueue<CorpusTerm>(comparator, start+limit);
-		
-		LeafReader reader = corpusMapper.getLeafReader();
-		Map<String, Map<Integer, Integer>> rawFreqsMap = new HashMap<String, Map<Integer, Integer>>();
-		TermsEnum termsEnum = null;
-		for (int doc : corpusMapper.getLuceneIds()) {
-			Terms terms = reader.getTermVector(doc, tokenType.name());
-			if (terms!=null) {
-				termsEnum = terms.iterator();
-				if (termsEnum!=null) {
-					BytesRef bytesRef = termsEnum.next();
-					while (bytesRef!=null) {
-						String term = bytesRef.utf8ToString();
-						if (!stopwords.isKeyword(term)) {
-							if (!rawFreqsMap.containsKey(term)) {
-								rawFreqsMap.put(term, new HashMap<Integer, Integer>());
-							}
-							int rawF = (int) termsEnum.totalTermFreq();
-							rawFreqsMap.get(term).put(corpusMapper.getDocumentPositionFromLuceneId(doc), rawF);
-						}
-						bytesRef = termsEnum.next();
-					}
-				}
-			}
-		}
+		CorpusTermStats corpusTermStats = CorpusTermStats.getInstance(corpusMapper, tokenType==TokenType.lexical ? tokenType.name() : parameters.getParameterValue("tokenType"));
 		
 		int corpusSize = corpusMapper.getCorpus().size();
 		int[] tokensCounts = corpusMapper.getCorpus().getTokensCounts(tokenType);
@@ -152,28 +125,23 @@ public class CorpusTerms extends AbstractTerms implements Iterable<CorpusTerm> {
 		int bins = parameters.getParameterIntValue("bins", corpusSize);
 		int[] documentRawFreqs;
 		float[] documentRelativeFreqs;
-		int documentPosition;
 		int termFreq;
-		int freq;
-		for (Map.Entry<String, Map<Integer, Integer>> termsMap : rawFreqsMap.entrySet()) {
-			String termString = termsMap.getKey();
-			documentRawFreqs = new int[corpusSize];
-			documentRelativeFreqs = new float[corpusSize];
-			termFreq = 0;
-			for (Map.Entry<Integer, Integer> docsMap : termsMap.getValue().entrySet()) {
-				documentPosition = docsMap.getKey();
-				freq = docsMap.getValue();
-				termFreq+=freq;
-				totalTokens+=freq;
-				documentRawFreqs[documentPosition] = freq;
-				documentRelativeFreqs[documentPosition] = (float) freq/tokensCounts[documentPosition];
-			}
-			//total++;
+		for (int i=0, len=corpusTermStats.size(); i<len; i++) {
+			String termString = corpusTermStats.getTerm(i);
+			if (stopwords.isKeyword(termString)) {continue;}
+			termFreq = corpusTermStats.getRawFreq(i);
+			totalTokens+=termFreq;
 			if (termFreq>minRawFreq) {
-				CorpusTerm corpusTerm = new CorpusTerm(termString, termFreq, totalCorpusTokens, termsMap.getValue().size(), corpusSize, documentRawFreqs, documentRelativeFreqs, bins);
+				documentRawFreqs = corpusTermStats.getDocumentRawFreqs(i);
+				documentRelativeFreqs = new float[corpusSize];
+				for (int documentPosition=0; documentPosition<corpusSize; documentPosition++) {
+					if (documentRawFreqs[documentPosition]>0) {
+						documentRelativeFreqs[documentPosition] = (float) documentRawFreqs[documentPosition]/tokensCounts[documentPosition];
+					}
+				}
+				CorpusTerm corpusTerm = new CorpusTerm(termString, termFreq, totalCorpusTokens, corpusTermStats.getInDocumentsCount(i), corpusSize, documentRawFreqs, documentRelativeFreqs, bins);
 				offer(queue, corpusTerm);
 			}
-//			queue.offer(new CorpusTerm(termString, termFreq, totalTokens, termsMap.getValue().size(), corpusSize, documentRawFreqs, documentRelativeFreqs, bins));
 		}
 		return queue;
 	}
@@ -185,39 +153,47 @@ public class CorpusTerms extends AbstractTerms implements Iterable<CorpusTerm> {
 	 */
 	private FlexibleQueue<CorpusTerm> runAllTermsWithoutDistributions(CorpusMapper corpusMapper, Keywords stopwords) throws IOException {
 		FlexibleQueue<CorpusTerm> queue = new FlexibleQueue<CorpusTerm>(comparator, start+limit);
-		CorpusTermMinimalsDB corpusTermMinimalsDB = CorpusTermMinimalsDB.getInstance(corpusMapper, tokenType==TokenType.lexical ? tokenType.name() : parameters.getParameterValue("tokenType"));
+		CorpusTermStats corpusTermStats = CorpusTermStats.getInstance(corpusMapper, tokenType==TokenType.lexical ? tokenType.name() : parameters.getParameterValue("tokenType"));
 		int totalTokens = corpusMapper.getCorpus().getTokensCount(tokenType);
-		for (CorpusTermMinimal corpusTermMinimal : corpusTermMinimalsDB.values()) {
-			if (!stopwords.isKeyword(corpusTermMinimal.getTerm())) {
-				int rawF = corpusTermMinimal.getRawFreq();
+		for (int i=0, len=corpusTermStats.size(); i<len; i++) {
+			if (!stopwords.isKeyword(corpusTermStats.getTerm(i))) {
+				int rawF = corpusTermStats.getRawFreq(i);
 				if (rawF>minRawFreq) {
 					//total++;
 					this.totalTokens+=rawF;
-					CorpusTerm corpusTerm = new CorpusTerm(corpusTermMinimal, totalTokens);
+					CorpusTerm corpusTerm = new CorpusTerm(corpusTermStats.get(i), totalTokens);
 					offer(queue, corpusTerm);
 //					queue.offer(corpusTerm);
 					
 				}
 			}
 		}
-		corpusTermMinimalsDB.close();
 		return queue;
 	}
 	
-	private void createComparisonCorpusTermMinimals() throws IOException {
+	private void createComparisonCorpusTermStats() throws IOException {
 		String comparisonCorpusId = parameters.getParameterValue("comparisonCorpus", "");
 		if (!comparisonCorpusId.isEmpty()) {
 			Corpus comparisonCorpus = CorpusManager.getCorpus(storage, new FlexibleParameters(new String[]{"corpus="+comparisonCorpusId}));
 			comparisonCorpusTotalTokens = comparisonCorpus.getTokensCount(TokenType.lexical);
-			CorpusMapper comparisonCorpusMapper = new CorpusMapper(storage, comparisonCorpus);
-			comparisonCorpusTermMinimals = CorpusTermMinimalsDB.getInstance(comparisonCorpusMapper, tokenType==TokenType.lexical ? tokenType.name() : parameters.getParameterValue("tokenType"));
+			CorpusMapper comparisonCorpusMapper = CorpusMapper.getInstance(storage, comparisonCorpus);
+			// hold the comparison corpus' reader so that it stays open while we read from it
+			while (comparisonCorpusMapper.tryAcquire()==false) {
+				comparisonCorpusMapper = CorpusMapper.getInstance(storage, comparisonCorpus);
+			}
+			try {
+				comparisonCorpusTermStats = CorpusTermStats.getInstance(comparisonCorpusMapper, tokenType==TokenType.lexical ? tokenType.name() : parameters.getParameterValue("tokenType"));
+			}
+			finally {
+				comparisonCorpusMapper.release();
+			}
 		}
 	}
 
 	protected void runAllTerms(CorpusMapper corpusMapper, Keywords stopwords) throws IOException {
 		
 		if (parameters.containsKey("comparisonCorpus")) {
-			createComparisonCorpusTermMinimals();
+			createComparisonCorpusTermStats();
 		}
 		if (whiteList.isEmpty()==false) {
 			String[] queries = whiteList.getKeywords().stream()
@@ -225,47 +201,35 @@ public class CorpusTerms extends AbstractTerms implements Iterable<CorpusTerm> {
 			runQueries(corpusMapper, stopwords, queries);
 			return;
 		}
-		try {
-			FlexibleQueue<CorpusTerm> queue = withDistributions || corpusTermSort.needDistributions() ?
-//					runAllTermsWithDistributionsFromReaderTerms(corpusMapper, stopwords) :
-				runAllTermsWithDistributionsDocumentTermVectors(corpusMapper, stopwords) :
-				runAllTermsWithoutDistributions(corpusMapper, stopwords);
-			this.terms.addAll(queue.getOrderedList(start));
-		} finally {
-			if (comparisonCorpusTermMinimals!=null) {
-				comparisonCorpusTermMinimals.close();
-			}
-		}
+		FlexibleQueue<CorpusTerm> queue = withDistributions || corpusTermSort.needDistributions() ?
+//				runAllTermsWithDistributionsFromReaderTerms(corpusMapper, stopwords) :
+			runAllTermsWithDistributionsDocumentTermVectors(corpusMapper, stopwords) :
+			runAllTermsWithoutDistributions(corpusMapper, stopwords);
+		this.terms.addAll(queue.getOrderedList(start));
 
 	}
 	
 	@Override
 	protected void runQueries(CorpusMapper corpusMapper, Keywords stopwords, String[] queries) throws IOException {
 		if (parameters.containsKey("comparisonCorpus")) {
-			createComparisonCorpusTermMinimals();
+			createComparisonCorpusTermStats();
 		}
-		try {
-			FlexibleQueue<CorpusTerm> queue = new FlexibleQueue<CorpusTerm>(comparator, start+limit);
-			if (parameters.getParameterBooleanValue("inDocumentsCountOnly")) { // no spans required to count per-document frequencies
-				Map<String, Query> queriesMap = getCategoriesAwareQueryMap(corpusMapper, queries);
-				runQueriesInDocumentsCountOnly(corpusMapper, queue, queriesMap);
-			}
-			else {
-				Map<String, SpanQuery> queriesMap = getCategoriesAwareSpanQueryMap(corpusMapper, queries);
-				runSpanQueries(corpusMapper, queue, queriesMap);
-			}
-			terms.addAll(queue.getOrderedList());
-		} finally {
-			if (comparisonCorpusTermMinimals!=null) {
-				comparisonCorpusTermMinimals.close();
-			}
+		FlexibleQueue<CorpusTerm> queue = new FlexibleQueue<CorpusTerm>(comparator, start+limit);
+		if (parameters.getParameterBooleanValue("inDocumentsCountOnly")) { // no spans required to count per-document frequencies
+			Map<String, Query> queriesMap = getCategoriesAwareQueryMap(corpusMapper, queries);
+			runQueriesInDocumentsCountOnly(corpusMapper, queue, queriesMap);
 		}
+		else {
+			Map<String, SpanQuery> queriesMap = getCategoriesAwareSpanQueryMap(corpusMapper, queries);
+			runSpanQueries(corpusMapper, queue, queriesMap);
+		}
+		terms.addAll(queue.getOrderedList());
 	}
 
 	private void runSpanQueries(CorpusMapper corpusMapper, FlexibleQueue<CorpusTerm> queue, Map<String, SpanQuery> queriesMap) throws IOException {
 		Map<Term, TermContext> termContexts = new HashMap<Term, TermContext>();
 		boolean needDistributions = withDistributions || corpusTermSort.needDistributions();
-		CorpusTermMinimalsDB corpusTermMinimalsDB = null; // only create it if we need it
+		CorpusTermStats corpusTermStats = null; // only create it if we need it
 		int totalTokens = corpusMapper.getCorpus().getTokensCount(tokenType);
 		for (Map.Entry<String, SpanQuery> entry : queriesMap.entrySet()) {
 			SpanQuery query = entry.getValue();
@@ -280,13 +244,13 @@ public class CorpusTerms extends AbstractTerms implements Iterable<CorpusTerm> {
 				}
 			}
 			else if (query instanceof SpanTermQuery) {
-				if (corpusTermMinimalsDB==null) {
-					corpusTermMinimalsDB = CorpusTermMinimalsDB.getInstance(corpusMapper, ((SpanTermQuery) query).getTerm().field());
+				if (corpusTermStats==null) {
+					corpusTermStats = CorpusTermStats.getInstance(corpusMapper, ((SpanTermQuery) query).getTerm().field());
 				}
 				Term term = ((SpanTermQuery) query).getTerm();
-				CorpusTermMinimal corpusTermMinimal = corpusTermMinimalsDB.get(term.text());
+				CorpusTermMinimal corpusTermMinimal = corpusTermStats.get(term.text());
 				if (corpusTermMinimal!=null) {
-					addToQueueFromTermWithoutDistributions(queue, queryString, term, corpusTermMinimalsDB, corpusMapper.getCorpus().size(), totalTokens);
+					addToQueueFromTermWithoutDistributions(queue, queryString, term, corpusTermStats, corpusMapper.getCorpus().size(), totalTokens);
 					corpusTermOffered = true;
 				}
 			}
@@ -307,14 +271,14 @@ public class CorpusTerms extends AbstractTerms implements Iterable<CorpusTerm> {
 						if (count==queries.length) {
 							
 							boolean inDocumentCountNotNeeded = parameters.containsKey("inDocumentsCount") && !parameters.getParameterBooleanValue("inDocumentsCount");
-							if (corpusTermMinimalsDB==null) {
-								corpusTermMinimalsDB = CorpusTermMinimalsDB.getInstance(corpusMapper, queries[0].getField());
+							if (corpusTermStats==null) {
+								corpusTermStats = CorpusTermStats.getInstance(corpusMapper, queries[0].getField());
 							}
 							List<SpanQuery> spanQueries = new ArrayList<SpanQuery>();
 							count = 0; // reset count for rawFreq
 							for (SpanQuery q : queries) {
 								Term term = ((SpanTermQuery) q).getTerm(); // we can cast this since we tested earlier
-								CorpusTermMinimal corpusTermMinimal = corpusTermMinimalsDB.get(term.text());
+								CorpusTermMinimal corpusTermMinimal = corpusTermStats.get(term.text());
 								if (corpusTermMinimal!=null) {
 									if (inDocumentCountNotNeeded) {
 										count+=corpusTermMinimal.getRawFreq();
@@ -346,33 +310,28 @@ public class CorpusTerms extends AbstractTerms implements Iterable<CorpusTerm> {
 				offer(queue, corpusTerm);
 			}
 		}
-		if (corpusTermMinimalsDB!=null) {corpusTermMinimalsDB.close();}
 	}
 	private void runQueriesInDocumentsCountOnly(CorpusMapper corpusMapper, FlexibleQueue<CorpusTerm> queue, Map<String, Query> queriesMap) throws IOException {
-		Map<String, CorpusTermMinimalsDB> corpusTermMinimalsDBMap = new HashMap<String, CorpusTermMinimalsDB>();
-//		CorpusTermMinimalsDB corpusTermMinimalsDB = null; // only create it if we need it
+		Map<String, CorpusTermStats> corpusTermStatsMap = new HashMap<String, CorpusTermStats>();
 		int totalTokens = corpusMapper.getCorpus().getTokensCount(tokenType);
 		for (Map.Entry<String, Query> entry : queriesMap.entrySet()) {
 			Query query = entry.getValue();
 			String queryString = entry.getKey();
 			if (query instanceof TermQuery) {
 				String field = ((TermQuery) query).getTerm().field();
-				if (corpusTermMinimalsDBMap.containsKey(field)==false) {
-					corpusTermMinimalsDBMap.put(field, CorpusTermMinimalsDB.getInstance(corpusMapper, field));
+				if (corpusTermStatsMap.containsKey(field)==false) {
+					corpusTermStatsMap.put(field, CorpusTermStats.getInstance(corpusMapper, field));
 				}
-				addToQueueFromTermWithoutDistributions(queue, queryString, ((TermQuery) query).getTerm(), corpusTermMinimalsDBMap.get(field), corpusMapper.getCorpus().size(), totalTokens);
+				addToQueueFromTermWithoutDistributions(queue, queryString, ((TermQuery) query).getTerm(), corpusTermStatsMap.get(field), corpusMapper.getCorpus().size(), totalTokens);
 			}
 			else {
 				addToQueueFromQueryWithoutDistributions(corpusMapper, queue, queryString, query);
 			}
 		}
-		for (CorpusTermMinimalsDB corpusTermMinimalsDB : corpusTermMinimalsDBMap.values()) {
-			corpusTermMinimalsDB.close();
-		}
 	}
 	
-	private void addToQueueFromTermWithoutDistributions(FlexibleQueue<CorpusTerm> queue, String queryString, Term term, CorpusTermMinimalsDB corpusTermMinimalsDB, int corpusSize, int totalTokens) throws IOException {
-		CorpusTermMinimal corpusTermMinimal = corpusTermMinimalsDB.get(term.text());
+	private void addToQueueFromTermWithoutDistributions(FlexibleQueue<CorpusTerm> queue, String queryString, Term term, CorpusTermStats corpusTermStats, int corpusSize, int totalTokens) throws IOException {
+		CorpusTermMinimal corpusTermMinimal = corpusTermStats.get(term.text());
 		CorpusTerm corpusTerm = new CorpusTerm(queryString, corpusTermMinimal==null ? 0 : corpusTermMinimal.getRawFreq(), totalTokens, corpusTermMinimal==null ? 0 :corpusTermMinimal.getInDocumentsCount(), corpusSize);
 		offer(queue, corpusTerm);
 	}
@@ -428,8 +387,8 @@ public class CorpusTerms extends AbstractTerms implements Iterable<CorpusTerm> {
 	private void offer(FlexibleQueue<CorpusTerm> queue, CorpusTerm corpusTerm) {
 		// we need to offer this even if rawfreq is 0 since we want to show query results for non matches
 		if (whiteList.isEmpty()==false && whiteList.isKeyword(corpusTerm.getTerm())==false) {return;}
-		if (comparisonCorpusTermMinimals!=null) {
-			CorpusTermMinimal corpusTermMinimal = comparisonCorpusTermMinimals.get(corpusTerm.getTerm());
+		if (comparisonCorpusTermStats!=null) {
+			CorpusTermMinimal corpusTermMinimal = comparisonCorpusTermStats.get(corpusTerm.getTerm());
 			if (corpusTermMinimal!=null && comparisonCorpusTotalTokens>0) {
 				corpusTerm.setComparisonRelativeFrequency((float) corpusTermMinimal.getRawFreq() / (float) comparisonCorpusTotalTokens);
 			} else {
@@ -24,24 +24,17 @@ package org.voyanttools.trombone.tool.corpus;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.index.LeafReader;
-import org.apache.lucene.index.PostingsEnum;
-import org.apache.lucene.index.Terms;
-import org.apache.lucene.index.TermsEnum;
-import org.apache.lucene.search.vectorhighlight.FieldTermStack.TermInfo;
-import org.apache.lucene.util.BytesRef;
 import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.model.Corpus;
 import org.voyanttools.trombone.model.DocumentCollocate;
+import org.voyanttools.trombone.model.DocumentForwardIndex;
 import org.voyanttools.trombone.model.Keywords;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.util.FlexibleParameters;
@@ -118,7 +111,7 @@ public class DocumentCollocates extends AbstractContextTerms {
 			String id = corpusMapper.getDocumentIdFromDocumentPosition(corpusDocIndex);
 			if (idsHash.contains(id)==false) {continue;}
 			int lastToken = totalTokens[corpusDocIndex];
-			FlexibleQueue<DocumentCollocate> q = getCollocates(reader, luceneDoc, corpusDocIndex, lastToken, dsd.getValue(), stopwords);
+			FlexibleQueue<DocumentCollocate> q = getCollocates(corpusMapper, luceneDoc, corpusDocIndex, lastToken, dsd.getValue(), stopwords);
 			for (DocumentCollocate c : q.getUnorderedList()) {
 				queue.offer(c);
 			}
@@ -127,116 +120,83 @@ public class DocumentCollocates extends AbstractContextTerms {
 		return queue.getOrderedList();
 	}
 
-	private FlexibleQueue<DocumentCollocate> getCollocates(LeafReader LeafReader,
+	private FlexibleQueue<DocumentCollocate> getCollocates(CorpusMapper corpusMapper,
 			int luceneDoc, int corpusDocIndex, int lastToken,
 			List<DocumentSpansData> documentSpansData, Keywords stopwords) throws IOException {
 		
+		DocumentForwardIndex forwardIndex = getDocumentForwardIndex(corpusMapper, luceneDoc);
 		
-		Map<Integer, TermInfo> termsOfInterest = getTermsOfInterest(LeafReader, luceneDoc, lastToken, documentSpansData, true);
-
-		Map<String, Map<String, AtomicInteger>> mapOfTermsMap = new HashMap<String, Map<String, AtomicInteger>>();
-		
-		Map<String, Integer> queryStringFrequencyMap = new HashMap<String, Integer>();
+		// counters keyed by the document's own term ids, reused from one keyword to the next
+		int[] counts = new int[forwardIndex.getTypesCount()];
+		byte[] termStates = new byte[forwardIndex.getTypesCount()];
 		
-		// this keeps track of the terms we want to lookup total document frequencies
-		Map<String, Integer> stringsOfInterestMap = new HashMap<String, Integer>();
-		
-		//		Map<String, Map<String, Integer>>
-		for (DocumentSpansData dsd : documentSpansData) {
+		int documentTotalTokens = forwardIndex.getTokensCount();
 
-			Map<String, AtomicInteger> termsMap = new HashMap<String, AtomicInteger>();
-			
-			queryStringFrequencyMap.put(dsd.queryString, dsd.spansData.length);
-			
-			int contextTotalTokens = 0;
-
-			for (int[] data : dsd.spansData) {
-								
-				int keywordstart = data[0];
-				int keywordend = data[1];
-				
-				int leftstart = keywordstart - context;
-				if (leftstart<0) {leftstart=0;}
-				for (int i=leftstart; i<keywordstart-1; i++) {
-					contextTotalTokens++;
-					String term = termsOfInterest.get(i).getText();
-					if (stopwords.isKeyword(term)) {continue;}
-					if (collocatesWhitelist.isEmpty()==false && collocatesWhitelist.isKeyword(term)==false) {continue;}
-					stringsOfInterestMap.put(term, 0);
-					if (termsMap.containsKey(term)) {termsMap.get(term).getAndIncrement();}
-					else {termsMap.put(term, new AtomicInteger(1));}
-				}
-
-				for (int i=keywordstart; i<keywordend; i++) {
-					String term = termsOfInterest.get(i).getText();
-					if (stopwords.isKeyword(term)) {continue;}
-					if (collocatesWhitelist.isEmpty()==false && collocatesWhitelist.isKeyword(term)==false) {continue;}
-					stringsOfInterestMap.put(term, 0);
-				}
-				
-				int rightend = keywordend + context;
-				if (rightend>lastToken) {rightend=lastToken;}
-				for (int i=keywordend; i<rightend; i++) {
-					contextTotalTokens++;
-					String term = termsOfInterest.get(i).getText();
-					if (stopwords.isKeyword(term)) {continue;}
-					if (collocatesWhitelist.isEmpty()==false && collocatesWhitelist.isKeyword(term)==false) {continue;}
-					stringsOfInterestMap.put(term, 0);
-					if (termsMap.containsKey(term)) {termsMap.get(term).getAndIncrement();}
-					else {termsMap.put(term, new AtomicInteger(1));}
-				}
-			}
-			
-			mapOfTermsMap.put(dsd.queryString, termsMap);
-		}
-		
-		// gather document frequency for strings of interest
-		int documentTotalTokens = 0;
+		FlexibleQueue<DocumentCollocate> documentCollocatesQueue = new FlexibleQueue<DocumentCollocate>(comparator, limit);
 		
-		Terms terms = LeafReader.getTermVector(luceneDoc, tokenType.name());
-		TermsEnum termsEnum = terms.iterator();
-		while(true) {
-			BytesRef term = termsEnum.next();
-			if (term!=null) {
-				String termString = term.utf8ToString();
-				PostingsEnum postingsEnum = termsEnum.postings(null, PostingsEnum.FREQS);
-				postingsEnum.nextDoc();
-				int freq = postingsEnum.freq();
-				documentTotalTokens += freq;
-				if (stringsOfInterestMap.containsKey(termString)) {
-					stringsOfInterestMap.put(termString, freq);
+		for (DocumentSpansData dsd : documentSpansData) {
+			String keyword = dsd.queryString;
+			int keywordContextRawFrequency = dsd.spansData.length;
+			int contextTotalTokens = countContextTerms(forwardIndex, lastToken, dsd.spansData, stopwords, termStates, counts);
+			for (int termId=0; termId<counts.length; termId++) {
+				if (counts[termId]>0) {
+					DocumentCollocate documentCollocate = new DocumentCollocate(corpusDocIndex, keyword, forwardIndex.getTermForTermId(termId), keywordContextRawFrequency, counts[termId], forwardIndex.getRawFreqForTermId(termId), contextTotalTokens, documentTotalTokens);
+					documentCollocatesQueue.offer(documentCollocate);
+					counts[termId] = 0;
 				}
 			}
-			else {break;}
 		}
-
-		FlexibleQueue<DocumentCollocate> documentCollocatesQueue = new FlexibleQueue(comparator, limit);
 		
-		for (Map.Entry<String, Map<String, AtomicInteger>> keywordMapEntry : mapOfTermsMap.entrySet()) {
-			String keyword = keywordMapEntry.getKey();
-			int keywordContextRawFrequency = queryStringFrequencyMap.get(keyword);
+		return documentCollocatesQueue;
+	}
+	
+	/**
+	 * Count the context terms on either side of the specified spans, reading the positions
+	 * directly from the forward index. Counts are added to the provided array, which is keyed
+	 * by the document's term ids (and which the caller is responsible for resetting).
+	 * Stopwords and terms not in the whitelist aren't counted, and since checking is relatively
+	 * expensive, the outcome for each term id is remembered in termStates (0 is unchecked,
+	 * 1 is counted and 2 is skipped).
+	 * @param forwardIndex the document's forward index
+	 * @param lastToken the last token position of the document
+	 * @param spansData the start and end positions of each keyword span
+	 * @param stopwords the stopwords to skip
+	 * @param termStates the state of each term id
+	 * @param counts the counts of each term id
+	 * @return the total number of context tokens counted
+	 */
+	int countContextTerms(DocumentForwardIndex forwardIndex, int lastToken, int[][] spansData, Keywords stopwords, byte[] termStates, int[] counts) {
+		int contextTotalTokens = 0;
+		for (int[] data : spansData) {
+			int keywordstart = data[0];
+			int keywordend = data[1];
 			
-			Map<String, AtomicInteger> termsMap = keywordMapEntry.getValue();
-
-			// once through to determine contextTotalTokens
-			int contextTotalTokens = 0;
-			for (Map.Entry<String, AtomicInteger> termsMapEntry : termsMap.entrySet()) {
-				contextTotalTokens += termsMapEntry.getValue().intValue();
+			int leftstart = keywordstart - context;
+			if (leftstart<0) {leftstart=0;}
+			for (int i=leftstart; i<keywordstart-1; i++) {
+				contextTotalTokens += countContextTerm(forwardIndex, i, stopwords, termStates, counts);
 			}
 			
-			// and now to create document collocate objects
-			for (Map.Entry<String, AtomicInteger> termsMapEntry : termsMap.entrySet()) {
-				String term = termsMapEntry.getKey();
-				int termDocumentRawFrequency = stringsOfInterestMap.get(term);
-				int termContextRawFrequency = termsMapEntry.getValue().intValue();
-				DocumentCollocate documentCollocate = new DocumentCollocate(corpusDocIndex, keyword, term, keywordContextRawFrequency, termContextRawFrequency, termDocumentRawFrequency, contextTotalTokens, documentTotalTokens);
-//				DocumentCollocate documentCollocate = new DocumentCollocate(corpusDocIndex, keyword, term, contextTermRawFrequency, ((float) contextTermRawFrequency)/contextTotalTokens, documentTermRawFrequency, ((float) documentTermRawFrequency)/documentTotalTokens);
-				documentCollocatesQueue.offer(documentCollocate);
+			int rightend = keywordend + context;
+			if (rightend>lastToken) {rightend=lastToken;}
+			for (int i=keywordend; i<rightend; i++) {
+				contextTotalTokens += countContextTerm(forwardIndex, i, stopwords, termStates, counts);
 			}
-			
 		}
-		
-		return documentCollocatesQueue;
+		return contextTotalTokens;
+	}
+	
+	private int countContextTerm(DocumentForwardIndex forwardIndex, int position, Keywords stopwords, byte[] termStates, int[] counts) {
+		if (forwardIndex.hasPosition(position)==false) {return 0;}
+		int termId = forwardIndex.getTermId(position);
+		if (termStates[termId]==0) {
+			String term = forwardIndex.getTermForTermId(termId);
+			boolean skip = stopwords.isKeyword(term) || (collocatesWhitelist.isEmpty()==false && collocatesWhitelist.isKeyword(term)==false);
+			termStates[termId] = (byte) (skip ? 2 : 1);
+		}
+		if (termStates[termId]==2) {return 0;}
+		counts[termId]++;
+		return 1;
 	}
 
 	public List<DocumentCollocate> getDocumentCollocates() {
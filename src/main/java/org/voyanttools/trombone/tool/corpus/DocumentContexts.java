@@ -11,6 +11,7 @@ import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.search.vectorhighlight.FieldTermStack.TermInfo;
 import org.voyanttools.trombone.lucene.CorpusMapper;
+import org.voyanttools.trombone.model.IndexedDocument;
 import org.voyanttools.trombone.model.Keywords;
 import org.voyanttools.trombone.model.Kwic;
 import org.voyanttools.trombone.storage.Storage;
@@ -86,13 +87,13 @@ public class DocumentContexts extends AbstractContextTerms implements Consumptiv
 
 		int position = parameters.getParameterIntValue("position", -1);
 		
-		Map<Integer, TermInfo> termsOfInterest = getTermsOfInterest(corpusMapper.getLeafReader(), luceneDoc, lastToken, documentSpansData, overlapStrategy==Kwic.OverlapStrategy.merge);
+		Map<Integer, TermInfo> termsOfInterest = getTermsOfInterest(corpusMapper, luceneDoc, lastToken, documentSpansData, overlapStrategy==Kwic.OverlapStrategy.merge);
 		
 		Stripper stripper = new Stripper(parameters.getParameterValue("stripTags"));
 
 		// build kwics
 		FlexibleQueue<Kwic> queue = new FlexibleQueue<Kwic>(comparator, start+limit);
-		String document = corpusMapper.getCorpus().getDocument(corpusDocumentIndex).getDocumentString();
+		IndexedDocument document = corpusMapper.getCorpus().getDocument(corpusDocumentIndex);
 		//String document = LeafReader.document(luceneDoc).get(tokenType.name());
 		
 		// we start by creating a list of all positions in the document, as well as map to help us retrieve the span for each one
@@ -126,7 +127,7 @@ public class DocumentContexts extends AbstractContextTerms implements Consumptiv
 			int keywordstart = data[0];
 			int keywordend = data[1];
 			
-			String middle = StringUtils.substring(document, termsOfInterest.get(keywordstart).getStartOffset(), termsOfInterest.get(keywordend-1).getEndOffset());
+			String middle = document.getDocumentString(termsOfInterest.get(keywordstart).getStartOffset(), termsOfInterest.get(keywordend-1).getEndOffset());
 			
 			String[] parts = new String[keywordend-keywordstart];
 			for (int k=0; k<keywordend-keywordstart; k++) {
@@ -177,9 +178,9 @@ public class DocumentContexts extends AbstractContextTerms implements Consumptiv
 			}
 			
 			
-			String left = leftstart < keywordstart ? StringUtils.substring(document, termsOfInterest.get(leftstart).getStartOffset(), termsOfInterest.get(keywordstart).getStartOffset()) : "";
+			String left = leftstart < keywordstart ? document.getDocumentString(termsOfInterest.get(leftstart).getStartOffset(), termsOfInterest.get(keywordstart).getStartOffset()) : "";
 			
-			String right = rightend > keywordend-1 ? StringUtils.substring(document, termsOfInterest.get(keywordend-1).getEndOffset(), termsOfInterest.get(rightend).getEndOffset()) : "";
+			String right = rightend > keywordend-1 ? document.getDocumentString(termsOfInterest.get(keywordend-1).getEndOffset(), termsOfInterest.get(rightend).getEndOffset()) : "";
 			
 			total++;
 			
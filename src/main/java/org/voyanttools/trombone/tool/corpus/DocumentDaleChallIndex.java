@@ -2,18 +2,22 @@ package org.voyanttools.trombone.tool.corpus;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-import org.apache.commons.io.IOUtils;
 import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.model.Corpus;
 import org.voyanttools.trombone.model.DaleChallIndex;
+import org.voyanttools.trombone.model.IndexedDocument;
+import org.voyanttools.trombone.model.ReadabilityStatistics;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.util.FlexibleParameters;
 
@@ -24,7 +28,7 @@ import com.thoughtworks.xstream.annotations.XStreamOmitField;
 public class DocumentDaleChallIndex extends AbstractCorpusTool {
 
     @XStreamOmitField
-    public static String DEFAULT_EASY_WORDS_FILE_PATH = "/org/voyanttools/trombone/readability/easywords.en.txt";
+    public static String DEFAULT_EASY_WORDS_FILE_PATH = DaleChallIndex.DEFAULT_EASY_WORDS_FILE_PATH;
 
     private List<DaleChallIndex> daleChallIndexes;
 
@@ -36,36 +40,40 @@ public class DocumentDaleChallIndex extends AbstractCorpusTool {
 
     @Override
     public void run(CorpusMapper corpusMapper) throws IOException {
-        List<String> easyWords;
+        // the default easy words are counted when documents are indexed, other lists need the text to be parsed again
+        Set<String> easyWords = null;
 
         if (parameters.containsKey("easyWordsFile")) {
             try {
                 String easyWordsPath = parameters.getParameterValue("easyWordsFile");
                 File easyWordsFile = new File(easyWordsPath);
 
-                easyWords = getEasyWords(easyWordsFile);
+                easyWords = new HashSet<String>(getEasyWords(easyWordsFile));
             } catch (NoSuchFileException e) {
                 throw new RuntimeException("Failed to find the easy words list file.");
             }
-
-        } else
-            try(InputStream inputStream = this.getClass().getResourceAsStream(DEFAULT_EASY_WORDS_FILE_PATH)) {
-                easyWords = removeComments(IOUtils.readLines(inputStream, StandardCharsets.UTF_8));
-            } catch (NullPointerException e) {
-                throw new RuntimeException("Failed to retrieved the easy words list.");
-            }
+        }
 
         Corpus corpus = corpusMapper.getCorpus();
 
-        List<String> idsList = this.getCorpusStoredDocumentIdsFromParameters(corpus);
+        Set<String> ids = new HashSet<String>(this.getCorpusStoredDocumentIdsFromParameters(corpus));
 
         for (String documentId : corpus.getDocumentIds()) {
-            if (idsList.contains(documentId) == false) { continue; }
+            if (ids.contains(documentId) == false) { continue; }
 
             int documentIndex = corpus.getDocumentPosition(documentId);
-            String text = corpus.getDocument(documentId).getDocumentString();
+            IndexedDocument document = corpus.getDocument(documentId);
+            ReadabilityStatistics statistics = easyWords == null ?
+                    document.getReadabilityStatistics() :
+                    getReadabilityStatistics(documentId, easyWords);
+
+            daleChallIndexes.add(new DaleChallIndex(documentIndex, documentId, statistics));
+        }
+    }
 
-            daleChallIndexes.add(new DaleChallIndex(documentIndex, documentId, text, easyWords));
+    private ReadabilityStatistics getReadabilityStatistics(String documentId, Set<String> easyWords) throws IOException {
+        try (Reader reader = new InputStreamReader(storage.getStoredDocumentSourceStorage().getStoredDocumentSourceInputStream(documentId), StandardCharsets.UTF_8)) {
+            return ReadabilityStatistics.getInstance(reader, easyWords);
         }
     }
 
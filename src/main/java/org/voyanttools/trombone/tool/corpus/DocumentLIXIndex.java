@@ -4,12 +4,15 @@ import com.thoughtworks.xstream.annotations.XStreamAlias;
 import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.model.LIXIndex;
 import org.voyanttools.trombone.model.Corpus;
+import org.voyanttools.trombone.model.ReadabilityStatistics;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.util.FlexibleParameters;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @XStreamAlias("documentLIXIndex")
 public class DocumentLIXIndex extends AbstractCorpusTool {
@@ -26,15 +29,15 @@ public class DocumentLIXIndex extends AbstractCorpusTool {
     public void run(CorpusMapper corpusMapper) throws IOException {
         Corpus corpus = corpusMapper.getCorpus();
 
-        List<String> idsList = this.getCorpusStoredDocumentIdsFromParameters(corpus);
+        Set<String> ids = new HashSet<String>(this.getCorpusStoredDocumentIdsFromParameters(corpus));
 
         for (String documentId : corpus.getDocumentIds()) {
-            if (idsList.contains(documentId) == false) { continue; }
+            if (ids.contains(documentId) == false) { continue; }
 
             int documentIndex = corpus.getDocumentPosition(documentId);
-            String text = corpus.getDocument(documentId).getDocumentString();
+            ReadabilityStatistics statistics = corpus.getDocument(documentId).getReadabilityStatistics();
 
-            lixIndexes.add(new LIXIndex(documentIndex, documentId, text));
+            lixIndexes.add(new LIXIndex(documentIndex, documentId, statistics));
         }
     }
 
@@ -0,0 +1,53 @@
+package org.voyanttools.trombone.tool.corpus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voyanttools.trombone.lucene.CorpusMapper;
+import org.voyanttools.trombone.model.Corpus;
+import org.voyanttools.trombone.model.DocumentNeighbor;
+import org.voyanttools.trombone.model.DocumentSketches;
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.util.FlexibleParameters;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+
+/**
+ * Find the documents that are most similar to the specified ones (or to each document), by the cosine
+ * similarity of their TF-IDF vectors. Unlike {@link DocumentSimilarity} this doesn't project the whole
+ * corpus, the neighbors are found with an index of the corpus' {@link DocumentSketches}.
+ */
+@XStreamAlias("documentNeighbors")
+public class DocumentNeighbors extends AbstractCorpusTool {
+
+	private List<DocumentNeighbor> neighbors;
+
+	public DocumentNeighbors(Storage storage, FlexibleParameters parameters) {
+		super(storage, parameters);
+
+		neighbors = new ArrayList<DocumentNeighbor>();
+	}
+
+	@Override
+	public void run(CorpusMapper corpusMapper) throws IOException {
+		Corpus corpus = corpusMapper.getCorpus();
+		int limit = Math.max(0, parameters.getParameterIntValue("limit", 5));
+
+		DocumentSketches documentSketches = DocumentSketches.getInstance(corpusMapper);
+		List<String> ids = corpus.getDocumentIds();
+		int[] positions = new int[limit];
+		float[] similarities = new float[limit];
+		for (String id : this.getCorpusStoredDocumentIdsFromParameters(corpus)) {
+			int position = corpus.getDocumentPosition(id);
+			int count = documentSketches.getNeighbors(position, limit, positions, similarities);
+			for (int i=0; i<count; i++) {
+				neighbors.add(new DocumentNeighbor(position, id, positions[i], ids.get(positions[i]), similarities[i]));
+			}
+		}
+	}
+
+	public List<DocumentNeighbor> getNeighbors() {
+		return neighbors;
+	}
+}
@@ -23,6 +23,7 @@ package org.voyanttools.trombone.tool.corpus;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -30,16 +31,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
-import org.apache.lucene.index.PostingsEnum;
-import org.apache.lucene.index.Terms;
-import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.spans.SpanQuery;
 import org.apache.lucene.search.spans.Spans;
-import org.apache.lucene.util.BytesRef;
 import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.model.Corpus;
+import org.voyanttools.trombone.model.DocumentForwardIndex;
 import org.voyanttools.trombone.model.DocumentNgram;
 import org.voyanttools.trombone.model.Keywords;
 import org.voyanttools.trombone.storage.Storage;
@@ -47,6 +46,7 @@ import org.voyanttools.trombone.tool.util.Message;
 import org.voyanttools.trombone.tool.util.ToolSerializer;
 import org.voyanttools.trombone.util.FlexibleParameters;
 import org.voyanttools.trombone.util.FlexibleQueue;
+import org.voyanttools.trombone.util.SuffixArray;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamConverter;
@@ -75,17 +75,20 @@ public class DocumentNgrams extends AbstractTerms implements ConsumptiveTool {
 	private int maxLength;
 	
 	@XStreamOmitField
-	private long startTime;
+	private int ngramsCount;
 	
 	@XStreamOmitField
-	private static long maxRunTimeMilliseconds = -1;
+	private boolean capped;
 	
 	@XStreamOmitField
-	private final static String LIMIT_ENTRY = "documentNgramsMaxTime";
+	private static int maxNgramsCount = -1;
 	
 	@XStreamOmitField
-	private final static long DEFAULT_MAX_RUN_TIME = 10000;
-		
+	private final static String LIMIT_ENTRY = "documentNgramsMaxCount";
+	
+	@XStreamOmitField
+	private final static int DEFAULT_MAX_NGRAMS_COUNT = 1000000;
+	
 	private List<DocumentNgram> ngrams = new ArrayList<DocumentNgram>();
 	
 	@XStreamOmitField
@@ -110,37 +113,119 @@ public class DocumentNgrams extends AbstractTerms implements ConsumptiveTool {
 		minRawFreq = parameters.getParameterIntValue("minRawFreq", 2);
 		DocumentNgram.Sort sort = DocumentNgram.Sort.getForgivingly(parameters);
 		comparator = DocumentNgram.getComparator(sort);
-		if (DocumentNgrams.maxRunTimeMilliseconds == -1) {
+		if (DocumentNgrams.maxNgramsCount == -1) {
 			try {
 				String limit = this.getToolLimits(LIMIT_ENTRY);
-				DocumentNgrams.maxRunTimeMilliseconds = Long.parseLong(limit);
+				DocumentNgrams.maxNgramsCount = Integer.parseInt(limit);
 			} catch (Exception e) {
-				DocumentNgrams.maxRunTimeMilliseconds = DEFAULT_MAX_RUN_TIME;
+				DocumentNgrams.maxNgramsCount = DEFAULT_MAX_NGRAMS_COUNT;
 			}
 		}
 	}
 	
 	@Override
 	public float getVersion() {
-		return super.getVersion()+3;
+		return super.getVersion()+5;
 	}
 
 	@Override
 	protected void runQueries(CorpusMapper corpusMapper, Keywords stopwords, String[] queries) throws IOException {
-		this.setStartTime();
 		this.ngrams = getNgrams(corpusMapper, stopwords, queries);
 	}
 	
 
 	protected List<DocumentNgram> getNgrams(CorpusMapper corpusMapper, Keywords stopwords, String[] queries) throws IOException {
+		FlexibleQueue<DocumentNgram> queue = new FlexibleQueue<DocumentNgram>(comparator, start+limit);
+		visitNgrams(corpusMapper, queries, ngram -> queue.offer(ngram));
+		return queue.getOrderedList(start);
+	}
 
-		Map<String, SpanQuery> queriesMap = getCategoriesAwareSpanQueryMap(corpusMapper, queries);
+	@Override
+	protected void runAllTerms(CorpusMapper corpusMapper, Keywords stopwords) throws IOException {
+		this.ngrams.addAll(getNgrams(corpusMapper, stopwords));
+	}
 
+	protected List<DocumentNgram> getNgrams(CorpusMapper corpusMapper, Keywords stopwords) throws IOException {
+		FlexibleQueue<DocumentNgram> queue = new FlexibleQueue<DocumentNgram>(comparator, start+limit);
+		visitNgrams(corpusMapper, null, ngram -> queue.offer(ngram));
+		return queue.getOrderedList(start);
+	}
+	
+	/**
+	 * Find the n-grams of each document and pass them to the consumer once they've been filtered
+	 * by length and overlap. Each document's terms are read from its forward index and all repeated
+	 * phrases are listed from a {@link SuffixArray}. Long repeated passages can produce a number of
+	 * n-grams that grows with the square of their length, so no more n-grams are produced (and
+	 * no more repeats are visited) once the maximum number of n-grams has been reached.
+	 * @param corpusMapper the corpus mapper
+	 * @param queries the queries that n-grams should start with, or null for all n-grams
+	 * @param consumer the consumer of n-grams
+	 * @throws IOException
+	 */
+	void visitNgrams(CorpusMapper corpusMapper, String[] queries, Consumer<DocumentNgram> consumer) throws IOException {
 		Corpus corpus = corpusMapper.getCorpus();
+		int[] totalTokens = corpus.getLastTokenPositions(tokenType);
 		
 		Set<String> validIds = new HashSet<String>();
 		validIds.addAll(this.getCorpusStoredDocumentIdsFromParameters(corpus));
 		
+		Map<Integer, Map<String, List<int[]>>> docTermPositionsMap = null;
+		if (queries!=null) {
+			docTermPositionsMap = getDocTermPositionsMap(corpusMapper, validIds, queries);
+		}
+		
+		OverlapFilter filter = getDocumentNgramsOverlapFilter(parameters);
+		ngramsCount = 0;
+		capped = false;
+		DocIdSetIterator it = corpusMapper.getDocIdSet().iterator();
+		while (capped==false && it.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+			int luceneDoc = it.docID();
+			String docId = corpusMapper.getDocumentIdFromLuceneId(luceneDoc);
+			if (validIds.contains(docId)==false) {continue;}
+			int corpusDocumentIndex = corpusMapper.getDocumentPositionFromLuceneId(luceneDoc);
+			if (docTermPositionsMap!=null && docTermPositionsMap.containsKey(corpusDocumentIndex)==false) {continue;}
+			int lastToken = totalTokens[corpusDocumentIndex];
+			
+			DocumentForwardIndex forwardIndex = DocumentForwardIndex.getInstance(storage, corpusMapper.getLeafReader(), luceneDoc, docId, tokenType);
+			NgramsSequence sequence = new NgramsSequence(forwardIndex, corpusDocumentIndex, lastToken);
+			
+			// without an overlap filter there's no need to keep this document's n-grams around
+			List<DocumentNgram> ngrams = filter instanceof NoOverlapFilter ? null : new ArrayList<DocumentNgram>();
+			Consumer<DocumentNgram> documentConsumer = ngram -> {
+				if (ngram.getLength()>=minLength && ngram.getLength()<=maxLength && capped==false) {
+					if (maxNgramsCount>0 && ++ngramsCount>=maxNgramsCount) {capped = true;}
+					if (ngrams==null) {consumer.accept(ngram);}
+					else {ngrams.add(ngram);}
+				}
+			};
+			
+			if (docTermPositionsMap==null) {
+				sequence.visitNgrams(documentConsumer);
+			}
+			else {
+				for (Map.Entry<String, List<int[]>> realTermEntry : getRealTermPositionsMap(forwardIndex, docTermPositionsMap.get(corpusDocumentIndex)).entrySet()) {
+					sequence.visitNgrams(realTermEntry.getKey(), realTermEntry.getValue(), documentConsumer);
+				}
+			}
+			
+			if (ngrams!=null) {
+				for (DocumentNgram ngram : filter.getFilteredNgrams(ngrams, lastToken)) {
+					consumer.accept(ngram);
+				}
+			}
+		}
+		
+		if (capped) {
+			message(Message.Type.WARN, "maxNgrams", "This tool has reached the maximum number of n-grams ("+maxNgramsCount+"), so some n-grams are missing.");
+		}
+	}
+	
+	private Map<Integer, Map<String, List<int[]>>> getDocTermPositionsMap(CorpusMapper corpusMapper, Set<String> validIds, String[] queries) throws IOException {
+		
+		Map<String, SpanQuery> queriesMap = getCategoriesAwareSpanQueryMap(corpusMapper, queries);
+
+		Corpus corpus = corpusMapper.getCorpus();
+		
 		int docIndexInCorpus; // this should always be changed on the first span
 		Map<Integer, Map<String, List<int[]>>> docTermPositionsMap = new HashMap<Integer, Map<String, List<int[]>>>();
 		
@@ -180,161 +265,211 @@ public class DocumentNgrams extends AbstractTerms implements ConsumptiveTool {
 			}
 		}
 		
-		int[] totalTokens = corpus.getLastTokenPositions(tokenType);
+		return docTermPositionsMap;
+	}
+	
+	/**
+	 * Group the query matches of a document by the actual terms that were matched.
+	 * @param forwardIndex the document's forward index
+	 * @param termPositionsMap the query matches, with start (inclusive) and end (exclusive) positions
+	 * @return the matches for each real term, with start and end positions (both inclusive)
+	 */
+	private Map<String, List<int[]>> getRealTermPositionsMap(DocumentForwardIndex forwardIndex, Map<String, List<int[]>> termPositionsMap) {
 		StringBuilder realTermBuilder = new StringBuilder();
-		String realTerm;
-		List<DocumentNgram> allNgrams = new ArrayList<DocumentNgram>();
-		OverlapFilter filter = getDocumentNgramsOverlapFilter(parameters);
-		for (Map.Entry<Integer, Map<String, List<int[]>>> docEntry : docTermPositionsMap.entrySet()) {
-			docIndexInCorpus = docEntry.getKey();
-			SimplifiedTermInfo[] sparseSimplifiedTermInfoArray = getSparseSimplifiedTermInfoArray(corpusMapper, corpusMapper.getLuceneIdFromDocumentPosition(docIndexInCorpus), totalTokens[docIndexInCorpus]);
-			Map<String, List<int[]>> realStringsMap = new HashMap<String, List<int[]>>();
-			for (Map.Entry<String, List<int[]>> termEntry : docEntry.getValue().entrySet()) {
-//				new Ngram(docIndexInCorpus, term, positions, length)
-				for (int[] positions : termEntry.getValue()) {
-					for (int i=positions[0]; i<positions[1]; i++) {
-						realTermBuilder.append(sparseSimplifiedTermInfoArray[i].term).append(" ");
-					}
-					realTerm = realTermBuilder.toString().trim();
-					realTermBuilder.setLength(0);
-					if (realStringsMap.containsKey(realTerm) == false) {
-						realStringsMap.put(realTerm, new ArrayList<int[]>());
+		Map<String, List<int[]>> realStringsMap = new HashMap<String, List<int[]>>();
+		for (Map.Entry<String, List<int[]>> termEntry : termPositionsMap.entrySet()) {
+			for (int[] positions : termEntry.getValue()) {
+				for (int i=positions[0]; i<positions[1]; i++) {
+					if (forwardIndex.hasPosition(i)) {
+						realTermBuilder.append(forwardIndex.getTerm(i)).append(" ");
 					}
-					realStringsMap.get(realTerm).add(new int[]{positions[0], positions[1]-1});
 				}
+				String realTerm = realTermBuilder.toString().trim();
+				realTermBuilder.setLength(0);
+				if (realStringsMap.containsKey(realTerm) == false) {
+					realStringsMap.put(realTerm, new ArrayList<int[]>());
+				}
+				realStringsMap.get(realTerm).add(new int[]{positions[0], positions[1]-1});
 			}
-			List<DocumentNgram> ngrams = new ArrayList<DocumentNgram>();
-			for (Map.Entry<String, List<int[]>> realTermMap : realStringsMap.entrySet()) {
-				List<int[]> values = realTermMap.getValue();
-				//DocumentNgram ngram = new DocumentNgram(docIndexInCorpus, realTermMap.getKey(), values, values.get(0)[1]+1-values.get(0)[0]);
-				ngrams.add(new DocumentNgram(docIndexInCorpus, realTermMap.getKey(), values, values.get(0)[1]+1-values.get(0)[0]));
-			}
-			
-			// we need to go through our first list to see if any of them are long enough
-//			System.out.println("ngrams: "+ngrams.size()+", termInfo: "+sparseSimplifiedTermInfoArray.length);
-			List<DocumentNgram> nextNgrams = getNextNgrams(ngrams, sparseSimplifiedTermInfoArray, docIndexInCorpus, 2);
-			for (DocumentNgram ngram : ngrams) {
-				if (ngram.getLength()>=minLength && ngram.getLength()<=maxLength) {
-					nextNgrams.add(ngram);
+		}
+		return realStringsMap;
+	}
+	
+	/**
+	 * The tokens of a document as a sequence of symbols for a {@link SuffixArray}. Terms that only
+	 * occur once in the document can't be part of an n-gram, so each of them gets its own symbol,
+	 * which means that no shared prefix can span them. Positions without a token are skipped.
+	 */
+	private class NgramsSequence {
+		
+		private DocumentForwardIndex forwardIndex;
+		
+		private int corpusDocumentIndex;
+		
+		private int[] sequence;
+		
+		private int[] termIds; // the forward index term id of each token
+		
+		private int[] positions; // the document position of each token
+		
+		private int[] tokenIndexes; // the index of the first token at or after each document position
+		
+		private int[] runs; // the number of repeating terms from each token on
+		
+		private SuffixArray suffixArray;
+		
+		private NgramsSequence(DocumentForwardIndex forwardIndex, int corpusDocumentIndex, int lastToken) {
+			this.forwardIndex = forwardIndex;
+			this.corpusDocumentIndex = corpusDocumentIndex;
+			int size = Math.min(lastToken+1, forwardIndex.size());
+			int types = forwardIndex.getTypesCount();
+			sequence = new int[size];
+			termIds = new int[size];
+			positions = new int[size];
+			tokenIndexes = new int[size+1];
+			int count = 0;
+			int singles = 0;
+			for (int pos=0; pos<size; pos++) {
+				tokenIndexes[pos] = count;
+				if (forwardIndex.hasPosition(pos)) {
+					int termId = forwardIndex.getTermId(pos);
+					sequence[count] = forwardIndex.getRawFreqForTermId(termId)>1 ? termId : types+singles++;
+					termIds[count] = termId;
+					positions[count] = pos;
+					count++;
 				}
 			}
-			
-			//ngrams = getFilteredNgrams(ngrams, totalTokens[docIndexInCorpus]);
-			allNgrams.addAll(filter.getFilteredNgrams(nextNgrams, totalTokens[docIndexInCorpus]));
+			tokenIndexes[size] = count;
+			sequence = Arrays.copyOf(sequence, count);
+			runs = new int[count+1];
+			for (int i=count-1; i>-1; i--) {
+				runs[i] = sequence[i]<types ? runs[i+1]+1 : 0;
+			}
+			suffixArray = new SuffixArray(sequence, types+singles);
 		}
 		
-		FlexibleQueue<DocumentNgram> queue = new FlexibleQueue<DocumentNgram>(comparator, start+limit);
-		for (DocumentNgram ngram : allNgrams) {
-			if (ngram.getLength()>=minLength && ngram.getLength()<=maxLength) {
-				queue.offer(ngram);
+		/**
+		 * Visit all n-grams (of two terms or more) in this document.
+		 * @param consumer the consumer of n-grams
+		 */
+		private void visitNgrams(Consumer<DocumentNgram> consumer) {
+			suffixArray.visitIntervals((from, to, minLength, maxLength) -> {
+				if (to-from+1>=minRawFreq) {
+					int[] tokens = new int[to-from+1];
+					for (int i=from; i<=to; i++) {tokens[i-from] = suffixArray.getSuffix(i);}
+					Arrays.sort(tokens);
+					int[] startPositions = new int[tokens.length];
+					for (int i=0; i<tokens.length; i++) {startPositions[i] = positions[tokens[i]];}
+					visitNgrams("", startPositions, tokens, Math.max(minLength, 2), maxLength, consumer);
+				}
+				return capped==false;
+			});
+			if (minRawFreq<=1) {
+				// n-grams that occur only once are the prefixes of a suffix that are longer than those it shares
+				for (int i=0, len=suffixArray.size(); i<len && capped==false; i++) {
+					int token = suffixArray.getSuffix(i);
+					int shared = Math.max(suffixArray.getLcp(i), i+1<len ? suffixArray.getLcp(i+1) : 0);
+					visitNgrams("", new int[]{positions[token]}, new int[]{token}, Math.max(shared+1, 2), runs[token], consumer);
+				}
 			}
 		}
-		return queue.getOrderedList(start);
-	}
-
-	@Override
-	protected void runAllTerms(CorpusMapper corpusMapper, Keywords stopwords) throws IOException {
-		this.setStartTime();
-		this.ngrams.addAll(getNgrams(corpusMapper, stopwords));
-	}
-
-	protected List<DocumentNgram> getNgrams(CorpusMapper corpusMapper, Keywords stopwords) throws IOException {
-		Corpus corpus = corpusMapper.getCorpus();
-		int[] totalTokens = corpus.getLastTokenPositions(tokenType);
-		FlexibleQueue<DocumentNgram> queue = new FlexibleQueue<DocumentNgram>(comparator, start+limit);
 		
-		Set<String> validIds = new HashSet<String>();
-		validIds.addAll(this.getCorpusStoredDocumentIdsFromParameters(corpus));
-		OverlapFilter filter = getDocumentNgramsOverlapFilter(parameters);
-		DocIdSetIterator it = corpusMapper.getDocIdSet().iterator();
-		while (it.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
-			int luceneDoc = it.docID();
-			String docId = corpusMapper.getDocumentIdFromLuceneId(luceneDoc);
-			if (validIds.contains(docId)==false) {continue;}
-			int corpusDocumentIndex = corpusMapper.getDocumentPositionFromLuceneId(luceneDoc);
-			int lastToken = totalTokens[corpusDocumentIndex];	
+		/**
+		 * Visit the specified real term (such as a query match) and all n-grams that extend it.
+		 * @param realTerm the real term
+		 * @param realTermPositions the start and end positions (both inclusive) of each occurrence
+		 * @param consumer the consumer of n-grams
+		 */
+		private void visitNgrams(String realTerm, List<int[]> realTermPositions, Consumer<DocumentNgram> consumer) {
+			if (capped) {return;}
+			consumer.accept(new DocumentNgram(corpusDocumentIndex, realTerm, realTermPositions, realTermPositions.get(0)[1]+1-realTermPositions.get(0)[0]));
 			
-			// build single grams as seed for ngrams
-			SimplifiedTermInfo[] sparseSimplifiedTermInfoArray = getSparseSimplifiedTermInfoArray(corpusMapper, luceneDoc, lastToken);
-			
-			Map<String, List<int[]>> stringPositionsMap = new HashMap<String, List<int[]>>();
-			for (int i=0, len=sparseSimplifiedTermInfoArray.length; i<len; i++) {
-				if (sparseSimplifiedTermInfoArray[i]!=null && sparseSimplifiedTermInfoArray[i].term.isEmpty()==false) {
-					if (stringPositionsMap.containsKey(sparseSimplifiedTermInfoArray[i].term)==false) {
-						List<int[]> l = new ArrayList<int[]>();
-						l.add(new int[]{i,i});
-						stringPositionsMap.put(sparseSimplifiedTermInfoArray[i].term, l);
-					}
-					else {
-						stringPositionsMap.get(sparseSimplifiedTermInfoArray[i].term).add(new int[]{i,i});
+			// find the token that follows each occurrence
+			long[] continuations = new long[realTermPositions.size()];
+			int count = 0;
+			for (int i=0, len=realTermPositions.size(); i<len; i++) {
+				int next = realTermPositions.get(i)[1]+1;
+				if (next<tokenIndexes.length) {
+					int token = tokenIndexes[next];
+					if (runs[token]>0) {
+						continuations[count++] = ((long) suffixArray.getRank(token) << 32) | i;
 					}
 				}
 			}
+			if (count==0) {return;}
 			
-			List<DocumentNgram> ngrams = getNgramsFromStringPositions(stringPositionsMap, corpusDocumentIndex, 1);
-//			System.out.println("ngrams: "+ngrams.size()+", termInfo: "+sparseSimplifiedTermInfoArray.length);
-			ngrams = getNextNgrams(ngrams, sparseSimplifiedTermInfoArray, corpusDocumentIndex, 2);
-			
-			ngrams = filter.getFilteredNgrams(ngrams, lastToken);
+			// sort the continuations like their suffixes and determine the prefixes they share
+			Arrays.sort(continuations, 0, count);
+			int[] tokens = new int[count];
+			int[] startPositions = new int[count];
+			int[] lcp = new int[count];
+			for (int i=0; i<count; i++) {
+				int[] occurrence = realTermPositions.get((int) continuations[i]);
+				tokens[i] = tokenIndexes[occurrence[1]+1];
+				startPositions[i] = occurrence[0];
+				if (i>0) {
+					int previous = tokens[i-1];
+					int h = 0;
+					while (h<runs[previous] && h<runs[tokens[i]] && sequence[previous+h]==sequence[tokens[i]+h]) {h++;}
+					lcp[i] = h;
+				}
+			}
 			
-			for (DocumentNgram ngram : ngrams) {
-				if (ngram.getLength()>=minLength && ngram.getLength()<=maxLength) {
-					queue.offer(ngram);
+			String prefix = realTerm;
+			SuffixArray.visitIntervals(lcp, count, (from, to, minLength, maxLength) -> {
+				if (to-from+1>=minRawFreq) {
+					visitNgrams(prefix, startPositions, tokens, from, to, minLength, maxLength, consumer);
+				}
+				return capped==false;
+			});
+			if (minRawFreq<=1) {
+				for (int i=0; i<count && capped==false; i++) {
+					int shared = Math.max(lcp[i], i+1<count ? lcp[i+1] : 0);
+					visitNgrams(prefix, startPositions, tokens, i, i, shared+1, runs[tokens[i]], consumer);
 				}
 			}
 		}
 		
-		return queue.getOrderedList(start);
-		
-		
-	}
-	
-	private List<DocumentNgram> getNextNgrams(List<DocumentNgram> ngrams, SimplifiedTermInfo[] sparseSimplifiedTermInfoArray, int corpusDocumentIndex, int length) {
-		Map<String, List<int[]>> stringPositionsMap = new HashMap<String, List<int[]>>();
-		for (DocumentNgram ngram : ngrams) {
-			for (int[] positions : ngram.getPositions()) {
-				for (int i=positions[1]+1; i<sparseSimplifiedTermInfoArray.length;i++) {
-					if (sparseSimplifiedTermInfoArray[i]!=null) {
-						if (sparseSimplifiedTermInfoArray[i].term.isEmpty()) {break;} // non repeating word
-						String term = ngram.getTerm()+" "+sparseSimplifiedTermInfoArray[i].term;
-						int[] newint = new int[]{positions[0], i};
-						if (stringPositionsMap.containsKey(term)==false) {
-							List<int[]> list = new ArrayList<int[]>();
-							list.add(newint);
-							stringPositionsMap.put(term, list);
-						}
-						else {
-							stringPositionsMap.get(term).add(newint);
-						}
-						break;
-					}
-				}
+		private void visitNgrams(String prefix, int[] startPositions, int[] tokens, int from, int to, int minLength, int maxLength, Consumer<DocumentNgram> consumer) {
+			// keep occurrences in document order
+			long[] occurrences = new long[to-from+1];
+			for (int i=from; i<=to; i++) {
+				occurrences[i-from] = ((long) startPositions[i] << 32) | tokens[i];
 			}
-		}
-		List<DocumentNgram> newngrams = getNgramsFromStringPositions(stringPositionsMap, corpusDocumentIndex, length);
-		long currTime = System.currentTimeMillis();
-		long diffTime = currTime - startTime;
-		if (diffTime >= maxRunTimeMilliseconds) {
-			message(Message.Type.WARN, "maxTime", "This tool has exceeded the maximum run time.");
-			return newngrams;
-		} else {
-			if (newngrams.isEmpty()==false) {
-				newngrams.addAll(getNextNgrams(newngrams, sparseSimplifiedTermInfoArray, corpusDocumentIndex, length+1));
+			Arrays.sort(occurrences);
+			int[] sortedStartPositions = new int[occurrences.length];
+			int[] sortedTokens = new int[occurrences.length];
+			for (int i=0; i<occurrences.length; i++) {
+				sortedStartPositions[i] = (int) (occurrences[i] >>> 32);
+				sortedTokens[i] = (int) occurrences[i];
 			}
-			return newngrams;
+			visitNgrams(prefix, sortedStartPositions, sortedTokens, minLength, maxLength, consumer);
 		}
-	}
-	
-
-	private List<DocumentNgram> getNgramsFromStringPositions(Map<String, List<int[]>> stringPositionsMap, int corpusDocumentIndex, int length) {
-		List<DocumentNgram> ngrams = new ArrayList<DocumentNgram>();
-		for (Map.Entry<String, List<int[]>> stringPositions : stringPositionsMap.entrySet()) {
-			List<int[]> values = stringPositions.getValue();
-			if (values.size()>=minRawFreq) {
-				ngrams.add(new DocumentNgram(corpusDocumentIndex, stringPositions.getKey(), values, values.get(0)[1]+1-values.get(0)[0]));
+		
+		/**
+		 * Create the n-grams made of the prefix and from minLength to maxLength of the tokens that follow.
+		 * @param prefix the real term that these n-grams extend (or an empty string)
+		 * @param startPositions the start position of each occurrence
+		 * @param tokens the first token after the prefix for each occurrence
+		 * @param minLength the minimum number of tokens after the prefix
+		 * @param maxLength the maximum number of tokens after the prefix
+		 * @param consumer the consumer of n-grams
+		 */
+		private void visitNgrams(String prefix, int[] startPositions, int[] tokens, int minLength, int maxLength, Consumer<DocumentNgram> consumer) {
+			maxLength = Math.min(maxLength, DocumentNgrams.this.maxLength);
+			StringBuilder term = new StringBuilder(prefix);
+			for (int length=1; length<=maxLength && capped==false; length++) {
+				if (term.length()>0) {term.append(" ");}
+				term.append(forwardIndex.getTermForTermId(termIds[tokens[0]+length-1]));
+				if (length>=minLength) {
+					List<int[]> ngramPositions = new ArrayList<int[]>(tokens.length);
+					for (int i=0; i<tokens.length; i++) {
+						ngramPositions.add(new int[]{startPositions[i], positions[tokens[i]+length-1]});
+					}
+					consumer.accept(new DocumentNgram(corpusDocumentIndex, term.toString(), ngramPositions, ngramPositions.get(0)[1]+1-ngramPositions.get(0)[0]));
+				}
 			}
 		}
-		return ngrams;
 	}
 
 	/*
@@ -392,35 +527,6 @@ public class DocumentNgrams extends AbstractTerms implements ConsumptiveTool {
 	}
 	*/
 
-	private SimplifiedTermInfo[] getSparseSimplifiedTermInfoArray(CorpusMapper corpusMapper, int luceneDoc, int lastTokenOffset) throws IOException {
-		
-		Keywords stopwords = this.getStopwords(corpusMapper.getCorpus());
-		Terms terms = corpusMapper.getLeafReader().getTermVector(luceneDoc, tokenType.name());
-		TermsEnum termsEnum = terms.iterator();
-		SimplifiedTermInfo[] simplifiedTermInfoArray = new SimplifiedTermInfo[lastTokenOffset+1];
-		while(true) {
-			BytesRef term = termsEnum.next();
-			if (term!=null) {
-				String termString = term.utf8ToString();
-				//if (stopwords.isKeyword(termString)) {continue;} // treat as whitespace or punctuation // TODO why are stopwords not used??
-				PostingsEnum postingsEnum = termsEnum.postings(null, PostingsEnum.OFFSETS);
-				while(postingsEnum.nextDoc() != PostingsEnum.NO_MORE_DOCS) {
-					int freq = postingsEnum.freq();
-					for (int i=0, len = freq; i<len; i++) {
-						int pos = postingsEnum.nextPosition();
-						if (freq > 1) {
-							simplifiedTermInfoArray[pos] = new SimplifiedTermInfo(termString, pos, 1, freq, postingsEnum.startOffset(), postingsEnum.endOffset());
-						} else {
-							simplifiedTermInfoArray[pos] = new SimplifiedTermInfo(""); // empty string if not repeating	
-						}
-					}
-				}
-			}
-			else {break;}
-		}
-		return simplifiedTermInfoArray;
-	}
-	
 	private OverlapFilter getDocumentNgramsOverlapFilter(FlexibleParameters parameters) {
 		Filter filter = Filter.getForgivingly(parameters);
 		switch (filter) {
@@ -430,11 +536,6 @@ public class DocumentNgrams extends AbstractTerms implements ConsumptiveTool {
 		}
 	}
 
-	protected void setStartTime() {
-		startTime = System.currentTimeMillis();
-	}
-	
-
 	private interface OverlapFilter {
 		List<DocumentNgram> getFilteredNgrams(List<DocumentNgram> ngrams, int lastToken);
 	}
@@ -484,28 +585,6 @@ public class DocumentNgrams extends AbstractTerms implements ConsumptiveTool {
 		}
 	}
 
-	private class SimplifiedTermInfo {
-		private String term;
-		private int pos;
-		private int length; // number of tokens
-		private int freq;
-		private int startOffset;
-		private int endOffset;
-		private SimplifiedTermInfo(String term, int pos, int length, int freq, int startOffset, int endOffset) {
-			this.term = term;
-			this.pos = pos;
-			this.length = length;
-			this.freq = freq;
-			this.startOffset = startOffset;
-			this.endOffset = endOffset;
-			
-		}
-		public SimplifiedTermInfo(String string) {
-			this(string, 0, 0, 0, 0, 0);
-		}
-	}
-
-
 	protected List<DocumentNgram> getNgrams() {
 		return ngrams;
 	}
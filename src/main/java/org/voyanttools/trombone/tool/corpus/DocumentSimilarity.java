@@ -14,6 +14,7 @@ import org.voyanttools.trombone.model.TokenType;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.tool.analysis.AnalysisUtils;
 import org.voyanttools.trombone.tool.analysis.CorrespondenceAnalysis;
+import org.voyanttools.trombone.tool.analysis.FrequencyMatrix;
 import org.voyanttools.trombone.tool.corpus.CorpusAnalysisTool.MatrixType;
 import org.voyanttools.trombone.util.FlexibleParameters;
 
@@ -33,12 +34,12 @@ public class DocumentSimilarity extends CA {
 	}
 
 	@Override
-	public double[][] getInput() throws IOException {
+	public FrequencyMatrix getInput() throws IOException {
 		return buildFrequencyMatrix(MatrixType.DOCUMENT, 3);
 	}
 	
 	@Override
-	public double[][] runAnalysis(double[][] freqMatrix) throws IOException {
+	public double[][] runAnalysis(FrequencyMatrix freqMatrix) throws IOException {
 		ca = new CorrespondenceAnalysis(freqMatrix);
 		ca.runAnalysis();
 		
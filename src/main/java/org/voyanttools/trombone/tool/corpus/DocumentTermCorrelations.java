@@ -3,10 +3,15 @@ package org.voyanttools.trombone.tool.corpus;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import org.apache.commons.math3.stat.regression.SimpleRegression;
 import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.model.DocumentTerm;
 import org.voyanttools.trombone.model.DocumentTermsCorrelation;
@@ -16,6 +21,7 @@ import org.voyanttools.trombone.tool.util.Message;
 import org.voyanttools.trombone.tool.util.ToolSerializer;
 import org.voyanttools.trombone.util.FlexibleParameters;
 import org.voyanttools.trombone.util.FlexibleQueue;
+import org.voyanttools.trombone.util.SparseCorrelations;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamConverter;
@@ -66,7 +72,7 @@ public class DocumentTermCorrelations extends AbstractTerms {
 	}
 	
 	public float getVersion() {
-		return super.getVersion()+2;
+		return super.getVersion()+3;
 	}
 	
 	@Override
@@ -121,39 +127,60 @@ public class DocumentTermCorrelations extends AbstractTerms {
 	}
 	
 	private List<DocumentTermsCorrelation> getDocumentTermsCorrelationList(List<DocumentTerm> outerList, List<DocumentTerm> innerList, boolean half) {
-//		SpearmansCorrelation spearmansCorrelation = new SpearmansCorrelation();
-		Comparator<DocumentTermsCorrelation> comparator = DocumentTermsCorrelation.getComparator(DocumentTermsCorrelation.Sort.getForgivingly(parameters));
-		FlexibleQueue<DocumentTermsCorrelation> queue = new FlexibleQueue<DocumentTermsCorrelation>(comparator, start+limit);
-		SimpleRegression regression = new SimpleRegression();
-		boolean maxTimeHit = false;
+		if (innerList.isEmpty()) {return new ArrayList<DocumentTermsCorrelation>();}
+		String docId = innerList.get(0).getDocId();
+		
+		// distinct terms in alphabetical order, so that pairs can be halved by comparing indexes
+		SortedMap<String, DocumentTerm> documentTermsMap = new TreeMap<String, DocumentTerm>();
+		for (DocumentTerm inner : innerList) {
+			documentTermsMap.put(inner.getTerm(), inner);
+		}
+		Set<String> outerTerms = new HashSet<String>();
 		for (DocumentTerm outer : outerList) {
-			if (maxTimeHit) break;
-			for (DocumentTerm inner : innerList) {
-				if (maxTimeHit) break;
-				if (outer.getDocId().equals(inner.getDocId())==false) {continue;} // different docs, maybe from querying
-				if (outer.equals(inner)) {continue;} // same word
-				if (!half || (half && outer.getTerm().compareTo(inner.getTerm())>0)) {
-					regression.clear();
-					float[] outerCounts = outer.getRelativeDistributions(distributionBins);
-					float[] innerCounts = inner.getRelativeDistributions(distributionBins);
-					for (int i=0, len=outerCounts.length; i<len; i++) {
-						regression.addData(outerCounts[i], innerCounts[i]);
-					}
-					queue.offer(new DocumentTermsCorrelation(inner, outer, (float) regression.getR(), (float) regression.getSignificance()));
-					if (total % 10 == 0) {
-						long currTime = System.currentTimeMillis();
-						long diffTime = currTime - startTime;
-						if (diffTime >= maxRunTimeMilliseconds) {
-							message(Message.Type.WARN, "maxTime", "This tool has exceeded the maximum run time.");
-							maxTimeHit = true;
-						}
-					}
-					total++;
-				}
-			}
+			if (outer.getDocId().equals(docId)==false) {continue;} // different docs, maybe from querying
+			documentTermsMap.putIfAbsent(outer.getTerm(), outer);
+			outerTerms.add(outer.getTerm());
+		}
+		List<DocumentTerm> documentTerms = new ArrayList<DocumentTerm>(documentTermsMap.values());
+		List<float[]> distributions = new ArrayList<float[]>();
+		for (DocumentTerm documentTerm : documentTerms) {
+			distributions.add(documentTerm.getRelativeDistributions(distributionBins));
+		}
+		Set<String> innerTerms = innerList.stream().map(DocumentTerm::getTerm).collect(Collectors.toSet());
+		int[] outers = IntStream.range(0, documentTerms.size()).filter(i -> outerTerms.contains(documentTerms.get(i).getTerm())).toArray();
+		int[] inners = IntStream.range(0, documentTerms.size()).filter(i -> innerTerms.contains(documentTerms.get(i).getTerm())).toArray();
+		
+		SparseCorrelations sparseCorrelations = new SparseCorrelations(distributions);
+		total += (int) Math.min(Integer.MAX_VALUE, sparseCorrelations.getPairsCount(outers, inners, half));
+		DocumentTermsCorrelation.Sort sort = DocumentTermsCorrelation.Sort.getForgivingly(parameters);
+		FlexibleQueue<DocumentTermsCorrelation> queue = new FlexibleQueue<DocumentTermsCorrelation>(DocumentTermsCorrelation.getComparator(sort), start+limit);
+		boolean complete = sparseCorrelations.visitTopPairs(outers, inners, half, getOrder(sort), start+limit, startTime+maxRunTimeMilliseconds, (outer, inner, correlation) -> {
+			queue.offer(new DocumentTermsCorrelation(documentTerms.get(inner), documentTerms.get(outer), correlation, (float) sparseCorrelations.getSignificance(correlation)));
+		});
+		if (!complete) {
+			message(Message.Type.WARN, "maxTime", "This tool has exceeded the maximum run time.");
 		}
 		return queue.getOrderedList();
 	}
+	
+	/**
+	 * Get the order of the correlations that rank first with the comparator for this sort.
+	 */
+	private static SparseCorrelations.Order getOrder(DocumentTermsCorrelation.Sort sort) {
+		switch (sort) {
+		case CORRELATIONASC:
+			return SparseCorrelations.Order.CORRELATION_ASCENDING;
+		case CORRELATIONABS:
+			return SparseCorrelations.Order.ABSOLUTE_DESCENDING;
+		case SIGNIFICANCEASC:
+			return SparseCorrelations.Order.SIGNIFICANCE_ASCENDING;
+		case SIGNIFICANCEDESC:
+		case SIGNIFICANCEABS:
+			return SparseCorrelations.Order.SIGNIFICANCE_DESCENDING;
+		default: // CORRELATIONDESC
+			return SparseCorrelations.Order.CORRELATION_DESCENDING;
+		}
+	}
 
 	public static class DocumentTermCorrelationsConverter implements Converter {
 
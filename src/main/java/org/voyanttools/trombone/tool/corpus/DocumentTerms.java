@@ -44,7 +44,7 @@ import org.voyanttools.trombone.model.Corpus;
 import org.voyanttools.trombone.model.CorpusAccess;
 import org.voyanttools.trombone.model.CorpusAccessException;
 import org.voyanttools.trombone.model.CorpusTermMinimal;
-import org.voyanttools.trombone.model.CorpusTermMinimalsDB;
+import org.voyanttools.trombone.model.CorpusTermStats;
 import org.voyanttools.trombone.model.DocumentTerm;
 import org.voyanttools.trombone.model.Keywords;
 import org.voyanttools.trombone.storage.Storage;
@@ -141,13 +141,13 @@ public class DocumentTerms extends AbstractTerms implements Iterable<DocumentTer
 		float[] typesCountMeans = corpus.getTypesCountMeans(tokenType);
 		float[] typesCountStdDev = corpus.getTypesCountStdDevs(tokenType);
 
-		CorpusTermMinimalsDB corpusTermMinimalsDB = CorpusTermMinimalsDB.getInstance(corpusMapper, tokenType);
+		CorpusTermStats corpusTermStats = CorpusTermStats.getInstance(corpusMapper, tokenType);
 		
 		BitSet bitset = corpusMapper.getBitSetFromDocumentIds(this.getCorpusStoredDocumentIdsFromParameters(corpus));
 		
 		for (Map.Entry<String, SpanQuery> spanQueryEntry : queriesMap.entrySet()) {
 			String queryString = spanQueryEntry.getKey();
-			CorpusTermMinimal corpusTermMinimal = corpusTermMinimalsDB.get(queryString);
+			CorpusTermMinimal corpusTermMinimal = corpusTermStats.get(queryString);
 			Spans spans = corpusMapper.getFilteredSpans(spanQueryEntry.getValue(), bitset);
 			if (spans != null) {
 				int doc = spans.nextDoc();
@@ -190,7 +190,6 @@ public class DocumentTerms extends AbstractTerms implements Iterable<DocumentTer
 			}
 			positionsMap.clear(); // prepare for new entries
 		}
-		corpusTermMinimalsDB.close();
 		terms.addAll(queue.getOrderedList(start));
 	}
 
@@ -200,7 +199,7 @@ public class DocumentTerms extends AbstractTerms implements Iterable<DocumentTer
 		FlexibleQueue<DocumentTerm> queue = new FlexibleQueue<DocumentTerm>(comparator, size);
 		LeafReader reader = corpusMapper.getLeafReader();
 		Corpus corpus = corpusMapper.getCorpus();
-		CorpusTermMinimalsDB corpusTermMinimalsDB = CorpusTermMinimalsDB.getInstance(corpusMapper, tokenType);
+		CorpusTermStats corpusTermStats = CorpusTermStats.getInstance(corpusMapper, tokenType);
 		TermsEnum termsEnum = null;
 		Bits docIdBitSet =  corpusMapper.getBitSetFromDocumentIds(this.getCorpusStoredDocumentIdsFromParameters(corpus));
 		Bits allBits = new Bits.MatchAllBits(reader.numDocs());
@@ -228,7 +227,7 @@ public class DocumentTerms extends AbstractTerms implements Iterable<DocumentTer
 							continue;
 						}
 						if (!stopwords.isKeyword(termString)) {
-							CorpusTermMinimal corpusTermMinimal = corpusTermMinimalsDB.get(termString);
+							CorpusTermMinimal corpusTermMinimal = corpusTermStats.get(termString);
 							int[] positions = null;
 							int[] offsets = null;
 							int freq;
@@ -263,7 +262,6 @@ public class DocumentTerms extends AbstractTerms implements Iterable<DocumentTer
 				if (++i>=perDocLimit) {break;}
 			}
 		}
-		corpusTermMinimalsDB.close();
 		this.terms.addAll(queue.getOrderedList(start));
 	}
 
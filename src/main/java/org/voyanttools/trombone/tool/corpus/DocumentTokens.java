@@ -5,24 +5,19 @@ package org.voyanttools.trombone.tool.corpus;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.index.PostingsEnum;
-import org.apache.lucene.index.Terms;
-import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.vectorhighlight.FieldTermStack.TermInfo;
-import org.apache.lucene.util.BytesRef;
 import org.voyanttools.trombone.lucene.CorpusMapper;
+import org.voyanttools.trombone.lucene.analysis.AnalysisContext;
 import org.voyanttools.trombone.lucene.analysis.LemmaAnalyzer;
 import org.voyanttools.trombone.model.Corpus;
+import org.voyanttools.trombone.model.DocumentForwardIndex;
 import org.voyanttools.trombone.model.DocumentToken;
 import org.voyanttools.trombone.model.Keywords;
 import org.voyanttools.trombone.model.TokenType;
@@ -126,32 +121,14 @@ public class DocumentTokens extends AbstractCorpusTool implements ConsumptiveToo
 			int currentDocTokensCount = 0;
 
 			int luceneDoc = corpusMapper.getLuceneIdFromDocumentId(id);
-			Terms terms = corpusMapper.getLeafReader().getTermVector(luceneDoc, tokenType.name());
-			if (terms==null) {continue;}
-			TermsEnum termsEnum = terms.iterator();
-			Map<String, Integer> docFreqs = new HashMap<String, Integer>();
-			while(true) {
-				BytesRef term = termsEnum.next();
-				if (term!=null) {
-					String termString = term.utf8ToString();
-					if (stopwords.isKeyword(termString)) {
-						continue;
-					}
-					PostingsEnum postingsEnum = termsEnum.postings(null, PostingsEnum.OFFSETS);
-					postingsEnum.nextDoc();
-					for (int i=0, len = postingsEnum.freq(); i<len; i++) {
-						int pos = postingsEnum.nextPosition();
-						if (pos >= documentStart && pos<maxPos) { // out of range
-							if (!docFreqs.containsKey(termString)) {
-								docFreqs.put(termString, len);
-							}
-							termInfos.add(new TermInfo(termString, postingsEnum.startOffset(), postingsEnum.endOffset(), pos, 1));
-						}
-					}
+			DocumentForwardIndex forwardIndex = DocumentForwardIndex.getInstance(storage, corpusMapper.getLeafReader(), luceneDoc, id, tokenType);
+			if (forwardIndex.size()==0) {continue;}
+			// read only the window of positions that we need, already in position order
+			for (int pos=documentStart, len=Math.min(maxPos, forwardIndex.size()); pos<len; pos++) {
+				if (forwardIndex.hasPosition(pos) && stopwords.isKeyword(forwardIndex.getTerm(pos))==false) {
+					termInfos.add(forwardIndex.getTermInfo(pos));
 				}
-				else {break;}
 			}
-			Collections.sort(termInfos);
 			String document = corpus.getDocument(id).getDocumentString();
 //			String document = reader.document(luceneDoc).get(tokenType.name());
 			
@@ -169,7 +146,7 @@ public class DocumentTokens extends AbstractCorpusTool implements ConsumptiveToo
 				if (lemmas == null) {
 					String lang = corpusMapper.getCorpus().getDocument(id).getMetadata().getLanguageCode();
 					LemmaAnalyzer analyzer = new LemmaAnalyzer(storage.getNlpAnnotatorFactory());
-					TokenStream tokenStream = analyzer.tokenStream(TokenType.lemma.name(), document+"<!-- language="+lang+" -->");
+					TokenStream tokenStream = AnalysisContext.getInstance(lang, "").tokenStream(analyzer, TokenType.lemma.name(), document);
 					tokenStream.reset();
 					while (tokenStream.incrementToken()) {}
 					// no need to increment
@@ -197,7 +174,7 @@ public class DocumentTokens extends AbstractCorpusTool implements ConsumptiveToo
 					// if (len+1<termInfos.size()) {len++;} // extend loop by one
 				}
 				string = StringUtils.substring(document, termInfo.getStartOffset(), termInfo.getEndOffset());
-				DocumentToken dt = new DocumentToken(id, corpusDocumentIndexPosition, string, tokenType, termInfo.getPosition(), termInfo.getStartOffset(), termInfo.getEndOffset(), docFreqs.get(termInfo.getText()));
+				DocumentToken dt = new DocumentToken(id, corpusDocumentIndexPosition, string, tokenType, termInfo.getPosition(), termInfo.getStartOffset(), termInfo.getEndOffset(), forwardIndex.getRawFreq(termInfo.getPosition()));
 
 				// try to inject lemmas and pos if needed and available
 				if (lemmas!=null) {
@@ -5,7 +5,7 @@ package org.voyanttools.trombone.tool.corpus;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -27,6 +27,11 @@ import org.voyanttools.trombone.util.FlexibleQueue;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamOmitField;
 
+import gnu.trove.TLongArrayList;
+import gnu.trove.TLongIntHashMap;
+import gnu.trove.TLongIntIterator;
+import gnu.trove.TObjectIntHashMap;
+
 /**
  * @author sgs
  *
@@ -46,7 +51,7 @@ public class EntityCollocationsGraph extends AbstractTerms {
 	}
 	
 	public float getVersion() {
-		return super.getVersion()+1;
+		return super.getVersion()+2;
 	}
 
 	@Override
@@ -74,37 +79,17 @@ public class EntityCollocationsGraph extends AbstractTerms {
 		}
 		
 		
-		// organize by document and track counts
-		Map<Integer, List<DocumentEntity>> entitesByDocumentMap = new HashMap<Integer, List<DocumentEntity>>();
+		// give each entity an id and count the collocations of each pair of ids
+		List<String> entityKeys = new ArrayList<String>();
+		TObjectIntHashMap<String> entityIds = new TObjectIntHashMap<String>();
+		List<DocumentEntity> nonStopwordEntities = new ArrayList<DocumentEntity>();
 		for (DocumentEntity entity : documentEntities) {
 			if (stopwords.isKeyword(entity.getTerm().toLowerCase()) == false) {
-				int docIndex = entity.getDocIndex();
-				if (!entitesByDocumentMap.containsKey(docIndex)) {
-					entitesByDocumentMap.put(docIndex, new ArrayList<DocumentEntity>());
-				}
-				entitesByDocumentMap.get(docIndex).add(entity);
-			}
-		}
-		
-		// create intra-document links
-		Map<String, List<DocumentEntity[]>> termEntitiesMap = new HashMap<String, List<DocumentEntity[]>>();
-		for (List<DocumentEntity> docEntities : entitesByDocumentMap.values()) {
-			Collections.sort(docEntities);
-			for (DocumentEntity outer : docEntities) {
-				for (DocumentEntity inner : docEntities) {
-					if (inner.compareTo(outer)<0) {
-						String key = outer.getTerm()+" -- "+inner.getTerm();
-						if (!termEntitiesMap.containsKey(key)) {
-							termEntitiesMap.put(key, new ArrayList<DocumentEntity[]>());
-						}
-						termEntitiesMap.get(key).add(new DocumentEntity[]{outer,inner});
-					}
-					else {
-						break;
-					}
-				}
+				nonStopwordEntities.add(entity);
 			}
 		}
+		int context = parameters.getParameterIntValue("context", 10);
+		TLongIntHashMap collocationCounts = getCollocationCounts(nonStopwordEntities, entityKeys, entityIds, context);
 		
 		// create inter-document links
 		CorpusEntities corpusEntitiesTool = new CorpusEntities(storage, parameters);
@@ -124,13 +109,16 @@ public class EntityCollocationsGraph extends AbstractTerms {
 		}, start+limit);
 		
 		int minEdgeCount = parameters.getParameterIntValue("minEdgeCount", 2);
-		for (List<DocumentEntity[]> termEntitesList : termEntitiesMap.values()) {
-			if (termEntitesList.size()<minEdgeCount) {continue;}
-			DocumentEntity[] docEntities = termEntitesList.get(0);
-			String key1 = getEntityKey(docEntities[0].getTerm(), docEntities[0].getType());
-			String key2 = getEntityKey(docEntities[1].getTerm(), docEntities[1].getType());
-			if (corpusEntitiesMap.containsKey(key1) && corpusEntitiesMap.containsKey(key2)) {
-				edgesQueue.offer(new Edge(new CorpusEntity[]{corpusEntitiesMap.get(key1), corpusEntitiesMap.get(key2)}, termEntitesList.size()));
+		TLongIntIterator iterator = collocationCounts.iterator();
+		while (iterator.hasNext()) {
+			iterator.advance();
+			int count = iterator.value();
+			if (count<minEdgeCount) {continue;}
+			CorpusEntity corpusEntity1 = corpusEntitiesMap.get(entityKeys.get((int) (iterator.key() >>> 32)));
+			CorpusEntity corpusEntity2 = corpusEntitiesMap.get(entityKeys.get((int) iterator.key()));
+			if (corpusEntity1!=null && corpusEntity2!=null) {
+				// the entity with the greater term first, as always
+				edgesQueue.offer(new Edge(corpusEntity1.getTerm().compareTo(corpusEntity2.getTerm())>0 ? new CorpusEntity[]{corpusEntity1, corpusEntity2} : new CorpusEntity[]{corpusEntity2, corpusEntity1}, count));
 			}
 		}
 		
@@ -150,7 +138,75 @@ public class EntityCollocationsGraph extends AbstractTerms {
 		nodes.addAll(corpusEntitiesToIndexMap.keySet());
 	}
 	
-	private String getEntityKey(String term, EntityType type) {
+	/**
+	 * Count how often each pair of entities occurs together. Occurrences are sorted by position in each document
+	 * and a window slides over them, so that each occurrence is only compared to those that follow it closely.
+	 * @param documentEntities the entities of all documents
+	 * @param entityKeys the key of each entity id, to which new entities are added
+	 * @param entityIds the id of each entity key, to which new entities are added
+	 * @param context the maximum distance in tokens between two collocated occurrences, or 0 to count each pair
+	 * once per document in which they both occur (regardless of their positions)
+	 * @return the counts, keyed by the lower entity id followed by the higher one (in the upper and lower 32 bits)
+	 */
+	static TLongIntHashMap getCollocationCounts(List<DocumentEntity> documentEntities, List<String> entityKeys, TObjectIntHashMap<String> entityIds, int context) {
+		
+		// the occurrences of each document, encoded with their position first so that they sort in order
+		Map<Integer, TLongArrayList> occurrencesByDocumentMap = new HashMap<Integer, TLongArrayList>();
+		for (DocumentEntity entity : documentEntities) {
+			String key = getEntityKey(entity.getTerm(), entity.getType());
+			if (entityIds.containsKey(key)==false) {
+				entityIds.put(key, entityKeys.size());
+				entityKeys.add(key);
+			}
+			int id = entityIds.get(key);
+			TLongArrayList occurrences = occurrencesByDocumentMap.get(entity.getDocIndex());
+			if (occurrences==null) {
+				occurrences = new TLongArrayList();
+				occurrencesByDocumentMap.put(entity.getDocIndex(), occurrences);
+			}
+			if (context>0) {
+				if (entity.getPositions()==null) {continue;}
+				for (int[] positions : entity.getPositions()) {
+					if (positions[0]>-1) {
+						occurrences.add(((long) positions[0] << 32) | id);
+					}
+				}
+			}
+			else {
+				occurrences.add(id);
+			}
+		}
+		
+		TLongIntHashMap counts = new TLongIntHashMap();
+		for (TLongArrayList occurrenceList : occurrencesByDocumentMap.values()) {
+			long[] occurrences = occurrenceList.toNativeArray();
+			Arrays.sort(occurrences);
+			if (context<=0) {
+				// the same entity may have been found more than once in a document
+				int length = 0;
+				for (int i=0; i<occurrences.length; i++) {
+					if (i==0 || occurrences[i]!=occurrences[i-1]) {
+						occurrences[length++] = occurrences[i];
+					}
+				}
+				occurrences = Arrays.copyOf(occurrences, length);
+			}
+			for (int i=0; i<occurrences.length; i++) {
+				int position = (int) (occurrences[i] >>> 32);
+				int id = (int) occurrences[i];
+				for (int j=i+1; j<occurrences.length; j++) {
+					if (context>0 && (int) (occurrences[j] >>> 32)-position>context) {break;}
+					int otherId = (int) occurrences[j];
+					if (otherId==id) {continue;}
+					long pair = id<otherId ? ((long) id << 32) | otherId : ((long) otherId << 32) | id;
+					counts.adjustOrPutValue(pair, 1, 1);
+				}
+			}
+		}
+		return counts;
+	}
+	
+	private static String getEntityKey(String term, EntityType type) {
 		return term+"--"+type.name();
 	}
 	
@@ -38,10 +38,11 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.vectorhighlight.FieldTermStack.TermInfo;
 import org.voyanttools.trombone.lucene.CorpusMapper;
+import org.voyanttools.trombone.lucene.analysis.AnalysisContext;
 import org.voyanttools.trombone.lucene.analysis.LexicalAnalyzer;
 import org.voyanttools.trombone.model.Confidence;
 import org.voyanttools.trombone.model.Corpus;
-import org.voyanttools.trombone.model.CorpusTermMinimalsDB;
+import org.voyanttools.trombone.model.CorpusTermStats;
 import org.voyanttools.trombone.model.Keywords;
 import org.voyanttools.trombone.model.TokenType;
 import org.voyanttools.trombone.storage.Storage;
@@ -270,7 +271,7 @@ public class Geonames extends AbstractContextTerms {
 			String document = corpusMapper.getCorpus().getDocument(corpusDocIndex).getDocumentString();
 			int lastToken = totalTokens[corpusDocIndex];
 			
-			Map<Integer, TermInfo> termsOfInterest = getTermsOfInterest(corpusMapper.getLeafReader(), luceneDoc, lastToken, dsd.getValue(), true);
+			Map<Integer, TermInfo> termsOfInterest = getTermsOfInterest(corpusMapper, luceneDoc, lastToken, dsd.getValue(), true);
 			for (DocumentSpansData dsdItem : dsdList) {
 				cityOccurrenceCandidates = new ArrayList<CityOccurrence>();
 				String form = quotePattern.matcher(dsdItem.queryString).replaceAll("");
@@ -366,7 +367,7 @@ public class Geonames extends AbstractContextTerms {
 
 		
 		Map<String, City> citiesById = new HashMap<String, City>();
-		CorpusTermMinimalsDB corpusTermMinimalsDB = CorpusTermMinimalsDB.getInstance(corpusMapper, TokenType.lexical); // quick lookup
+		CorpusTermStats corpusTermStats = CorpusTermStats.getInstance(corpusMapper, TokenType.lexical); // quick lookup
 		Pattern tabPattern = Pattern.compile("\t");
 		Set<String> cityPhrases = new HashSet<String>();
 		IndexSearcher searcher = corpusMapper.getSearcher();
@@ -401,7 +402,7 @@ public class Geonames extends AbstractContextTerms {
 					}
 					for (String form : forms) {
 						if (stop.isKeyword(form)==false) {
-							List<String> words = getRecognizedTerms(searcher, analyzer, corpusTermMinimalsDB, form, lang);
+							List<String> words = getRecognizedTerms(searcher, analyzer, corpusTermStats, form, lang);
 							if (words!=null) {cityPhrases.addAll(words);}
 						}
 					}
@@ -453,18 +454,18 @@ public class Geonames extends AbstractContextTerms {
 		
 	}
 	
-	private List<String> getRecognizedTerms(IndexSearcher searcher, Analyzer analyzer, CorpusTermMinimalsDB corpusTermMinimalsDB, String text, String lang) throws IOException {
+	private List<String> getRecognizedTerms(IndexSearcher searcher, Analyzer analyzer, CorpusTermStats corpusTermStats, String text, String lang) throws IOException {
 		List<String> phrases = new ArrayList<String>();
 		List<String> words = new ArrayList<String>();
 		for (String t : StringUtils.split(text, '+')) {
 			if (t.trim().length()==0) {continue;}
-			TokenStream tokenStream = analyzer.tokenStream("lexical", t+"<!-- lang="+lang+" -->");
+			TokenStream tokenStream = AnalysisContext.getInstance(lang, "").tokenStream(analyzer, "lexical", t);
 			CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
 			tokenStream.reset();
 			String word;
 			while (tokenStream.incrementToken()) {
 				word = term.toString();
-				if (corpusTermMinimalsDB.exists(word)) {
+				if (corpusTermStats.exists(word)) {
 					words.add(word);				
 				} else {
 					words.clear();
@@ -8,6 +8,7 @@ import java.util.SortedSet;
 import org.voyanttools.trombone.model.RawCATerm;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.tool.analysis.AnalysisUtils;
+import org.voyanttools.trombone.tool.analysis.FrequencyMatrix;
 import org.voyanttools.trombone.tool.analysis.PrincipalComponentsAnalysis;
 import org.voyanttools.trombone.tool.analysis.PrincipalComponentsAnalysis.PrincipleComponent;
 import org.voyanttools.trombone.tool.util.ToolSerializer;
@@ -32,12 +33,12 @@ public class PCA extends CorpusAnalysisTool {
 	}
 	
 	@Override
-	public double[][] getInput() throws IOException {
+	public FrequencyMatrix getInput() throws IOException {
 		return buildFrequencyMatrix(MatrixType.TERM, 2);
 	}
 
 	@Override
-	public double[][] runAnalysis(double[][] freqMatrix) throws IOException {
+	public double[][] runAnalysis(FrequencyMatrix freqMatrix) throws IOException {
 		pca = new PrincipalComponentsAnalysis(freqMatrix);
 	    pca.runAnalysis();
 		double[][] result =  pca.getResult(getDimensions());
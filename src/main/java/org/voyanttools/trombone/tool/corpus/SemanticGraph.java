@@ -3,6 +3,7 @@ package org.voyanttools.trombone.tool.corpus;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -16,9 +17,10 @@ import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.model.DocumentToken;
 import org.voyanttools.trombone.model.Keywords;
 import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.tool.util.Message;
 import org.voyanttools.trombone.tool.util.ToolSerializer;
 import org.voyanttools.trombone.util.FlexibleParameters;
-import org.voyanttools.trombone.util.FlexibleQueue;
+import org.voyanttools.trombone.util.HypernymGraph;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamConverter;
@@ -95,6 +97,7 @@ public class SemanticGraph extends AbstractCorpusTool {
 			List<String> ids = getCorpusStoredDocumentIdsFromParameters(corpusMapper.getCorpus());
 			FlexibleParameters params = new FlexibleParameters();
 			params.setParameter("withPosLemmas", "true");
+			Set<String> lookedUp = new HashSet<String>(); // look up each lemma only once, not for every token
 			for (String id : ids) {
 				params.setParameter("docId", id);
 				params.setParameter("limit", 0);
@@ -108,7 +111,7 @@ public class SemanticGraph extends AbstractCorpusTool {
 					String pos = documentToken.getPos();
 					if (lemma!=null && pos!=null) {
 						POS poss = POS.getPOSForLabel(pos.toLowerCase());
-						if (poss!=null && (poss==POS.ADJECTIVE || poss==POS.VERB || poss==POS.NOUN)) {
+						if (poss!=null && (poss==POS.ADJECTIVE || poss==POS.VERB || poss==POS.NOUN) && lookedUp.add(poss.getKey()+"/"+lemma)) {
 							try {
 								IndexWord word = dictionary.getIndexWord(poss, lemma);
 								if (word!=null) {
@@ -128,40 +131,37 @@ public class SemanticGraph extends AbstractCorpusTool {
 		if (forms.size()>1) {
 			int start = parameters.getParameterIntValue("start", 0);
 			int limit = parameters.getParameterIntValue("limit", Integer.MAX_VALUE);
-			FlexibleQueue<RelatedWords> queue = new FlexibleQueue<RelatedWords>(new Comparator<RelatedWords>() {
+			if (limit==Integer.MAX_VALUE) { // don't allow no limit
+				message(Message.Type.WARN, "mandatoryLimit", "This tool can't be called with no limit to the number of relations, so the limit has been set to 10,000");
+				limit = 10000;
+			}
+			
+			// sort the words so that relations of the same depth are always in the same order
+			List<IndexWord> words = new ArrayList<IndexWord>();
+			for (IndexWord form : forms) {
+				if (form.getLemma()!=null) {
+					words.add(form);
+				}
+			}
+			Collections.sort(words, new Comparator<IndexWord>() {
 				@Override
-				public int compare(RelatedWords o1, RelatedWords o2) {
-					return Integer.compare(o1.relationship.getDepth(), o2.relationship.getDepth());
+				public int compare(IndexWord o1, IndexWord o2) {
+					int compare = o1.getLemma().compareTo(o2.getLemma());
+					return compare==0 ? o1.getPOS().compareTo(o2.getPOS()) : compare;
 				}
-			}, start+limit);
+			});
 
-			int i = 0;
-			for (IndexWord outerWord : forms) {
-				if (outerWord.getLemma()==null) {continue;}
-				int j = 0;
-				for (IndexWord innerWord : forms) {
-					if (innerWord.getLemma()==null) {continue;}
-					if (j>i) {
-						RelationshipList list;
-						try {
-							list = RelationshipFinder.findRelationships(outerWord.getSenses().get(0), innerWord.getSenses().get(0), PointerType.HYPERNYM);
-						} catch (CloneNotSupportedException e) {
-							throw new RuntimeException("Unable to build relationships list", e);
-						} catch (JWNLException e) {
-							throw new RuntimeException("Unable to build relationships list", e);
-						}
-						if (list.size()==0) {continue;}
-						AsymmetricRelationship relationship = (AsymmetricRelationship) list.get(0);
-						if (relationship==null) {
-							System.out.println(relationship);
-						}
-						queue.offer(new RelatedWords(innerWord, outerWord, relationship));
-					}
-					j++;
-				}
-				i++;
+			// relate the first senses of the words through the precomputed hypernyms rather than comparing each pair in the dictionary
+			HypernymGraph hypernymGraph = HypernymGraph.getInstance(storage, dictionary);
+			int[] synsets = new int[words.size()];
+			for (int i=0; i<synsets.length; i++) {
+				synsets[i] = hypernymGraph.getSynset(words.get(i));
+			}
+			List<HypernymGraph.Relation> relations = hypernymGraph.getRelations(synsets, (int) Math.min((long) start+limit, Integer.MAX_VALUE));
+			for (int i=start, len=relations.size(); i<len; i++) {
+				HypernymGraph.Relation relation = relations.get(i);
+				wordsList.add(new RelatedWords(words.get(relation.getFirst()), words.get(relation.getSecond()), relation.getDepth()));
 			}
-			wordsList.addAll(queue.getOrderedList());
 		}
 		
 	}
@@ -240,6 +240,8 @@ public class SemanticGraph extends AbstractCorpusTool {
 		public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
 			SemanticGraph semanticGraph = (SemanticGraph) source;
 			
+			semanticGraph.writeMessages(writer, context);
+			
 			// first calculate frequencies
 	        Map<String, AtomicInteger> edgeFreqs = new HashMap<String, AtomicInteger>();
 	        Map<String, AtomicInteger> nodeFreqs = new HashMap<String, AtomicInteger>();
@@ -305,11 +307,11 @@ public class SemanticGraph extends AbstractCorpusTool {
 	private class RelatedWords {
 		private IndexWord firstWord;
 		private IndexWord secondWord;
-		private Relationship relationship;
-		private RelatedWords(IndexWord firstWord, IndexWord secondWord, Relationship relationship) {
+		private int depth;
+		private RelatedWords(IndexWord firstWord, IndexWord secondWord, int depth) {
 			this.firstWord = firstWord;
 			this.secondWord = secondWord;
-			this.relationship = relationship;
+			this.depth = depth;
 		}
 	}
 
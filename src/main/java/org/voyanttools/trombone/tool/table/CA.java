@@ -7,6 +7,7 @@ import org.voyanttools.trombone.model.Keywords;
 import org.voyanttools.trombone.model.RawCATerm;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.tool.analysis.AnalysisUtils;
+import org.voyanttools.trombone.tool.analysis.FrequencyMatrix;
 import org.voyanttools.trombone.tool.analysis.CorrespondenceAnalysis;
 import org.voyanttools.trombone.tool.util.ToolSerializer;
 import org.voyanttools.trombone.util.FlexibleParameters;
@@ -35,7 +36,7 @@ public class CA extends TableAnalysisTool {
 	}
 
 	@Override
-	public double[][] runAnalysis(double[][] freqMatrix) throws IOException {
+	public double[][] runAnalysis(FrequencyMatrix freqMatrix) throws IOException {
 		ca = new CorrespondenceAnalysis(freqMatrix);
 		ca.runAnalysis();
 		
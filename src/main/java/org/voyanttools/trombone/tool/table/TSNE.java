@@ -6,6 +6,7 @@ import java.util.List;
 import org.voyanttools.trombone.model.RawCATerm;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.tool.analysis.AnalysisUtils;
+import org.voyanttools.trombone.tool.analysis.FrequencyMatrix;
 import org.voyanttools.trombone.tool.analysis.TSNEAnalysis;
 import org.voyanttools.trombone.tool.util.ToolSerializer;
 import org.voyanttools.trombone.util.FlexibleParameters;
@@ -26,7 +27,7 @@ public class TSNE extends TableAnalysisTool {
 		super(storage, parameters);
 	}
 
-	private double[][] doTSNE(double[][] freqMatrix) {
+	private double[][] doTSNE(FrequencyMatrix freqMatrix) {
 		
 		TSNEAnalysis tsner = new TSNEAnalysis(freqMatrix);
 		tsner.setIterations(parameters.getParameterIntValue("iterations"));
@@ -40,8 +41,8 @@ public class TSNE extends TableAnalysisTool {
 	}
 	
 	@Override
-	public double[][] runAnalysis(double[][] freqMatrix) throws IOException {
-		if (freqMatrix.length >= 5) {
+	public double[][] runAnalysis(FrequencyMatrix freqMatrix) throws IOException {
+		if (freqMatrix.getRowsCount() >= 5) {
 			double[][] result = doTSNE(freqMatrix);
 			
 			for (int i = 0; i < getAnalysisTerms().size(); i++) {
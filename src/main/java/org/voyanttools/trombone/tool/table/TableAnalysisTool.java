@@ -9,6 +9,7 @@ import org.voyanttools.trombone.model.RawCATerm;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.tool.analysis.AnalysisTool;
 import org.voyanttools.trombone.tool.analysis.AnalysisUtils;
+import org.voyanttools.trombone.tool.analysis.FrequencyMatrix;
 import org.voyanttools.trombone.tool.util.AbstractTool;
 import org.voyanttools.trombone.util.FlexibleParameters;
 
@@ -51,8 +52,8 @@ public abstract class TableAnalysisTool extends AbstractTool implements Analysis
 	}
 	
 	@Override
-	public double[][] getInput() throws IOException {
-		return AnalysisUtils.getMatrixFromParameters(parameters, getAnalysisTerms());
+	public FrequencyMatrix getInput() throws IOException {
+		return new FrequencyMatrix(AnalysisUtils.getMatrixFromParameters(parameters, getAnalysisTerms()));
 	}
 
 	@Override
@@ -1,14 +1,38 @@
 package org.voyanttools.trombone.tool.util;
 
-import com.thoughtworks.xstream.annotations.XStreamOmitField;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Counts the letters, words, sentences, long words and polysyllables of a text (and optionally its easy and
+ * difficult words) in a single pass. The text is cleaned as it's read (line breaks, tabs and paragraph tags are
+ * removed, spaces are collapsed and the text is trimmed), so it never needs to be held in memory as a whole and
+ * nothing is allocated per word.
+ */
+public class TextParser {
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+    /**
+     * The vowels that start a syllable ({@code e} is treated separately), indexed by character.
+     */
+    private static final boolean[] VOWELS = new boolean[256];
 
-public class TextParser {
+    /**
+     * The vowels around a {@code y} that adds a syllable (as in "payable"), indexed by character.
+     */
+    private static final boolean[] Y_VOWELS = new boolean[256];
+
+    static {
+        for (char c : "aâàáäiîìíïoôòóöuûùúüyêèéë".toCharArray()) {
+            VOWELS[c] = true;
+            Y_VOWELS[c] = true;
+        }
+        Y_VOWELS['e'] = true;
+    }
 
-    @XStreamOmitField
-    private final String text;
+    private static final char[] PARAGRAPH_START = "<p>".toCharArray();
+    private static final char[] PARAGRAPH_END = "</p>".toCharArray();
 
     private int lettersCount = 0;
     private int wordsCount = 0;
@@ -16,102 +40,262 @@ public class TextParser {
     private int wordsWithMoreThanSixLettersCount = 0;
     private int wordsWithMoreThanTwoSyllablesCount = 0;
 
-    public TextParser(String textToParse) {
-        text = cleanText(textToParse);
-
-        parseText(text);
+    private final Set<String> easyWords;
+    private int easyWordsCount = 0;
+    private int difficultWordsCount = 0;
+
+    // the state of the cleaning stages
+    private int paragraphStartMatched = 0;
+    private int paragraphEndMatched = 0;
+    private boolean started = false;
+    private StringBuilder pendingWhiteSpace = new StringBuilder();
+
+    // the state of the parsing stage, where position is the offset in the cleaned text
+    private int position = 0;
+    private char previous = 0;
+    private char beforePrevious = 0;
+    private boolean pendingDot = false;
+    private boolean dotEndsSentence = false;
+    private int spacesCount = 0;
+    private char[] word = new char[32];
+    private int wordLength = 0;
+    private StringBuilder token;
+
+    public TextParser(CharSequence textToParse) {
+        this(textToParse, null);
     }
 
-    private void parseText(String text) {
-        StringBuilder wordBuilder = new StringBuilder();
-        int charCount = 0;
-        int spaceCount = 0;
-
-        int length = text.length();
+    /**
+     * Parse the text and also count its easy and difficult words (as used by the Dale-Chall index).
+     * @param textToParse the text to parse
+     * @param easyWords the lower case easy words, or null to skip counting them
+     */
+    public TextParser(CharSequence textToParse, Set<String> easyWords) {
+        this.easyWords = easyWords;
+        token = easyWords == null ? null : new StringBuilder();
+
+        for (int i = 0, length = textToParse.length(); i < length; i++) {
+            removeLineBreaks(textToParse.charAt(i));
+        }
+        finish();
+    }
 
-        for (int i = 0; i < length; i++) {
-            char c = text.charAt(i);
+    /**
+     * Parse the text from a reader (which isn't closed), without reading it all in memory.
+     * @param reader the reader of the text to parse
+     * @param easyWords the lower case easy words, or null to skip counting them
+     * @throws IOException an exception while reading
+     */
+    public TextParser(Reader reader, Set<String> easyWords) throws IOException {
+        this.easyWords = easyWords;
+        token = easyWords == null ? null : new StringBuilder();
+
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                removeLineBreaks(buffer[i]);
+            }
+        }
+        finish();
+    }
 
-            if (Character.isLetterOrDigit(c)) {
-                lettersCount++;
-                wordBuilder.append(c);
+    private void removeLineBreaks(char c) {
+        if (c != '\n' && c != '\t') {
+            removeParagraphStarts(c);
+        }
+    }
 
-                charCount++;
-                if (charCount == 7)
-                    wordsWithMoreThanSixLettersCount++;
+    private void removeParagraphStarts(char c) {
+        if (c == PARAGRAPH_START[paragraphStartMatched]) {
+            if (++paragraphStartMatched == PARAGRAPH_START.length) {
+                paragraphStartMatched = 0;
+            }
+            return;
+        }
+        // only the first character of the tag is a '<', so a partial match can't contain another one
+        for (int i = 0; i < paragraphStartMatched; i++) {
+            removeParagraphEnds(PARAGRAPH_START[i]);
+        }
+        paragraphStartMatched = c == PARAGRAPH_START[0] ? 1 : 0;
+        if (paragraphStartMatched == 0) {
+            removeParagraphEnds(c);
+        }
+    }
 
-            } else {
-                // The word has ended, reset char counter to 0 and check syllables
-                charCount = 0;
-
-                String word = wordBuilder.toString();
-                if (hasMoreThanTwoSyllables(word)) {
-                    wordsWithMoreThanTwoSyllablesCount++;
-                }
-                wordBuilder = new StringBuilder();
-
-                if (c == ' ') {
-                    spaceCount++;
-
-                } else if (c == '.') {
-                    if (i == length - 1) // This is the end of the text
-                        sentencesCount++;
-
-                    /* This logic excludes the acronym with two dot (e.g. "The U.S. Office is here.").
-                       It looks for another dot two characters before a dot with a following space ". ".
-                    */
-                    else if (text.charAt(i + 1) == ' ') {
-                        if (i != 1 && i != 2) {
-                            if (!text.substring(i - 2, i).contains("."))
-                                sentencesCount++;
-                        }
-                    }
-                }
+    private void removeParagraphEnds(char c) {
+        if (c == PARAGRAPH_END[paragraphEndMatched]) {
+            if (++paragraphEndMatched == PARAGRAPH_END.length) {
+                paragraphEndMatched = 0;
             }
+            return;
+        }
+        for (int i = 0; i < paragraphEndMatched; i++) {
+            removeWhiteSpace(PARAGRAPH_END[i]);
+        }
+        paragraphEndMatched = c == PARAGRAPH_END[0] ? 1 : 0;
+        if (paragraphEndMatched == 0) {
+            removeWhiteSpace(c);
         }
+    }
 
-        wordsCount = spaceCount + 1;
+    private void removeWhiteSpace(char c) {
+        if (c <= ' ') {
+            // hold white space until we know it isn't trailing, collapsing groups of spaces
+            if (started && (c != ' ' || pendingWhiteSpace.length() == 0 || pendingWhiteSpace.charAt(pendingWhiteSpace.length() - 1) != ' ')) {
+                pendingWhiteSpace.append(c);
+            }
+            return;
+        }
+        started = true;
+        for (int i = 0, length = pendingWhiteSpace.length(); i < length; i++) {
+            parse(pendingWhiteSpace.charAt(i));
+        }
+        pendingWhiteSpace.setLength(0);
+        parse(c);
     }
 
-    private boolean hasMoreThanTwoSyllables(String word) {
-        // This regex method has been inspired from here: https://stackoverflow.com/a/46879336
-        String regex = "[aâàáäiîìíïoôòóöuûùúüyêèéë]+e*|e(?!d$|ly).|[td]ed|le$";
-        Matcher matcher = Pattern.compile(regex).matcher(word);
+    private void finish() {
+        // flush partial tag matches (trailing white space is dropped)
+        for (int i = 0; i < paragraphStartMatched; i++) {
+            removeParagraphEnds(PARAGRAPH_START[i]);
+        }
+        paragraphStartMatched = 0;
+        for (int i = 0; i < paragraphEndMatched; i++) {
+            removeWhiteSpace(PARAGRAPH_END[i]);
+        }
+        paragraphEndMatched = 0;
 
-        int count = 0;
+        if (pendingDot) {
+            // a dot at the end of the text always ends a sentence
+            sentencesCount++;
+        }
+        if (token != null) {
+            countEasyWord();
+        }
+
+        wordsCount = spacesCount + 1;
+
+        pendingWhiteSpace = null;
+        word = null;
+        token = null;
+    }
 
-        while (matcher.find()) {
-            count++;
+    private void parse(char c) {
+        if (pendingDot) {
+            if (c == ' ' && dotEndsSentence) {
+                sentencesCount++;
+            }
+            pendingDot = false;
         }
 
-        // Cover cases where the a "y" is between 2 vowels. E.g. "payable" has 3 syllables, but count as 2 with the above logic.
-        regex = "[aâàáäiîìíïoôòóöuûùúüyeêèéë]y[aâàáäiîìíïoôòóöuûùúüyeêèéë][^$]";
-        matcher = Pattern.compile(regex).matcher(word);
-        while (matcher.find()) {
-            count++;
+        if (token != null) {
+            if (c == ' ') {
+                countEasyWord();
+            } else if (c != '.' && c != ',' && c != ';' && c != ':') {
+                token.append(c);
+            }
         }
 
-        return count > 2;
+        if (Character.isLetterOrDigit(c)) {
+            lettersCount++;
+            if (wordLength == word.length) {
+                word = Arrays.copyOf(word, wordLength * 2);
+            }
+            word[wordLength++] = c;
+            if (wordLength == 7) {
+                wordsWithMoreThanSixLettersCount++;
+            }
+        } else {
+            // The word has ended, check its syllables
+            if (countSyllables(word, wordLength) > 2) {
+                wordsWithMoreThanTwoSyllablesCount++;
+            }
+            wordLength = 0;
+
+            if (c == ' ') {
+                spacesCount++;
+            } else if (c == '.') {
+                /* This excludes acronyms with two dots (e.g. "The U.S. Office is here."), the dot ends a sentence
+                   if it's the last character or if it's followed by a space without another dot just before it.
+                */
+                pendingDot = true;
+                dotEndsSentence = position > 2 && previous != '.' && beforePrevious != '.';
+            }
+        }
+
+        beforePrevious = previous;
+        previous = c;
+        position++;
     }
 
-    private String cleanText(String text) {
-        text = text.replace("\n", "");
-        text = text.replace("\t", "");
-        text = text.replace("<p>", "");
-        text = text.replace("</p>", "");
-        text = removeGroupsOfWhiteSpace(text);
+    private void countEasyWord() {
+        int length = token.length();
+        if (length == 0) {
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.isDigit(token.charAt(i))) {
+                token.setLength(0);
+                return;
+            }
+        }
 
-        return text;
+        String word = token.toString().toLowerCase();
+        token.setLength(0);
+        if (easyWords.contains(word) || (word.charAt(word.length() - 1) == 's' && easyWords.contains(word.substring(0, word.length() - 1)))) {
+            easyWordsCount++;
+        } else {
+            difficultWordsCount++;
+        }
     }
 
-    private String removeGroupsOfWhiteSpace(String text) {
-        text = text.trim();
+    /**
+     * Estimate the number of syllables in a word from its vowel groups. This is inspired by
+     * https://stackoverflow.com/a/46879336 and matches the expression
+     * {@code [aâàáäiîìíïoôòóöuûùúüyêèéë]+e*|e(?!d$|ly).|[td]ed|le$}, plus one syllable for every {@code y} between
+     * two vowels (e.g. "payable" has 3 syllables, but counts as 2 with the above logic).
+     */
+    static int countSyllables(char[] word, int length) {
+        int count = 0;
+
+        int i = 0;
+        while (i < length) {
+            char c = word[i];
+            if (isVowel(VOWELS, c)) {
+                do { i++; } while (i < length && isVowel(VOWELS, word[i]));
+                while (i < length && word[i] == 'e') { i++; }
+                count++;
+            } else if (c == 'e' && i + 1 < length && !(word[i + 1] == 'd' && i + 2 == length) && !(word[i + 1] == 'l' && i + 2 < length && word[i + 2] == 'y')) {
+                i += 2;
+                count++;
+            } else if ((c == 't' || c == 'd') && i + 2 < length && word[i + 1] == 'e' && word[i + 2] == 'd') {
+                i += 3;
+                count++;
+            } else if (c == 'l' && i + 2 == length && word[i + 1] == 'e') {
+                i += 2;
+                count++;
+            } else {
+                i++;
+            }
+        }
 
-        while (text.contains("  ")) {
-            text = text.replace("  ", " ");
+        // a vowel, a y and a vowel followed by any character other than '$'
+        i = 0;
+        while (i + 3 < length) {
+            if (isVowel(Y_VOWELS, word[i]) && word[i + 1] == 'y' && isVowel(Y_VOWELS, word[i + 2]) && word[i + 3] != '$') {
+                i += 4;
+                count++;
+            } else {
+                i++;
+            }
         }
 
-        return text;
+        return count;
+    }
+
+    private static boolean isVowel(boolean[] vowels, char c) {
+        return c < vowels.length && vowels[c];
     }
 
     public int getLettersCount() {
@@ -134,7 +318,11 @@ public class TextParser {
         return wordsWithMoreThanTwoSyllablesCount;
     }
 
-    public String getText() {
-        return text;
+    public int getEasyWordsCount() {
+        return easyWordsCount;
+    }
+
+    public int getDifficultWordsCount() {
+        return difficultWordsCount;
     }
 }
@@ -99,7 +99,7 @@ public class ToolRunner extends AbstractTool {
 			}
 		}
 		
-		StringBuilder sb = new StringBuilder("cache-ToolRunner-").append(getVersion());
+		StringBuilder sb = new StringBuilder(ToolRunnerCache.ID_PREFIX).append(getVersion());
 		for (RunnableTool tool : tools) {
 			sb.append("-").append(tool.getClass().getSimpleName()).append(tool.getVersion());
 		}
@@ -121,13 +121,9 @@ public class ToolRunner extends AbstractTool {
 		boolean hasParameterSources = InputSourcesBuilder.hasParameterSources(parameters);
 		// skip for corpus (makes it easier to change or remove) and stored resource (cacheing not relevant, easier to change)
 		boolean noCache = parameters.getParameterBooleanValue("useCache")==false && tools.size()==1 && (tools.get(0) instanceof CorpusMetadata || tools.get(0) instanceof StoredResource);
-		if (noCache==false && parameters.getParameterBooleanValue("noCache")==false && parameters.getParameterBooleanValue("reCache")==false && hasParameterSources==false && storage.isStored(id, Storage.Location.cache)) {
-			Reader reader = storage.getStoreReader(id, Storage.Location.cache);
-			IOUtils.copy(reader, writer);
-			reader.close();
-			writer.flush();
-		}
-		else {
+		ToolRunnerCache toolRunnerCache = storage.getToolRunnerCache();
+		boolean isCached = noCache==false && parameters.getParameterBooleanValue("noCache")==false && parameters.getParameterBooleanValue("reCache")==false && hasParameterSources==false && toolRunnerCache.isCached(id);
+		if (isCached==false || writeFromCache(id)==false) {
 			long start = Calendar.getInstance().getTimeInMillis();
 			boolean hasProgress = false;
 			for (RunnableTool tool : tools) {
@@ -146,18 +142,31 @@ public class ToolRunner extends AbstractTool {
 				toolSerializer.run(writer); 
 			}
 			else { // try to cache
-				Writer cacheWriter = storage.getStoreWriter(id, Storage.Location.cache);
+				Writer cacheWriter = toolRunnerCache.getStoreWriter(id, tools);
 				toolSerializer.run(cacheWriter);
 				cacheWriter.close();
-				Reader reader = storage.getStoreReader(id, Storage.Location.cache);
-				IOUtils.copy(reader, writer); // now write from cache
-				reader.close();
-				writer.flush();
+				if (writeFromCache(id)==false) { // this would only happen if the entry was evicted right away
+					toolSerializer.run(writer);
+				}
 			}
 		}
 		
 	}
 	
+	private boolean writeFromCache(String id) throws IOException {
+		Reader reader;
+		try {
+			reader = storage.getStoreReader(id, Storage.Location.cache);
+		}
+		catch (IOException e) {
+			return false; // evicted by another request in the meantime
+		}
+		IOUtils.copy(reader, writer);
+		reader.close();
+		writer.flush();
+		return true;
+	}
+	
 
 	
 	public List<RunnableTool> getRunnableToolResults() {
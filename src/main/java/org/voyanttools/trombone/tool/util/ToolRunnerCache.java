@@ -0,0 +1,474 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ *
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ *
+ * This file is part of Trombone.
+ *
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.tool.util;
+
+import java.io.File;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.util.FlexibleParameters;
+
+/**
+ * A bounded cache for serialized {@link ToolRunner} results. Entries are written to
+ * {@link Storage.Location#cache} as before, but this class keeps an index of entries
+ * (size, creation, access and hit counts) so that entries can expire (optionally per tool)
+ * and so that the least valuable entries are evicted when the size budget is exceeded.
+ *
+ * The cache is configured from the storage parameters:
+ * <ul>
+ * <li><code>cacheMaxSize</code>: the size budget in megabytes, 0 for no limit (default)</li>
+ * <li><code>cachePolicy</code>: the eviction policy, either <code>lru</code> (default) or <code>lfu</code></li>
+ * <li><code>cacheTtl</code>: the default time to live of entries in seconds, 0 for no expiry (default)</li>
+ * <li><code>cacheTtl.ToolName</code>: the time to live for results that include the named tool</li>
+ * </ul>
+ *
+ * When the cache has a directory, the entries are determined from the files in that directory when
+ * the cache is first used and the sizes are those of the files on disk. The index only adds the
+ * access statistics, so results that were written before the index (or since it was last written)
+ * are still counted and evicted. Without a directory (in memory) sizes are counted in characters.
+ *
+ * Other tools also keep files in {@link Storage.Location#cache}, so only ids that start with
+ * {@link #ID_PREFIX} are managed (and ever evicted or cleared) by this cache.
+ */
+public class ToolRunnerCache {
+
+	public enum Policy {
+		LRU(new Comparator<Entry>() {
+			@Override
+			public int compare(Entry e1, Entry e2) {
+				return Long.compare(e1.lastAccessed, e2.lastAccessed);
+			}
+		}),
+		LFU(new Comparator<Entry>() {
+			@Override
+			public int compare(Entry e1, Entry e2) {
+				return e1.hits==e2.hits ? Long.compare(e1.lastAccessed, e2.lastAccessed) : Integer.compare(e1.hits, e2.hits);
+			}
+		});
+
+		private Comparator<Entry> evictionComparator;
+
+		private Policy(Comparator<Entry> evictionComparator) {
+			this.evictionComparator = evictionComparator;
+		}
+
+		/**
+		 * Get a comparator that sorts entries from the first to evict to the last.
+		 * @return the eviction comparator
+		 */
+		public Comparator<Entry> getEvictionComparator() {
+			return evictionComparator;
+		}
+
+		public static Policy getForgivingly(String policy) {
+			return policy.trim().toUpperCase().equals("LFU") ? LFU : LRU;
+		}
+	}
+
+	public static class Entry implements Serializable {
+		private static final long serialVersionUID = -3260711539573627113L;
+		private String id;
+		private long size;
+		private long created;
+		private long lastAccessed;
+		private long expires;
+		private int hits;
+		private Entry(String id, long size, long created, long ttl) {
+			this.id = id;
+			this.size = size;
+			this.created = created;
+			this.lastAccessed = created;
+			this.expires = ttl>0 ? created+ttl : 0;
+		}
+		private Entry(Entry entry) {
+			this.id = entry.id;
+			this.size = entry.size;
+			this.created = entry.created;
+			this.lastAccessed = entry.lastAccessed;
+			this.expires = entry.expires;
+			this.hits = entry.hits;
+		}
+		public String getId() {
+			return id;
+		}
+		public long getSize() {
+			return size;
+		}
+		public long getCreated() {
+			return created;
+		}
+		public int getHits() {
+			return hits;
+		}
+	}
+
+	/**
+	 * The prefix of the ids of all results managed by this cache.
+	 */
+	public static final String ID_PREFIX = "cache-ToolRunner-";
+
+	private static final String INDEX_ID = ID_PREFIX+"index";
+
+	// number of changes to accumulate before rewriting the index (it only holds access statistics)
+	private static final int INDEX_WRITE_INTERVAL = 1000;
+
+	// when evicting, go down to this proportion of the budget so that we don't evict on every store
+	private static final float EVICTION_LOW_WATERMARK = 0.9f;
+
+	private Storage storage;
+
+	// the directory of the cached results, or null if they're not stored as files
+	private File directory;
+
+	private long maxSize;
+
+	private Policy policy;
+
+	private long defaultTtl;
+
+	private Map<String, Long> toolTtls = new HashMap<String, Long>();
+
+	// in access order, so iteration starts with the least recently used
+	private LinkedHashMap<String, Entry> entries = null;
+
+	private long size = 0;
+
+	private int changes = 0;
+
+	// only one thread writes the index at a time, outside of the lock on the entries
+	private Object indexWriteLock = new Object();
+
+	// whether entries are tracked at all, otherwise results are only read and written as stored
+	private boolean indexed = true;
+
+	public ToolRunnerCache(Storage storage, FlexibleParameters parameters) {
+		this(storage, parameters, null);
+	}
+
+	/**
+	 * Create a cache whose results are stored as files in the specified directory.
+	 * @param storage the storage of the cached results
+	 * @param parameters the storage parameters
+	 * @param directory the directory of the cached results
+	 */
+	public ToolRunnerCache(Storage storage, FlexibleParameters parameters, File directory) {
+		this.storage = storage;
+		this.directory = directory;
+		this.maxSize = (long) parameters.getParameterIntValue("cacheMaxSize", 0) * 1024 * 1024;
+		this.policy = Policy.getForgivingly(parameters.getParameterValue("cachePolicy", "lru"));
+		this.defaultTtl = (long) parameters.getParameterIntValue("cacheTtl", 0) * 1000;
+		for (String key : parameters.getKeys()) {
+			if (key.startsWith("cacheTtl.")) {
+				toolTtls.put(key.substring("cacheTtl.".length()), (long) parameters.getParameterIntValue(key) * 1000);
+			}
+		}
+	}
+
+	/**
+	 * Get a cache that doesn't keep an index, results are cached for as long as they're stored
+	 * and they're never expired or evicted.
+	 * @param storage the storage of the cached results
+	 * @return the unindexed {@link ToolRunnerCache}
+	 */
+	public static ToolRunnerCache getUnindexedCache(Storage storage) {
+		ToolRunnerCache cache = new ToolRunnerCache(storage, new FlexibleParameters());
+		cache.indexed = false;
+		return cache;
+	}
+
+	/**
+	 * Determine if the specified results are cached and still valid, recording the hit if so.
+	 * @param id the cache id of the results
+	 * @return whether or not the results can be read from the cache
+	 */
+	public boolean isCached(String id) {
+		if (isResultId(id)==false) {return false;}
+		if (indexed==false) {return storage.isStored(id, Storage.Location.cache);}
+		boolean isCached = isCachedEntry(id);
+		writeIndexIfChanged();
+		return isCached;
+	}
+
+	private synchronized boolean isCachedEntry(String id) {
+		Map<String, Entry> entries = getEntries();
+		Entry entry = entries.get(id);
+		if (entry==null) {return false;}
+		long now = System.currentTimeMillis();
+		changes++;
+		if ((entry.expires>0 && entry.expires<now) || storage.isStored(id, Storage.Location.cache)==false) {
+			remove(entry);
+			return false;
+		}
+		entry.hits++;
+		entry.lastAccessed = now;
+		return true;
+	}
+
+	/**
+	 * Get a {@link Writer} for the specified results, the entry is added to the index when the writer is closed.
+	 * @param id the cache id of the results
+	 * @param tools the tools that produce the results (used to determine the time to live)
+	 * @return a {@link Writer} for the cached results
+	 * @throws IOException
+	 */
+	public Writer getStoreWriter(String id, Collection<RunnableTool> tools) throws IOException {
+		if (isResultId(id)==false) {
+			throw new IllegalArgumentException("Cached results must have an id that starts with "+ID_PREFIX+": "+id);
+		}
+		if (indexed==false) {return storage.getStoreWriter(id, Storage.Location.cache);}
+		long ttl = defaultTtl;
+		for (RunnableTool tool : tools) {
+			Long toolTtl = toolTtls.get(tool.getClass().getSimpleName());
+			if (toolTtl!=null && (ttl==0 || (toolTtl>0 && toolTtl<ttl))) {ttl = toolTtl;}
+		}
+		return new CacheEntryWriter(id, storage.getStoreWriter(id, Storage.Location.cache), ttl);
+	}
+
+	private void put(String id, long count, long ttl) {
+		if (directory!=null) {
+			File file = getFile(id);
+			if (file.exists()) {count = file.length();}
+		}
+		put(new Entry(id, count, System.currentTimeMillis(), ttl));
+		writeIndexIfChanged();
+	}
+
+	private synchronized void put(Entry entry) {
+		Map<String, Entry> entries = getEntries();
+		Entry previous = entries.remove(entry.id);
+		if (previous!=null) {size-=previous.size;}
+		entries.put(entry.id, entry);
+		size+=entry.size;
+		evictIfNeeded();
+		changes++;
+	}
+
+	private void evictIfNeeded() {
+		if (maxSize>0 && size>maxSize) {
+			evict((long) (maxSize*EVICTION_LOW_WATERMARK));
+		}
+	}
+
+	private void evict(long targetSize) {
+		List<Entry> candidates = new ArrayList<Entry>(entries.values());
+		if (policy!=Policy.LRU) { // access order is already LRU
+			Collections.sort(candidates, policy.getEvictionComparator());
+		}
+		long now = System.currentTimeMillis();
+		// expired entries go first regardless of policy
+		for (Iterator<Entry> it = candidates.iterator(); it.hasNext();) {
+			Entry entry = it.next();
+			if (entry.expires>0 && entry.expires<now) {
+				remove(entry);
+				it.remove();
+			}
+		}
+		for (Entry entry : candidates) {
+			if (size<=targetSize) {break;}
+			remove(entry);
+		}
+		changes = INDEX_WRITE_INTERVAL; // write the index with the next change
+	}
+
+	private void remove(Entry entry) {
+		entries.remove(entry.id);
+		size-=entry.size;
+		try {
+			storage.delete(entry.id, Storage.Location.cache);
+		} catch (IOException e) {
+			// it's only cache, we'll overwrite it next time
+		}
+	}
+
+	/**
+	 * Remove all entries from the cache.
+	 * @throws IOException
+	 */
+	public void clear() throws IOException {
+		synchronized (this) {
+			for (Entry entry : new ArrayList<Entry>(getEntries().values())) {
+				remove(entry);
+			}
+		}
+		writeIndex();
+	}
+
+	public synchronized long getSize() {
+		getEntries();
+		return size;
+	}
+
+	public synchronized int getEntriesCount() {
+		return getEntries().size();
+	}
+
+	private void writeIndexIfChanged() {
+		synchronized (this) {
+			if (changes<INDEX_WRITE_INTERVAL) {return;}
+		}
+		try {
+			writeIndex();
+		} catch (IOException e) {
+			// it's only cache, the entries will be found again from the directory
+			System.err.println("Unable to write the cache index: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Write the index of cache entries to storage (this also happens periodically as entries are added and accessed).
+	 * The entries are copied while holding the lock, but they're written without it.
+	 * @throws IOException
+	 */
+	public void writeIndex() throws IOException {
+		if (indexed==false) {return;}
+		synchronized (indexWriteLock) {
+			LinkedHashMap<String, Entry> index;
+			synchronized (this) {
+				changes = 0;
+				if (entries==null) {return;}
+				index = new LinkedHashMap<String, Entry>(entries.size()*4/3+1);
+				for (Entry entry : entries.values()) {
+					index.put(entry.id, new Entry(entry));
+				}
+			}
+			storage.store(index, INDEX_ID, Storage.Location.cache);
+		}
+	}
+
+	private static boolean isResultId(String id) {
+		return id.startsWith(ID_PREFIX) && id.equals(INDEX_ID)==false;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Entry> getEntries() {
+		if (entries==null) {
+			Map<String, Entry> index = new HashMap<String, Entry>();
+			if (storage.isStored(INDEX_ID, Storage.Location.cache)) {
+				try {
+					Object obj = storage.retrieve(INDEX_ID, Storage.Location.cache);
+					if (obj instanceof Map) {
+						for (Entry entry : ((Map<String, Entry>) obj).values()) {
+							if (isResultId(entry.id)) {index.put(entry.id, entry);}
+						}
+					}
+				} catch (IOException | ClassNotFoundException e) {
+					// start over with an empty index, the entries are found again from the directory
+				}
+			}
+			List<Entry> found;
+			if (directory==null) {
+				found = new ArrayList<Entry>(index.values());
+			}
+			else {
+				found = getEntries(index);
+			}
+			Collections.sort(found, Policy.LRU.getEvictionComparator());
+			entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+			for (Entry entry : found) {
+				entries.put(entry.id, entry);
+				size+=entry.size;
+			}
+			evictIfNeeded();
+		}
+		return entries;
+	}
+
+	/**
+	 * Get an entry for each result file in the directory, with the access statistics of the index if it has them.
+	 * Files that weren't written by this cache (they don't have its id prefix) are left alone.
+	 * @param index the entries from the index
+	 * @return the entries
+	 */
+	private List<Entry> getEntries(Map<String, Entry> index) {
+		List<Entry> found = new ArrayList<Entry>();
+		File[] files = directory.listFiles();
+		if (files==null) {return found;}
+		for (File file : files) {
+			String id = file.getName();
+			if (id.endsWith(".gz")) {id = id.substring(0, id.length()-3);}
+			if (isResultId(id)==false || file.isFile()==false) {continue;}
+			Entry entry = index.get(id);
+			if (entry==null) {
+				entry = new Entry(id, file.length(), file.lastModified(), defaultTtl);
+			}
+			else {
+				entry.size = file.length();
+			}
+			found.add(entry);
+		}
+		return found;
+	}
+
+	private File getFile(String id) {
+		File file = new File(directory, id+".gz");
+		return file.exists() ? file : new File(directory, id);
+	}
+
+	private class CacheEntryWriter extends FilterWriter {
+
+		private String id;
+		private long ttl;
+		private long count = 0;
+
+		private CacheEntryWriter(String id, Writer writer, long ttl) {
+			super(writer);
+			this.id = id;
+			this.ttl = ttl;
+		}
+
+		@Override
+		public void write(int c) throws IOException {
+			super.write(c);
+			count++;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			super.write(cbuf, off, len);
+			count+=len;
+		}
+
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			super.write(str, off, len);
+			count+=len;
+		}
+
+		@Override
+		public void close() throws IOException {
+			super.close();
+			put(id, count, ttl);
+		}
+	}
+}
@@ -0,0 +1,350 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.util;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.voyanttools.trombone.storage.Storage;
+
+import net.sf.extjwnl.JWNLException;
+import net.sf.extjwnl.data.IndexWord;
+import net.sf.extjwnl.data.POS;
+import net.sf.extjwnl.data.Pointer;
+import net.sf.extjwnl.data.PointerType;
+import net.sf.extjwnl.data.Synset;
+import net.sf.extjwnl.dictionary.Dictionary;
+
+/**
+ * The hypernym ("is a kind of") relations between all of the noun, verb and adjective synsets
+ * of WordNet, held as compact adjacency lists so that the relations between many words can be
+ * found without going back to the dictionary for each pair of them.
+ * 
+ * Synsets are numbered by their position in {@link #keys} (which are sorted) and the hypernyms
+ * of synset i are in {@link #hypernyms} from {@link #hypernymsStarts}[i] up to (but excluding)
+ * hypernymsStarts[i+1].
+ */
+public class HypernymGraph implements Serializable {
+
+	public static final long serialVersionUID = 3859216421570298114L;
+	
+	private static final POS[] POS_LIST = new POS[]{POS.NOUN, POS.VERB, POS.ADJECTIVE};
+	
+	/**
+	 * The number of bits used for each synset of a relation when they're encoded in a long (with the depth before them).
+	 */
+	private static final int RELATION_BITS = 28;
+	
+	private static final long RELATION_MASK = (1L << RELATION_BITS) - 1;
+	
+	private static HypernymGraph instance = null;
+	
+	/**
+	 * The key of each synset, its part of speech (as an index in {@link #POS_LIST}) followed by its offset.
+	 */
+	private long[] keys;
+	
+	private int[] hypernymsStarts;
+	
+	private int[] hypernyms;
+	
+	private HypernymGraph(Dictionary dictionary) throws JWNLException {
+		List<Synset> synsets = new ArrayList<Synset>();
+		for (POS pos : POS_LIST) {
+			Iterator<Synset> iterator = dictionary.getSynsetIterator(pos);
+			while (iterator.hasNext()) {
+				synsets.add(iterator.next());
+			}
+		}
+		
+		keys = new long[synsets.size()];
+		for (int i=0; i<keys.length; i++) {
+			Synset synset = synsets.get(i);
+			keys[i] = getKey(synset.getPOS(), synset.getOffset());
+		}
+		Arrays.sort(keys);
+		
+		hypernymsStarts = new int[keys.length+1];
+		// count the hypernyms of each synset, remembering them in the order they're found
+		int[] targets = new int[keys.length];
+		int count = 0;
+		for (Synset synset : synsets) {
+			int source = getSynset(synset.getPOS(), synset.getOffset());
+			for (Pointer pointer : synset.getPointers(PointerType.HYPERNYM)) {
+				int target = getSynset(pointer.getTargetPOS(), pointer.getTargetOffset());
+				if (target<0) {continue;}
+				if (count==targets.length) {
+					targets = Arrays.copyOf(targets, count*2);
+				}
+				targets[count++] = target;
+				hypernymsStarts[source+1]++;
+			}
+		}
+		for (int i=0; i<keys.length; i++) {
+			hypernymsStarts[i+1] += hypernymsStarts[i];
+		}
+		
+		// iterate again in the same order to place each hypernym with its source
+		hypernyms = new int[count];
+		int[] offsets = Arrays.copyOf(hypernymsStarts, keys.length);
+		int t = 0;
+		for (Synset synset : synsets) {
+			int source = getSynset(synset.getPOS(), synset.getOffset());
+			for (Pointer pointer : synset.getPointers(PointerType.HYPERNYM)) {
+				if (getSynset(pointer.getTargetPOS(), pointer.getTargetOffset())<0) {continue;}
+				hypernyms[offsets[source]++] = targets[t++];
+			}
+		}
+	}
+	
+	private static long getKey(POS pos, long offset) {
+		for (int i=0; i<POS_LIST.length; i++) {
+			if (POS_LIST[i]==pos) {
+				return ((long) i << 40) | offset;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Get the graph of the WordNet hypernyms, either from memory, from storage or by building
+	 * it from the dictionary (and then storing it).
+	 * @param storage the storage where the graph is kept
+	 * @param dictionary the dictionary from which to build the graph if it isn't stored
+	 * @return the {@link HypernymGraph}
+	 * @throws IOException
+	 */
+	public static synchronized HypernymGraph getInstance(Storage storage, Dictionary dictionary) throws IOException {
+		if (instance!=null) {
+			return instance;
+		}
+		String name = "wordnet-hypernymGraph-"+serialVersionUID;
+		if (storage.isStored(name, Storage.Location.object)) {
+			try {
+				Object obj = storage.retrieve(name, Storage.Location.object);
+				if (obj instanceof HypernymGraph) {
+					instance = (HypernymGraph) obj;
+				}
+			} catch (ClassNotFoundException | IOException e) {
+				// fall through to rebuild
+			}
+		}
+		if (instance==null) {
+			try {
+				instance = new HypernymGraph(dictionary);
+			} catch (JWNLException e) {
+				throw new IOException("Unable to build the WordNet hypernym graph.", e);
+			}
+			storage.store(instance, name, Storage.Location.object);
+		}
+		return instance;
+	}
+	
+	public int getSynsetsCount() {
+		return keys.length;
+	}
+	
+	/**
+	 * Get the number of a synset in this graph.
+	 * @param pos the part of speech of the synset
+	 * @param offset the offset of the synset
+	 * @return the number of the synset or -1 if it isn't in this graph
+	 */
+	public int getSynset(POS pos, long offset) {
+		long key = getKey(pos, offset);
+		if (key<0) {return -1;}
+		int index = Arrays.binarySearch(keys, key);
+		return index<0 ? -1 : index;
+	}
+	
+	/**
+	 * Get the number of the first (most common) sense of a word in this graph.
+	 * @param indexWord the word
+	 * @return the number of the synset or -1 if it isn't in this graph
+	 */
+	public int getSynset(IndexWord indexWord) {
+		long[] offsets = indexWord.getSynsetOffsets();
+		return offsets.length==0 ? -1 : getSynset(indexWord.getPOS(), offsets[0]);
+	}
+	
+	/**
+	 * Get the direct hypernyms of a synset.
+	 * @param synset the number of the synset
+	 * @return the numbers of its hypernyms
+	 */
+	public int[] getHypernyms(int synset) {
+		return Arrays.copyOfRange(hypernyms, hypernymsStarts[synset], hypernymsStarts[synset+1]);
+	}
+	
+	/**
+	 * Get a synset and all of its ancestors, each with its shortest distance from the synset.
+	 * @param synset the number of the synset
+	 * @return the ancestors followed by their distances ({@code [ancestor, distance, ancestor, distance…]}), with
+	 * the synset itself first and then by increasing distance
+	 */
+	public int[] getAncestors(int synset) {
+		int[] ancestors = new int[16];
+		ancestors[0] = synset;
+		int count = 2;
+		// breadth-first, so each ancestor is first reached by one of its shortest paths
+		for (int i=0; i<count; i+=2) {
+			int distance = ancestors[i+1]+1;
+			for (int h=hypernymsStarts[ancestors[i]], end=hypernymsStarts[ancestors[i]+1]; h<end; h++) {
+				int hypernym = hypernyms[h];
+				boolean found = false;
+				for (int j=0; j<count && !found; j+=2) {
+					found = ancestors[j]==hypernym;
+				}
+				if (found) {continue;}
+				if (count==ancestors.length) {
+					ancestors = Arrays.copyOf(ancestors, count*2);
+				}
+				ancestors[count++] = hypernym;
+				ancestors[count++] = distance;
+			}
+		}
+		return Arrays.copyOf(ancestors, count);
+	}
+	
+	/**
+	 * Find the closest relations between pairs of synsets. The depth of a relation is the length of
+	 * the shortest path from one synset up to a common ancestor and down to the other (so synonyms
+	 * have a depth of 0), and pairs without any common ancestor aren't related. Rather than looking
+	 * at every pair, the synsets are grouped by ancestor and only those sharing one are compared.
+	 * @param synsets the numbers of the synsets (or -1 for words that aren't in the graph)
+	 * @param count the maximum number of relations to find, which also bounds the memory used (since most
+	 * synsets share a root ancestor, every pair would otherwise be related)
+	 * @return the closest relations, sorted by depth and then by the positions of their synsets
+	 */
+	public List<Relation> getRelations(int[] synsets, int count) {
+		int synsetsCount = synsets.length;
+		if (synsetsCount > RELATION_MASK) {
+			throw new IllegalArgumentException("Too many synsets to relate: "+synsetsCount);
+		}
+		
+		int[][] ancestors = new int[synsetsCount][];
+		int entriesCount = 0;
+		for (int i=0; i<synsetsCount; i++) {
+			ancestors[i] = synsets[i]<0 ? new int[0] : getAncestors(synsets[i]);
+			entriesCount += ancestors[i].length/2;
+		}
+		
+		// each ancestor with the position of its descendant and their distance, grouped by ancestor and then by distance 
+		long[] entries = new long[entriesCount];
+		int e = 0;
+		for (int i=0; i<synsetsCount; i++) {
+			for (int j=0; j<ancestors[i].length; j+=2) {
+				entries[e++] = ((long) ancestors[i][j] << 40) | ((long) ancestors[i][j+1] << 32) | i;
+			}
+		}
+		Arrays.sort(entries);
+		
+		// the relations are encoded with their depth first so that they sort in order
+		long[] relations = new long[16];
+		int relationsCount = 0;
+		int maxDepth = Integer.MAX_VALUE;
+		
+		int[] depths = new int[synsetsCount];
+		Arrays.fill(depths, Integer.MAX_VALUE);
+		int[] related = new int[synsetsCount];
+		for (int i=0; i<synsetsCount; i++) {
+			
+			// find the shortest depth to each following synset that shares an ancestor
+			int relatedCount = 0;
+			for (int a=0; a<ancestors[i].length; a+=2) {
+				int distance = ancestors[i][a+1];
+				int index = Arrays.binarySearch(entries, (long) ancestors[i][a] << 40);
+				for (index = index<0 ? -index-1 : index; index<entriesCount && (entries[index] >>> 40)==ancestors[i][a]; index++) {
+					int depth = distance + (int) ((entries[index] >>> 32) & 0xff);
+					if (depth>maxDepth) {break;} // the following ones are further still
+					int j = (int) (entries[index] & 0xffffffffL);
+					if (j<=i) {continue;}
+					if (depths[j]==Integer.MAX_VALUE) {
+						related[relatedCount++] = j;
+					}
+					if (depth<depths[j]) {
+						depths[j] = depth;
+					}
+				}
+			}
+			
+			for (int r=0; r<relatedCount; r++) {
+				int j = related[r];
+				if (relationsCount==relations.length) {
+					relations = Arrays.copyOf(relations, relationsCount*2);
+				}
+				relations[relationsCount++] = ((long) depths[j] << (RELATION_BITS*2)) | ((long) i << RELATION_BITS) | j;
+				depths[j] = Integer.MAX_VALUE;
+			}
+			
+			// keep only the closest relations when there are too many, which also tells us which depths we can skip
+			if (relationsCount>=(long) count*2) {
+				Arrays.sort(relations, 0, relationsCount);
+				relationsCount = count;
+				maxDepth = count==0 ? -1 : (int) (relations[count-1] >>> (RELATION_BITS*2));
+			}
+		}
+		
+		Arrays.sort(relations, 0, relationsCount);
+		relationsCount = Math.min(relationsCount, count);
+		List<Relation> list = new ArrayList<Relation>(relationsCount);
+		for (int r=0; r<relationsCount; r++) {
+			long relation = relations[r];
+			list.add(new Relation((int) ((relation >>> RELATION_BITS) & RELATION_MASK), (int) (relation & RELATION_MASK), (int) (relation >>> (RELATION_BITS*2))));
+		}
+		return list;
+	}
+	
+	/**
+	 * A relation between two synsets, identified by their positions in the list given to {@link HypernymGraph#getRelations(int[], int)}.
+	 */
+	public static class Relation {
+		
+		private int first;
+		
+		private int second;
+		
+		private int depth;
+		
+		private Relation(int first, int second, int depth) {
+			this.first = first;
+			this.second = second;
+			this.depth = depth;
+		}
+
+		public int getFirst() {
+			return first;
+		}
+
+		public int getSecond() {
+			return second;
+		}
+
+		public int getDepth() {
+			return depth;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded queue between two steps of a pipeline: the producer blocks when
+ * the queue is full and consumers iterate over the items as they become
+ * available, until the producer has closed the queue. Interrupting a blocked
+ * consumer causes an {@link IllegalStateException}.
+ * 
+ * @param <T> the type of items in the queue
+ */
+public class PipelineQueue<T> implements Iterable<T> {
+	
+	// marks the end of the queue, it's put back for any other consumers
+	private static final Object END = new Object();
+	
+	private BlockingQueue<Object> queue;
+	
+	public PipelineQueue(int capacity) {
+		queue = new ArrayBlockingQueue<Object>(capacity);
+	}
+	
+	/**
+	 * Add an item to the queue, waiting for space if necessary.
+	 * @param item
+	 * @throws InterruptedException
+	 */
+	public void put(T item) throws InterruptedException {
+		queue.put(item);
+	}
+	
+	/**
+	 * Indicate that no more items will be added.
+	 * @throws InterruptedException
+	 */
+	public void close() throws InterruptedException {
+		queue.put(END);
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			
+			private Object next = null;
+
+			@Override
+			public boolean hasNext() {
+				if (next==null) {
+					try {
+						next = queue.take();
+						if (next==END) {
+							queue.put(END);
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException("Interrupted while waiting for the next item in the pipeline.", e);
+					}
+				}
+				return next!=END;
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public T next() {
+				if (hasNext()==false) {
+					throw new NoSuchElementException();
+				}
+				T item = (T) next;
+				next = null;
+				return item;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,547 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ *
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ *
+ * This file is part of Trombone.
+ *
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.distribution.TDistribution;
+
+/**
+ * Pearson correlations between a set of non-negative vectors (such as the
+ * distributions of terms across documents or document segments) that are
+ * mostly zero.
+ *
+ * Each vector is stored by its non-zero values only, along with an inverted
+ * index from each dimension to the vectors that are non-zero there. The mean
+ * and centred norm of each vector are computed once, so that the correlation
+ * of a pair only requires the dot product of their non-zero values:
+ *
+ * <pre>r = (x·y - n·mean(x)·mean(y)) / (norm(x)·norm(y))</pre>
+ *
+ * Pairs that never co-occur have a dot product of zero, so their correlation
+ * is a simple product of per-vector constants and they can be ranked without
+ * being computed. This is what makes it possible to find the strongest pairs
+ * among many vectors by only looking at the candidates that could possibly
+ * make the cut, with a bounded heap for each block of vectors. Blocks are
+ * processed in parallel.
+ */
+public class SparseCorrelations {
+
+	/**
+	 * The order in which pairs are ranked, the first ones being kept.
+	 */
+	public enum Order {
+		CORRELATION_ASCENDING, CORRELATION_DESCENDING, ABSOLUTE_ASCENDING, ABSOLUTE_DESCENDING, SIGNIFICANCE_ASCENDING, SIGNIFICANCE_DESCENDING;
+
+		/**
+		 * Get a key for this correlation where greater is always better. Undefined
+		 * correlations (and significances) are ranked as greater than any other,
+		 * as with {@link Float#compare(float, float)}. Significance decreases as the
+		 * absolute correlation increases (for a given number of dimensions), so it
+		 * can be ranked by the latter.
+		 */
+		private double getKey(float correlation) {
+			switch(this) {
+			case CORRELATION_ASCENDING:
+				return Float.isNaN(correlation) ? Double.NEGATIVE_INFINITY : -correlation;
+			case CORRELATION_DESCENDING:
+				return Float.isNaN(correlation) ? Double.POSITIVE_INFINITY : correlation;
+			case ABSOLUTE_ASCENDING:
+				return Float.isNaN(correlation) ? Double.NEGATIVE_INFINITY : -Math.abs(correlation);
+			case ABSOLUTE_DESCENDING:
+				return Float.isNaN(correlation) ? Double.POSITIVE_INFINITY : Math.abs(correlation);
+			case SIGNIFICANCE_ASCENDING:
+				return Float.isNaN(correlation) ? Double.NEGATIVE_INFINITY : Math.abs(correlation);
+			default: // SIGNIFICANCE_DESCENDING
+				return Float.isNaN(correlation) ? Double.POSITIVE_INFINITY : -Math.abs(correlation);
+			}
+		}
+
+		/**
+		 * Pairs that don't co-occur have a (negative) correlation proportional to the
+		 * scaled mean of the inner vector, determine whether the greatest or the smallest
+		 * scaled means rank first.
+		 */
+		private boolean isGreatestScaledMeanFirst() {
+			return this==CORRELATION_ASCENDING || this==ABSOLUTE_DESCENDING || this==SIGNIFICANCE_ASCENDING;
+		}
+	}
+
+	/**
+	 * A visitor of the pairs that have been retained.
+	 */
+	public interface PairVisitor {
+		void visit(int outer, int inner, float correlation);
+	}
+
+	private static final int BLOCKS_PER_PROCESSOR = 8;
+
+	private int dimensions;
+
+	private int size;
+
+	/**
+	 * The non-zero dimensions and values of each vector.
+	 */
+	private int[][] indexes;
+	private float[][] values;
+
+	/**
+	 * For each dimension, the vectors (in increasing order) that are non-zero and their values.
+	 */
+	private int[][] postings;
+	private float[][] postingsValues;
+
+	/**
+	 * The reciprocal of the centred norm of each vector, NaN when the vector is constant.
+	 */
+	private double[] inverseNorms;
+
+	/**
+	 * The mean divided by the centred norm of each vector.
+	 */
+	private double[] scaledMeans;
+
+	private TDistribution distribution = null;
+
+	/**
+	 * Create a new instance from the specified vectors, all of which have the same length.
+	 * @param vectors the vectors
+	 */
+	public SparseCorrelations(List<float[]> vectors) {
+		size = vectors.size();
+		dimensions = size==0 ? 0 : vectors.get(0).length;
+		indexes = new int[size][];
+		values = new float[size][];
+		inverseNorms = new double[size];
+		scaledMeans = new double[size];
+		int[] postingsCounts = new int[dimensions];
+		int[] nonZeroIndexes = new int[dimensions];
+		for (int i=0; i<size; i++) {
+			float[] vector = vectors.get(i);
+			if (vector.length!=dimensions) {
+				throw new IllegalArgumentException("All vectors should have the same length: "+vector.length+" instead of "+dimensions);
+			}
+			int nonZeroCount = 0;
+			double sum = 0;
+			for (int d=0; d<dimensions; d++) {
+				if (vector[d]!=0) {
+					nonZeroIndexes[nonZeroCount++] = d;
+					sum += vector[d];
+					postingsCounts[d]++;
+				}
+			}
+			indexes[i] = Arrays.copyOf(nonZeroIndexes, nonZeroCount);
+			values[i] = new float[nonZeroCount];
+			double mean = sum / dimensions;
+			double sumSquares = (dimensions-nonZeroCount) * mean * mean;
+			for (int j=0; j<nonZeroCount; j++) {
+				float value = vector[nonZeroIndexes[j]];
+				values[i][j] = value;
+				sumSquares += (value-mean) * (value-mean);
+			}
+			inverseNorms[i] = sumSquares > 0 ? 1 / Math.sqrt(sumSquares) : Double.NaN;
+			scaledMeans[i] = mean * inverseNorms[i];
+		}
+		postings = new int[dimensions][];
+		postingsValues = new float[dimensions][];
+		for (int d=0; d<dimensions; d++) {
+			postings[d] = new int[postingsCounts[d]];
+			postingsValues[d] = new float[postingsCounts[d]];
+			postingsCounts[d] = 0;
+		}
+		for (int i=0; i<size; i++) {
+			for (int j=0, len=indexes[i].length; j<len; j++) {
+				int d = indexes[i][j];
+				postings[d][postingsCounts[d]] = i;
+				postingsValues[d][postingsCounts[d]++] = values[i][j];
+			}
+		}
+	}
+
+	/**
+	 * Get the number of vectors.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the correlation between two vectors.
+	 * @param a the first vector
+	 * @param b the second vector
+	 * @return the correlation, NaN if either vector is constant
+	 */
+	public float getCorrelation(int a, int b) {
+		double dotProduct = 0;
+		int[] aIndexes = indexes[a];
+		int[] bIndexes = indexes[b];
+		for (int i=0, j=0; i<aIndexes.length && j<bIndexes.length;) {
+			if (aIndexes[i]<bIndexes[j]) {i++;}
+			else if (aIndexes[i]>bIndexes[j]) {j++;}
+			else {dotProduct += (double) values[a][i++] * values[b][j++];}
+		}
+		return getCorrelation(a, b, dotProduct);
+	}
+
+	/**
+	 * Pairs that don't co-occur have a dot product of zero, which leaves -n·mean(x)·mean(y)/(norm(x)·norm(y)).
+	 * Computing this the same way for all pairs makes it exactly proportional to the scaled mean of b.
+	 */
+	private float getCorrelation(int a, int b, double dotProduct) {
+		double correlation = dotProduct * inverseNorms[a] * inverseNorms[b] - dimensions * scaledMeans[a] * scaledMeans[b];
+		return (float) Math.max(-1, Math.min(1, correlation));
+	}
+
+	/**
+	 * Get the two-tailed significance of the specified correlation, as with
+	 * {@link org.apache.commons.math3.stat.regression.SimpleRegression#getSignificance()}.
+	 * @param correlation a correlation between two of these vectors
+	 * @return the significance, NaN if the correlation is undefined or there are fewer than three dimensions
+	 */
+	public double getSignificance(float correlation) {
+		if (dimensions<3 || Float.isNaN(correlation)) {return Double.NaN;}
+		double r = Math.abs(correlation);
+		if (r>=1) {return 0;}
+		if (distribution==null) {
+			distribution = new TDistribution(null, dimensions-2);
+		}
+		return 2 * (1 - distribution.cumulativeProbability(r * Math.sqrt((dimensions-2) / (1 - r*r))));
+	}
+
+	/**
+	 * Count the pairs that are considered by {@link #visitTopPairs(int[], int[], boolean, Order, int, long, PairVisitor)}.
+	 */
+	public long getPairsCount(int[] outers, int[] inners, boolean half) {
+		long count = 0;
+		for (int outer : outers) {
+			int position = Arrays.binarySearch(inners, outer);
+			if (half) {count += position < 0 ? -position-1 : position;}
+			else {count += position < 0 ? inners.length : inners.length-1;}
+		}
+		return count;
+	}
+
+	/**
+	 * Visit the pairs that rank first among all pairs of an outer vector and a
+	 * different inner vector. At least the specified number of pairs are
+	 * visited (when there are that many), along with any pairs that are tied
+	 * with the last one, so that callers can apply their own tie-breaking.
+	 * Pairs are visited from the calling thread, in no particular order.
+	 *
+	 * @param outers the outer vectors
+	 * @param inners the inner vectors, in increasing order
+	 * @param half whether to only consider inner vectors that are smaller than the outer vector
+	 * @param order the order in which pairs are ranked
+	 * @param count the number of pairs to keep
+	 * @param endTime the time (in milliseconds) after which no more outer vectors are considered
+	 * @param visitor the visitor of the pairs that are kept
+	 * @return whether all outer vectors were considered before the end time
+	 */
+	public boolean visitTopPairs(int[] outers, int[] inners, boolean half, Order order, int count, long endTime, PairVisitor visitor) {
+		if (count<=0 || outers.length==0 || inners.length==0) {return true;}
+		Pairs pairs = new Pairs(outers, inners, half, order);
+		int blocksCount = Math.min(outers.length, Runtime.getRuntime().availableProcessors() * BLOCKS_PER_PROCESSOR);
+		List<BlockPairs> blocks = IntStream.range(0, blocksCount).parallel()
+				.mapToObj(block -> pairs.getBlockPairs(block, blocksCount, new BlockPairs(count), endTime))
+				.collect(Collectors.toList());
+
+		// find the key of the last pair that is kept among all the blocks
+		int keptCount = 0;
+		for (BlockPairs blockPairs : blocks) {keptCount += blockPairs.size;}
+		double minKey = Double.NEGATIVE_INFINITY;
+		if (keptCount>=count) {
+			double[] keys = new double[keptCount];
+			int i = 0;
+			for (BlockPairs blockPairs : blocks) {
+				System.arraycopy(blockPairs.keys, 0, keys, i, blockPairs.size);
+				i += blockPairs.size;
+			}
+			Arrays.sort(keys);
+			minKey = keys[keptCount-count];
+		}
+
+		// blocks that dropped pairs tied with the last kept pair need to be visited again
+		final double threshold = minKey;
+		List<BlockPairs> revisited = IntStream.range(0, blocksCount).parallel()
+				.mapToObj(block -> blocks.get(block).maxDroppedKey >= threshold ? pairs.getBlockPairs(block, blocksCount, new BlockPairs(threshold), Long.MAX_VALUE) : blocks.get(block))
+				.collect(Collectors.toList());
+
+		boolean complete = true;
+		for (BlockPairs blockPairs : revisited) {
+			for (int i=0; i<blockPairs.size; i++) {
+				if (blockPairs.keys[i] >= threshold) {
+					visitor.visit(blockPairs.outers[i], blockPairs.inners[i], blockPairs.correlations[i]);
+				}
+			}
+			complete = complete && blockPairs.complete;
+		}
+		return complete;
+	}
+
+	/**
+	 * The state shared by the blocks when looking for the top pairs.
+	 */
+	private class Pairs {
+
+		private int[] outers;
+		private int[] inners;
+		private boolean half;
+		private Order order;
+		private boolean[] isInner;
+
+		/**
+		 * Inner vectors that aren't constant, by increasing scaled mean.
+		 */
+		private int[] scaledMeansRanks;
+		private int[] rankedInners;
+
+		/**
+		 * Inner vectors that are constant.
+		 */
+		private int[] constantInners;
+
+		/**
+		 * The ranks of all inner vectors, when they're not restricted by {@link #half}.
+		 */
+		private BitSet allRanks;
+
+		private Pairs(int[] outers, int[] inners, boolean half, Order order) {
+			this.outers = outers.clone();
+			Arrays.sort(this.outers);
+			this.inners = inners;
+			this.half = half;
+			this.order = order;
+			isInner = new boolean[size];
+			for (int inner : inners) {isInner[inner] = true;}
+			constantInners = Arrays.stream(inners).filter(inner -> Double.isNaN(inverseNorms[inner])).toArray();
+			rankedInners = Arrays.stream(inners).filter(inner -> !Double.isNaN(inverseNorms[inner])).boxed()
+					.sorted((a, b) -> Double.compare(scaledMeans[a], scaledMeans[b]))
+					.mapToInt(Integer::intValue).toArray();
+			scaledMeansRanks = new int[size];
+			for (int i=0; i<rankedInners.length; i++) {
+				scaledMeansRanks[rankedInners[i]] = i;
+			}
+			if (!half) {
+				allRanks = new BitSet(rankedInners.length);
+				allRanks.set(0, rankedInners.length);
+			}
+		}
+
+		private BlockPairs getBlockPairs(int block, int blocksCount, BlockPairs blockPairs, long endTime) {
+			int from = (int) ((long) outers.length * block / blocksCount);
+			int to = (int) ((long) outers.length * (block+1) / blocksCount);
+			double[] dotProducts = new double[size];
+			boolean[] isTouched = new boolean[size];
+			int[] touched = new int[size];
+			BitSet ranks = half ? new BitSet(rankedInners.length) : allRanks;
+			int nextInner = 0;
+			for (int o=from; o<to; o++) {
+				if (System.currentTimeMillis()>endTime) {
+					blockPairs.complete = false;
+					break;
+				}
+				int outer = outers[o];
+				if (half) {
+					for (; nextInner<inners.length && inners[nextInner]<outer; nextInner++) {
+						if (!Double.isNaN(inverseNorms[inners[nextInner]])) {
+							ranks.set(scaledMeansRanks[inners[nextInner]]);
+						}
+					}
+				}
+
+				if (Double.isNaN(inverseNorms[outer])) {
+					// every correlation is undefined, so they're tied
+					double key = order.getKey(Float.NaN);
+					for (int i=0, len=half ? nextInner : inners.length; i<len; i++) {
+						if (inners[i]!=outer && !blockPairs.offer(key, outer, inners[i], Float.NaN)) {break;}
+					}
+					continue;
+				}
+
+				// pairs that co-occur
+				int touchedCount = 0;
+				for (int i=0, len=indexes[outer].length; i<len; i++) {
+					int d = indexes[outer][i];
+					float value = values[outer][i];
+					int[] vectors = postings[d];
+					for (int j=0; j<vectors.length; j++) {
+						int inner = vectors[j];
+						if (half && inner>=outer) {break;}
+						if (inner==outer || !isInner[inner]) {continue;}
+						if (!isTouched[inner]) {
+							isTouched[inner] = true;
+							touched[touchedCount++] = inner;
+						}
+						dotProducts[inner] += (double) value * postingsValues[d][j];
+					}
+				}
+				for (int i=0; i<touchedCount; i++) {
+					int inner = touched[i];
+					float correlation = getCorrelation(outer, inner, dotProducts[inner]);
+					blockPairs.offer(order.getKey(correlation), outer, inner, correlation);
+				}
+
+				// constant inner vectors that don't co-occur
+				double constantKey = order.getKey(Float.NaN);
+				for (int inner : constantInners) {
+					if (half && inner>=outer) {break;}
+					if (inner!=outer && !isTouched[inner] && !blockPairs.offer(constantKey, outer, inner, Float.NaN)) {break;}
+				}
+
+				// remaining pairs, from the best ranked until they no longer make the cut
+				if (order.isGreatestScaledMeanFirst()) {
+					for (int rank=ranks.previousSetBit(rankedInners.length-1); rank>=0; rank=ranks.previousSetBit(rank-1)) {
+						if (!offerNonOccurring(blockPairs, outer, rankedInners[rank], isTouched)) {break;}
+					}
+				}
+				else {
+					for (int rank=ranks.nextSetBit(0); rank>=0; rank=ranks.nextSetBit(rank+1)) {
+						if (!offerNonOccurring(blockPairs, outer, rankedInners[rank], isTouched)) {break;}
+					}
+				}
+
+				for (int i=0; i<touchedCount; i++) {
+					isTouched[touched[i]] = false;
+					dotProducts[touched[i]] = 0;
+				}
+			}
+			return blockPairs;
+		}
+
+		private boolean offerNonOccurring(BlockPairs blockPairs, int outer, int inner, boolean[] isTouched) {
+			if (inner==outer || isTouched[inner]) {return true;}
+			float correlation = getCorrelation(outer, inner, 0);
+			return blockPairs.offer(order.getKey(correlation), outer, inner, correlation);
+		}
+	}
+
+	/**
+	 * The pairs kept for a block of outer vectors, either the best ones up to a
+	 * maximum count (in a heap ordered by key) or all those whose key is at
+	 * least a specified threshold.
+	 */
+	private static class BlockPairs {
+
+		private int maxSize;
+		private double threshold;
+		private int size = 0;
+		private double[] keys;
+		private int[] outers;
+		private int[] inners;
+		private float[] correlations;
+		private double maxDroppedKey = Double.NEGATIVE_INFINITY;
+		private boolean complete = true;
+
+		private BlockPairs(int maxSize) {
+			this.maxSize = maxSize;
+			this.threshold = Double.NaN;
+			allocate(Math.min(maxSize, 16));
+		}
+
+		private BlockPairs(double threshold) {
+			this.maxSize = Integer.MAX_VALUE;
+			this.threshold = threshold;
+			allocate(16);
+		}
+
+		private void allocate(int length) {
+			keys = keys==null ? new double[length] : Arrays.copyOf(keys, length);
+			outers = outers==null ? new int[length] : Arrays.copyOf(outers, length);
+			inners = inners==null ? new int[length] : Arrays.copyOf(inners, length);
+			correlations = correlations==null ? new float[length] : Arrays.copyOf(correlations, length);
+		}
+
+		/**
+		 * Offer a pair, returning false if it didn't make the cut (which is also
+		 * the case for any pair with a lesser or equal key).
+		 */
+		private boolean offer(double key, int outer, int inner, float correlation) {
+			if (Double.isNaN(threshold)) {
+				if (size<maxSize) {
+					if (size==keys.length) {allocate((int) Math.min(maxSize, (long) size*2));}
+					set(size, key, outer, inner, correlation);
+					up(size++);
+					return true;
+				}
+				else if (key>keys[0]) {
+					maxDroppedKey = Math.max(maxDroppedKey, keys[0]);
+					set(0, key, outer, inner, correlation);
+					down(0);
+					return true;
+				}
+				else {
+					maxDroppedKey = Math.max(maxDroppedKey, key);
+					return false;
+				}
+			}
+			else if (key>=threshold) {
+				if (size==keys.length) {allocate(size*2);}
+				set(size++, key, outer, inner, correlation);
+				return true;
+			}
+			else {
+				return false;
+			}
+		}
+
+		private void set(int i, double key, int outer, int inner, float correlation) {
+			keys[i] = key;
+			outers[i] = outer;
+			inners[i] = inner;
+			correlations[i] = correlation;
+		}
+
+		private void swap(int i, int j) {
+			double key = keys[i];
+			int outer = outers[i];
+			int inner = inners[i];
+			float correlation = correlations[i];
+			set(i, keys[j], outers[j], inners[j], correlations[j]);
+			set(j, key, outer, inner, correlation);
+		}
+
+		private void up(int i) {
+			while (i>0 && keys[(i-1)/2]>keys[i]) {
+				swap(i, (i-1)/2);
+				i = (i-1)/2;
+			}
+		}
+
+		private void down(int i) {
+			while (true) {
+				int smallest = i;
+				int left = 2*i+1;
+				int right = left+1;
+				if (left<size && keys[left]<keys[smallest]) {smallest = left;}
+				if (right<size && keys[right]<keys[smallest]) {smallest = right;}
+				if (smallest==i) {return;}
+				swap(i, smallest);
+				i = smallest;
+			}
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.util;
+
+import java.util.Arrays;
+
+/**
+ * A suffix array over a sequence of int symbols (such as term ids), along with
+ * the rank of each suffix and the longest common prefix (LCP) array. This makes
+ * it possible to enumerate all repeated subsequences and their frequencies in
+ * time proportional to the size of the sequence plus the size of the output.
+ * 
+ * The array is built by prefix doubling with radix sorting, which is O(n log n).
+ */
+public class SuffixArray {
+	
+	/**
+	 * The start position of each suffix, in sorted order.
+	 */
+	private int[] suffixes;
+	
+	/**
+	 * The sorted index of the suffix starting at each position.
+	 */
+	private int[] ranks;
+	
+	/**
+	 * The length of the common prefix of each suffix and the one before it (0 for the first).
+	 */
+	private int[] lcp;
+	
+	/**
+	 * Build a suffix array for the specified sequence.
+	 * @param sequence the symbols, all of which must be between 0 (inclusive) and alphabetSize (exclusive)
+	 * @param alphabetSize the number of possible symbols
+	 */
+	public SuffixArray(int[] sequence, int alphabetSize) {
+		int n = sequence.length;
+		suffixes = new int[n];
+		ranks = new int[n];
+		lcp = new int[n];
+		if (n==0) {return;}
+		
+		int[] tmp = new int[n];
+		int[] counts = new int[Math.max(alphabetSize, n)+1];
+		
+		// start by sorting on the first symbol
+		for (int symbol : sequence) {counts[symbol]++;}
+		for (int i=1; i<counts.length; i++) {counts[i]+=counts[i-1];}
+		for (int i=n-1; i>-1; i--) {suffixes[--counts[sequence[i]]] = i;}
+		int classes = 1;
+		ranks[suffixes[0]] = 0;
+		for (int i=1; i<n; i++) {
+			if (sequence[suffixes[i]]!=sequence[suffixes[i-1]]) {classes++;}
+			ranks[suffixes[i]] = classes-1;
+		}
+		
+		// then double the length of the sorted prefixes until all suffixes are distinct
+		for (int k=1; k<n && classes<n; k<<=1) {
+			// order by the second half: suffixes that are too short come first
+			int p = 0;
+			for (int i=n-k; i<n; i++) {tmp[p++] = i;}
+			for (int i=0; i<n; i++) {
+				if (suffixes[i]>=k) {tmp[p++] = suffixes[i]-k;}
+			}
+			
+			// stable counting sort on the first half
+			Arrays.fill(counts, 0, classes, 0);
+			for (int i=0; i<n; i++) {counts[ranks[i]]++;}
+			for (int i=1; i<classes; i++) {counts[i]+=counts[i-1];}
+			for (int i=n-1; i>-1; i--) {suffixes[--counts[ranks[tmp[i]]]] = tmp[i];}
+			
+			// and reassign classes
+			tmp[suffixes[0]] = 0;
+			classes = 1;
+			for (int i=1; i<n; i++) {
+				int current = suffixes[i];
+				int previous = suffixes[i-1];
+				if (ranks[current]!=ranks[previous] || getRank(ranks, current+k)!=getRank(ranks, previous+k)) {
+					classes++;
+				}
+				tmp[current] = classes-1;
+			}
+			int[] swap = ranks;
+			ranks = tmp;
+			tmp = swap;
+		}
+		
+		// Kasai's algorithm for the LCP array
+		int h = 0;
+		for (int i=0; i<n; i++) {
+			int rank = ranks[i];
+			if (rank>0) {
+				int j = suffixes[rank-1];
+				while (i+h<n && j+h<n && sequence[i+h]==sequence[j+h]) {h++;}
+				lcp[rank] = h;
+				if (h>0) {h--;}
+			}
+			else {
+				h = 0;
+			}
+		}
+	}
+	
+	private static int getRank(int[] ranks, int position) {
+		return position<ranks.length ? ranks[position] : -1;
+	}
+	
+	public int size() {
+		return suffixes.length;
+	}
+	
+	/**
+	 * Get the start position of the suffix at the specified sorted index.
+	 * @param index the sorted index
+	 * @return the start position in the sequence
+	 */
+	public int getSuffix(int index) {
+		return suffixes[index];
+	}
+	
+	/**
+	 * Get the sorted index of the suffix starting at the specified position.
+	 * @param position the start position in the sequence
+	 * @return the sorted index
+	 */
+	public int getRank(int position) {
+		return ranks[position];
+	}
+	
+	/**
+	 * Get the length of the common prefix of the suffix at the specified sorted index and the one before it.
+	 * @param index the sorted index
+	 * @return the length of the common prefix (0 for the first suffix)
+	 */
+	public int getLcp(int index) {
+		return lcp[index];
+	}
+	
+	/**
+	 * Visit all the LCP intervals of this suffix array, in other words every group of
+	 * two or more suffixes that share a prefix (see {@link #visitIntervals(int[], int, IntervalVisitor)}).
+	 * @param visitor the visitor
+	 * @return whether all intervals were visited (rather than stopped by the visitor)
+	 */
+	public boolean visitIntervals(IntervalVisitor visitor) {
+		return visitIntervals(lcp, suffixes.length, visitor);
+	}
+	
+	/**
+	 * Visit the LCP intervals of a sorted list of suffixes, given the length of the common prefix
+	 * of each suffix and the one before it. Each interval is a range of two or more suffixes that
+	 * share prefixes of the specified lengths, but no suffix outside of the range does. Every
+	 * repeated prefix is covered by exactly one interval.
+	 * @param lcp the length of the common prefix of each suffix and the one before it (the first value is ignored)
+	 * @param size the number of suffixes
+	 * @param visitor the visitor
+	 * @return whether all intervals were visited (rather than stopped by the visitor)
+	 */
+	public static boolean visitIntervals(int[] lcp, int size, IntervalVisitor visitor) {
+		int[] stackLcp = new int[size+1];
+		int[] stackStart = new int[size+1];
+		int top = 0; // the bottom of the stack is the root interval with a prefix length of zero
+		for (int i=1; i<=size; i++) {
+			int current = i<size ? lcp[i] : 0;
+			int start = i-1;
+			while (current<stackLcp[top]) {
+				int length = stackLcp[top];
+				start = stackStart[top];
+				top--;
+				if (visitor.visit(start, i-1, Math.max(current, stackLcp[top])+1, length)==false) {
+					return false;
+				}
+			}
+			if (current>stackLcp[top]) {
+				top++;
+				stackLcp[top] = current;
+				stackStart[top] = start;
+			}
+		}
+		return true;
+	}
+	
+	public interface IntervalVisitor {
+		/**
+		 * Visit an interval of suffixes that share prefixes from minLength to maxLength.
+		 * @param from the first sorted index (inclusive)
+		 * @param to the last sorted index (inclusive)
+		 * @param minLength the shortest shared prefix that's specific to this interval
+		 * @param maxLength the longest shared prefix
+		 * @return whether to keep visiting intervals
+		 */
+		boolean visit(int from, int to, int minLength, int maxLength);
+	}
+}
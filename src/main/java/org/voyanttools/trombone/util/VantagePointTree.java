@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.util;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * A vantage point tree over fixed-length vectors, for finding the nearest neighbors
+ * of a vector by Euclidean distance without comparing it to every other one.
+ * 
+ * Each node of the tree is a point (the vantage point) with a distance threshold:
+ * the points of its left subtree are no further than the threshold and those of its
+ * right subtree are no closer. The tree is laid out implicitly in one array, where
+ * the node for the range [lo, hi) has its vantage point at lo, its left subtree in
+ * [lo+1, mid) and its right subtree in [mid, hi), with mid halfway between.
+ */
+public class VantagePointTree implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private int dimensions;
+	
+	/**
+	 * The vectors of all points, one after the other.
+	 */
+	private float[] vectors;
+	
+	/**
+	 * The points in tree order.
+	 */
+	private int[] points;
+	
+	/**
+	 * The threshold of the node whose vantage point is at each index of {@link #points}.
+	 */
+	private float[] thresholds;
+	
+	/**
+	 * Build a tree over the specified vectors (which are used directly, not copied).
+	 * @param vectors the vectors of all points, one after the other
+	 * @param dimensions the length of each vector
+	 */
+	public VantagePointTree(float[] vectors, int dimensions) {
+		this.dimensions = dimensions;
+		this.vectors = vectors;
+		int size = dimensions==0 ? 0 : vectors.length/dimensions;
+		points = new int[size];
+		for (int i=0; i<size; i++) {points[i]=i;}
+		thresholds = new float[size];
+		build(0, size, new double[size], new Random(size));
+	}
+	
+	private void build(int lo, int hi, double[] distances, Random random) {
+		while (hi-lo>1) {
+			// pick a random vantage point and move it to the start
+			swap(lo, lo+random.nextInt(hi-lo), distances);
+			int vantagePoint = points[lo];
+			for (int i=lo+1; i<hi; i++) {
+				distances[i] = getDistance(vantagePoint, points[i]);
+			}
+			
+			// partition the rest around the median distance
+			int mid = (lo+1+hi)>>>1;
+			select(lo+1, hi-1, mid, distances);
+			thresholds[lo] = (float) distances[mid];
+			
+			// recurse on the smaller side and loop on the other
+			build(lo+1, mid, distances, random);
+			lo = mid;
+		}
+	}
+	
+	/**
+	 * Reorder points in [left, right] so that the one at k has the distance it would have if sorted, those
+	 * before it are no further and those after it are no closer (Hoare's selection).
+	 */
+	private void select(int left, int right, int k, double[] distances) {
+		while (right>left) {
+			double pivot = distances[(left+right)>>>1];
+			int i = left, j = right;
+			while (i<=j) {
+				while (distances[i]<pivot) {i++;}
+				while (distances[j]>pivot) {j--;}
+				if (i<=j) {swap(i++, j--, distances);}
+			}
+			if (k<=j) {right = j;}
+			else if (k>=i) {left = i;}
+			else {return;}
+		}
+	}
+	
+	private void swap(int i, int j, double[] distances) {
+		int point = points[i];
+		points[i] = points[j];
+		points[j] = point;
+		double distance = distances[i];
+		distances[i] = distances[j];
+		distances[j] = distance;
+	}
+	
+	public int size() {
+		return points.length;
+	}
+	
+	public int getDimensions() {
+		return dimensions;
+	}
+	
+	/**
+	 * Get the Euclidean distance between two points of the tree.
+	 */
+	public double getDistance(int point1, int point2) {
+		double sum = 0;
+		for (int i=point1*dimensions, j=point2*dimensions, end=i+dimensions; i<end; i++, j++) {
+			double diff = vectors[i]-vectors[j];
+			sum += diff*diff;
+		}
+		return Math.sqrt(sum);
+	}
+	
+	/**
+	 * Find the points nearest to one of the points of the tree (not including itself).
+	 * @param point the point whose neighbors to find
+	 * @param count the maximum number of neighbors
+	 * @param neighbors filled with the nearest points, closest first (its length must be at least count)
+	 * @param distances filled with the distance of each neighbor (its length must be at least count)
+	 * @return the number of neighbors found, which is less than count if the tree is too small
+	 */
+	public int search(int point, int count, int[] neighbors, double[] distances) {
+		Search search = new Search(point, count);
+		search.visit(0, points.length);
+		return search.getResults(neighbors, distances);
+	}
+	
+	private class Search {
+		
+		private int target;
+		
+		private int count;
+		
+		// a max heap of the nearest points found so far
+		private int[] heapPoints;
+		private double[] heapDistances;
+		private int size = 0;
+		
+		// the distance of the furthest point we'd keep
+		private double tau = Double.POSITIVE_INFINITY;
+		
+		private Search(int target, int count) {
+			this.target = target;
+			this.count = count;
+			heapPoints = new int[count];
+			heapDistances = new double[count];
+		}
+		
+		private void visit(int lo, int hi) {
+			while (lo<hi) {
+				int vantagePoint = points[lo];
+				double distance = getDistance(target, vantagePoint);
+				if (vantagePoint!=target && distance<tau) {
+					offer(vantagePoint, distance);
+				}
+				if (hi-lo==1) {return;}
+				
+				int mid = (lo+1+hi)>>>1;
+				double threshold = thresholds[lo];
+				// search the side where the target is first, then the other side if it can still hold closer points
+				if (distance<threshold) {
+					if (distance-tau<=threshold) {visit(lo+1, mid);}
+					if (distance+tau>=threshold) {lo = mid;}
+					else {return;}
+				}
+				else {
+					if (distance+tau>=threshold) {visit(mid, hi);}
+					if (distance-tau<=threshold) {hi = mid; lo++;}
+					else {return;}
+				}
+			}
+		}
+		
+		private void offer(int point, double distance) {
+			if (count==0) {return;}
+			int i;
+			if (size<count) {
+				// sift up
+				i = size++;
+				while (i>0) {
+					int parent = (i-1)>>>1;
+					if (heapDistances[parent]>=distance) {break;}
+					heapPoints[i] = heapPoints[parent];
+					heapDistances[i] = heapDistances[parent];
+					i = parent;
+				}
+			}
+			else {
+				// replace the furthest and sift down
+				i = 0;
+				while (true) {
+					int child = 2*i+1;
+					if (child>=size) {break;}
+					if (child+1<size && heapDistances[child+1]>heapDistances[child]) {child++;}
+					if (heapDistances[child]<=distance) {break;}
+					heapPoints[i] = heapPoints[child];
+					heapDistances[i] = heapDistances[child];
+					i = child;
+				}
+			}
+			heapPoints[i] = point;
+			heapDistances[i] = distance;
+			if (size==count) {tau = heapDistances[0];}
+		}
+		
+		private int getResults(int[] neighbors, double[] distances) {
+			// sort by distance (and point for ties) with a simple insertion sort since count is small
+			for (int i=0; i<size; i++) {
+				int point = heapPoints[i];
+				double distance = heapDistances[i];
+				int j = i;
+				while (j>0 && (distances[j-1]>distance || (distances[j-1]==distance && neighbors[j-1]>point))) {
+					neighbors[j] = neighbors[j-1];
+					distances[j] = distances[j-1];
+					j--;
+				}
+				neighbors[j] = point;
+				distances[j] = distance;
+			}
+			return size;
+		}
+	}
+}
@@ -23,9 +23,20 @@ package org.voyanttools.trombone.input.expand;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 import org.voyanttools.trombone.input.source.FileInputSource;
 import org.voyanttools.trombone.input.source.InputSource;
@@ -90,5 +101,67 @@ public class ArchiveExpanderTest {
 
 		storage.destroy();
 	}
+	
+	@Test
+	public void testManyEntries() throws IOException {
+		Storage storage = TestHelper.getDefaultTestStorage();
+		StoredDocumentSourceStorage storedDocumentSourceStorage = storage.getStoredDocumentSourceStorage();
+		StoredDocumentSourceExpander storedDocumentSourceExpander = new StoredDocumentSourceExpander(storedDocumentSourceStorage);
+
+		// a nested archive in the middle of many small files
+		ByteArrayOutputStream nested = new ByteArrayOutputStream();
+		try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(nested)) {
+			addEntry(out, new ZipArchiveEntry("nested/a.txt"), "nested a");
+			addEntry(out, new ZipArchiveEntry("nested/b.txt"), "nested b");
+		}
+		
+		File zipFile = File.createTempFile("many", ".zip");
+		File tarFile = File.createTempFile("many", ".tar.gz");
+		try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(zipFile);
+				TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(tarFile)))) {
+			for (int i=0; i<50; i++) {
+				if (i==25) {
+					addEntry(zip, new ZipArchiveEntry("nested.zip"), nested.toByteArray());
+					addEntry(tar, new TarArchiveEntry("nested.zip"), nested.toByteArray());
+				}
+				addEntry(zip, new ZipArchiveEntry("file"+i+".txt"), "text "+i);
+				addEntry(tar, new TarArchiveEntry("file"+i+".txt"), "text "+i);
+			}
+		}
+		
+		for (File file : new File[]{zipFile, tarFile}) {
+			StoredDocumentSource storedDocumentSource = storedDocumentSourceStorage.getStoredDocumentSource(new FileInputSource(file));
+			List<StoredDocumentSource> expandedSourceDocumentSources = storedDocumentSourceExpander.expandArchive(storedDocumentSource);
+			assertEquals(52, expandedSourceDocumentSources.size());
+			
+			// the order of entries is kept, with nested entries in place
+			for (int i=0; i<25; i++) {
+				assertEquals("file"+i, expandedSourceDocumentSources.get(i).getMetadata().getTitle());
+				assertEquals("text "+i, IOUtils.toString(storedDocumentSourceStorage.getStoredDocumentSourceInputStream(expandedSourceDocumentSources.get(i).getId()), "UTF-8"));
+			}
+			assertEquals("a", expandedSourceDocumentSources.get(25).getMetadata().getTitle());
+			assertEquals("nested b", IOUtils.toString(storedDocumentSourceStorage.getStoredDocumentSourceInputStream(expandedSourceDocumentSources.get(26).getId()), "UTF-8"));
+			for (int i=25; i<50; i++) {
+				assertEquals("file"+i, expandedSourceDocumentSources.get(i+2).getMetadata().getTitle());
+			}
+		}
+		
+		zipFile.delete();
+		tarFile.delete();
+		storage.destroy();
+	}
+	
+	private void addEntry(ArchiveOutputStream out, ArchiveEntry entry, String string) throws IOException {
+		addEntry(out, entry, string.getBytes("UTF-8"));
+	}
+	
+	private void addEntry(ArchiveOutputStream out, ArchiveEntry entry, byte[] bytes) throws IOException {
+		if (entry instanceof TarArchiveEntry) {
+			((TarArchiveEntry) entry).setSize(bytes.length);
+		}
+		out.putArchiveEntry(entry);
+		out.write(bytes);
+		out.closeArchiveEntry();
+	}
 
 }
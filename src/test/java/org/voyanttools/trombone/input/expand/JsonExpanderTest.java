@@ -13,6 +13,7 @@ import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 import org.voyanttools.trombone.input.source.FileInputSource;
 import org.voyanttools.trombone.input.source.InputSource;
+import org.voyanttools.trombone.input.source.StringInputSource;
 import org.voyanttools.trombone.model.DocumentFormat;
 import org.voyanttools.trombone.model.StoredDocumentSource;
 import org.voyanttools.trombone.storage.Storage;
@@ -156,6 +157,25 @@ public class JsonExpanderTest {
 			if (inputStream!=null) {inputStream.close();}
 		}
 		
+		// many short lines, stored in small batches
+		StringBuilder lines = new StringBuilder();
+		for (int i=0; i<25; i++) {
+			lines.append("{\"id\": ").append(i).append("}\n");
+		}
+		parameters = new FlexibleParameters();
+		parameters.setParameter("inputFormat", "JSONLINES");
+		parameters.setParameter("expandBatchSize", 4);
+		storedDocumentSourceExpander = new StoredDocumentSourceExpander(storedDocumentSourceStorage, parameters);
+		storedDocumentSource = storedDocumentSourceStorage.getStoredDocumentSource(new StringInputSource(lines.toString()));
+		expandedSourceDocumentSources = storedDocumentSourceExpander.getExpandedStoredDocumentSources(storedDocumentSource);
+		assertEquals(25, expandedSourceDocumentSources.size());
+		for (int i=0; i<25; i++) {
+			inputStream = storedDocumentSourceStorage.getStoredDocumentSourceInputStream(expandedSourceDocumentSources.get(i).getId());
+			assertEquals("{\"id\": "+i+"}", IOUtils.toString(inputStream, "UTF-8"));
+			inputStream.close();
+			assertTrue(expandedSourceDocumentSources.get(i).getMetadata().getLocation().endsWith("("+(i+1)+")"));
+		}
+		
 		storage.destroy();
 
 	}
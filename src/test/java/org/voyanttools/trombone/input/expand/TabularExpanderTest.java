@@ -182,6 +182,18 @@ public class TabularExpanderTest {
 		expandedSourceDocumentSources = storedDocumentSourceExpander.expandTabular(storedDocumentSource, format);
 		assertEquals(6, expandedSourceDocumentSources.size());
 		
+		// documents as rows, stored in small batches
+		parameters = new FlexibleParameters();
+		parameters.setParameter("tableDocuments", "rows");
+		parameters.setParameter("tableContent", 1);
+		parameters.setParameter("expandBatchSize", 2);
+		storedDocumentSourceExpander = new StoredDocumentSourceExpander(storedDocumentSourceStorage, parameters);
+		expandedSourceDocumentSources = storedDocumentSourceExpander.expandTabular(storedDocumentSource, format);
+		assertEquals(7, expandedSourceDocumentSources.size());
+		for (int i=0; i<7; i++) {
+			assertEquals("1.0."+(i+2), expandedSourceDocumentSources.get(i).getMetadata().getLocation());
+		}
+		
 		storage.destroy();
 	}
 }
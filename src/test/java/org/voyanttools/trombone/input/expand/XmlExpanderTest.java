@@ -212,5 +212,53 @@ public class XmlExpanderTest {
 		storage.destroy();
 
 	}
+	
+	@Test
+	public void testStreaming() throws IOException {
+		
+		assertNotNull(StreamableXpath.getInstance("//item"));
+		assertNotNull(StreamableXpath.getInstance("/rss/channel/dc:creator"));
+		assertNotNull(StreamableXpath.getInstance("//*[local-name()='TEI']"));
+		assertNull(StreamableXpath.getInstance("//item[1]"));
+		assertNull(StreamableXpath.getInstance("//item|//entry"));
+		
+		Storage storage = TestHelper.getDefaultTestStorage();
+		StoredDocumentSourceStorage storedDocumentSourceStorage = storage.getStoredDocumentSourceStorage();
+		
+		InputSource rss = new FileInputSource(TestHelper.getResource("xml/rss.xml"));
+		InputSource namespaces = new FileInputSource(TestHelper.getResource("xml/namespaces.xml"));
+		InputSource string = new StringInputSource("<a xmlns:x=\"http://x\"><b><![CDATA[<c>]]></b><b x:y=\"1\" z='\"'><?pi data?><!-- comment --><b>nested &amp; more</b> é</b><x:b/></a>");
+		
+		// streamed expansions should produce the same documents as the (non-streamable) equivalent with a predicate
+		assertStreamedEquals(storedDocumentSourceStorage, rss, "//item", 2);
+		assertStreamedEquals(storedDocumentSourceStorage, rss, "/rss/channel/item", 2);
+		assertStreamedEquals(storedDocumentSourceStorage, rss, "channel/item", 2);
+		assertStreamedEquals(storedDocumentSourceStorage, rss, "//dc:creator", 1);
+		assertStreamedEquals(storedDocumentSourceStorage, namespaces, "//h:table", 2);
+		assertStreamedEquals(storedDocumentSourceStorage, namespaces, "//*[local-name()='table']", 3);
+		assertStreamedEquals(storedDocumentSourceStorage, string, "//b", 3);
+		assertStreamedEquals(storedDocumentSourceStorage, string, "//x:b", 1);
+		
+		storage.destroy();
+	}
+	
+	private void assertStreamedEquals(StoredDocumentSourceStorage storedDocumentSourceStorage, InputSource inputSource, String xpath, int count) throws IOException {
+		StoredDocumentSource storedDocumentSource = storedDocumentSourceStorage.getStoredDocumentSource(inputSource);
+		List<StoredDocumentSource> streamed = new XmlExpander(storedDocumentSourceStorage, new FlexibleParameters(new String[]{"xmlDocumentsXpath="+xpath})).getExpandedStoredDocumentSources(storedDocumentSource);
+		String predicateXpath = xpath.endsWith("]") ? xpath.substring(0, xpath.length()-1)+" and 1=1]" : xpath+"[1=1]";
+		List<StoredDocumentSource> parsed = new XmlExpander(storedDocumentSourceStorage, new FlexibleParameters(new String[]{"xmlDocumentsXpath="+predicateXpath})).getExpandedStoredDocumentSources(storedDocumentSource);
+		assertEquals(count, streamed.size());
+		assertEquals(count, parsed.size());
+		for (int i=0; i<count; i++) {
+			assertEquals(xpath+"["+i+"]", streamed.get(i).getMetadata().getLocation());
+			assertEquals(getString(storedDocumentSourceStorage, parsed.get(i)), getString(storedDocumentSourceStorage, streamed.get(i)));
+		}
+	}
+	
+	private String getString(StoredDocumentSourceStorage storedDocumentSourceStorage, StoredDocumentSource storedDocumentSource) throws IOException {
+		try (InputStream inputStream = storedDocumentSourceStorage.getStoredDocumentSourceInputStream(storedDocumentSource.getId())) {
+			return IOUtils.toString(inputStream, "UTF-8");
+		}
+	}
 
 }
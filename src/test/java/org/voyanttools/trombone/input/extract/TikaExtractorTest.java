@@ -26,6 +26,8 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -34,6 +36,7 @@ import org.junit.Test;
 import org.voyanttools.trombone.input.source.FileInputSource;
 import org.voyanttools.trombone.input.source.InputSource;
 import org.voyanttools.trombone.input.source.StringInputSource;
+import org.voyanttools.trombone.model.DocumentFormat;
 import org.voyanttools.trombone.model.DocumentMetadata;
 import org.voyanttools.trombone.model.StoredDocumentSource;
 import org.voyanttools.trombone.storage.Storage;
@@ -254,4 +257,43 @@ public class TikaExtractorTest {
 		storage.destroy();
 	}
 
+	@Test
+	public void testKnownFormats() throws IOException {
+		Storage storage = TestHelper.getDefaultTestStorage();
+		StoredDocumentSourceStorage storeDocumentSourceStorage = storage.getStoredDocumentSourceStorage();
+		FlexibleParameters parameters = new FlexibleParameters();
+		StoredDocumentSourceExtractor extractor = new StoredDocumentSourceExtractor(storeDocumentSourceStorage, parameters);
+		
+		String line = FileUtils.readLines(TestHelper.getResource("formats/chars_utf8.txt"), "UTF-8").get(0).trim();
+		line = line.substring(line.indexOf("I"));
+		
+		// a document whose format is wrong should still be extracted with detection (do this first, before the RTF is extracted and stored)
+		StoredDocumentSource storedDocumentSource = storeDocumentSourceStorage.getStoredDocumentSource(new FileInputSource(TestHelper.getResource("formats/chars.rtf")));
+		storedDocumentSource.getMetadata().setDocumentFormat(DocumentFormat.PDF);
+		StoredDocumentSource extractedStoredDocumentSource = extractor.getExtractedStoredDocumentSource(storedDocumentSource);
+		InputStream inputStream = storeDocumentSourceStorage.getStoredDocumentSourceInputStream(extractedStoredDocumentSource.getId());
+		String contents = IOUtils.toString(inputStream, "UTF-8");
+		inputStream.close();
+		assertTrue("ensure we have some content in mislabelled RTF", contents.contains(line));
+		
+		// extract several copies of each format at once to share the parsers between workers
+		String[] files = new String[]{"chars.pdf","chars.doc","chars.docx","chars.rtf","chars_utf8.txt"};
+		List<StoredDocumentSource> storedDocumentSources = new ArrayList<StoredDocumentSource>();
+		for (int i=0; i<3; i++) {
+			for (String file : files) {
+				storedDocumentSources.add(storeDocumentSourceStorage.getStoredDocumentSource(new FileInputSource(TestHelper.getResource("formats/"+file))));
+			}
+		}
+		List<StoredDocumentSource> extractedStoredDocumentSources = extractor.getExtractedStoredDocumentSources(storedDocumentSources);
+		assertEquals(storedDocumentSources.size(), extractedStoredDocumentSources.size());
+		for (StoredDocumentSource sds : extractedStoredDocumentSources) {
+			inputStream = storeDocumentSourceStorage.getStoredDocumentSourceInputStream(sds.getId());
+			contents = IOUtils.toString(inputStream, "UTF-8");
+			inputStream.close();
+			assertTrue("ensure we have some content in "+sds.getMetadata().getLocation(), contents.contains(line));
+		}
+		
+		storage.destroy();
+	}
+
 }
@@ -26,6 +26,8 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.io.InputStream;
 
+import javax.xml.transform.Templates;
+
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -230,5 +232,34 @@ public class XmlExtractorTest {
 		storage.destroy();
 
 	}
+	
+	@Test
+	public void testCompiledCache() throws Exception {
+		// compiled expressions are reused on the same thread
+		assertSame(XmlExtractor.getXPathExpression("//title"), XmlExtractor.getXPathExpression("//title"));
+		assertNotSame(XmlExtractor.getXPathExpression("//title"), XmlExtractor.getXPathExpression("//author"));
+		
+		// and templates are shared across threads
+		final Templates[] templates = new Templates[1];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					templates[0] = XmlExtractor.getTemplates("dream-extraction.xsl");
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+		assertSame(templates[0], XmlExtractor.getTemplates("dream-extraction.xsl"));
+		
+		try {
+			XmlExtractor.getTemplates("missing.xsl");
+			fail("An exception should have been thrown for a missing template.");
+		} catch (IOException e) {
+		}
+	}
 
 }
@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.SlowCompositeReaderWrapper;
 import org.apache.lucene.index.Term;
@@ -67,13 +68,13 @@ public class LuceneIndexerTest {
 		String corpusId = luceneIndexer.index(storedDocumentSources);
 		
 		// make sure we have exactly two documents in the lucene index
-		assertEquals(2, storage.getLuceneManager().getDirectoryReader(corpusId).numDocs());
+		assertEquals(2, getNumDocs(storage, corpusId));
 		storedDocumentSources.add(storedDocumentSourceStorage.getStoredDocumentSource(three));
 		luceneIndexer.index(storedDocumentSources);
 		
 		// make sure we have exactly three documents in the lucene index (no duplicates from the first time we added)
 		boolean isPerCorpusLuceneIndex = storage.getLuceneManager() instanceof PerCorpusIndexLuceneManager;
-		assertEquals(isPerCorpusLuceneIndex ? 2 : 3, storage.getLuceneManager().getDirectoryReader(corpusId).numDocs());
+		assertEquals(isPerCorpusLuceneIndex ? 2 : 3, getNumDocs(storage, corpusId));
 		
 		storage.destroy();
 	}
@@ -302,13 +303,19 @@ public class LuceneIndexerTest {
 		boolean isPerCorpusLuceneIndex = storage.getLuceneManager() instanceof PerCorpusIndexLuceneManager;
 		for (Map.Entry<String, Map<String, Integer>> corpusMapEntry : corpusDocsToTokensMap.entrySet()) {
 			String corpusId = corpusMapEntry.getKey();
-			LeafReader reader = SlowCompositeReaderWrapper.wrap(storage.getLuceneManager().getDirectoryReader(corpusId));
-			assertEquals(isPerCorpusLuceneIndex ? 2 : 4, reader.maxDoc());
-			IndexSearcher searcher = new IndexSearcher(reader);
-			for (Map.Entry<String, Integer> entry : corpusMapEntry.getValue().entrySet()) {
-				TopDocs topDocs = searcher.search(new TermQuery(new Term("id", entry.getKey())), 1);
-				int doc = topDocs.scoreDocs[0].doc;
-				assertEquals((int) entry.getValue(), (int) reader.getTermVector(doc, TokenType.lexical.name()).size());		
+			DirectoryReader directoryReader = storage.getLuceneManager().acquireDirectoryReader(corpusId);
+			try {
+				LeafReader reader = SlowCompositeReaderWrapper.wrap(directoryReader);
+				assertEquals(isPerCorpusLuceneIndex ? 2 : 4, reader.maxDoc());
+				IndexSearcher searcher = new IndexSearcher(reader);
+				for (Map.Entry<String, Integer> entry : corpusMapEntry.getValue().entrySet()) {
+					TopDocs topDocs = searcher.search(new TermQuery(new Term("id", entry.getKey())), 1);
+					int doc = topDocs.scoreDocs[0].doc;
+					assertEquals((int) entry.getValue(), (int) reader.getTermVector(doc, TokenType.lexical.name()).size());		
+				}
+			}
+			finally {
+				storage.getLuceneManager().releaseDirectoryReader(corpusId, directoryReader);
 			}
 		}
 		
@@ -352,6 +359,16 @@ public class LuceneIndexerTest {
 		assertEquals("universal", token.getLemma());
 	}
 	
+	private int getNumDocs(Storage storage, String corpusId) throws IOException {
+		DirectoryReader directoryReader = storage.getLuceneManager().acquireDirectoryReader(corpusId);
+		try {
+			return directoryReader.numDocs();
+		}
+		finally {
+			storage.getLuceneManager().releaseDirectoryReader(corpusId, directoryReader);
+		}
+	}
+	
 	private void outputTerms(TermsEnum termsEnum) throws IOException {
 		BytesRef bytesRef = termsEnum.next();
 		while(bytesRef!=null) {
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.lucene;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.junit.Test;
+import org.voyanttools.trombone.model.Corpus;
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.tool.corpus.CorpusCreator;
+import org.voyanttools.trombone.util.FlexibleParameters;
+import org.voyanttools.trombone.util.TestHelper;
+
+public class CorpusMapperTest {
+
+	@Test
+	public void testGetInstance() throws IOException {
+		for (Storage storage : TestHelper.getDefaultTestStorages()) {
+			FlexibleParameters parameters = new FlexibleParameters(new String[]{"file="+TestHelper.getResource("tiny/02-09.zip")});
+			CorpusCreator creator = new CorpusCreator(storage, parameters);
+			creator.run();
+			String corpusId = creator.getStoredId();
+			
+			Corpus corpus = storage.getCorpusStorage().getCorpus(corpusId);
+			assertSame(corpus, storage.getCorpusStorage().getCorpus(corpusId));
+			
+			CorpusMapper corpusMapper = CorpusMapper.getInstance(storage, corpus);
+			assertEquals(corpus.size(), corpusMapper.getLuceneIds().size());
+			assertSame(corpusMapper, CorpusMapper.getInstance(storage, corpus));
+			
+			// a corpus object with the same documents shares the mappings
+			Corpus otherCorpus = new Corpus(storage, corpus.getCorpusMetadata());
+			CorpusMapper otherCorpusMapper = CorpusMapper.getInstance(storage, otherCorpus);
+			assertNotSame(corpusMapper, otherCorpusMapper);
+			assertSame(otherCorpus, otherCorpusMapper.getCorpus());
+			assertSame(corpusMapper.getLeafReader(), otherCorpusMapper.getLeafReader());
+			
+			// an unchanged index keeps the same reader
+			LuceneManager luceneManager = storage.getLuceneManager();
+			luceneManager.refresh(corpusId);
+			assertSame(otherCorpusMapper, CorpusMapper.getInstance(storage, otherCorpus));
+			
+			// a new reader (after a change to the index) means that the mapper is rebuilt
+			assertTrue(otherCorpusMapper.tryAcquire());
+			Document document = new Document();
+			document.add(new StringField("id", "extra", Field.Store.NO));
+			luceneManager.addDocument(corpusId, document);
+			CorpusMapper reopenedCorpusMapper = CorpusMapper.getInstance(storage, corpus);
+			assertNotSame(corpusMapper, reopenedCorpusMapper);
+			assertNotSame(corpusMapper.getLeafReader(), reopenedCorpusMapper.getLeafReader());
+			for (String id : corpus.getDocumentIds()) {
+				assertEquals(corpusMapper.getLuceneIdFromDocumentId(id), reopenedCorpusMapper.getLuceneIdFromDocumentId(id));
+			}
+			
+			// the previous reader stays open until it's released
+			assertTrue(otherCorpusMapper.tryAcquire());
+			otherCorpusMapper.release();
+			otherCorpusMapper.release();
+			assertFalse(otherCorpusMapper.tryAcquire());
+			
+			storage.destroy();
+		}
+	}
+
+}
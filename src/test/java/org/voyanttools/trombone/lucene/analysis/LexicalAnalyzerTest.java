@@ -0,0 +1,56 @@
+package org.voyanttools.trombone.lucene.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.junit.Test;
+import org.voyanttools.trombone.model.TokenType;
+import org.voyanttools.trombone.util.FlexibleParameters;
+
+public class LexicalAnalyzerTest {
+
+	@Test
+	public void test() throws IOException {
+		Analyzer analyzer = new LexicalAnalyzer();
+		String field = TokenType.lexical.name();
+		String text = "Dark-and <b>Stormy</b> night";
+		
+		// no context
+		assertEquals("[dark, and, stormy, night]", getTerms(analyzer.tokenStream(field, text)).toString());
+		
+		FlexibleParameters parameters = new FlexibleParameters();
+		parameters.setParameter("tokenization", "whitespace");
+		AnalysisContext whitespace = AnalysisContext.getInstance("en", parameters);
+		assertEquals("[Dark-and, Stormy, night]", getTerms(whitespace.tokenStream(analyzer, field, text)).toString());
+		
+		// components are reused per context, so the default is still available with the same analyzer
+		assertEquals("[dark, and, stormy, night]", getTerms(AnalysisContext.getInstance("en", "").tokenStream(analyzer, field, text)).toString());
+		
+		// the scope restores the previous context
+		try (AnalysisContext.Scope scope = whitespace.open()) {
+			assertEquals("whitespace", AnalysisContext.getCurrent().getTokenization());
+			assertEquals("[Dark-and, Stormy, night]", getTerms(analyzer.tokenStream(field, text)).toString());
+		}
+		assertEquals(AnalysisContext.DEFAULT, AnalysisContext.getCurrent());
+		
+		analyzer.close();
+	}
+	
+	private List<String> getTerms(TokenStream tokenStream) throws IOException {
+		List<String> terms = new ArrayList<String>();
+		CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
+		tokenStream.reset();
+		while (tokenStream.incrementToken()) {
+			terms.add(term.toString());
+		}
+		tokenStream.end();
+		tokenStream.close();
+		return terms;
+	}
+}
@@ -16,7 +16,7 @@ import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
 import org.voyanttools.trombone.util.FlexibleParameters;
 import org.voyanttools.trombone.util.TestHelper;
 
-public class CorpusTermMinimalsDBTest {
+public class CorpusTermStatsTest {
 
 	@Test
 	public void test() throws IOException {
@@ -39,17 +39,28 @@ public class CorpusTermMinimalsDBTest {
 		metadata.setDocumentIds(ids);
 		Corpus corpus = new Corpus(storage, metadata);
 		CorpusMapper corpusMapper = new CorpusMapper(storage, corpus);
-		CorpusTermMinimalsDB corpusTermMinimalsDB = null;
-		try {
-			corpusTermMinimalsDB = CorpusTermMinimalsDB.getInstance(corpusMapper, TokenType.lexical);
-			assertNull(corpusTermMinimalsDB.get("document")); // from first document added, not in this corpus
-			assertEquals(1, corpusTermMinimalsDB.get("night").getRawFreq());
-			assertEquals(3, corpusTermMinimalsDB.get("was").getRawFreq());
-		}
-		finally {
-			if (corpusTermMinimalsDB!=null) {corpusTermMinimalsDB.close();}
-			
+		CorpusTermStats corpusTermStats = CorpusTermStats.getInstance(corpusMapper, TokenType.lexical);
+		assertNull(corpusTermStats.get("document")); // from first document added, not in this corpus
+		assertEquals(1, corpusTermStats.get("night").getRawFreq());
+		assertEquals(3, corpusTermStats.get("was").getRawFreq());
+		
+		// the dictionary is sorted
+		assertEquals(12, corpusTermStats.size());
+		for (int i=1; i<corpusTermStats.size(); i++) {
+			assertTrue(corpusTermStats.getTerm(i-1).compareTo(corpusTermStats.getTerm(i))<0);
 		}
+		
+		// per-document frequencies are by corpus document position
+		int index = corpusTermStats.getTermIndex("was");
+		assertEquals(2, corpusTermStats.getInDocumentsCount(index));
+		assertArrayEquals(new int[]{1,2}, corpusTermStats.getDocumentRawFreqs(index));
+		index = corpusTermStats.getTermIndex("times");
+		assertEquals(1, corpusTermStats.getInDocumentsCount(index));
+		assertArrayEquals(new int[]{0,2}, corpusTermStats.getDocumentRawFreqs(index));
+		assertEquals(-1, corpusTermStats.getTermIndex("document"));
+		
+		// once built it's reused
+		assertSame(corpusTermStats, CorpusTermStats.getInstance(corpusMapper, TokenType.lexical));
 	}
 
 }
@@ -0,0 +1,63 @@
+package org.voyanttools.trombone.model;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.search.vectorhighlight.FieldTermStack.TermInfo;
+import org.junit.Test;
+import org.voyanttools.trombone.input.index.LuceneIndexer;
+import org.voyanttools.trombone.input.source.InputSource;
+import org.voyanttools.trombone.input.source.StringInputSource;
+import org.voyanttools.trombone.lucene.CorpusMapper;
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.storage.StoredDocumentSourceStorage;
+import org.voyanttools.trombone.util.FlexibleParameters;
+import org.voyanttools.trombone.util.TestHelper;
+
+public class DocumentForwardIndexTest {
+
+	@Test
+	public void test() throws IOException {
+		Storage storage = TestHelper.getDefaultTestStorage();
+		InputSource one = new StringInputSource("It was a dark and stormy night, it was.");
+		StoredDocumentSourceStorage storedDocumentSourceStorage = storage.getStoredDocumentSourceStorage();
+		List<StoredDocumentSource> storedDocumentSources = new ArrayList<StoredDocumentSource>();
+		storedDocumentSources.add(storedDocumentSourceStorage.getStoredDocumentSource(one));
+		String id = new LuceneIndexer(storage, new FlexibleParameters()).index(storedDocumentSources);
+		CorpusMetadata metadata = new CorpusMetadata(id);
+		List<String> ids = new ArrayList<String>();
+		for (StoredDocumentSource storedDocumentSource : storedDocumentSources) {ids.add(storedDocumentSource.getId());}
+		metadata.setDocumentIds(ids);
+		Corpus corpus = new Corpus(storage, metadata);
+		CorpusMapper corpusMapper = new CorpusMapper(storage, corpus);
+		String docId = ids.get(0);
+		int luceneDoc = corpusMapper.getLuceneIdFromDocumentId(docId);
+		
+		// the forward index is written at index time
+		DocumentForwardIndex stored = DocumentForwardIndex.getInstance(storage, corpusMapper.getLeafReader(), luceneDoc, docId, TokenType.lexical);
+		
+		// and should be identical to one built from the term vector
+		DocumentForwardIndex built = DocumentForwardIndex.build(corpusMapper.getLeafReader().getTermVector(luceneDoc, TokenType.lexical.name()));
+		
+		for (DocumentForwardIndex forwardIndex : new DocumentForwardIndex[]{stored, built}) {
+			assertEquals(9, forwardIndex.size());
+			assertEquals(7, forwardIndex.getTypesCount());
+			assertEquals(9, forwardIndex.getTokensCount());
+			assertEquals("dark", forwardIndex.getTerm(3));
+			assertEquals(9, forwardIndex.getStartOffset(3));
+			assertEquals(13, forwardIndex.getEndOffset(3));
+			assertEquals(2, forwardIndex.getRawFreq(1)); // was
+			assertFalse(forwardIndex.hasPosition(9));
+			List<TermInfo> termInfos = forwardIndex.getTermInfos(5, 20);
+			assertEquals(4, termInfos.size());
+			assertEquals("stormy", termInfos.get(0).getText());
+			assertEquals(8, termInfos.get(3).getPosition());
+		}
+		
+		assertEquals(0, DocumentForwardIndex.build(null).size());
+	}
+
+}
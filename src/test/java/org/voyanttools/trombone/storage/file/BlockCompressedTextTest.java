@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.storage.file;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.voyanttools.trombone.util.TestHelper;
+
+public class BlockCompressedTextTest {
+
+	@Test
+	public void test() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<500; i++) {
+			sb.append("Line ").append(i).append(": café 😀 naïve text.\n");
+		}
+		String string = sb.toString();
+		
+		File directory = TestHelper.getTemporaryTestStorageDirectory();
+		directory.mkdirs();
+		File file = new File(directory, "text_blocks.bin");
+		
+		// small blocks (with an odd size so that some surrogate pairs fall on block boundaries)
+		BlockCompressedText.write(string, file, 101);
+		BlockCompressedText text = BlockCompressedText.open(file);
+		assertEquals(string.length(), text.length());
+		assertEquals(string, text.toString());
+		for (int start=0; start<string.length(); start+=37) {
+			for (int len : new int[]{0, 1, 50, 101, 102, 350}) {
+				int end = Math.min(start+len, string.length());
+				assertEquals(string.substring(start, end), text.substring(start, end));
+			}
+		}
+		
+		// ranges are clamped
+		assertEquals(string.substring(0, 10), text.substring(-5, 10));
+		assertEquals(string.substring(string.length()-10), text.substring(string.length()-10, string.length()+10));
+		assertEquals("", text.substring(20, 10));
+		
+		// an empty text
+		BlockCompressedText.write("", file, BlockCompressedText.DEFAULT_BLOCK_SIZE);
+		text = BlockCompressedText.open(file);
+		assertEquals(0, text.length());
+		assertEquals("", text.substring(0, 10));
+		
+		file.delete();
+		directory.delete();
+	}
+
+}
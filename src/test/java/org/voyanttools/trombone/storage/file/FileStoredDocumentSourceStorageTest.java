@@ -88,6 +88,11 @@ public class FileStoredDocumentSourceStorageTest {
 		assertEquals("old and new modified dates of rawbytes file should be identical", rawbytes_modified, ((FileStoredDocumentSourceStorage) storedDocumentSourceStorage).getRawbytesFile(id2).lastModified());
 		assertEquals("old and new modified dates of metadata file should be identical", metadata_modified, ((FileStoredDocumentSourceStorage) storedDocumentSourceStorage).getMetadataFile(id2).lastModified());
 		
+		// and finally make sure we can retrieve a range of the text
+		assertEquals("is a", storedDocumentSourceStorage.getStoredDocumentSourceString(id1, 5, 9));
+		assertTrue(((FileStoredDocumentSourceStorage) storedDocumentSourceStorage).getTextBlocksFile(id1).exists());
+		assertEquals("test", storedDocumentSourceStorage.getStoredDocumentSourceString(id1, 10, 100));
+		
 		storage.destroy();
 	}
 
@@ -0,0 +1,58 @@
+package org.voyanttools.trombone.tool.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FrequencyMatrixTest {
+
+	@Test
+	public void test() {
+		double[][] rows = new double[][]{
+			{0, 2, 0, 1},
+			{0, 0, 0, 0},
+			{3, 0, 0, 4}
+		};
+		FrequencyMatrix matrix = new FrequencyMatrix(rows);
+		assertEquals(3, matrix.getRowsCount());
+		assertEquals(4, matrix.getColumnsCount());
+
+		// only non-zero values are stored
+		assertEquals(2, matrix.getRowEnd(0)-matrix.getRowStart(0));
+		assertEquals(0, matrix.getRowEnd(1)-matrix.getRowStart(1));
+		assertEquals(2, matrix.getRowEnd(2)-matrix.getRowStart(2));
+		assertEquals(0, matrix.getColumn(matrix.getRowStart(2)));
+		assertEquals(3, matrix.getValue(matrix.getRowStart(2)), 0);
+
+		assertEquals(2, matrix.get(0, 1), 0);
+		assertEquals(0, matrix.get(0, 2), 0);
+		assertEquals(0, matrix.get(1, 3), 0);
+		assertEquals(4, matrix.get(2, 3), 0);
+
+		assertArrayEquals(new double[]{3, 0, 7}, matrix.getRowSums(), 0);
+		assertArrayEquals(new double[]{3, 2, 0, 5}, matrix.getColumnSums(), 0);
+
+		double[][] array = matrix.toArray();
+		for (int i=0; i<rows.length; i++) {
+			assertArrayEquals(rows[i], array[i], 0);
+		}
+
+		FrequencyMatrix transposed = matrix.transpose();
+		assertEquals(4, transposed.getRowsCount());
+		assertEquals(3, transposed.getColumnsCount());
+		array = transposed.toArray();
+		for (int i=0; i<rows.length; i++) {
+			for (int j=0; j<rows[i].length; j++) {
+				assertEquals(rows[i][j], array[j][i], 0);
+			}
+		}
+		assertArrayEquals(matrix.getColumnSums(), transposed.getRowSums(), 0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testRowLength() {
+		FrequencyMatrix matrix = new FrequencyMatrix(3);
+		matrix.addRow(new double[]{1, 2});
+	}
+}
@@ -3,9 +3,11 @@ package org.voyanttools.trombone.tool.build;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.junit.Test;
 import org.voyanttools.trombone.model.Corpus;
+import org.voyanttools.trombone.model.TokenType;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.tool.build.RealCorpusCreator;
 import org.voyanttools.trombone.util.FlexibleParameters;
@@ -113,5 +115,38 @@ public class CorpusCreatorTest {
 		storage.destroy();
 
 	}
+	
+	@Test
+	public void testPipeline() throws IOException {
+		List<Storage> pipelinedStorages = TestHelper.getDefaultTestStorages();
+		List<Storage> storages = TestHelper.getDefaultTestStorages();
+		for (int i=0; i<storages.size(); i++) {
+			String[] args = new String[]{"file="+TestHelper.getResource("archive/archive.zip"),"string=a second text","file="+TestHelper.getResource("formats/chars.rtf")};
+			
+			// documents are expanded, extracted and indexed concurrently by default
+			RealCorpusCreator creator = new RealCorpusCreator(pipelinedStorages.get(i), new FlexibleParameters(args));
+			creator.run();
+			assertEquals("done", creator.getNextCorpusCreatorStep());
+			Corpus pipelinedCorpus = pipelinedStorages.get(i).getCorpusStorage().getCorpus(creator.getStoredId());
+			
+			FlexibleParameters parameters = new FlexibleParameters(args);
+			parameters.setParameter("noPipeline", "true");
+			creator = new RealCorpusCreator(storages.get(i), parameters);
+			creator.run();
+			Corpus corpus = storages.get(i).getCorpusStorage().getCorpus(creator.getStoredId());
+			
+			// same documents, in the same order and with the same statistics
+			assertEquals(corpus.getId(), pipelinedCorpus.getId());
+			assertEquals(corpus.size(), pipelinedCorpus.size());
+			for (int j=0; j<corpus.size(); j++) {
+				assertEquals(corpus.getDocument(j).getId(), pipelinedCorpus.getDocument(j).getId());
+			}
+			assertArrayEquals(corpus.getTokensCounts(TokenType.lexical), pipelinedCorpus.getTokensCounts(TokenType.lexical));
+			assertArrayEquals(corpus.getLastTokenPositions(TokenType.lexical), pipelinedCorpus.getLastTokenPositions(TokenType.lexical));
+			
+			pipelinedStorages.get(i).destroy();
+			storages.get(i).destroy();
+		}
+	}
 
 }
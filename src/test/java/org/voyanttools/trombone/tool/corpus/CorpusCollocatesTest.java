@@ -3,10 +3,13 @@ package org.voyanttools.trombone.tool.corpus;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 import org.voyanttools.trombone.model.CorpusCollocate;
+import org.voyanttools.trombone.model.DocumentCollocate;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.util.FlexibleParameters;
 import org.voyanttools.trombone.util.TestHelper;
@@ -67,4 +70,55 @@ public class CorpusCollocatesTest {
 		
 	}
 
+	@Test
+	public void testAggregation() throws IOException {
+		for (Storage storage : TestHelper.getDefaultTestStorages()) {
+			FlexibleParameters parameters = new FlexibleParameters();
+			parameters.addParameter("string", "The dark night was long and the night was cold.");
+			parameters.addParameter("string", "A night of stars. Night after night the stars were bright.");
+			parameters.addParameter("string", "No darkness here, only daylight.");
+			CorpusCreator creator = new CorpusCreator(storage, parameters);
+			creator.run();
+			
+			parameters = new FlexibleParameters();
+			parameters.setParameter("corpus", creator.getStoredId());
+			parameters.setParameter("query", "night");
+			parameters.setParameter("context", 3);
+			
+			// corpus collocates should be the sum of the document collocates
+			parameters.setParameter("limit", Integer.MAX_VALUE);
+			DocumentCollocates documentCollocates = new DocumentCollocates(storage, parameters);
+			documentCollocates.run();
+			Map<String, Integer> expected = new HashMap<String, Integer>();
+			for (DocumentCollocate documentCollocate : documentCollocates.getDocumentCollocates()) {
+				String term = documentCollocate.getTerm();
+				expected.put(term, (expected.containsKey(term) ? expected.get(term) : 0) + documentCollocate.getContextRawFrequency());
+			}
+			assertFalse(expected.isEmpty());
+			
+			parameters.removeParameter("limit");
+			CorpusCollocates corpusCollocates = new CorpusCollocates(storage, parameters);
+			corpusCollocates.run();
+			List<CorpusCollocate> corpusCollocatesList = corpusCollocates.getCorpusCollocates();
+			assertEquals(expected.size(), corpusCollocates.total);
+			assertEquals(expected.size(), corpusCollocatesList.size());
+			for (CorpusCollocate corpusCollocate : corpusCollocatesList) {
+				assertEquals(corpusCollocate.getContextTerm(), expected.get(corpusCollocate.getContextTerm()).intValue(), corpusCollocate.getContextTermRawFrequency());
+			}
+			for (int i=1; i<corpusCollocatesList.size(); i++) {
+				assertTrue(corpusCollocatesList.get(i-1).getContextTermRawFrequency()>=corpusCollocatesList.get(i).getContextTermRawFrequency());
+			}
+			
+			// only the top ones when there's a limit
+			parameters.setParameter("limit", 2);
+			corpusCollocates = new CorpusCollocates(storage, parameters);
+			corpusCollocates.run();
+			assertEquals(expected.size(), corpusCollocates.total);
+			assertEquals(2, corpusCollocates.getCorpusCollocates().size());
+			assertEquals(corpusCollocatesList.get(0).getContextTermRawFrequency(), corpusCollocates.getCorpusCollocates().get(0).getContextTermRawFrequency());
+			
+			storage.destroy();
+		}
+	}
+
 }
@@ -1,8 +1,14 @@
 package org.voyanttools.trombone.tool.corpus;
 
+import static org.junit.Assert.*;
+
 import java.io.IOException;
+import java.util.List;
 
+import org.apache.lucene.facet.LabelAndValue;
 import org.junit.Test;
+import org.voyanttools.trombone.lucene.CorpusMapper;
+import org.voyanttools.trombone.model.Corpus;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.tool.build.RealCorpusCreator;
 import org.voyanttools.trombone.util.FlexibleParameters;
@@ -33,7 +39,44 @@ public class CorpusFacetsTest {
 		parameters.setParameter("facet", "facet.author");
 		corpusFacets = new CorpusFacets(storage, parameters);
 		corpusFacets.run();
-
+		List<LabelAndValue> labelAndValues = corpusFacets.getLabelAndValues();
+		assertEquals(1, labelAndValues.size());
+		assertEquals("Joe Blow", labelAndValues.get(0).label);
+		assertEquals(2, labelAndValues.get(0).value.intValue());
+		assertEquals(1, corpusFacets.getTotal());
+		
+		// pages of the values, the total is still for all values
+		parameters.setParameter("facet", "facet.title");
+		corpusFacets = new CorpusFacets(storage, parameters);
+		corpusFacets.run();
+		labelAndValues = corpusFacets.getLabelAndValues();
+		assertEquals(2, labelAndValues.size());
+		assertEquals(2, corpusFacets.getTotal());
+		parameters.setParameter("limit", 1);
+		corpusFacets = new CorpusFacets(storage, parameters);
+		corpusFacets.run();
+		assertEquals(1, corpusFacets.getLabelAndValues().size());
+		assertEquals(labelAndValues.get(0).label, corpusFacets.getLabelAndValues().get(0).label);
+		assertEquals(2, corpusFacets.getTotal());
+		parameters.setParameter("start", 1);
+		corpusFacets = new CorpusFacets(storage, parameters);
+		corpusFacets.run();
+		assertEquals(1, corpusFacets.getLabelAndValues().size());
+		assertEquals(labelAndValues.get(1).label, corpusFacets.getLabelAndValues().get(0).label);
+		assertEquals(2, corpusFacets.getTotal());
+		parameters.setParameter("start", 2);
+		corpusFacets = new CorpusFacets(storage, parameters);
+		corpusFacets.run();
+		assertEquals(0, corpusFacets.getLabelAndValues().size());
+		parameters.removeParameter("start");
+		parameters.removeParameter("limit");
+		parameters.setParameter("facet", "facet.author");
+		
+		// the facets state is kept with the corpus mapper
+		Corpus corpus = CorpusManager.getCorpus(storage, parameters);
+		CorpusMapper corpusMapper = CorpusMapper.getInstance(storage, corpus);
+		assertSame(corpusMapper.getSortedSetDocValuesReaderState(), CorpusMapper.getInstance(storage, corpus).getSortedSetDocValuesReaderState());
+		
 		parameters.setParameter("query", "Joe");
 		corpusFacets = new CorpusFacets(storage, parameters);
 		corpusFacets.run();
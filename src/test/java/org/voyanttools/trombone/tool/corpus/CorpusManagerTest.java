@@ -3,14 +3,19 @@
  */
 package org.voyanttools.trombone.tool.corpus;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
+import org.voyanttools.trombone.lucene.CorpusMapper;
 import org.voyanttools.trombone.model.Corpus;
+import org.voyanttools.trombone.model.CorpusTermStats;
+import org.voyanttools.trombone.model.TokenType;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.storage.memory.MemoryStorage;
 import org.voyanttools.trombone.tool.build.RealCorpusCreator;
@@ -49,6 +54,7 @@ public class CorpusManagerTest {
 		parameters.setParameter("corpus", corpusId);
 		Corpus corpus = CorpusManager.getCorpus(storage, parameters);
 		assertEquals(2, corpus.size());
+		assertArrayEquals(new int[]{7,12}, corpus.getTokensCounts(TokenType.lexical)); // caches values that edits can reuse
 		
 		// try to remove one of the documents
 		parameters.setParameter("removeDocuments", "true");
@@ -59,6 +65,12 @@ public class CorpusManagerTest {
 		corpus = corpusManager.getCorpus();
 		assertEquals(1, corpus.size());
 		assertTrue(IOUtils.toString(storage.getStoredDocumentSourceStorage().getStoredDocumentSourceInputStream(corpus.getDocument(0).getId()), "UTF-8").contains(strings[1]));
+		CorpusTermStats corpusTermStats = CorpusTermStats.getInstance(CorpusMapper.getInstance(storage, corpus), TokenType.lexical);
+		assertEquals(1, corpusTermStats.getDocumentsCount());
+		assertEquals(7, corpusTermStats.size());
+		assertFalse(corpusTermStats.exists("dark"));
+		assertEquals(2, corpusTermStats.get("times").getRawFreq());
+		assertArrayEquals(new int[]{12}, corpus.getTokensCounts(TokenType.lexical));
 		
 		// try to keep only one document
 		parameters.clear();
@@ -81,6 +93,33 @@ public class CorpusManagerTest {
 		corpus = corpusManager.getCorpus();
 		assertEquals(2, corpus.size());
 		assertTrue(IOUtils.toString(storage.getStoredDocumentSourceStorage().getStoredDocumentSourceInputStream(corpus.getDocument(0).getId()), "UTF-8").contains(strings[1]));
+		corpusTermStats = CorpusTermStats.getInstance(CorpusMapper.getInstance(storage, corpus), TokenType.lexical);
+		assertArrayEquals(new int[]{2,0}, corpusTermStats.getDocumentRawFreqs(corpusTermStats.getTermIndex("times")));
+		assertArrayEquals(new int[]{0,1}, corpusTermStats.getDocumentRawFreqs(corpusTermStats.getTermIndex("dark")));
+		assertArrayEquals(new int[]{2,1}, corpusTermStats.getDocumentRawFreqs(corpusTermStats.getTermIndex("it")));
+		assertArrayEquals(new int[]{12,7}, corpus.getTokensCounts(TokenType.lexical));
+		assertArrayEquals(new int[]{11,6}, corpus.getLastTokenPositions(TokenType.lexical));
+		
+		// add a document
+		parameters.clear();
+		parameters.setParameter("corpus", corpusId);
+		parameters.setParameter("addDocuments", "true");
+		parameters.setParameter("string", "A third night.");
+		corpusManager = new CorpusManager(storage, parameters);
+		corpusManager.run();
+		corpus = corpusManager.getCorpus();
+		assertEquals(3, corpus.size());
+		assertTrue(IOUtils.toString(storage.getStoredDocumentSourceStorage().getStoredDocumentSourceInputStream(corpus.getDocument(2).getId()), "UTF-8").contains("third"));
+		corpusTermStats = CorpusTermStats.getInstance(CorpusMapper.getInstance(storage, corpus), TokenType.lexical);
+		assertEquals(3, corpusTermStats.getDocumentsCount());
+		assertArrayEquals(new int[]{1,0,1}, corpusTermStats.getDocumentRawFreqs(corpusTermStats.getTermIndex("night")));
+		assertArrayEquals(new int[]{0,0,1}, corpusTermStats.getDocumentRawFreqs(corpusTermStats.getTermIndex("third")));
+		assertEquals(2, corpusTermStats.get("a").getInDocumentsCount());
+		for (int i=1; i<corpusTermStats.size(); i++) {
+			assertTrue(corpusTermStats.getTerm(i-1).compareTo(corpusTermStats.getTerm(i))<0);
+		}
+		assertArrayEquals(new int[]{7,12,3}, corpus.getTokensCounts(TokenType.lexical));
+		assertEquals(3, CorpusMapper.getInstance(storage, corpus).getLuceneIds().size());
 		
 		// make sure we still have two documents in our original corpus
 		parameters.clear();
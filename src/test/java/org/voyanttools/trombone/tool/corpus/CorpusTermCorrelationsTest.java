@@ -35,7 +35,9 @@ public class CorpusTermCorrelationsTest {
 		ctc.run();
 		
 		List<CorpusTermsCorrelation> correlations = ctc.getCorrelations();
-		assertEquals("should", correlations.get(0).getCorpusTerms()[0].getTerm());
+		assertEquals(3, correlations.size());
+		assertEquals("you", correlations.get(0).getCorpusTerms()[0].getTerm());
+		assertEquals(-0.9847, correlations.get(0).getCorrelation(), .0001);
 	}
 
 }
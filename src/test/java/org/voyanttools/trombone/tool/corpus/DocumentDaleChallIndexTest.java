@@ -2,7 +2,9 @@ package org.voyanttools.trombone.tool.corpus;
 
 import org.junit.Test;
 import org.voyanttools.trombone.model.DaleChallIndex;
+import org.voyanttools.trombone.model.Corpus;
 import org.voyanttools.trombone.model.DaleChallIndexTest;
+import org.voyanttools.trombone.model.ReadabilityStatistics;
 import org.voyanttools.trombone.storage.Storage;
 import org.voyanttools.trombone.util.FlexibleParameters;
 import org.voyanttools.trombone.util.TestHelper;
@@ -10,6 +12,8 @@ import org.voyanttools.trombone.util.TestHelper;
 import java.io.IOException;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
 
@@ -63,6 +67,30 @@ public class DocumentDaleChallIndexTest {
         }
     }
 
+    @Test
+    public void testStoredStatistics() throws IOException {
+        for (Storage storage : TestHelper.getDefaultTestStorages()) {
+            FlexibleParameters parameters = new FlexibleParameters(new String[]{"string="+DaleChallIndexTest.TEXT_1});
+            CorpusCreator creator = new CorpusCreator(storage, parameters);
+            creator.run();
+
+            // the counts are gathered when the document is indexed
+            Corpus corpus = storage.getCorpusStorage().getCorpus(creator.getStoredId());
+            ReadabilityStatistics stored = corpus.getDocument(0).getMetadata().getReadabilityStatistics();
+            assertNotNull(stored);
+
+            ReadabilityStatistics parsed = ReadabilityStatistics.getInstance(DaleChallIndexTest.TEXT_1, DaleChallIndex.getDefaultEasyWords());
+            assertEquals(parsed.getLettersCount(), stored.getLettersCount());
+            assertEquals(parsed.getWordsCount(), stored.getWordsCount());
+            assertEquals(parsed.getSentencesCount(), stored.getSentencesCount());
+            assertEquals(parsed.getWordsWithMoreThanSixLettersCount(), stored.getWordsWithMoreThanSixLettersCount());
+            assertEquals(parsed.getWordsWithMoreThanTwoSyllablesCount(), stored.getWordsWithMoreThanTwoSyllablesCount());
+            assertEquals(parsed.getEasyWordsCount(), stored.getEasyWordsCount());
+            assertEquals(parsed.getDifficultWordsCount(), stored.getDifficultWordsCount());
+            assertEquals(parsed.getWordsCount(), parsed.getEasyWordsCount()+parsed.getDifficultWordsCount());
+        }
+    }
+
     @Test
     public void testWithNonExistingPath() throws IOException {
         String nonExistingEasyWordsPath = "./non-existing-path";
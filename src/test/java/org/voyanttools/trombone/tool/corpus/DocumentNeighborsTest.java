@@ -0,0 +1,82 @@
+package org.voyanttools.trombone.tool.corpus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+import org.voyanttools.trombone.lucene.CorpusMapper;
+import org.voyanttools.trombone.model.Corpus;
+import org.voyanttools.trombone.model.DocumentNeighbor;
+import org.voyanttools.trombone.model.DocumentSketches;
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.util.FlexibleParameters;
+import org.voyanttools.trombone.util.TestHelper;
+
+public class DocumentNeighborsTest {
+
+	@Test
+	public void test() throws IOException {
+		for (Storage storage : TestHelper.getDefaultTestStorages()) {
+			System.out.println("Testing with "+storage.getClass().getSimpleName()+": "+storage.getLuceneManager().getClass().getSimpleName());
+			test(storage);
+		}
+	}
+
+	public void test(Storage storage) throws IOException {
+		FlexibleParameters parameters = new FlexibleParameters();
+		parameters.addParameter("string", "The cat sat on the mat next to another cat.");
+		parameters.addParameter("string", "The stock market fell and bond prices rose.");
+		parameters.addParameter("string", "A cat and a kitten sat on the mat.");
+		parameters.addParameter("string", "The bond market and the stock market rallied.");
+		parameters.addParameter("string", "The old cat slept on the rug.");
+		CorpusCreator creator = new CorpusCreator(storage, parameters);
+		creator.run();
+		parameters.removeParameter("string");
+		parameters.setParameter("corpus", creator.getStoredId());
+
+		// find where each document is in the corpus
+		Corpus corpus = CorpusManager.getCorpus(storage, parameters);
+		int[] positions = new int[5];
+		for (int i=0; i<corpus.size(); i++) {
+			String string = corpus.getDocument(i).getDocumentString();
+			if (string.contains("next to another cat")) {positions[0] = i;}
+			else if (string.contains("bond prices rose")) {positions[1] = i;}
+			else if (string.contains("kitten")) {positions[2] = i;}
+			else if (string.contains("rallied")) {positions[3] = i;}
+			else if (string.contains("slept")) {positions[4] = i;}
+		}
+
+		parameters.setParameter("docIndex", new int[]{positions[0], positions[1]});
+		parameters.setParameter("limit", 2);
+		DocumentNeighbors documentNeighbors = new DocumentNeighbors(storage, parameters);
+		documentNeighbors.run();
+		List<DocumentNeighbor> neighbors = documentNeighbors.getNeighbors();
+		assertEquals(4, neighbors.size());
+		assertEquals(positions[0], neighbors.get(0).getDocIndex());
+		assertEquals(positions[2], neighbors.get(0).getNeighborIndex()); // cat, sat, mat
+		assertEquals(positions[4], neighbors.get(1).getNeighborIndex()); // cat
+		assertTrue(neighbors.get(0).getSimilarity()>neighbors.get(1).getSimilarity());
+		assertEquals(positions[1], neighbors.get(2).getDocIndex());
+		assertEquals(positions[3], neighbors.get(2).getNeighborIndex()); // stock, market, bond
+		assertEquals(corpus.getDocument(positions[3]).getId(), neighbors.get(2).getNeighborId());
+
+		// with a small corpus all documents are candidates, so the results are exact
+		parameters.removeParameter("docIndex");
+		parameters.setParameter("limit", 10);
+		documentNeighbors = new DocumentNeighbors(storage, parameters);
+		documentNeighbors.run();
+		neighbors = documentNeighbors.getNeighbors();
+		DocumentSketches documentSketches = DocumentSketches.getInstance(CorpusMapper.getInstance(storage, corpus));
+		for (DocumentNeighbor neighbor : neighbors) {
+			assertEquals(documentSketches.getSimilarity(neighbor.getDocIndex(), neighbor.getNeighborIndex()), neighbor.getSimilarity(), 0);
+			assertEquals(neighbor.getSimilarity(), documentSketches.getSimilarity(neighbor.getNeighborIndex(), neighbor.getDocIndex()), 0.00001);
+			assertTrue(neighbor.getSimilarity()>0);
+			assertTrue(neighbor.getDocIndex()!=neighbor.getNeighborIndex());
+		}
+		
+		storage.destroy();
+	}
+}
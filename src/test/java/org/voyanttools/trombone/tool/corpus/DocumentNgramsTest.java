@@ -73,4 +73,50 @@ public class DocumentNgramsTest {
 		storage.destroy();
 	}
 
-}
+	@Test
+	public void testLongRepeats() throws IOException {
+		// a long passage of distinct words repeated twice has a repeated phrase for every span of two words or more
+		int words = 200;
+		StringBuilder passage = new StringBuilder();
+		for (int i=0; i<words; i++) {
+			passage.append("w").append(i).append(" ");
+		}
+		for (Storage storage : TestHelper.getDefaultTestStorages()) {
+			FlexibleParameters parameters = new FlexibleParameters();
+			parameters.addParameter("string", passage.toString()+" middle "+passage.toString());
+			CorpusCreator creator = new CorpusCreator(storage, parameters);
+			creator.run();
+			
+			parameters = new FlexibleParameters();
+			parameters.setParameter("corpus", creator.getStoredId());
+			parameters.setParameter("limit", Integer.MAX_VALUE);
+			DocumentNgrams documentNgrams = new DocumentNgrams(storage, parameters);
+			documentNgrams.run();
+			List<DocumentNgram> ngrams = documentNgrams.getNgrams();
+			assertEquals(words*(words-1)/2, ngrams.size());
+			for (DocumentNgram ngram : ngrams) {
+				assertEquals(2, ngram.getRawFreq());
+			}
+			
+			parameters.setParameter("sort", "lengthDesc");
+			parameters.setParameter("limit", 1);
+			documentNgrams = new DocumentNgrams(storage, parameters);
+			documentNgrams.run();
+			DocumentNgram ngram = documentNgrams.getNgrams().get(0);
+			assertEquals(words, ngram.getLength());
+			assertEquals(passage.toString().trim(), ngram.getTerm());
+			assertEquals(0, ngram.getPositions().get(0)[0]);
+			assertEquals(words+1, ngram.getPositions().get(1)[0]);
+			
+			parameters.setParameter("query", "w100");
+			parameters.setParameter("limit", Integer.MAX_VALUE);
+			documentNgrams = new DocumentNgrams(storage, parameters);
+			documentNgrams.run();
+			// every phrase from the word to the end of the passage (the word on its own is too short)
+			assertEquals(words-100-1, documentNgrams.getNgrams().size());
+			
+			storage.destroy();
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package org.voyanttools.trombone.tool.corpus;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.voyanttools.trombone.model.DocumentEntity;
+import org.voyanttools.trombone.model.EntityType;
+
+import gnu.trove.TLongIntHashMap;
+import gnu.trove.TObjectIntHashMap;
+
+public class EntityCollocationsGraphTest {
+
+	@Test
+	public void testCollocationCounts() {
+		List<DocumentEntity> entities = Arrays.asList(
+			new DocumentEntity(0, "Montreal", "Montreal", EntityType.location, 3, new int[][]{{0}, {20, 21}, {100}}),
+			new DocumentEntity(0, "Sinclair", "Sinclair", EntityType.person, 2, new int[][]{{5}, {23}}),
+			new DocumentEntity(0, "Rockwell", "Rockwell", EntityType.person, 2, new int[][]{{-1}, {95}}),
+			new DocumentEntity(1, "Montreal", "Montreal", EntityType.location, 1, new int[][]{{50}}),
+			new DocumentEntity(1, "Sinclair", "Sinclair", EntityType.person, 1, new int[][]{{1000}})
+		);
+		
+		// with a window, only nearby occurrences are counted
+		List<String> entityKeys = new ArrayList<String>();
+		TObjectIntHashMap<String> entityIds = new TObjectIntHashMap<String>();
+		TLongIntHashMap counts = EntityCollocationsGraph.getCollocationCounts(entities, entityKeys, entityIds, 10);
+		assertEquals(3, entityKeys.size());
+		int montreal = entityIds.get(entityKeys.get(0));
+		int sinclair = entityIds.get(entityKeys.get(1));
+		int rockwell = entityIds.get(entityKeys.get(2));
+		assertEquals(2, counts.size());
+		assertEquals(2, counts.get(getPair(montreal, sinclair))); // 0-5 and 20-23 (in the first document only)
+		assertEquals(1, counts.get(getPair(montreal, rockwell))); // 100-95 (the unknown position is skipped)
+		
+		// otherwise each pair is counted once per document
+		entityKeys = new ArrayList<String>();
+		entityIds = new TObjectIntHashMap<String>();
+		counts = EntityCollocationsGraph.getCollocationCounts(entities, entityKeys, entityIds, 0);
+		assertEquals(3, counts.size());
+		assertEquals(2, counts.get(getPair(montreal, sinclair)));
+		assertEquals(1, counts.get(getPair(montreal, rockwell)));
+		assertEquals(1, counts.get(getPair(sinclair, rockwell)));
+	}
+	
+	private long getPair(int id1, int id2) {
+		return ((long) Math.min(id1, id2) << 32) | Math.max(id1, id2);
+	}
+
+}
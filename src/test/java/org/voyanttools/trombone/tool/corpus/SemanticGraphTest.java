@@ -0,0 +1,49 @@
+package org.voyanttools.trombone.tool.corpus;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.tool.util.ToolSerializer;
+import org.voyanttools.trombone.util.FlexibleParameters;
+import org.voyanttools.trombone.util.TestHelper;
+
+import net.sf.extjwnl.JWNLException;
+
+public class SemanticGraphTest {
+
+	@Test
+	public void test() throws IOException, JWNLException {
+		for (Storage storage : TestHelper.getDefaultTestStorages()) {
+			System.out.println("Testing with "+storage.getClass().getSimpleName()+": "+storage.getLuceneManager().getClass().getSimpleName());
+			test(storage);
+		}
+	}
+
+	public void test(Storage storage) throws IOException, JWNLException {
+		FlexibleParameters parameters = new FlexibleParameters();
+		parameters.addParameter("string", "The dog chased the cat past the car.");
+		CorpusCreator creator = new CorpusCreator(storage, parameters);
+		creator.run();
+		parameters.removeParameter("string");
+		parameters.setParameter("corpus", creator.getStoredId());
+		
+		// car and automobile are synonyms, so they're the closest
+		parameters.setParameter("posLemmas", "dog/noun,cat/noun,car/noun,automobile/noun");
+		parameters.setParameter("limit", 1);
+		parameters.setParameter("outputFormat", "json");
+		SemanticGraph semanticGraph = new SemanticGraph(storage, parameters);
+		semanticGraph.run();
+		StringWriter writer = new StringWriter();
+		new ToolSerializer(parameters, semanticGraph).run(writer);
+		String json = writer.toString();
+		assertTrue(json, json.contains("\"automobile\""));
+		assertTrue(json, json.contains("\"car\""));
+		assertTrue(json, json.indexOf("automobile")<json.indexOf("car\""));
+		assertTrue(json, json.contains("cat")==false);
+	}
+
+}
@@ -2,6 +2,11 @@ package org.voyanttools.trombone.tool.util;
 
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
 public class TextParserTest {
 
     public static final String TEXT_1 = "The rule of rhythm in prose is not so intricate. Here, too, we write in groups, or phrases, as I prefer to call them, for the prose phrase is greatly longer and is much more nonchalantly uttered than the group in verse; so that not only is there a greater interval of continuous sound between the pauses, but, for that very reason, word is linked more readily to word by a more summary enunciation. Still, the phrase is the strict analogue of the group, and successive phrases, like successive groups, must differ openly in length and rhythm. The rule of scansion in verse is to suggest no measure but the one in hand; in prose, to suggest no measure at all. Prose must be rhythmical, and it may be as much so as you will; but it must not be metrical. It may be anything, but it must not be verse.";
@@ -80,6 +85,28 @@ public class TextParserTest {
         assertText4ParserValues(textParser);
     }
 
+    @Test
+    public void testWithReader() throws IOException {
+        TextParser textParser = new TextParser(new StringReader(TEXT_1_WITH_MARKUP), null);
+        assertText1ParserValues(textParser);
+
+        textParser = new TextParser(new StringReader(TEXT_3_WITH_MARKUP), null);
+        assertText3ParserValues(textParser);
+    }
+
+    @Test
+    public void testSyllables() {
+        assertEquals(2, countSyllables("table"));
+        assertEquals(3, countSyllables("payable"));
+        assertEquals(2, countSyllables("wanted"));
+        assertEquals(1, countSyllables("lived"));
+        assertEquals(0, countSyllables(""));
+    }
+
+    private static int countSyllables(String word) {
+        return TextParser.countSyllables(word.toCharArray(), word.length());
+    }
+
     private static void assertText1ParserValues(TextParser textParser) {
         assert textParser.getLettersCount() == EXPECTED_1_NUMBER_OF_LETTERS;
         assert textParser.getWordsCount() == EXPECTED_1_NUMBER_OF_WORDS;
@@ -0,0 +1,125 @@
+package org.voyanttools.trombone.tool.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+import org.voyanttools.trombone.storage.Storage;
+import org.voyanttools.trombone.storage.file.FileStorage;
+import org.voyanttools.trombone.tool.corpus.CorpusMetadata;
+import org.voyanttools.trombone.util.FlexibleParameters;
+import org.voyanttools.trombone.util.TestHelper;
+
+public class ToolRunnerCacheTest {
+
+	@Test
+	public void testEviction() throws IOException {
+		String entry = StringUtils.repeat('a', 400*1024);
+		for (Storage storage : TestHelper.getDefaultTestStorages()) {
+			for (String policy : new String[]{"lru","lfu"}) {
+				ToolRunnerCache cache = new ToolRunnerCache(storage, new FlexibleParameters(new String[]{"cacheMaxSize=1","cachePolicy="+policy}));
+				List<RunnableTool> tools = Collections.emptyList();
+				store(cache, "one", tools, entry);
+				store(cache, "two", tools, entry);
+				assertTrue(cache.isCached(getId("one"))); // one is now more recently (and more frequently) used than two
+				store(cache, "three", tools, entry);
+				assertEquals(2, cache.getEntriesCount());
+				assertTrue(cache.getSize()<=1024*1024);
+				assertTrue(cache.isCached(getId("one")));
+				assertFalse(cache.isCached(getId("two")));
+				assertFalse(storage.isStored(getId("two"), Storage.Location.cache));
+				assertTrue(cache.isCached(getId("three")));
+				
+				// a new instance reads the index
+				cache.writeIndex();
+				cache = new ToolRunnerCache(storage, new FlexibleParameters(new String[]{"cacheMaxSize=1","cachePolicy="+policy}));
+				assertEquals(2, cache.getEntriesCount());
+				assertTrue(cache.isCached(getId("three")));
+				cache.clear();
+				assertEquals(0, cache.getEntriesCount());
+				assertFalse(storage.isStored(getId("three"), Storage.Location.cache));
+			}
+			storage.destroy();
+		}
+	}
+	
+	@Test
+	public void testUnindexedResults() throws IOException {
+		File directory = TestHelper.getTemporaryTestStorageDirectory();
+		Storage storage = new FileStorage(directory);
+		String entry = StringUtils.repeat('a', 400*1024);
+		
+		// results that were stored without being added to the index
+		for (String id : new String[]{"one","two","three"}) {
+			Writer writer = storage.getStoreWriter(getId(id), Storage.Location.cache);
+			writer.write(entry);
+			writer.close();
+		}
+		
+		// they're found in the directory and evicted
+		ToolRunnerCache cache = new ToolRunnerCache(storage, new FlexibleParameters(new String[]{"cacheMaxSize=1"}), new File(directory, Storage.Location.cache.name()));
+		assertEquals(2, cache.getEntriesCount());
+		assertEquals(2*400*1024, cache.getSize());
+		storage.destroy();
+	}
+	
+	@Test
+	public void testOtherCacheFiles() throws IOException {
+		File directory = TestHelper.getTemporaryTestStorageDirectory();
+		Storage storage = new FileStorage(directory);
+		String entry = StringUtils.repeat('a', 400*1024);
+		
+		// other tools keep their own files in the same location
+		storage.storeString(entry, "geonames-cities", Storage.Location.cache);
+		storage.storeString("0", "corpus-progress", Storage.Location.cache);
+		
+		ToolRunnerCache cache = new ToolRunnerCache(storage, new FlexibleParameters(new String[]{"cacheMaxSize=1"}), new File(directory, Storage.Location.cache.name()));
+		assertEquals(0, cache.getEntriesCount());
+		List<RunnableTool> tools = Collections.emptyList();
+		for (String id : new String[]{"one","two","three"}) {
+			store(cache, id, tools, entry);
+		}
+		assertEquals(2, cache.getEntriesCount());
+		assertFalse(cache.isCached("geonames-cities"));
+		assertTrue(storage.isStored("geonames-cities", Storage.Location.cache));
+		assertTrue(storage.isStored("corpus-progress", Storage.Location.cache));
+		
+		cache.clear();
+		assertEquals(0, cache.getEntriesCount());
+		assertTrue(storage.isStored("geonames-cities", Storage.Location.cache));
+		assertTrue(storage.isStored("corpus-progress", Storage.Location.cache));
+		storage.destroy();
+	}
+	
+	@Test
+	public void testTtl() throws IOException, InterruptedException {
+		Storage storage = TestHelper.getDefaultTestStorage();
+		ToolRunnerCache cache = new ToolRunnerCache(storage, new FlexibleParameters(new String[]{"cacheTtl.CorpusMetadata=1"}));
+		List<RunnableTool> tools = new ArrayList<RunnableTool>();
+		store(cache, "forever", tools, "results");
+		tools.add(new CorpusMetadata(storage, new FlexibleParameters()));
+		store(cache, "short", tools, "results");
+		assertTrue(cache.isCached(getId("short")));
+		Thread.sleep(1100);
+		assertFalse(cache.isCached(getId("short")));
+		assertTrue(cache.isCached(getId("forever")));
+	}
+	
+	private void store(ToolRunnerCache cache, String id, List<RunnableTool> tools, String string) throws IOException {
+		Writer writer = cache.getStoreWriter(getId(id), tools);
+		writer.write(string);
+		writer.close();
+	}
+	
+	private String getId(String name) {
+		return ToolRunnerCache.ID_PREFIX+name;
+	}
+
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.sf.extjwnl.JWNLException;
+import net.sf.extjwnl.data.IndexWord;
+import net.sf.extjwnl.data.POS;
+import net.sf.extjwnl.data.PointerType;
+import net.sf.extjwnl.data.relationship.Relationship;
+import net.sf.extjwnl.data.relationship.RelationshipFinder;
+import net.sf.extjwnl.data.relationship.RelationshipList;
+import net.sf.extjwnl.dictionary.Dictionary;
+
+public class HypernymGraphTest {
+
+	@Test
+	public void test() throws IOException, JWNLException, CloneNotSupportedException {
+		Dictionary dictionary = Dictionary.getDefaultResourceInstance();
+		HypernymGraph hypernymGraph = HypernymGraph.getInstance(TestHelper.getDefaultTestStorage(), dictionary);
+		
+		String[] posLemmas = new String[]{"noun/dog", "noun/cat", "noun/car", "noun/automobile", "noun/tree", "noun/idea",
+				"verb/run", "verb/walk", "verb/think", "adjective/happy", "adjective/glad", "noun/water"};
+		IndexWord[] words = new IndexWord[posLemmas.length];
+		int[] synsets = new int[posLemmas.length];
+		for (int i=0; i<posLemmas.length; i++) {
+			String[] parts = posLemmas[i].split("/");
+			words[i] = dictionary.getIndexWord(POS.getPOSForLabel(parts[0]), parts[1]);
+			synsets[i] = hypernymGraph.getSynset(words[i]);
+			assertTrue(synsets[i]>-1);
+		}
+		
+		List<HypernymGraph.Relation> relations = hypernymGraph.getRelations(synsets, Integer.MAX_VALUE);
+		Map<String, Integer> depths = new HashMap<String, Integer>();
+		for (HypernymGraph.Relation relation : relations) {
+			assertTrue(relation.getFirst()<relation.getSecond());
+			depths.put(relation.getFirst()+"-"+relation.getSecond(), relation.getDepth());
+		}
+		
+		// car and automobile are synonyms
+		assertEquals(Integer.valueOf(0), depths.get("2-3"));
+		assertEquals(0, relations.get(0).getDepth());
+		
+		// the same relations as the dictionary, with the shortest of their depths
+		for (int i=0; i<words.length; i++) {
+			for (int j=i+1; j<words.length; j++) {
+				RelationshipList list = RelationshipFinder.findRelationships(words[i].getSenses().get(0), words[j].getSenses().get(0), PointerType.HYPERNYM);
+				Integer depth = null;
+				for (Relationship relationship : list) {
+					if (depth==null || relationship.getDepth()<depth) {
+						depth = relationship.getDepth();
+					}
+				}
+				assertEquals(posLemmas[i]+" "+posLemmas[j], depth, depths.get(i+"-"+j));
+			}
+		}
+		
+		// a limited number of relations are the closest ones
+		for (int count : new int[]{0, 1, 5, 10}) {
+			List<HypernymGraph.Relation> closest = hypernymGraph.getRelations(synsets, count);
+			assertEquals(Math.min(count, relations.size()), closest.size());
+			for (int i=0; i<closest.size(); i++) {
+				assertEquals(relations.get(i).getFirst(), closest.get(i).getFirst());
+				assertEquals(relations.get(i).getSecond(), closest.get(i).getSecond());
+			}
+		}
+		
+		// words that aren't in the graph aren't related to anything
+		assertEquals(0, hypernymGraph.getRelations(new int[]{-1, synsets[0]}, Integer.MAX_VALUE).size());
+	}
+
+}
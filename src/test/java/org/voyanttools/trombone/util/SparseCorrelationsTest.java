@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+import org.junit.Test;
+import org.voyanttools.trombone.util.SparseCorrelations.Order;
+
+public class SparseCorrelationsTest {
+	
+	@Test
+	public void testCorrelations() {
+		List<float[]> vectors = getVectors(new Random(42));
+		SparseCorrelations sparseCorrelations = new SparseCorrelations(vectors);
+		SimpleRegression regression = new SimpleRegression();
+		for (int a=0; a<vectors.size(); a++) {
+			for (int b=0; b<vectors.size(); b++) {
+				regression.clear();
+				for (int i=0; i<vectors.get(a).length; i++) {
+					regression.addData(vectors.get(a)[i], vectors.get(b)[i]);
+				}
+				float correlation = sparseCorrelations.getCorrelation(a, b);
+				if (Double.isNaN(regression.getR())) {
+					assertTrue(Float.isNaN(correlation));
+				}
+				else {
+					assertEquals(regression.getR(), correlation, .00001);
+					if (a!=b) {
+						assertEquals(regression.getSignificance(), sparseCorrelations.getSignificance(correlation), .00001);
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testTopPairs() {
+		List<float[]> vectors = getVectors(new Random(7));
+		SparseCorrelations sparseCorrelations = new SparseCorrelations(vectors);
+		int[] all = IntStream.range(0, vectors.size()).toArray();
+		int[] some = IntStream.range(0, vectors.size()).filter(i -> i%7==3).toArray();
+		for (Order order : Order.values()) {
+			Comparator<Float> comparator = getComparator(order, sparseCorrelations);
+			for (int count : new int[]{1, 5, 50, 100000}) {
+				for (boolean half : new boolean[]{true, false}) {
+					for (int[] outers : new int[][]{all, some}) {
+						
+						// rank every pair the slow way, keeping any pairs tied with the last one
+						List<int[]> pairs = new ArrayList<int[]>();
+						for (int outer : outers) {
+							for (int inner : all) {
+								if (inner!=outer && (!half || inner<outer)) {pairs.add(new int[]{outer, inner});}
+							}
+						}
+						assertEquals(pairs.size(), sparseCorrelations.getPairsCount(outers, all, half));
+						pairs.sort((a, b) -> comparator.compare(sparseCorrelations.getCorrelation(a[0], a[1]), sparseCorrelations.getCorrelation(b[0], b[1])));
+						Set<String> expected = new HashSet<String>();
+						for (int[] pair : pairs) {
+							if (expected.size()>=count && comparator.compare(sparseCorrelations.getCorrelation(pair[0], pair[1]), sparseCorrelations.getCorrelation(pairs.get(count-1)[0], pairs.get(count-1)[1]))>0) {break;}
+							expected.add(pair[0]+"-"+pair[1]);
+						}
+						
+						Set<String> visited = new HashSet<String>();
+						assertTrue(sparseCorrelations.visitTopPairs(outers, all, half, order, count, Long.MAX_VALUE, (outer, inner, correlation) -> {
+							assertEquals(sparseCorrelations.getCorrelation(outer, inner), correlation, 0);
+							assertTrue(visited.add(outer+"-"+inner));
+						}));
+						assertEquals(order+" "+count+" "+half, expected, visited);
+					}
+				}
+			}
+		}
+	}
+	
+	private Comparator<Float> getComparator(Order order, SparseCorrelations sparseCorrelations) {
+		switch (order) {
+		case CORRELATION_ASCENDING:
+			return (a, b) -> Float.compare(a, b);
+		case CORRELATION_DESCENDING:
+			return (a, b) -> Float.compare(b, a);
+		case ABSOLUTE_ASCENDING:
+			return (a, b) -> Float.compare(Math.abs(a), Math.abs(b));
+		case ABSOLUTE_DESCENDING:
+			return (a, b) -> Float.compare(Math.abs(b), Math.abs(a));
+		case SIGNIFICANCE_ASCENDING:
+			return (a, b) -> Double.compare(sparseCorrelations.getSignificance(a), sparseCorrelations.getSignificance(b));
+		default:
+			return (a, b) -> Double.compare(sparseCorrelations.getSignificance(b), sparseCorrelations.getSignificance(a));
+		}
+	}
+	
+	/**
+	 * Sparse vectors with a few values that repeat, some duplicates (so that there are ties) and some constants.
+	 */
+	private List<float[]> getVectors(Random random) {
+		List<float[]> vectors = new ArrayList<float[]>();
+		for (int i=0; i<80; i++) {
+			float[] vector = new float[8];
+			if (i%10==9) {
+				vector = vectors.get(random.nextInt(vectors.size())).clone();
+			}
+			else if (i%20==8) {
+				for (int j=0; j<vector.length; j++) {vector[j] = .25f;}
+			}
+			else {
+				for (int j=0; j<vector.length; j++) {
+					if (random.nextInt(3)==0) {vector[j] = (1+random.nextInt(4)) / 10f;}
+				}
+			}
+			vectors.add(vector);
+		}
+		return vectors;
+	}
+
+}
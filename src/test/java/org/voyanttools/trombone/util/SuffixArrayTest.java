@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SuffixArrayTest {
+
+	@Test
+	public void testOrder() {
+		// banana: a(5) ana(3) anana(1) banana(0) na(4) nana(2)
+		int[] sequence = new int[]{1,0,2,0,2,0};
+		SuffixArray suffixArray = new SuffixArray(sequence, 3);
+		int[] suffixes = new int[sequence.length];
+		int[] lcp = new int[sequence.length];
+		for (int i=0; i<sequence.length; i++) {
+			suffixes[i] = suffixArray.getSuffix(i);
+			lcp[i] = suffixArray.getLcp(i);
+			assertEquals(i, suffixArray.getRank(suffixes[i]));
+		}
+		assertEquals(Arrays.toString(new int[]{5,3,1,0,4,2}), Arrays.toString(suffixes));
+		assertEquals(Arrays.toString(new int[]{0,1,3,0,0,2}), Arrays.toString(lcp));
+		
+		assertEquals(0, new SuffixArray(new int[0], 1).size());
+	}
+	
+	@Test
+	public void testIntervals() {
+		Random random = new Random(42);
+		for (int run=0; run<50; run++) {
+			int[] sequence = new int[1+random.nextInt(200)];
+			int alphabetSize = 1+random.nextInt(5);
+			for (int i=0; i<sequence.length; i++) {
+				sequence[i] = random.nextInt(alphabetSize);
+			}
+			
+			// count every repeated subsequence the slow way
+			Map<String, Integer> expected = new HashMap<String, Integer>();
+			Map<String, Integer> counts = new HashMap<String, Integer>();
+			for (int i=0; i<sequence.length; i++) {
+				for (int j=i+1; j<=sequence.length; j++) {
+					String key = Arrays.toString(Arrays.copyOfRange(sequence, i, j));
+					counts.put(key, counts.containsKey(key) ? counts.get(key)+1 : 1);
+				}
+			}
+			for (Map.Entry<String, Integer> count : counts.entrySet()) {
+				if (count.getValue()>1) {expected.put(count.getKey(), count.getValue());}
+			}
+			
+			SuffixArray suffixArray = new SuffixArray(sequence, alphabetSize);
+			for (int i=1; i<suffixArray.size(); i++) {
+				assertTrue(compare(sequence, suffixArray.getSuffix(i-1), suffixArray.getSuffix(i))<0);
+			}
+			Map<String, Integer> actual = new HashMap<String, Integer>();
+			suffixArray.visitIntervals((from, to, minLength, maxLength) -> {
+				int start = suffixArray.getSuffix(from);
+				for (int length=minLength; length<=maxLength; length++) {
+					String key = Arrays.toString(Arrays.copyOfRange(sequence, start, start+length));
+					assertTrue(key, actual.containsKey(key)==false);
+					actual.put(key, to-from+1);
+				}
+				return true;
+			});
+			assertEquals(expected, actual);
+		}
+	}
+	
+	private static int compare(int[] sequence, int i, int j) {
+		while (i<sequence.length && j<sequence.length) {
+			if (sequence[i]!=sequence[j]) {return sequence[i]-sequence[j];}
+			i++;
+			j++;
+		}
+		return i==sequence.length ? -1 : 1;
+	}
+}
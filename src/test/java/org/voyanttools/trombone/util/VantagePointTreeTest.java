@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Trombone is a flexible text processing and analysis library used
+ * primarily by Voyant Tools (voyant-tools.org).
+ * 
+ * Copyright (©) 2007-2012 Stéfan Sinclair & Geoffrey Rockwell
+ * 
+ * This file is part of Trombone.
+ * 
+ * Trombone is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Trombone is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Trombone.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package org.voyanttools.trombone.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class VantagePointTreeTest {
+
+	@Test
+	public void testSearch() {
+		Random random = new Random(42);
+		for (int run=0; run<30; run++) {
+			int dimensions = 1+random.nextInt(8);
+			int size = random.nextInt(300);
+			float[] vectors = new float[size*dimensions];
+			for (int i=0; i<vectors.length; i++) {
+				// coarse values so that there are ties and duplicates
+				vectors[i] = random.nextInt(run%2==0 ? 4 : 1000);
+			}
+			VantagePointTree tree = new VantagePointTree(vectors, dimensions);
+			assertEquals(size, tree.size());
+			
+			for (int point=0; point<size; point++) {
+				int count = 1+random.nextInt(10);
+				int[] neighbors = new int[count];
+				double[] distances = new double[count];
+				int found = tree.search(point, count, neighbors, distances);
+				assertEquals(Math.min(count, size-1), found);
+				
+				// compare with the distances of all points
+				double[] all = new double[size-1];
+				for (int other=0, i=0; other<size; other++) {
+					if (other!=point) {all[i++] = tree.getDistance(point, other);}
+				}
+				Arrays.sort(all);
+				for (int i=0; i<found; i++) {
+					assertEquals(all[i], distances[i], 0);
+					assertEquals(distances[i], tree.getDistance(point, neighbors[i]), 0);
+					if (i>0 && distances[i]==distances[i-1]) {
+						assertTrue(neighbors[i]>neighbors[i-1]);
+					}
+				}
+			}
+		}
+	}
+}